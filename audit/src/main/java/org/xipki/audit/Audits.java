@@ -17,9 +17,14 @@
 
 package org.xipki.audit;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.lang.reflect.InvocationTargetException;
 
+import org.xipki.audit.services.AsyncAuditService;
+import org.xipki.audit.services.AsyncAuditService.OverflowPolicy;
 import org.xipki.audit.services.EmbedAuditService;
+import org.xipki.audit.services.JournalAuditService;
 import org.xipki.audit.services.SyslogAuditService;
 
 /**
@@ -30,18 +35,92 @@ import org.xipki.audit.services.SyslogAuditService;
 
 public class Audits {
 
+  /**
+   * Configuration of the asynchronous audit.
+   *
+   * @since 5.3.7
+   */
+  public static class AsyncConf {
+
+    private boolean enabled;
+
+    /**
+     * capacity of the buffer, will be rounded up to a power of 2.
+     */
+    private int queueSize = 8192;
+
+    /**
+     * maximal number of events forwarded at once.
+     */
+    private int batchSize = 256;
+
+    /**
+     * valid values are:
+     *   block: wait until there is free space in the buffer
+     *   drop: drop the event
+     *   spill: append the event to the spillFile
+     */
+    private String overflowPolicy = "block";
+
+    private String spillFile;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getQueueSize() {
+      return queueSize;
+    }
+
+    public void setQueueSize(int queueSize) {
+      this.queueSize = queueSize;
+    }
+
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    public String getOverflowPolicy() {
+      return overflowPolicy;
+    }
+
+    public void setOverflowPolicy(String overflowPolicy) {
+      this.overflowPolicy = overflowPolicy;
+    }
+
+    public String getSpillFile() {
+      return spillFile;
+    }
+
+    public void setSpillFile(String spillFile) {
+      this.spillFile = spillFile;
+    }
+
+  }
+
   public static class AuditConf {
 
     /**
      * valid values are:
      *   embed: use the embedded slf4j logging
      *   syslog: use the syslog
+     *   journal: use the local hash-chained journal
      *   java:&lt;name of class that implements org.xipki.audit.AuditService&gt;
      */
     private String type;
 
     private String conf;
 
+    private AsyncConf async;
+
     public static AuditConf DEFAULT = new AuditConf();
 
     public String getType() {
@@ -60,6 +139,14 @@ public class Audits {
       this.conf = conf;
     }
 
+    public AsyncConf getAsync() {
+      return async;
+    }
+
+    public void setAsync(AsyncConf async) {
+      this.async = async;
+    }
+
   }
 
   private static AuditService auditService;
@@ -82,12 +169,29 @@ public class Audits {
   } // method getAuditService
 
   public static void init(String auditType, String auditConf)  {
+    init(auditType, auditConf, null);
+  }
+
+  /**
+   * Initializes the audit service.
+   *
+   * @param auditType
+   *          Type of the audit service.
+   * @param auditConf
+   *          Configuration of the audit service.
+   * @param asyncConf
+   *          Configuration of the asynchronous audit. Could be {@code null}.
+   * @since 5.3.7
+   */
+  public static void init(String auditType, String auditConf, AsyncConf asyncConf)  {
     try {
       AuditService service;
       if ("embed".equalsIgnoreCase(auditType)) {
         service = new EmbedAuditService();
       } else if ("syslog".equalsIgnoreCase(auditType)) {
         service = new SyslogAuditService();
+      } else if ("journal".equalsIgnoreCase(auditType)) {
+        service = new JournalAuditService();
       } else  if (auditType.startsWith("java:")) {
         String className = auditType.substring("java:".length());
         try {
@@ -101,8 +205,14 @@ public class Audits {
         }
       } else {
         throw new AuditServiceRuntimeException("invalid Audit.Type '" + auditType
-            + "'. Valid values are 'embed', 'syslog' or java:<name of class that implements "
-            + AuditService.class.getName() + ">");
+            + "'. Valid values are 'embed', 'syslog', 'journal' or "
+            + "java:<name of class that implements " + AuditService.class.getName() + ">");
+      }
+
+      if (asyncConf != null && asyncConf.isEnabled()) {
+        service = new AsyncAuditService(service, asyncConf.getQueueSize(),
+            asyncConf.getBatchSize(), OverflowPolicy.forName(asyncConf.getOverflowPolicy()),
+            asyncConf.getSpillFile());
       }
 
       service.init(auditConf);
@@ -114,4 +224,21 @@ public class Audits {
     }
   } // method init
 
+  /**
+   * Closes the audit service, if it is closeable. The asynchronous audit service forwards
+   * all buffered events before it is closed.
+   *
+   * @since 5.3.7
+   */
+  public static void shutdown() {
+    AuditService service = auditService;
+    if (service instanceof Closeable) {
+      try {
+        ((Closeable) service).close();
+      } catch (IOException ex) {
+        throw new AuditServiceRuntimeException("could not close AuditService", ex);
+      }
+    }
+  } // method shutdown
+
 }
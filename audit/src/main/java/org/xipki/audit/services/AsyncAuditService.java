@@ -0,0 +1,451 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.audit.services;
+
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.TimeZone;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.audit.AuditEvent;
+import org.xipki.audit.AuditService;
+import org.xipki.audit.PciAuditEvent;
+import org.xipki.util.Args;
+
+/**
+ * Audit service which logs the events asynchronously with a wrapped {@link AuditService}.
+ * The events are put into a bounded lock-free ring buffer, and are forwarded in batches by a
+ * single background thread. If the buffer is full, the event is handled according to the
+ * {@link OverflowPolicy}. On {@link #close()}, all buffered events are forwarded before the
+ * wrapped service is closed.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class AsyncAuditService implements AuditService, Closeable {
+
+  /**
+   * Policy if the buffer is full.
+   */
+  public enum OverflowPolicy {
+
+    /**
+     * Wait until there is free space in the buffer.
+     */
+    BLOCK,
+
+    /**
+     * Drop the event and count it.
+     */
+    DROP,
+
+    /**
+     * Append the event to a local file.
+     */
+    SPILL;
+
+    public static OverflowPolicy forName(String name) {
+      Args.notBlank(name, "name");
+      for (OverflowPolicy m : values()) {
+        if (m.name().equalsIgnoreCase(name)) {
+          return m;
+        }
+      }
+      throw new IllegalArgumentException("invalid OverflowPolicy " + name);
+    }
+
+  } // class OverflowPolicy
+
+  /**
+   * Bounded ring buffer with multiple producers and a single consumer.
+   */
+  private static class RingBuffer {
+
+    private final AtomicReferenceArray<Object> slots;
+
+    private final int mask;
+
+    // next sequence to be claimed by the producers
+    private final AtomicLong tail = new AtomicLong();
+
+    // next sequence to be consumed, only written by the consumer
+    private volatile long head;
+
+    RingBuffer(int minCapacity) {
+      int capacity = 1;
+      while (capacity < minCapacity) {
+        capacity <<= 1;
+      }
+      this.slots = new AtomicReferenceArray<>(capacity);
+      this.mask = capacity - 1;
+    }
+
+    boolean offer(Object element) {
+      while (true) {
+        long seq = tail.get();
+        if (seq - head >= slots.length()) {
+          return false;
+        }
+
+        if (tail.compareAndSet(seq, seq + 1)) {
+          slots.lazySet((int) seq & mask, element);
+          return true;
+        }
+      }
+    } // method offer
+
+    Object poll() {
+      long seq = head;
+      int index = (int) seq & mask;
+      // null if empty, or if the producer has claimed but not yet published the slot
+      Object element = slots.get(index);
+      if (element == null) {
+        return null;
+      }
+
+      slots.lazySet(index, null);
+      head = seq + 1;
+      return element;
+    } // method poll
+
+    int size() {
+      return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+      return slots.length();
+    }
+
+  } // class RingBuffer
+
+  private class Worker implements Runnable {
+
+    @Override
+    public void run() {
+      List<Object> batch = new ArrayList<>(batchSize);
+      while (true) {
+        Object event;
+        while (batch.size() < batchSize && (event = buffer.poll()) != null) {
+          batch.add(event);
+        }
+
+        if (!batch.isEmpty()) {
+          for (Object m : batch) {
+            forward(m);
+          }
+          batch.clear();
+          continue;
+        }
+
+        if (closed && buffer.size() == 0) {
+          break;
+        }
+
+        waiting = true;
+        if (buffer.size() == 0 && !closed) {
+          LockSupport.parkNanos(this, TimeUnit.MILLISECONDS.toNanos(100));
+        }
+        waiting = false;
+      }
+    } // method run
+
+  } // class Worker
+
+  private static final Logger LOG = LoggerFactory.getLogger(AsyncAuditService.class);
+
+  private final AuditService delegate;
+
+  private final RingBuffer buffer;
+
+  private final int batchSize;
+
+  private final OverflowPolicy overflowPolicy;
+
+  private final String spillFile;
+
+  private final AtomicLong droppedEvents = new AtomicLong();
+
+  private final AtomicLong spilledEvents = new AtomicLong();
+
+  private final AtomicLong blockedEvents = new AtomicLong();
+
+  private Writer spillWriter;
+
+  private Thread workerThread;
+
+  private volatile boolean waiting;
+
+  private volatile boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param delegate
+   *          The wrapped audit service. Must not be {@code null}.
+   * @param queueSize
+   *          Capacity of the buffer, will be rounded up to a power of 2.
+   * @param batchSize
+   *          Maximal number of events taken from the buffer at once.
+   * @param overflowPolicy
+   *          Policy if the buffer is full. Must not be {@code null}.
+   * @param spillFile
+   *          File to append the events to if the buffer is full. Required for the policy
+   *          {@link OverflowPolicy#SPILL}, ignored otherwise.
+   */
+  public AsyncAuditService(AuditService delegate, int queueSize, int batchSize,
+      OverflowPolicy overflowPolicy, String spillFile) {
+    this.delegate = Args.notNull(delegate, "delegate");
+    this.buffer = new RingBuffer(Args.positive(queueSize, "queueSize"));
+    this.batchSize = Args.positive(batchSize, "batchSize");
+    this.overflowPolicy = Args.notNull(overflowPolicy, "overflowPolicy");
+    if (overflowPolicy == OverflowPolicy.SPILL) {
+      this.spillFile = Args.notBlank(spillFile, "spillFile");
+    } else {
+      this.spillFile = null;
+    }
+  } // constructor
+
+  @Override
+  public void init(String conf) {
+    LOG.info("initializing: {}", AsyncAuditService.class);
+    delegate.init(conf);
+
+    if (spillFile != null) {
+      File file = new File(spillFile);
+      File parent = file.getAbsoluteFile().getParentFile();
+      if (parent != null && !parent.exists()) {
+        parent.mkdirs();
+      }
+
+      try {
+        spillWriter = new BufferedWriter(new OutputStreamWriter(
+            new FileOutputStream(file, true), StandardCharsets.UTF_8));
+      } catch (IOException ex) {
+        throw new IllegalStateException("could not open spill file " + spillFile, ex);
+      }
+    }
+
+    workerThread = new Thread(new Worker(), "async-audit");
+    workerThread.setDaemon(true);
+    workerThread.start();
+    LOG.info("initialized: {}, queueSize={}, batchSize={}, overflowPolicy={}",
+        AsyncAuditService.class, buffer.capacity(), batchSize, overflowPolicy);
+  } // method init
+
+  @Override
+  public void logEvent(AuditEvent event) {
+    enqueue(Args.notNull(event, "event"));
+  }
+
+  @Override
+  public void logEvent(PciAuditEvent event) {
+    enqueue(Args.notNull(event, "event"));
+  }
+
+  /**
+   * Returns the number of events in the buffer.
+   *
+   * @return the number of events in the buffer.
+   */
+  public int getQueueDepth() {
+    return buffer.size();
+  }
+
+  public int getQueueCapacity() {
+    return buffer.capacity();
+  }
+
+  /**
+   * Returns the number of events dropped because the buffer was full, or because they could
+   * not be written to the spill file.
+   *
+   * @return the number of dropped events.
+   */
+  public long getDroppedEvents() {
+    return droppedEvents.get();
+  }
+
+  /**
+   * Returns the number of events written to the spill file.
+   *
+   * @return the number of spilled events.
+   */
+  public long getSpilledEvents() {
+    return spilledEvents.get();
+  }
+
+  /**
+   * Returns the number of events whose producer had to wait for free space in the buffer.
+   *
+   * @return the number of blocked events.
+   */
+  public long getBlockedEvents() {
+    return blockedEvents.get();
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+
+    closed = true;
+    if (workerThread != null) {
+      LockSupport.unpark(workerThread);
+      try {
+        // drain the buffer
+        workerThread.join(TimeUnit.SECONDS.toMillis(30));
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+
+      if (workerThread.isAlive()) {
+        LOG.warn("could not forward all audit events, {} remaining", buffer.size());
+      }
+    }
+
+    if (spillWriter != null) {
+      synchronized (this) {
+        try {
+          spillWriter.close();
+        } catch (IOException ex) {
+          LOG.warn("could not close spill file {}: {}", spillFile, ex.getMessage());
+        }
+        spillWriter = null;
+      }
+    }
+
+    if (delegate instanceof Closeable) {
+      try {
+        ((Closeable) delegate).close();
+      } catch (IOException ex) {
+        LOG.warn("could not close audit service: {}", ex.getMessage());
+      }
+    }
+
+    LOG.info("closed {}: {}", AsyncAuditService.class, this);
+  } // method close
+
+  @Override
+  public String toString() {
+    return "queueDepth=" + getQueueDepth() + ", queueCapacity=" + getQueueCapacity()
+        + ", droppedEvents=" + getDroppedEvents() + ", spilledEvents=" + getSpilledEvents()
+        + ", blockedEvents=" + getBlockedEvents();
+  }
+
+  private void enqueue(Object event) {
+    if (closed) {
+      // the worker may be stopped already
+      forward(event);
+      return;
+    }
+
+    if (!buffer.offer(event)) {
+      switch (overflowPolicy) {
+        case DROP:
+          drop();
+          break;
+        case SPILL:
+          spill(event);
+          break;
+        default:
+          blockedEvents.incrementAndGet();
+          while (!buffer.offer(event)) {
+            if (closed) {
+              forward(event);
+              return;
+            }
+            LockSupport.unpark(workerThread);
+            LockSupport.parkNanos(TimeUnit.MICROSECONDS.toNanos(100));
+          }
+          break;
+      }
+    }
+
+    if (waiting) {
+      LockSupport.unpark(workerThread);
+    }
+  } // method enqueue
+
+  private void forward(Object event) {
+    try {
+      if (event instanceof AuditEvent) {
+        delegate.logEvent((AuditEvent) event);
+      } else {
+        delegate.logEvent((PciAuditEvent) event);
+      }
+    } catch (Throwable th) {
+      LOG.error("could not log audit event: {}", th.getMessage());
+      LOG.debug("could not log audit event", th);
+    }
+  } // method forward
+
+  private void drop() {
+    long num = droppedEvents.incrementAndGet();
+    // log only for 1, 2, 4, 8, ... dropped events
+    if ((num & (num - 1)) == 0) {
+      LOG.warn("audit buffer is full, dropped {} events so far", num);
+    }
+  } // method drop
+
+  private void spill(Object event) {
+    String message;
+    if (event instanceof AuditEvent) {
+      AuditEvent ae = (AuditEvent) event;
+      SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.UK);
+      df.setTimeZone(TimeZone.getTimeZone("UTC"));
+      message = df.format(ae.getTimestamp()) + " " + EmbedAuditService.createMessage(ae);
+    } else {
+      PciAuditEvent pe = (PciAuditEvent) event;
+      message = pe.getLevel().getAlignedText() + " | " + pe.toCharArrayWriter("");
+    }
+
+    synchronized (this) {
+      if (spillWriter != null) {
+        try {
+          spillWriter.write(message);
+          spillWriter.write('\n');
+          spillWriter.flush();
+          spilledEvents.incrementAndGet();
+          return;
+        } catch (IOException ex) {
+          LOG.warn("could not write to spill file {}: {}", spillFile, ex.getMessage());
+        }
+      }
+    }
+
+    drop();
+  } // method spill
+
+}
@@ -0,0 +1,391 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.audit.services;
+
+import static org.xipki.audit.services.JournalAuditService.HASH_SIZE;
+import static org.xipki.audit.services.JournalAuditService.HEADER_SIZE;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.Locale;
+import java.util.TimeZone;
+
+import org.xipki.audit.AuditLevel;
+import org.xipki.util.Args;
+
+/**
+ * Reader of the journal written by {@link JournalAuditService}. It reads the segments in
+ * order, and verifies the hash chain of the records across the segments.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class AuditJournalReader {
+
+  /**
+   * Handler of the records read from the journal.
+   */
+  public interface RecordHandler {
+
+    void handle(Record record);
+
+  } // class RecordHandler
+
+  /**
+   * Record of the journal.
+   */
+  public static class Record {
+
+    private final long segmentIndex;
+
+    private final int offset;
+
+    private final long timestamp;
+
+    private final AuditLevel level;
+
+    private final boolean pciEvent;
+
+    private final String text;
+
+    Record(long segmentIndex, int offset, long timestamp, AuditLevel level, boolean pciEvent,
+        String text) {
+      this.segmentIndex = segmentIndex;
+      this.offset = offset;
+      this.timestamp = timestamp;
+      this.level = level;
+      this.pciEvent = pciEvent;
+      this.text = text;
+    }
+
+    public long getSegmentIndex() {
+      return segmentIndex;
+    }
+
+    public int getOffset() {
+      return offset;
+    }
+
+    public long getTimestamp() {
+      return timestamp;
+    }
+
+    public AuditLevel getLevel() {
+      return level;
+    }
+
+    public boolean isPciEvent() {
+      return pciEvent;
+    }
+
+    /**
+     * Returns the event in the same text format as used by {@link EmbedAuditService}.
+     *
+     * @return the event as text.
+     */
+    public String getText() {
+      return text;
+    }
+
+    @Override
+    public String toString() {
+      SimpleDateFormat df = new SimpleDateFormat("yyyy-MM-dd'T'HH:mm:ss.SSS'Z'", Locale.UK);
+      df.setTimeZone(TimeZone.getTimeZone("UTC"));
+      return df.format(new Date(timestamp)) + " " + text;
+    }
+
+  } // class Record
+
+  /**
+   * Result of the verification.
+   */
+  public static class VerificationResult {
+
+    private int numSegments;
+
+    private long numRecords;
+
+    private long firstSegmentIndex = -1;
+
+    private long lastSegmentIndex = -1;
+
+    private String error;
+
+    public int getNumSegments() {
+      return numSegments;
+    }
+
+    public long getNumRecords() {
+      return numRecords;
+    }
+
+    public long getFirstSegmentIndex() {
+      return firstSegmentIndex;
+    }
+
+    public long getLastSegmentIndex() {
+      return lastSegmentIndex;
+    }
+
+    public boolean isValid() {
+      return error == null;
+    }
+
+    /**
+     * Returns the description of the first detected inconsistency.
+     *
+     * @return the error, or {@code null} if the journal is valid.
+     */
+    public String getError() {
+      return error;
+    }
+
+    @Override
+    public String toString() {
+      return "segments=" + numSegments + " (" + firstSegmentIndex + " - " + lastSegmentIndex
+          + "), records=" + numRecords + ", valid=" + isValid()
+          + (error == null ? "" : ", error=" + error);
+    }
+
+  } // class VerificationResult
+
+  private final File dir;
+
+  public AuditJournalReader(File dir) {
+    this.dir = Args.notNull(dir, "dir");
+  }
+
+  /**
+   * Reads and verifies the journal. The reading stops at the first inconsistency. If the
+   * oldest segments have been removed, the chain is verified from the oldest existing one.
+   *
+   * @param handler
+   *          Handler of the verified records. Could be {@code null}.
+   * @return the result of the verification.
+   * @throws IOException
+   *           if the journal could not be read.
+   */
+  public VerificationResult verify(RecordHandler handler) throws IOException {
+    MessageDigest md;
+    try {
+      md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new IOException("SHA-256 is not supported", ex);
+    }
+
+    VerificationResult result = new VerificationResult();
+
+    File[] files = dir.listFiles(JournalAuditService.SEGMENT_FILTER);
+    if (files == null) {
+      throw new IOException("could not list the directory " + dir.getPath());
+    }
+
+    Arrays.sort(files, new Comparator<File>() {
+      @Override
+      public int compare(File f1, File f2) {
+        return Long.compare(JournalAuditService.parseSegmentIndex(f1),
+            JournalAuditService.parseSegmentIndex(f2));
+      }
+    });
+
+    byte[] lastHash = null;
+    long lastIndex = -1;
+    for (File file : files) {
+      long index = JournalAuditService.parseSegmentIndex(file);
+      if (lastIndex != -1 && index != lastIndex + 1) {
+        result.error = "segment " + (lastIndex + 1) + " is missing";
+        return result;
+      }
+
+      MappedByteBuffer segment;
+      try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+        FileChannel channel = raf.getChannel();
+        segment = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      }
+
+      if (lastIndex == -1) {
+        result.firstSegmentIndex = index;
+      }
+      result.lastSegmentIndex = index;
+      result.numSegments++;
+      lastIndex = index;
+
+      lastHash = verifySegment(file, index, segment, lastHash, md, handler, result);
+      if (lastHash == null) {
+        return result;
+      }
+    }
+
+    return result;
+  } // method verify
+
+  private static byte[] verifySegment(File file, long index, ByteBuffer segment,
+      byte[] prevHash, MessageDigest md, RecordHandler handler, VerificationResult result) {
+    String name = file.getName();
+    int capacity = segment.capacity();
+    if (capacity < HEADER_SIZE) {
+      result.error = name + ": segment too short";
+      return null;
+    }
+
+    byte[] magic = new byte[JournalAuditService.MAGIC.length];
+    segment.get(magic);
+    if (!Arrays.equals(JournalAuditService.MAGIC, magic)) {
+      result.error = name + ": invalid magic";
+      return null;
+    }
+
+    int version = segment.getInt();
+    if (version != JournalAuditService.VERSION) {
+      result.error = name + ": unsupported version " + version;
+      return null;
+    }
+
+    long headerIndex = segment.getLong();
+    if (headerIndex != index) {
+      result.error = name + ": segment index in header is " + headerIndex;
+      return null;
+    }
+
+    // created
+    segment.getLong();
+    byte[] headerPrevHash = new byte[HASH_SIZE];
+    segment.get(headerPrevHash);
+    if (prevHash != null && !Arrays.equals(prevHash, headerPrevHash)) {
+      result.error = name + ": hash of the previous segment does not match";
+      return null;
+    }
+
+    byte[] lastHash = JournalAuditService.headerHash(segment, md);
+
+    int pos = HEADER_SIZE;
+    byte[] hash = new byte[HASH_SIZE];
+    while (pos + 4 <= capacity) {
+      int bodyLength = segment.getInt(pos);
+      if (bodyLength == 0) {
+        break;
+      }
+
+      if (bodyLength < 0 || pos + 4 + bodyLength + HASH_SIZE > capacity) {
+        result.error = name + ": invalid record length at position " + pos;
+        return null;
+      }
+
+      md.update(lastHash);
+      for (int i = 0; i < 4 + bodyLength; i++) {
+        md.update(segment.get(pos + i));
+      }
+      byte[] expectedHash = md.digest();
+      for (int i = 0; i < HASH_SIZE; i++) {
+        hash[i] = segment.get(pos + 4 + bodyLength + i);
+      }
+
+      if (!Arrays.equals(expectedHash, hash)) {
+        result.error = name + ": hash mismatch at position " + pos;
+        return null;
+      }
+
+      if (handler != null) {
+        ByteBuffer body = segment.duplicate();
+        body.limit(pos + 4 + bodyLength).position(pos + 4);
+        Record record;
+        try {
+          record = parseRecord(index, pos, body);
+        } catch (BufferUnderflowException | IllegalArgumentException ex) {
+          result.error = name + ": invalid record at position " + pos;
+          return null;
+        }
+        handler.handle(record);
+      }
+
+      result.numRecords++;
+      lastHash = expectedHash;
+      pos += 4 + bodyLength + HASH_SIZE;
+    }
+
+    return lastHash;
+  } // method verifySegment
+
+  private static Record parseRecord(long segmentIndex, int offset, ByteBuffer body) {
+    byte type = body.get();
+    long timestamp = body.getLong();
+    AuditLevel level = AuditLevel.forValue(body.get());
+
+    StringBuilder sb = new StringBuilder(150);
+    sb.append(level.getAlignedText()).append(" | ");
+
+    if (type == JournalAuditService.TYPE_AUDIT_EVENT) {
+      String applicationName = readString(body);
+      String name = readString(body);
+      sb.append(applicationName == null ? "undefined" : applicationName).append(" - ")
+        .append(name == null ? "undefined" : name);
+      sb.append(":\tstatus: ").append(readString(body));
+      long duration = body.getLong();
+      if (duration >= 0) {
+        sb.append("\tduration: ").append(duration);
+      }
+
+      int numEventDatas = body.getInt();
+      for (int i = 0; i < numEventDatas; i++) {
+        sb.append("\t").append(readString(body)).append(": ").append(readString(body));
+      }
+      return new Record(segmentIndex, offset, timestamp, level, false, sb.toString());
+    } else if (type == JournalAuditService.TYPE_PCI_AUDIT_EVENT) {
+      for (int i = 0; i < 7; i++) {
+        if (i > 0) {
+          sb.append(' ');
+        }
+        String field = readString(body);
+        sb.append(field == null ? "undefined" : field.replace(' ', '_'));
+      }
+      return new Record(segmentIndex, offset, timestamp, level, true, sb.toString());
+    } else {
+      throw new IllegalArgumentException("unknown record type " + type);
+    }
+  } // method parseRecord
+
+  private static String readString(ByteBuffer body) {
+    int len = body.getInt();
+    if (len == -1) {
+      return null;
+    }
+
+    if (len < 0 || len > body.remaining()) {
+      throw new IllegalArgumentException("invalid string length " + len);
+    }
+
+    byte[] bytes = new byte[len];
+    body.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  } // method readString
+
+}
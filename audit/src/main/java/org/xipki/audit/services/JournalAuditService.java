@@ -0,0 +1,544 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.audit.services;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.audit.AuditEvent;
+import org.xipki.audit.AuditEventData;
+import org.xipki.audit.AuditLevel;
+import org.xipki.audit.AuditService;
+import org.xipki.audit.AuditServiceRuntimeException;
+import org.xipki.audit.AuditStatus;
+import org.xipki.audit.PciAuditEvent;
+
+/**
+ * Audit service which appends the events to a local journal in a compact binary format.
+ * The journal consists of segment files, which are written via memory mapping and rotated by
+ * size or time. Each record is chained with its predecessor by a running SHA-256 hash, and
+ * the first hash of a segment covers its header, which contains the last hash of the
+ * previous segment. The journal can be verified with {@link AuditJournalReader}.
+ *
+ * <p>Format of a segment: header of {@value #HEADER_SIZE} bytes (magic, version, segment index,
+ * creation time, hash of the previous segment, reserved), followed by the records, and the
+ * end mark (int 0). Each record consists of the length of the body (int), the body, and the
+ * hash SHA-256(previous hash || length || body).
+ *
+ * <p>When the service is started, a last record which was not completely written before a crash
+ * is discarded. If the last segment is inconsistent otherwise, it is left untouched and the
+ * events are written to a new segment.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class JournalAuditService implements AuditService, Closeable {
+
+  private class Flusher implements Runnable {
+
+    @Override
+    public void run() {
+      while (!closed) {
+        try {
+          Thread.sleep(flushInterval);
+        } catch (InterruptedException ex) {
+          break;
+        }
+
+        synchronized (JournalAuditService.this) {
+          if (!closed) {
+            flush();
+          }
+        }
+      }
+    } // method run
+
+  } // class Flusher
+
+  static final byte[] MAGIC = {'X', 'I', 'A', 'J'};
+
+  static final int VERSION = 1;
+
+  static final int HEADER_SIZE = 64;
+
+  static final int HASH_SIZE = 32;
+
+  static final byte TYPE_AUDIT_EVENT = 1;
+
+  static final byte TYPE_PCI_AUDIT_EVENT = 2;
+
+  static final String FILE_PREFIX = "audit-";
+
+  static final String FILE_SUFFIX = ".journal";
+
+  static final FilenameFilter SEGMENT_FILTER = new FilenameFilter() {
+    @Override
+    public boolean accept(File dir, String name) {
+      return name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX);
+    }
+  };
+
+  private static final Logger LOG = LoggerFactory.getLogger(JournalAuditService.class);
+
+  private final ByteArrayOutputStream bodyBuffer = new ByteArrayOutputStream(512);
+
+  private final DataOutputStream body = new DataOutputStream(bodyBuffer);
+
+  private final byte[] lengthBytes = new byte[4];
+
+  private File dir;
+
+  private long segmentSize;
+
+  private long rotateInterval;
+
+  private long flushInterval;
+
+  private int flushEvents;
+
+  private MessageDigest md;
+
+  private RandomAccessFile segmentFile;
+
+  private MappedByteBuffer segment;
+
+  private long segmentIndex;
+
+  private long segmentCreated;
+
+  private byte[] lastHash;
+
+  private int unflushedEvents;
+
+  private Thread flusherThread;
+
+  private volatile boolean closed;
+
+  public JournalAuditService() {
+  }
+
+  /**
+   * Initializes the service.
+   *
+   * @param conf
+   *          Path of the properties file with the following optional keys:
+   *          <ul>
+   *            <li>dir: directory of the journal, default to logs/audit-journal</li>
+   *            <li>segmentSize: size of a segment file in bytes, default to 67108864</li>
+   *            <li>rotateInterval: maximal age of a segment in seconds, default to 86400</li>
+   *            <li>flushInterval: interval in milliseconds to flush the segment to the disk,
+   *              default to 1000</li>
+   *            <li>flushEvents: number of events after which the segment is flushed
+   *              immediately, default to 100. 0 to flush only periodically.</li>
+   *          </ul>
+   */
+  @Override
+  public synchronized void init(String conf) {
+    LOG.info("initializing: {}", JournalAuditService.class);
+    Properties props = (conf == null) ? new Properties() : loadProperties(conf.trim());
+
+    this.dir = new File(props.getProperty("dir", "logs/audit-journal"));
+    this.segmentSize = Long.parseLong(props.getProperty("segmentSize", "67108864"));
+    if (segmentSize < HEADER_SIZE + 1024 || segmentSize > Integer.MAX_VALUE) {
+      throw new AuditServiceRuntimeException("invalid segmentSize " + segmentSize);
+    }
+    this.rotateInterval = 1000L * Long.parseLong(props.getProperty("rotateInterval", "86400"));
+    this.flushInterval = Long.parseLong(props.getProperty("flushInterval", "1000"));
+    this.flushEvents = Integer.parseInt(props.getProperty("flushEvents", "100"));
+
+    try {
+      this.md = MessageDigest.getInstance("SHA-256");
+    } catch (NoSuchAlgorithmException ex) {
+      throw new AuditServiceRuntimeException("SHA-256 is not supported", ex);
+    }
+
+    if (!dir.exists()) {
+      dir.mkdirs();
+    }
+
+    try {
+      File lastSegment = null;
+      File[] files = dir.listFiles(SEGMENT_FILTER);
+      if (files != null) {
+        for (File file : files) {
+          if (lastSegment == null || parseSegmentIndex(file) > parseSegmentIndex(lastSegment)) {
+            lastSegment = file;
+          }
+        }
+      }
+
+      if (lastSegment == null) {
+        openSegment(1, new byte[HASH_SIZE]);
+      } else {
+        reopenSegment(lastSegment);
+      }
+    } catch (IOException ex) {
+      throw new AuditServiceRuntimeException("could not open audit journal " + dir.getPath(), ex);
+    }
+
+    if (flushInterval > 0) {
+      flusherThread = new Thread(new Flusher(), "audit-journal-flusher");
+      flusherThread.setDaemon(true);
+      flusherThread.start();
+    }
+
+    LOG.info("initialized: {}, dir={}, segment={}", JournalAuditService.class, dir.getPath(),
+        segmentIndex);
+  } // method init
+
+  @Override
+  public void logEvent(AuditEvent event) {
+    synchronized (this) {
+      bodyBuffer.reset();
+      try {
+        body.writeByte(TYPE_AUDIT_EVENT);
+        body.writeLong(event.getTimestamp().getTime());
+        body.writeByte(getLevel(event.getLevel()));
+        writeString(event.getApplicationName());
+        writeString(event.getName());
+        AuditStatus status = event.getStatus();
+        writeString((status == null ? AuditStatus.UNDEFINED : status).name());
+        body.writeLong(event.getDuration());
+
+        List<AuditEventData> eventDatas = event.getEventDatas();
+        body.writeInt(eventDatas.size());
+        for (AuditEventData m : eventDatas) {
+          writeString(m.getName());
+          writeString(m.getValue());
+        }
+      } catch (IOException ex) {
+        // should not happen, since the data is written to memory
+        throw new IllegalStateException(ex);
+      }
+
+      append();
+    }
+  } // method logEvent(AuditEvent)
+
+  @Override
+  public void logEvent(PciAuditEvent event) {
+    synchronized (this) {
+      bodyBuffer.reset();
+      try {
+        body.writeByte(TYPE_PCI_AUDIT_EVENT);
+        body.writeLong(System.currentTimeMillis());
+        body.writeByte(getLevel(event.getLevel()));
+        writeString(event.getUserId());
+        writeString(event.getEventType());
+        writeString(event.getDate());
+        writeString(event.getTime());
+        writeString(event.getStatus());
+        writeString(event.getOrigination());
+        writeString(event.getAffectedResource());
+      } catch (IOException ex) {
+        // should not happen, since the data is written to memory
+        throw new IllegalStateException(ex);
+      }
+
+      append();
+    }
+  } // method logEvent(PciAuditEvent)
+
+  @Override
+  public void close() {
+    synchronized (this) {
+      if (closed) {
+        return;
+      }
+
+      closed = true;
+      flush();
+      closeSegment();
+    }
+
+    if (flusherThread != null) {
+      flusherThread.interrupt();
+    }
+    LOG.info("closed {}", JournalAuditService.class);
+  } // method close
+
+  private void append() {
+    if (segment == null) {
+      LOG.error("audit journal is not open, ignore the event");
+      return;
+    }
+
+    int bodyLength = bodyBuffer.size();
+    int recordSize = 4 + bodyLength + HASH_SIZE;
+    // reserve 4 bytes for the end mark
+    if (recordSize + 4 > segment.capacity() - HEADER_SIZE) {
+      LOG.error("audit event too large ({} bytes), ignore it", bodyLength);
+      return;
+    }
+
+    try {
+      long now = System.currentTimeMillis();
+      if (segment.position() + recordSize + 4 > segment.capacity()
+          || now - segmentCreated >= rotateInterval) {
+        rotate();
+      }
+    } catch (IOException ex) {
+      LOG.error("could not rotate the audit journal: {}", ex.getMessage());
+      LOG.debug("could not rotate the audit journal", ex);
+      return;
+    }
+
+    byte[] bodyBytes = bodyBuffer.toByteArray();
+    lengthBytes[0] = (byte) (bodyLength >>> 24);
+    lengthBytes[1] = (byte) (bodyLength >>> 16);
+    lengthBytes[2] = (byte) (bodyLength >>> 8);
+    lengthBytes[3] = (byte) bodyLength;
+
+    md.update(lastHash);
+    md.update(lengthBytes);
+    md.update(bodyBytes);
+    lastHash = md.digest();
+
+    segment.put(lengthBytes);
+    segment.put(bodyBytes);
+    segment.put(lastHash);
+
+    if (flushEvents > 0 && ++unflushedEvents >= flushEvents) {
+      flush();
+    } else if (flushEvents <= 0) {
+      unflushedEvents++;
+    }
+  } // method append
+
+  private void flush() {
+    if (segment != null && unflushedEvents > 0) {
+      segment.force();
+      unflushedEvents = 0;
+    }
+  } // method flush
+
+  private void rotate() throws IOException {
+    flush();
+    byte[] prevHash = lastHash;
+    long nextIndex = segmentIndex + 1;
+    closeSegment();
+    openSegment(nextIndex, prevHash);
+    LOG.info("rotated audit journal to segment {}", nextIndex);
+  } // method rotate
+
+  private void openSegment(long index, byte[] prevHash) throws IOException {
+    File file = new File(dir, segmentFileName(index));
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      raf.setLength(segmentSize);
+      segment = raf.getChannel().map(MapMode.READ_WRITE, 0, segmentSize);
+    } catch (IOException ex) {
+      raf.close();
+      throw ex;
+    }
+
+    segmentFile = raf;
+    segmentIndex = index;
+    segmentCreated = System.currentTimeMillis();
+
+    segment.put(MAGIC);
+    segment.putInt(VERSION);
+    segment.putLong(segmentIndex);
+    segment.putLong(segmentCreated);
+    segment.put(prevHash);
+    segment.position(HEADER_SIZE);
+    segment.force();
+
+    lastHash = headerHash(segment, md);
+  } // method openSegment
+
+  private void reopenSegment(File file) throws IOException {
+    RandomAccessFile raf = new RandomAccessFile(file, "rw");
+    try {
+      FileChannel channel = raf.getChannel();
+      segment = channel.map(MapMode.READ_WRITE, 0, channel.size());
+    } catch (IOException ex) {
+      raf.close();
+      throw ex;
+    }
+    segmentFile = raf;
+
+    byte[] magic = new byte[MAGIC.length];
+    segment.get(magic);
+    if (!Arrays.equals(MAGIC, magic) || segment.getInt() != VERSION) {
+      closeSegment();
+      throw new IOException("invalid audit journal segment " + file.getPath());
+    }
+
+    segmentIndex = segment.getLong();
+    segmentCreated = segment.getLong();
+    lastHash = headerHash(segment, md);
+
+    // find the end of the valid records
+    int pos = HEADER_SIZE;
+    int capacity = segment.capacity();
+    byte[] hash = new byte[HASH_SIZE];
+    boolean corrupted = false;
+    while (pos + 4 <= capacity) {
+      int bodyLength = segment.getInt(pos);
+      if (bodyLength == 0) {
+        // end mark, nothing may follow it
+        corrupted = !isZero(segment, pos, capacity);
+        break;
+      }
+
+      int recordEnd = pos + 4 + bodyLength + HASH_SIZE;
+      if (bodyLength < 0 || recordEnd > capacity) {
+        corrupted = true;
+        break;
+      }
+
+      md.update(lastHash);
+      for (int i = 0; i < 4 + bodyLength; i++) {
+        md.update(segment.get(pos + i));
+      }
+      byte[] expectedHash = md.digest();
+      for (int i = 0; i < HASH_SIZE; i++) {
+        hash[i] = segment.get(recordEnd - HASH_SIZE + i);
+      }
+
+      if (!Arrays.equals(expectedHash, hash)) {
+        if (isZero(segment, recordEnd, capacity)) {
+          // last record, which was not completely written before a crash
+          LOG.warn("discard incomplete record at position {} of the audit journal {}", pos,
+              file.getPath());
+          for (int i = pos; i < recordEnd; i++) {
+            segment.put(i, (byte) 0);
+          }
+          segment.force();
+        } else {
+          corrupted = true;
+        }
+        break;
+      }
+
+      lastHash = expectedHash;
+      pos = recordEnd;
+    }
+
+    if (corrupted) {
+      // keep the segment as it is for the investigation, and continue in a new one
+      LOG.error("audit journal {} is corrupted at position {}, leave it untouched and "
+          + "continue with a new segment", file.getPath(), pos);
+      long nextIndex = segmentIndex + 1;
+      closeSegment();
+      openSegment(nextIndex, lastHash);
+      return;
+    }
+
+    segment.position(pos);
+  } // method reopenSegment
+
+  private static boolean isZero(ByteBuffer buffer, int from, int to) {
+    for (int i = from; i < to; i++) {
+      if (buffer.get(i) != 0) {
+        return false;
+      }
+    }
+    return true;
+  } // method isZero
+
+  private void closeSegment() {
+    if (segmentFile != null) {
+      try {
+        segmentFile.close();
+      } catch (IOException ex) {
+        LOG.warn("could not close audit journal segment: {}", ex.getMessage());
+      }
+      segmentFile = null;
+    }
+    // the mapping is released by the garbage collector
+    segment = null;
+  } // method closeSegment
+
+  private void writeString(String text) throws IOException {
+    if (text == null) {
+      body.writeInt(-1);
+    } else {
+      byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+      body.writeInt(bytes.length);
+      body.write(bytes);
+    }
+  } // method writeString
+
+  private static int getLevel(AuditLevel level) {
+    return (level == null ? AuditLevel.INFO : level).getValue();
+  }
+
+  static String segmentFileName(long index) {
+    return String.format("%s%012d%s", FILE_PREFIX, index, FILE_SUFFIX);
+  }
+
+  static long parseSegmentIndex(File file) {
+    String name = file.getName();
+    try {
+      return Long.parseLong(
+          name.substring(FILE_PREFIX.length(), name.length() - FILE_SUFFIX.length()));
+    } catch (NumberFormatException ex) {
+      return -1;
+    }
+  } // method parseSegmentIndex
+
+  /**
+   * Computes the hash of the segment header, which starts the hash chain of the segment.
+   */
+  static byte[] headerHash(ByteBuffer segment, MessageDigest md) {
+    for (int i = 0; i < HEADER_SIZE; i++) {
+      md.update(segment.get(i));
+    }
+    return md.digest();
+  } // method headerHash
+
+  private static Properties loadProperties(String path) throws AuditServiceRuntimeException {
+    Path realPath = Paths.get(path);
+    if (!Files.exists(realPath)) {
+      throw new AuditServiceRuntimeException("the file " + path + " does not exist");
+    }
+
+    Properties props = new Properties();
+    try (InputStream is = Files.newInputStream(realPath)) {
+      props.load(is);
+    } catch (IOException ex) {
+      throw new AuditServiceRuntimeException("could not load properties from file " + path, ex);
+    }
+    return props;
+  } // method loadProperties
+
+}
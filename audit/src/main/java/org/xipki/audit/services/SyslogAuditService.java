@@ -18,6 +18,7 @@
 package org.xipki.audit.services;
 
 import java.io.CharArrayWriter;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.file.Files;
@@ -58,7 +59,7 @@ import com.cloudbees.syslog.sender.UdpSyslogMessageSender;
  * @since 2.0.0
  */
 
-public class SyslogAuditService implements AuditService {
+public class SyslogAuditService implements AuditService, Closeable {
 
   /**
    * The default port is 514.
@@ -323,6 +324,13 @@ public class SyslogAuditService implements AuditService {
     }
   } // method logEvent(PCIAuditEvent)
 
+  @Override
+  public void close() throws IOException {
+    if (syslog instanceof Closeable) {
+      ((Closeable) syslog).close();
+    }
+  }
+
   private static boolean notEmpty(String text) {
     return text != null && !text.isEmpty();
   }
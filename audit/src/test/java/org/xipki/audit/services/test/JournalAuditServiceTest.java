@@ -0,0 +1,230 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xipki.audit.services.test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.List;
+import java.util.Properties;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.xipki.audit.AuditEvent;
+import org.xipki.audit.AuditLevel;
+import org.xipki.audit.AuditStatus;
+import org.xipki.audit.PciAuditEvent;
+import org.xipki.audit.services.AuditJournalReader;
+import org.xipki.audit.services.AuditJournalReader.Record;
+import org.xipki.audit.services.AuditJournalReader.RecordHandler;
+import org.xipki.audit.services.AuditJournalReader.VerificationResult;
+import org.xipki.audit.services.JournalAuditService;
+
+import junit.framework.Assert;
+
+/**
+ * Test for {@link JournalAuditService} and {@link AuditJournalReader}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class JournalAuditServiceTest {
+
+  private static final String SEGMENT1 = "audit-000000000001.journal";
+
+  private static final String SEGMENT2 = "audit-000000000002.journal";
+
+  private File baseDir;
+
+  private File journalDir;
+
+  private File confFile;
+
+  @Before
+  public void setUp() throws IOException {
+    baseDir = Files.createTempDirectory("audit-journal-test").toFile();
+    journalDir = new File(baseDir, "journal");
+
+    Properties props = new Properties();
+    props.setProperty("dir", journalDir.getPath());
+    props.setProperty("segmentSize", "65536");
+    props.setProperty("flushInterval", "0");
+    props.setProperty("flushEvents", "1");
+
+    confFile = new File(baseDir, "journal.properties");
+    try (OutputStream os = new FileOutputStream(confFile)) {
+      props.store(os, null);
+    }
+  }
+
+  @After
+  public void tearDown() {
+    delete(baseDir);
+  }
+
+  @Test
+  public void testRoundTrip() throws IOException {
+    writeEvents("event-1", "event-2", "event-3");
+
+    List<Record> records = new ArrayList<>();
+    VerificationResult result = verify(records);
+    Assert.assertTrue("valid: " + result, result.isValid());
+    Assert.assertEquals("number of segments", 1, result.getNumSegments());
+    Assert.assertEquals("number of records", 4, result.getNumRecords());
+
+    Assert.assertEquals("number of handled records", 4, records.size());
+    for (int i = 0; i < 3; i++) {
+      Record record = records.get(i);
+      Assert.assertFalse("PCI event", record.isPciEvent());
+      Assert.assertEquals("level", AuditLevel.INFO, record.getLevel());
+      String text = record.getText();
+      Assert.assertTrue(text, text.contains("test-app - event-" + (i + 1) + ":"));
+      Assert.assertTrue(text, text.contains("status: SUCCESSFUL"));
+      Assert.assertTrue(text, text.contains("serial: " + (i + 1)));
+    }
+
+    Record pciRecord = records.get(3);
+    Assert.assertTrue("PCI event", pciRecord.isPciEvent());
+    Assert.assertEquals("level", AuditLevel.ERROR, pciRecord.getLevel());
+    Assert.assertTrue(pciRecord.getText(), pciRecord.getText().contains("test-user"));
+  } // method testRoundTrip
+
+  @Test
+  public void testTamperedRecord() throws IOException {
+    writeEvents("event-1", "event-2", "event-3");
+
+    List<Record> records = new ArrayList<>();
+    Assert.assertTrue("valid before tampering", verify(records).isValid());
+
+    // modify the body of the second record
+    File segmentFile = new File(journalDir, SEGMENT1);
+    int offset = records.get(1).getOffset() + 20;
+    try (RandomAccessFile raf = new RandomAccessFile(segmentFile, "rw")) {
+      raf.seek(offset);
+      int value = raf.read();
+      raf.seek(offset);
+      raf.write(value ^ 0x01);
+    }
+
+    VerificationResult result = verify(null);
+    Assert.assertFalse("valid after tampering", result.isValid());
+    Assert.assertEquals("number of verified records", 1, result.getNumRecords());
+
+    // the tampered segment must be left untouched, and the events written to a new one
+    byte[] tamperedSegment = Files.readAllBytes(segmentFile.toPath());
+    writeEvents("event-4");
+
+    Assert.assertTrue("segment modified",
+        Arrays.equals(tamperedSegment, Files.readAllBytes(segmentFile.toPath())));
+    Assert.assertTrue("new segment created", new File(journalDir, SEGMENT2).exists());
+
+    result = verify(null);
+    Assert.assertFalse("valid after restart", result.isValid());
+    Assert.assertEquals("number of verified records", 1, result.getNumRecords());
+  } // method testTamperedRecord
+
+  @Test
+  public void testIncompleteRecord() throws IOException {
+    writeEvents("event-1", "event-2");
+
+    List<Record> records = new ArrayList<>();
+    Assert.assertTrue("valid", verify(records).isValid());
+
+    // simulate a record which has not been written completely: length and part of the body
+    File segmentFile = new File(journalDir, SEGMENT1);
+    try (RandomAccessFile raf = new RandomAccessFile(segmentFile, "rw")) {
+      int lastOffset = records.get(records.size() - 1).getOffset();
+      raf.seek(lastOffset);
+      int lastBodyLength = raf.readInt();
+      raf.seek(lastOffset + 4 + lastBodyLength + 32);
+      raf.writeInt(100);
+      raf.write(new byte[] {1, 2, 3, 4, 5, 6, 7, 8});
+    }
+
+    Assert.assertFalse("valid with incomplete record", verify(null).isValid());
+
+    writeEvents("event-3");
+
+    records.clear();
+    VerificationResult result = verify(records);
+    Assert.assertTrue("valid after restart: " + result, result.isValid());
+    Assert.assertEquals("number of segments", 1, result.getNumSegments());
+    Assert.assertEquals("number of records", 5, result.getNumRecords());
+    Assert.assertTrue(records.get(3).getText(), records.get(3).getText().contains("event-3"));
+  } // method testIncompleteRecord
+
+  private void writeEvents(String... names) {
+    JournalAuditService service = new JournalAuditService();
+    service.init(confFile.getPath());
+    try {
+      int serial = 1;
+      for (String name : names) {
+        AuditEvent event = new AuditEvent(new Date());
+        event.setApplicationName("test-app");
+        event.setName(name);
+        event.setLevel(AuditLevel.INFO);
+        event.setStatus(AuditStatus.SUCCESSFUL);
+        event.addEventData("serial", serial++);
+        service.logEvent(event);
+      }
+
+      PciAuditEvent pciEvent = new PciAuditEvent(new Date());
+      pciEvent.setLevel(AuditLevel.ERROR);
+      pciEvent.setUserId("test-user");
+      pciEvent.setEventType("login");
+      pciEvent.setStatus("failed");
+      service.logEvent(pciEvent);
+    } finally {
+      service.close();
+    }
+  } // method writeEvents
+
+  private VerificationResult verify(final List<Record> records) throws IOException {
+    RecordHandler handler = null;
+    if (records != null) {
+      handler = new RecordHandler() {
+        @Override
+        public void handle(Record record) {
+          records.add(record);
+        }
+      };
+    }
+
+    return new AuditJournalReader(journalDir).verify(handler);
+  } // method verify
+
+  private static void delete(File file) {
+    File[] children = file.listFiles();
+    if (children != null) {
+      for (File child : children) {
+        delete(child);
+      }
+    }
+    file.delete();
+  } // method delete
+
+}
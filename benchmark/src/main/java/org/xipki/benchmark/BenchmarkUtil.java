@@ -0,0 +1,137 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.benchmark;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.BasicConstraints;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.KeyUsage;
+import org.bouncycastle.cert.X509CertificateHolder;
+import org.bouncycastle.cert.X509v3CertificateBuilder;
+import org.bouncycastle.cert.jcajce.JcaX509CertificateConverter;
+import org.bouncycastle.cert.jcajce.JcaX509ExtensionUtils;
+import org.bouncycastle.cert.jcajce.JcaX509v3CertificateBuilder;
+import org.bouncycastle.cert.ocsp.CertificateID;
+import org.bouncycastle.cert.ocsp.OCSPReqBuilder;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.DigestCalculator;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.bouncycastle.operator.jcajce.JcaDigestCalculatorProviderBuilder;
+import org.xipki.security.Securities;
+import org.xipki.security.Securities.SecurityConf;
+import org.xipki.util.FileOrValue;
+import org.xipki.util.IoUtil;
+import org.xipki.util.StringUtil;
+
+/**
+ * Utility functions to prepare the test data of the benchmarks.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public final class BenchmarkUtil {
+
+  private static final long DAY = 24L * 60 * 60 * 1000;
+
+  private BenchmarkUtil() {
+  }
+
+  public static void addBcProvider() {
+    if (Security.getProvider("BC") == null) {
+      Security.addProvider(new BouncyCastleProvider());
+    }
+  }
+
+  public static KeyPair generateEcKeypair() throws Exception {
+    addBcProvider();
+    KeyPairGenerator kpGen = KeyPairGenerator.getInstance("EC", "BC");
+    kpGen.initialize(new ECGenParameterSpec("secp256r1"));
+    return kpGen.generateKeyPair();
+  } // method generateEcKeypair
+
+  /**
+   * Generates a self-signed CA certificate with EC key.
+   */
+  public static X509Certificate generateCaCert(String commonName, KeyPair keypair, long serial)
+      throws Exception {
+    addBcProvider();
+    X500Name subject = new X500Name("CN=" + commonName + ",O=myorg,C=DE");
+    long now = System.currentTimeMillis();
+
+    X509v3CertificateBuilder builder = new JcaX509v3CertificateBuilder(subject,
+        BigInteger.valueOf(serial), new Date(now - DAY), new Date(now + 3650 * DAY), subject,
+        keypair.getPublic());
+    builder.addExtension(Extension.basicConstraints, true, new BasicConstraints(true));
+    builder.addExtension(Extension.keyUsage, true,
+        new KeyUsage(KeyUsage.keyCertSign | KeyUsage.cRLSign));
+    builder.addExtension(Extension.subjectKeyIdentifier, false,
+        new JcaX509ExtensionUtils().createSubjectKeyIdentifier(keypair.getPublic()));
+
+    ContentSigner signer = new JcaContentSignerBuilder("SHA256withECDSA").setProvider("BC")
+        .build(keypair.getPrivate());
+    return new JcaX509CertificateConverter().setProvider("BC")
+        .getCertificate(builder.build(signer));
+  } // method generateCaCert
+
+  /**
+   * Generates an encoded OCSP request for the given certificate, with SHA-1 as hash
+   * algorithm.
+   */
+  public static byte[] generateOcspRequest(X509Certificate issuerCert, BigInteger serialNumber)
+      throws Exception {
+    DigestCalculator sha1 = new JcaDigestCalculatorProviderBuilder().build()
+        .get(CertificateID.HASH_SHA1);
+    CertificateID certId = new CertificateID(sha1,
+        new X509CertificateHolder(issuerCert.getEncoded()), serialNumber);
+    return new OCSPReqBuilder().addRequest(certId).build().getEncoded();
+  } // method generateOcspRequest
+
+  /**
+   * Creates the security components with the PKCS#11 emulator as module 'default', so that
+   * the benchmarks can run without any HSM.
+   */
+  public static Securities newEmulatorSecurities() throws Exception {
+    SecurityConf conf = new SecurityConf();
+    conf.setPkcs11Conf(FileOrValue.ofValue(readResource("pkcs11-emulator.json")));
+
+    Securities securities = new Securities();
+    securities.init(conf);
+    return securities;
+  } // method newEmulatorSecurities
+
+  public static String readResource(String name) throws IOException {
+    InputStream is = BenchmarkUtil.class.getResourceAsStream("/" + name);
+    if (is == null) {
+      throw new IOException("could not find resource " + name);
+    }
+    return StringUtil.toUtf8String(IoUtil.read(is));
+  } // method readResource
+
+}
@@ -0,0 +1,113 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.benchmark;
+
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.ASN1ObjectIdentifier;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extension;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xipki.ca.api.CaUris;
+import org.xipki.ca.api.PublicCaInfo;
+import org.xipki.ca.api.profile.Certprofile.ExtensionControl;
+import org.xipki.ca.api.profile.ExtensionValues;
+import org.xipki.ca.certprofile.xijson.XijsonCertprofile;
+
+/**
+ * Benchmark of the building of the extensions by {@link XijsonCertprofile}, using the TLS
+ * certificate profile of the CA setup.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+public class CertprofileBenchmark {
+
+  private static final Map<ASN1ObjectIdentifier, Extension> NO_REQUESTED_EXTENSIONS =
+      Collections.emptyMap();
+
+  private XijsonCertprofile certprofile;
+
+  private Map<ASN1ObjectIdentifier, ExtensionControl> extensionControls;
+
+  private X500Name requestedSubject;
+
+  private X500Name grantedSubject;
+
+  private PublicCaInfo caInfo;
+
+  private Date notBefore;
+
+  private Date notAfter;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    certprofile = new XijsonCertprofile();
+    certprofile.initialize(BenchmarkUtil.readResource("certprofile-tls.json"));
+    extensionControls = certprofile.getExtensionControls();
+
+    requestedSubject = new X500Name("CN=www.example.com,O=myorg,C=DE");
+    grantedSubject = certprofile.getSubject(requestedSubject).getGrantedSubject();
+
+    KeyPair keypair = BenchmarkUtil.generateEcKeypair();
+    X509Certificate caCert = BenchmarkUtil.generateCaCert("benchmark-ca", keypair, 1);
+    CaUris caUris = new CaUris(Arrays.asList("http://ca.example.com/cacert"),
+        Arrays.asList("http://ca.example.com/ocsp"), Arrays.asList("http://ca.example.com/crl"),
+        null);
+    caInfo = new PublicCaInfo(caCert, caUris, null);
+
+    notBefore = new Date();
+    notAfter = new Date(notBefore.getTime() + 365L * 24 * 60 * 60 * 1000);
+  } // method setup
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    certprofile.close();
+  }
+
+  @Benchmark
+  public ExtensionValues getExtensions() throws Exception {
+    return certprofile.getExtensions(extensionControls, requestedSubject, grantedSubject,
+        NO_REQUESTED_EXTENSIONS, notBefore, notAfter, caInfo);
+  }
+
+}
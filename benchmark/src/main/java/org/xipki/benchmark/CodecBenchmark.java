@@ -0,0 +1,91 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.benchmark;
+
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xipki.security.FpIdCalculator;
+import org.xipki.security.util.X509Util;
+import org.xipki.util.Base64;
+
+/**
+ * Benchmark of the hashing and encoding functions used to compute and look up the
+ * certificate identifiers.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+public class CodecBenchmark {
+
+  private X500Name subject;
+
+  private byte[] certBytes;
+
+  private String certBase64;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    KeyPair keypair = BenchmarkUtil.generateEcKeypair();
+    X509Certificate cert = BenchmarkUtil.generateCaCert("benchmark-ca", keypair, 1);
+    subject = X500Name.getInstance(cert.getSubjectX500Principal().getEncoded());
+    certBytes = cert.getEncoded();
+    certBase64 = Base64.encodeToString(certBytes);
+  } // method setup
+
+  @Benchmark
+  public long fpCanonicalizedName() {
+    return X509Util.fpCanonicalizedName(subject);
+  }
+
+  @Benchmark
+  public long fpIdHash() {
+    return FpIdCalculator.hash(certBytes);
+  }
+
+  @Benchmark
+  public String base64Encode() {
+    return Base64.encodeToString(certBytes);
+  }
+
+  @Benchmark
+  public byte[] base64DecodeFast() {
+    return Base64.decodeFast(certBase64);
+  }
+
+}
@@ -0,0 +1,96 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xipki.util.concurrent.ConcurrentBag;
+import org.xipki.util.concurrent.ConcurrentBagEntry;
+
+/**
+ * Benchmark of {@link ConcurrentBag#borrow(long, TimeUnit)} and
+ * {@link ConcurrentBag#requite(org.xipki.util.concurrent.ConcurrentBag.IConcurrentBagEntry)},
+ * as used by the signer and session pools.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+public class ConcurrentBagBenchmark {
+
+  private static final int BAG_SIZE = 8;
+
+  private ConcurrentBag<ConcurrentBagEntry<Integer>> bag;
+
+  @Setup(Level.Trial)
+  public void setup() {
+    bag = new ConcurrentBag<>();
+    for (int i = 0; i < BAG_SIZE; i++) {
+      bag.add(new ConcurrentBagEntry<Integer>(i));
+    }
+  }
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    bag.close();
+  }
+
+  @Benchmark
+  public Integer borrowRequite() throws InterruptedException {
+    return borrowRequite0();
+  }
+
+  @Benchmark
+  @Threads(4)
+  public Integer borrowRequite4Threads() throws InterruptedException {
+    return borrowRequite0();
+  }
+
+  private Integer borrowRequite0() throws InterruptedException {
+    ConcurrentBagEntry<Integer> entry = bag.borrow(1, TimeUnit.SECONDS);
+    if (entry == null) {
+      throw new IllegalStateException("could not borrow entry");
+    }
+
+    try {
+      return entry.value();
+    } finally {
+      bag.requite(entry);
+    }
+  } // method borrowRequite0
+
+}
@@ -0,0 +1,126 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.security.KeyPair;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.CRLReason;
+import org.bouncycastle.cert.X509v2CRLBuilder;
+import org.bouncycastle.operator.ContentSigner;
+import org.bouncycastle.operator.jcajce.JcaContentSignerBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xipki.security.asn1.CrlStreamParser;
+import org.xipki.security.asn1.CrlStreamParser.MappedRevokedCert;
+import org.xipki.security.asn1.CrlStreamParser.MappedRevokedCertsIterator;
+import org.xipki.security.asn1.CrlStreamParser.RevokedCert;
+import org.xipki.security.asn1.CrlStreamParser.RevokedCertsIterator;
+
+/**
+ * Benchmark of the iteration over the revoked certificates of a CRL with
+ * {@link CrlStreamParser}, both stream based and memory-mapped.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class CrlStreamParserBenchmark {
+
+  @Param({"10000", "100000"})
+  public int numRevokedCerts;
+
+  private File crlFile;
+
+  private CrlStreamParser parser;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    KeyPair keypair = BenchmarkUtil.generateEcKeypair();
+    Date now = new Date();
+    X509v2CRLBuilder builder = new X509v2CRLBuilder(
+        new X500Name("CN=benchmark-ca,O=myorg,C=DE"), now);
+    builder.setNextUpdate(new Date(now.getTime() + 24L * 60 * 60 * 1000));
+    Date revocationDate = new Date(now.getTime() - 60 * 60 * 1000);
+    for (int i = 0; i < numRevokedCerts; i++) {
+      builder.addCRLEntry(BigInteger.valueOf(0x1000000000L + i), revocationDate,
+          CRLReason.keyCompromise);
+    }
+
+    ContentSigner signer = new JcaContentSignerBuilder("SHA256withECDSA").setProvider("BC")
+        .build(keypair.getPrivate());
+    crlFile = File.createTempFile("benchmark-", ".crl");
+    Files.write(crlFile.toPath(), builder.build(signer).getEncoded());
+
+    parser = new CrlStreamParser(crlFile);
+  } // method setup
+
+  @TearDown(Level.Trial)
+  public void tearDown() {
+    if (crlFile != null) {
+      crlFile.delete();
+    }
+  }
+
+  @Benchmark
+  public long iterateStream() throws IOException {
+    long sum = 0;
+    try (RevokedCertsIterator it = parser.revokedCertificates()) {
+      while (it.hasNext()) {
+        RevokedCert revokedCert = it.next();
+        sum += revokedCert.getRevocationDate() + revokedCert.getReason();
+      }
+    }
+    return sum;
+  } // method iterateStream
+
+  @Benchmark
+  public long iterateMapped() throws IOException {
+    long sum = 0;
+    MappedRevokedCertsIterator it = parser.mappedRevokedCertificates();
+    while (it.hasNext()) {
+      MappedRevokedCert revokedCert = it.next();
+      sum += revokedCert.getRevocationDate() + revokedCert.getReason();
+    }
+    return sum;
+  } // method iterateMapped
+
+}
@@ -0,0 +1,134 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.benchmark;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import org.bouncycastle.asn1.sec.SECObjectIdentifiers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xipki.ocsp.server.OCSPRespBuilder;
+import org.xipki.ocsp.server.type.CertID;
+import org.xipki.ocsp.server.type.OcspRequest;
+import org.xipki.ocsp.server.type.ResponderID;
+import org.xipki.security.ConcurrentContentSigner;
+import org.xipki.security.HashAlgo;
+import org.xipki.security.Securities;
+import org.xipki.security.SignerConf;
+import org.xipki.security.pkcs11.P11IdentityId;
+import org.xipki.security.pkcs11.P11Module;
+import org.xipki.security.pkcs11.P11Slot;
+import org.xipki.security.pkcs11.P11Slot.P11NewKeyControl;
+import org.xipki.util.ConfPairs;
+import org.xipki.util.Hex;
+
+/**
+ * Benchmark of {@link OCSPRespBuilder#buildOCSPResponse}, signed by a key in the PKCS#11
+ * emulator.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class OcspRespBuilderBenchmark {
+
+  private static final byte[] CERTSTATUS_GOOD = new byte[]{(byte) 0x80, 0x00};
+
+  @Param({"SHA256withRSA", "SHA256withECDSA"})
+  public String signatureAlgorithm;
+
+  private Securities securities;
+
+  private P11Slot slot;
+
+  private P11IdentityId identityId;
+
+  private ConcurrentContentSigner signer;
+
+  private ResponderID responderId;
+
+  private CertID certId;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    securities = BenchmarkUtil.newEmulatorSecurities();
+    P11Module module = securities.getP11CryptServiceFactory().getP11CryptService("default")
+        .getModule();
+    slot = module.getSlot(module.getSlotIdForIndex(0));
+
+    P11NewKeyControl control = new P11NewKeyControl(null,
+        "benchmark-" + System.currentTimeMillis());
+    if (signatureAlgorithm.endsWith("RSA")) {
+      identityId = slot.generateRSAKeypair(2048, RSAKeyGenParameterSpec.F4, control);
+    } else {
+      identityId = slot.generateECKeypair(SECObjectIdentifiers.secp256r1, control);
+    }
+
+    ConfPairs conf = new ConfPairs("algo", signatureAlgorithm);
+    conf.putPair("module", "default");
+    conf.putPair("slot", "0");
+    conf.putPair("key-id", Hex.encode(identityId.getKeyId().getId()));
+    signer = securities.getSecurityFactory().createSigner("PKCS11",
+        new SignerConf(conf.getEncoded()), (X509Certificate) null);
+
+    KeyPair caKeypair = BenchmarkUtil.generateEcKeypair();
+    X509Certificate caCert = BenchmarkUtil.generateCaCert("benchmark-ca", caKeypair, 1);
+    responderId = new ResponderID(HashAlgo.SHA1.hash(caKeypair.getPublic().getEncoded()));
+    byte[] request = BenchmarkUtil.generateOcspRequest(caCert, BigInteger.valueOf(0x1234567890L));
+    certId = OcspRequest.getInstance(request).getRequestList().get(0);
+  } // method setup
+
+  @TearDown(Level.Trial)
+  public void tearDown() throws Exception {
+    if (identityId != null) {
+      slot.removeIdentityByKeyId(identityId.getKeyId());
+    }
+    securities.close();
+  } // method tearDown
+
+  @Benchmark
+  public byte[] buildOcspResponse() throws Exception {
+    Date now = new Date();
+    OCSPRespBuilder builder = new OCSPRespBuilder(responderId);
+    builder.addResponse(certId, CERTSTATUS_GOOD, now, null, null);
+    return builder.buildOCSPResponse(signer, null, now);
+  } // method buildOcspResponse
+
+}
@@ -0,0 +1,92 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xipki.benchmark.BenchmarkUtil;
+import org.xipki.ocsp.server.type.CertID;
+import org.xipki.ocsp.server.type.OcspRequest;
+
+/**
+ * Benchmark of the lookup of the issuer of a {@link CertID} in the {@link IssuerStore}.
+ * It is in the package of {@link IssuerStore}, since the store is not public.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 3)
+@Measurement(iterations = 5, time = 3)
+public class IssuerStoreBenchmark {
+
+  private static final int NUM_ISSUERS = 8;
+
+  private CertID certId;
+
+  private IssuerStore issuerStore;
+
+  @Setup(Level.Trial)
+  public void setup() throws Exception {
+    List<IssuerEntry> issuers = new ArrayList<>(NUM_ISSUERS);
+    X509Certificate lastCaCert = null;
+    for (int i = 0; i < NUM_ISSUERS; i++) {
+      KeyPair keypair = BenchmarkUtil.generateEcKeypair();
+      lastCaCert = BenchmarkUtil.generateCaCert("benchmark-ca-" + i, keypair, i + 1);
+      issuers.add(new IssuerEntry(i + 1, lastCaCert));
+    }
+
+    issuerStore = new IssuerStore();
+    issuerStore.setIssuers(issuers);
+
+    // request for a certificate issued by the last issuer
+    byte[] request = BenchmarkUtil.generateOcspRequest(lastCaCert,
+        BigInteger.valueOf(0x1234567890L));
+    certId = OcspRequest.getInstance(request).getRequestList().get(0);
+    if (issuerStore.getIssuerForFp(certId.getIssuer()) == null) {
+      throw new IllegalStateException("issuer not found");
+    }
+  } // method setup
+
+  @Benchmark
+  public Integer matchIssuer() {
+    // the JMH generated code is in another package, hence IssuerEntry is not returned
+    return issuerStore.getIssuerIdForFp(certId.getIssuer());
+  }
+
+}
@@ -89,6 +89,10 @@ import org.xipki.util.TripleState;
  * # Default is false
  * invalidity.date=&lt;'required'|'optional'|'forbidden'&gt;
  *
+ * # Number of revoked certificates read from the database in one query while generating
+ * # the CRL. Default is 1000
+ * page.size=&lt;integer&gt;
+ *
  * </pre>
  * @author Lijun Liao
  * @since 2.0.0
@@ -166,6 +170,8 @@ public class CrlControl {
 
   public static final String KEY_INVALIDITY_DATE = "invalidity.date";
 
+  public static final String KEY_PAGE_SIZE = "page.size";
+
   private boolean xipkiCertsetIncluded;
 
   private boolean xipkiCertsetCertIncluded = true;
@@ -190,6 +196,8 @@ public class CrlControl {
 
   private TripleState invalidityDateMode = TripleState.optional;
 
+  private int pageSize = 1000;
+
   private final Set<String> extensionOids;
 
   public CrlControl(String conf) throws InvalidConfException {
@@ -235,6 +243,7 @@ public class CrlControl {
     this.deltaCrlIntervals = getInteger(props, KEY_DELTACRL_INTERVALS, 0);
     this.extendedNextUpdate = getBoolean(props, KEY_FULLCRL_EXTENDED_NEXTUPDATE, false);
     this.overlapMinutes = getInteger(props, KEY_OVERLAP_MINUTES, 60);
+    this.pageSize = getInteger(props, KEY_PAGE_SIZE, 1000);
     if (this.overlapMinutes < 60) {
       // corrected to the minimal value 60 minutes
       this.overlapMinutes = 60;
@@ -275,6 +284,7 @@ public class CrlControl {
     pairs.putPair(KEY_FULLCRL_EXTENDED_NEXTUPDATE, Boolean.toString(extendedNextUpdate));
     pairs.putPair(KEY_DELTACRL_INTERVALS, Integer.toString(deltaCrlIntervals));
     pairs.putPair(KEY_INTERVAL_TIME, intervalDayTime.toString());
+    pairs.putPair(KEY_PAGE_SIZE, Integer.toString(pageSize));
 
     if (CollectionUtil.isNotEmpty(extensionOids)) {
       StringBuilder extensionsSb = new StringBuilder(200);
@@ -316,6 +326,7 @@ public class CrlControl {
         "\n  invalidity date mode: ", invalidityDateMode,
         "\n  interval: ", intervalStr,
         "\n  XiPKI CertSet: ", xipkiCertSetStr,
+        "\n  page size: ", pageSize,
         (verbose ? "\n  encoded: " : ""), (verbose ? getConf() : ""));
   } // method toString(boolean)
 
@@ -371,6 +382,10 @@ public class CrlControl {
     return invalidityDateMode;
   }
 
+  public int getPageSize() {
+    return pageSize;
+  }
+
   public final void validate() throws InvalidConfException {
     if (onlyContainsCaCerts && onlyContainsUserCerts) {
       throw new InvalidConfException(
@@ -392,6 +407,10 @@ public class CrlControl {
       throw new InvalidConfException(
           "deltaCRLIntervals may not be less than 0: " + deltaCrlIntervals);
     }
+
+    if (pageSize < 1) {
+      throw new InvalidConfException("pageSize may not be less than 1: " + pageSize);
+    }
   } // method validate
 
   @Override
@@ -415,7 +434,8 @@ public class CrlControl {
         || fullCrlIntervals != obj2.fullCrlIntervals
         || includeExpiredCerts != obj2.includeExpiredCerts
         || onlyContainsCaCerts != obj2.onlyContainsCaCerts
-        || onlyContainsUserCerts != obj2.onlyContainsUserCerts) {
+        || onlyContainsUserCerts != obj2.onlyContainsUserCerts
+        || pageSize != obj2.pageSize) {
       return false;
     }
 
@@ -19,6 +19,8 @@ package org.xipki.ca.api.publisher;
 
 import java.io.Closeable;
 import java.security.cert.X509CRL;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Map;
 
 import org.xipki.ca.api.CertWithDbId;
@@ -81,6 +83,26 @@ public abstract class CertPublisher implements Closeable {
    */
   public abstract boolean certificateAdded(CertificateInfo certInfo);
 
+  /**
+   * Publishes the certificates. The default implementation publishes the certificates one by
+   * one via {@link #certificateAdded(CertificateInfo)}, publishers which can write several
+   * certificates at once should overwrite it.
+   *
+   * @param certInfos
+   *          Certificates to be published. Must not be {@code null}.
+   * @return the certificates which could not be published, empty if all are published.
+   * @since 5.3.7
+   */
+  public List<CertificateInfo> certificatesAdded(List<CertificateInfo> certInfos) {
+    List<CertificateInfo> failedCertInfos = new LinkedList<>();
+    for (CertificateInfo certInfo : certInfos) {
+      if (!certificateAdded(certInfo)) {
+        failedCertInfos.add(certInfo);
+      }
+    }
+    return failedCertInfos;
+  } // method certificatesAdded
+
   /**
    * Publishes the revocation of a certificate.
    *
@@ -28,11 +28,17 @@ import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.security.cert.CRLException;
 import java.security.cert.X509CRL;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipOutputStream;
@@ -57,7 +63,9 @@ import org.xipki.util.StringUtil;
 import com.alibaba.fastjson.JSON;
 
 /**
- * Database exporter of CA CertStore.
+ * Database exporter of CA CertStore. The ID range of each table is partitioned into the ranges
+ * of the entries files, which are exported by a pool of workers, each with its own database
+ * connection.
  *
  * @author Lijun Liao
  * @since 2.0.0
@@ -65,6 +73,147 @@ import com.alibaba.fastjson.JSON;
 
 class CaCertstoreDbExporter extends DbPorter {
 
+  private static class ExportedFile {
+
+    private final String filename;
+
+    private final int numEntries;
+
+    private final long toId;
+
+    ExportedFile(String filename, int numEntries, long toId) {
+      this.filename = filename;
+      this.numEntries = numEntries;
+      this.toId = toId;
+    }
+
+  } // class ExportedFile
+
+  /**
+   * Exports the entries within an ID range to one entries file, with its own database
+   * connection.
+   */
+  private class ExportWorker implements Callable<ExportedFile> {
+
+    private final CaDbEntryType type;
+
+    private final String sql;
+
+    private final File entriesDir;
+
+    private final long fromId;
+
+    private final long toId;
+
+    private final long maxId;
+
+    private final AtomicBoolean aborted;
+
+    ExportWorker(CaDbEntryType type, String sql, File entriesDir, long fromId, long toId,
+        long maxId, AtomicBoolean aborted) {
+      this.type = type;
+      this.sql = sql;
+      this.entriesDir = entriesDir;
+      this.fromId = fromId;
+      this.toId = toId;
+      this.maxId = maxId;
+      this.aborted = aborted;
+    }
+
+    @Override
+    public ExportedFile call() throws Exception {
+      File zipFile = new File(baseDir, "tmp-" + type.getDirName() + "-" + fromId + ".zip");
+      ZipOutputStream zipStream = getZipOutputStream(zipFile);
+
+      Object entries = createContainer(type);
+      int numEntries = 0;
+      long minIdOfFile = -1;
+      long maxIdOfFile = -1;
+
+      boolean successful = false;
+      Connection conn = null;
+      PreparedStatement ps = null;
+      ResultSet rs = null;
+
+      try {
+        conn = datasource.getConnection();
+        ps = conn.prepareStatement(sql);
+
+        long lastMaxId = fromId - 1;
+        while (true) {
+          if (stopMe.get()) {
+            throw new InterruptedException("interrupted by the user");
+          }
+
+          if (aborted.get()) {
+            throw new InterruptedException("aborted");
+          }
+
+          ps.setLong(1, lastMaxId + 1);
+          ps.setLong(2, toId);
+          rs = ps.executeQuery();
+
+          // no entries anymore
+          if (!rs.next()) {
+            break;
+          }
+
+          do {
+            long id = rs.getLong("ID");
+            if (lastMaxId < id) {
+              lastMaxId = id;
+            }
+
+            if (!exportEntry(type, rs, id, zipStream, entries)) {
+              continue;
+            }
+
+            numEntries++;
+            if (minIdOfFile == -1 || minIdOfFile > id) {
+              minIdOfFile = id;
+            }
+
+            if (maxIdOfFile == -1 || maxIdOfFile < id) {
+              maxIdOfFile = id;
+            }
+          } while (rs.next());
+
+          rs.close();
+          rs = null;
+        }
+
+        String filename = null;
+        if (numEntries > 0) {
+          finalizeZip(zipStream, "overview.json", entries);
+          filename = buildFilename(type.getDirName() + "_", ".zip", minIdOfFile, maxIdOfFile,
+              maxId);
+          if (!zipFile.renameTo(new File(entriesDir, filename))) {
+            throw new IOException("could not rename " + zipFile.getPath() + " to " + filename);
+          }
+        } else {
+          zipStream.close();
+          zipFile.delete();
+        }
+
+        successful = true;
+        return new ExportedFile(filename, numEntries, toId);
+      } catch (SQLException ex) {
+        throw translate(sql, ex);
+      } finally {
+        datasource.releaseResources(ps, rs, false);
+        if (conn != null) {
+          datasource.returnConnection(conn);
+        }
+
+        if (!successful) {
+          IoUtil.closeQuietly(zipStream);
+          zipFile.delete();
+        }
+      }
+    } // method call
+
+  } // class ExportWorker
+
   private static final Logger LOG = LoggerFactory.getLogger(CaCertstoreDbExporter.class);
 
   private final int numCertsInBundle;
@@ -73,14 +222,25 @@ class CaCertstoreDbExporter extends DbPorter {
 
   private final boolean resume;
 
+  private final int numThreads;
+
   CaCertstoreDbExporter(DataSourceWrapper datasource, String baseDir, int numCertsInBundle,
-      int numCertsPerSelect, boolean resume, AtomicBoolean stopMe)
+      int numCertsPerSelect, int numThreads, boolean resume, AtomicBoolean stopMe)
           throws DataAccessException {
     super(datasource, baseDir, stopMe);
 
     this.numCertsInBundle = Args.positive(numCertsInBundle, "numCertsInBundle");
     this.numCertsPerSelect = Args.positive(numCertsPerSelect, "numCertsPerSelect");
     this.resume = resume;
+    // one connection is used by this exporter itself
+    int maxThreads = Math.max(1, datasource.getMaximumPoolSize() - 1);
+    if (Args.positive(numThreads, "numThreads") > maxThreads) {
+      LOG.info("reduced the number of threads from {} to {} (size of the connection pool)",
+          numThreads, maxThreads);
+      this.numThreads = maxThreads;
+    } else {
+      this.numThreads = numThreads;
+    }
   } // constructor
 
   public void export() throws Exception {
@@ -198,19 +358,19 @@ class CaCertstoreDbExporter extends DbPorter {
       case CERT:
         numProcessedBefore = certstore.getCountCerts();
         coreSql = "ID,SN,CA_ID,PID,RID,RTYPE,TID,UID,EE,LUPDATE,REV,RR,RT,RIT,FP_RS,"
-            + "REQ_SUBJECT,CRL_SCOPE,CERT FROM CERT WHERE ID>=?";
+            + "REQ_SUBJECT,CRL_SCOPE,CERT FROM CERT WHERE ID>=? AND ID<=?";
         break;
       case CRL:
         numProcessedBefore = certstore.getCountCrls();
-        coreSql = "ID,CA_ID,CRL_SCOPE,CRL FROM CRL WHERE ID>=?";
+        coreSql = "ID,CA_ID,CRL_SCOPE,CRL FROM CRL WHERE ID>=? AND ID<=?";
         break;
       case REQUEST:
         numProcessedBefore = certstore.getCountRequests();
-        coreSql = "ID,LUPDATE,DATA FROM REQUEST WHERE ID>=?";
+        coreSql = "ID,LUPDATE,DATA FROM REQUEST WHERE ID>=? AND ID<=?";
         break;
       case REQCERT:
         numProcessedBefore = certstore.getCountReqCerts();
-        coreSql = "ID,RID,CID FROM REQCERT WHERE ID>=?";
+        coreSql = "ID,RID,CID FROM REQCERT WHERE ID>=? AND ID<=?";
         break;
       default:
         throw new IllegalStateException("unknown CaDbEntryType " + type);
@@ -230,26 +390,26 @@ class CaCertstoreDbExporter extends DbPorter {
 
     String sql = datasource.buildSelectFirstSql(numEntriesPerSelect, "ID ASC", coreSql);
 
-    Object entriesInCurrentFile = createContainer(type);
-    PreparedStatement ps = prepareStatement(sql.toString());
-
-    int numEntriesInCurrentFile = 0;
-
-    int sum = 0;
-    File currentEntriesZipFile = new File(baseDir,
-        "tmp-" + type.getDirName() + "-" + System.currentTimeMillis() + ".zip");
-    ZipOutputStream currentEntriesZip = getZipOutputStream(currentEntriesZipFile);
-
-    long minIdOfCurrentFile = -1;
-    long maxIdOfCurrentFile = -1;
+    // the ID ranges of the entries files are determined here, and the files are written by the
+    // workers in parallel.
+    String rangeSql = datasource.buildSelectFirstSql(numEntriesPerZip, "ID ASC",
+        "ID FROM " + tableName + " WHERE ID>=?");
+    PreparedStatement ps = prepareStatement(rangeSql);
 
     ProcessLog processLog = new ProcessLog(total);
     processLog.printHeader();
 
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+    AtomicBoolean aborted = new AtomicBoolean(false);
+    // files in the order of their ID ranges
+    LinkedList<Future<ExportedFile>> pendingFiles = new LinkedList<>();
+
+    int sum = 0;
+    boolean successful = false;
+
     try {
-      Long id = null;
       boolean interrupted = false;
-      long lastMaxId = minId - 1;
+      long fromId = minId;
 
       while (true) {
         if (stopMe.get()) {
@@ -257,229 +417,239 @@ class CaCertstoreDbExporter extends DbPorter {
           break;
         }
 
-        ps.setLong(1, lastMaxId + 1);
-
+        ps.setLong(1, fromId);
+        long toId = -1;
         ResultSet rs = ps.executeQuery();
+        try {
+          while (rs.next()) {
+            toId = rs.getLong("ID");
+          }
+        } finally {
+          rs.close();
+        }
 
         // no entries anymore
-        if (!rs.next()) {
+        if (toId == -1) {
           break;
         }
 
-        do {
-          id = rs.getLong("ID");
-          if (lastMaxId < id) {
-            lastMaxId = id;
-          }
+        pendingFiles.add(executor.submit(
+            new ExportWorker(type, sql, entriesDir, fromId, toId, maxId, aborted)));
+        fromId = toId + 1;
+
+        // the files are recorded in the order of their ID ranges, so that the process log file
+        // always points to the end of a contiguous ID range.
+        while (pendingFiles.size() > numThreads
+            || (!pendingFiles.isEmpty() && pendingFiles.getFirst().isDone())) {
+          ExportedFile file = getExportedFile(pendingFiles.removeFirst());
+          sum += recordExportedFile(type, certstore, processLogFile, filenameListOs, processLog,
+              numProcessedBefore + sum, file);
+        }
+      } // end while
 
-          if (minIdOfCurrentFile == -1) {
-            minIdOfCurrentFile = id;
-          } else if (minIdOfCurrentFile > id) {
-            minIdOfCurrentFile = id;
-          }
+      while (!pendingFiles.isEmpty()) {
+        ExportedFile file = getExportedFile(pendingFiles.removeFirst());
+        sum += recordExportedFile(type, certstore, processLogFile, filenameListOs, processLog,
+            numProcessedBefore + sum, file);
+      }
 
-          if (maxIdOfCurrentFile == -1) {
-            maxIdOfCurrentFile = id;
-          } else if (maxIdOfCurrentFile < id) {
-            maxIdOfCurrentFile = id;
-          }
+      if (interrupted) {
+        throw new InterruptedException("interrupted by the user");
+      }
 
-          if (CaDbEntryType.CERT == type) {
-            byte[] certBytes = Base64.decodeFast(rs.getString("CERT"));
-
-            String sha1 = HashAlgo.SHA1.hexHash(certBytes);
-            String certFileName = sha1 + ".der";
-            ZipEntry certZipEntry = new ZipEntry(certFileName);
-            currentEntriesZip.putNextEntry(certZipEntry);
-            try {
-              currentEntriesZip.write(certBytes);
-            } finally {
-              currentEntriesZip.closeEntry();
-            }
+      successful = true;
+    } catch (SQLException ex) {
+      throw translate(rangeSql, ex);
+    } finally {
+      releaseResources(ps, null);
 
-            CaCertstore.Cert cert = new CaCertstore.Cert();
-            cert.setId(id);
-            cert.setCaId(rs.getInt("CA_ID"));
-            cert.setEe(rs.getBoolean("EE"));
-            cert.setFile(certFileName);
+      executor.shutdown();
 
-            long fpReqSubject = rs.getLong("FP_RS");
-            if (fpReqSubject != 0) {
-              cert.setFpRs(fpReqSubject);
-              cert.setRs(rs.getString("REQ_SUBJECT"));
+      if (!successful) {
+        aborted.set(true);
+        // files which have not been recorded will be exported again on resume
+        for (Future<ExportedFile> future : pendingFiles) {
+          try {
+            String filename = getExportedFile(future).filename;
+            if (filename != null) {
+              new File(entriesDir, filename).delete();
             }
+          } catch (Exception ex) {
+            LOG.debug("ignore exception of unrecorded file: {}", ex.getMessage());
+          }
+        }
+      }
+    } // end try
 
-            cert.setPid(rs.getInt("PID"));
-            cert.setReqType(rs.getInt("RTYPE"));
-            cert.setRid(rs.getInt("RID"));
-            cert.setSn(rs.getString("SN"));
-
-            String str = rs.getString("TID");
-            if (StringUtil.isNotBlank(str)) {
-              cert.setTid(str);
-            }
+    processLog.printTrailer();
+    // all successful, delete the processLogFile
+    processLogFile.delete();
+    System.out.println(" exported " + sum + " entries from " + tablesText);
+  } // method exportEntries
 
-            int userId = rs.getInt("UID");
-            if (userId != 0) {
-              cert.setUid(userId);
-            }
-            cert.setUpdate(rs.getLong("LUPDATE"));
-
-            int revoked = rs.getInt("REV");
-            cert.setRev(revoked);
-
-            if (revoked == 1) {
-              cert.setRr(rs.getInt("RR"));
-              cert.setRt(rs.getLong("RT"));
-              long revInvTime = rs.getLong("RIT");
-              if (revInvTime != 0) {
-                cert.setRit(revInvTime);
-              }
-            }
+  private int recordExportedFile(CaDbEntryType type, CaCertstore certstore,
+      File processLogFile, OutputStream filenameListOs, ProcessLog processLog,
+      int numProcessed, ExportedFile file) throws IOException {
+    if (file.filename != null) {
+      writeLine(filenameListOs, file.filename);
+    }
 
-            cert.setCrlScope(rs.getInt("CRL_SCOPE"));
-
-            cert.validate();
-            ((CaCertstore.Certs) entriesInCurrentFile).add(cert);
-          } else if (CaDbEntryType.CRL == type) {
-            byte[] crlBytes = Base64.decodeFast(rs.getString("CRL"));
-
-            X509CRL x509Crl = null;
-            try {
-              x509Crl = X509Util.parseCrl(crlBytes);
-            } catch (CRLException ex) {
-              LogUtil.error(LOG, ex, "could not parse CRL with id " + id);
-              throw ex;
-            } catch (Exception ex) {
-              LogUtil.error(LOG, ex, "could not parse CRL with id " + id);
-              throw new CRLException(ex.getMessage(), ex);
-            }
+    setCount(type, certstore, numProcessed + file.numEntries);
+    echoToFile(type.getTableName() + ":" + Long.toString(file.toId), processLogFile);
 
-            byte[] octetString = x509Crl.getExtensionValue(Extension.cRLNumber.getId());
-            if (octetString == null) {
-              LOG.warn("CRL without CRL number, ignore it");
-              continue;
-            }
-            String sha1 = HashAlgo.SHA1.hexHash(crlBytes);
-
-            final String crlFilename = sha1 + ".crl";
-            ZipEntry certZipEntry = new ZipEntry(crlFilename);
-            currentEntriesZip.putNextEntry(certZipEntry);
-            try {
-              currentEntriesZip.write(crlBytes);
-            } finally {
-              currentEntriesZip.closeEntry();
-            }
+    processLog.addNumProcessed(file.numEntries);
+    processLog.printStatus();
+    return file.numEntries;
+  } // method recordExportedFile
 
-            CaCertstore.Crl crl = new CaCertstore.Crl();
-            crl.setId(id);
-
-            crl.setCaId(rs.getInt("CA_ID"));
-
-            byte[] extnValue = DEROctetString.getInstance(octetString).getOctets();
-            BigInteger crlNumber = ASN1Integer.getInstance(extnValue).getPositiveValue();
-            crl.setCrlNo(crlNumber.toString());
-            crl.setCrlScope(rs.getInt("CRL_SCOPE"));
-            crl.setFile(crlFilename);
-
-            crl.validate();
-            ((CaCertstore.Crls) entriesInCurrentFile).add(crl);
-          } else if (CaDbEntryType.REQUEST == type) {
-            byte[] dataBytes = Base64.decodeFast(rs.getString("DATA"));
-            String sha1 = HashAlgo.SHA1.hexHash(dataBytes);
-            final String dataFilename = sha1 + ".req";
-            ZipEntry certZipEntry = new ZipEntry(dataFilename);
-            currentEntriesZip.putNextEntry(certZipEntry);
-            try {
-              currentEntriesZip.write(dataBytes);
-            } finally {
-              currentEntriesZip.closeEntry();
-            }
+  private static ExportedFile getExportedFile(Future<ExportedFile> future) throws Exception {
+    try {
+      return future.get();
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      if (cause instanceof Exception) {
+        throw (Exception) cause;
+      } else {
+        throw new Exception(cause);
+      }
+    }
+  } // method getExportedFile
+
+  private boolean exportEntry(CaDbEntryType type, ResultSet rs, long id,
+      ZipOutputStream currentEntriesZip, Object entriesInCurrentFile) throws Exception {
+    if (CaDbEntryType.CERT == type) {
+      byte[] certBytes = Base64.decodeFast(rs.getString("CERT"));
+
+      String sha1 = HashAlgo.SHA1.hexHash(certBytes);
+      String certFileName = sha1 + ".der";
+      ZipEntry certZipEntry = new ZipEntry(certFileName);
+      currentEntriesZip.putNextEntry(certZipEntry);
+      try {
+        currentEntriesZip.write(certBytes);
+      } finally {
+        currentEntriesZip.closeEntry();
+      }
 
-            CaCertstore.Request entry = new CaCertstore.Request();
-            entry.setId(id);
-            entry.setUpdate(rs.getLong("LUPDATE"));
-            entry.setFile(dataFilename);
-
-            entry.validate();
-            ((CaCertstore.Requests) entriesInCurrentFile).add(entry);
-          } else if (CaDbEntryType.REQCERT == type) {
-            CaCertstore.ReqCert entry = new CaCertstore.ReqCert();
-            entry.setId(id);
-            entry.setCid(rs.getLong("CID"));
-            entry.setRid(rs.getLong("RID"));
-
-            entry.validate();
-            ((CaCertstore.ReqCerts) entriesInCurrentFile).add(entry);
-          } else {
-            throw new IllegalStateException("unknown CaDbEntryType " + type);
-          }
+      CaCertstore.Cert cert = new CaCertstore.Cert();
+      cert.setId(id);
+      cert.setCaId(rs.getInt("CA_ID"));
+      cert.setEe(rs.getBoolean("EE"));
+      cert.setFile(certFileName);
 
-          numEntriesInCurrentFile++;
-          sum++;
-
-          if (numEntriesInCurrentFile == numEntriesPerZip) {
-            String currentEntriesFilename = buildFilename(type.getDirName() + "_", ".zip",
-                minIdOfCurrentFile, maxIdOfCurrentFile, maxId);
-            finalizeZip(currentEntriesZip, "overview.json", entriesInCurrentFile);
-            currentEntriesZipFile.renameTo(new File(entriesDir, currentEntriesFilename));
-
-            writeLine(filenameListOs, currentEntriesFilename);
-            setCount(type, certstore, numProcessedBefore + sum);
-            echoToFile(tableName + ":" + Long.toString(id), processLogFile);
-
-            processLog.addNumProcessed(numEntriesInCurrentFile);
-            processLog.printStatus();
-
-            // reset
-            entriesInCurrentFile = createContainer(type);
-            numEntriesInCurrentFile = 0;
-            minIdOfCurrentFile = -1;
-            maxIdOfCurrentFile = -1;
-            currentEntriesZipFile = new File(baseDir, "tmp-" + type.getDirName() + "-"
-                + System.currentTimeMillis() + ".zip");
-            currentEntriesZip = getZipOutputStream(currentEntriesZipFile);
-          }
-        } while (rs.next());
+      long fpReqSubject = rs.getLong("FP_RS");
+      if (fpReqSubject != 0) {
+        cert.setFpRs(fpReqSubject);
+        cert.setRs(rs.getString("REQ_SUBJECT"));
+      }
 
-        rs.close();
-      } // end for
+      cert.setPid(rs.getInt("PID"));
+      cert.setReqType(rs.getInt("RTYPE"));
+      cert.setRid(rs.getInt("RID"));
+      cert.setSn(rs.getString("SN"));
 
-      if (interrupted) {
-        currentEntriesZip.close();
-        throw new InterruptedException("interrupted by the user");
+      String str = rs.getString("TID");
+      if (StringUtil.isNotBlank(str)) {
+        cert.setTid(str);
       }
 
-      if (numEntriesInCurrentFile > 0) {
-        finalizeZip(currentEntriesZip, "overview.json", entriesInCurrentFile);
+      int userId = rs.getInt("UID");
+      if (userId != 0) {
+        cert.setUid(userId);
+      }
+      cert.setUpdate(rs.getLong("LUPDATE"));
 
-        String currentEntriesFilename = buildFilename(type.getDirName() + "_", ".zip",
-            minIdOfCurrentFile, maxIdOfCurrentFile, maxId);
-        currentEntriesZipFile.renameTo(new File(entriesDir, currentEntriesFilename));
+      int revoked = rs.getInt("REV");
+      cert.setRev(revoked);
 
-        writeLine(filenameListOs, currentEntriesFilename);
-        setCount(type, certstore, numProcessedBefore + sum);
-        if (id != null) {
-          echoToFile(Long.toString(id), processLogFile);
+      if (revoked == 1) {
+        cert.setRr(rs.getInt("RR"));
+        cert.setRt(rs.getLong("RT"));
+        long revInvTime = rs.getLong("RIT");
+        if (revInvTime != 0) {
+          cert.setRit(revInvTime);
         }
+      }
 
-        processLog.addNumProcessed(numEntriesInCurrentFile);
-      } else {
-        currentEntriesZip.close();
-        currentEntriesZipFile.delete();
+      cert.setCrlScope(rs.getInt("CRL_SCOPE"));
+
+      cert.validate();
+      ((CaCertstore.Certs) entriesInCurrentFile).add(cert);
+    } else if (CaDbEntryType.CRL == type) {
+      byte[] crlBytes = Base64.decodeFast(rs.getString("CRL"));
+
+      X509CRL x509Crl = null;
+      try {
+        x509Crl = X509Util.parseCrl(crlBytes);
+      } catch (CRLException ex) {
+        LogUtil.error(LOG, ex, "could not parse CRL with id " + id);
+        throw ex;
+      } catch (Exception ex) {
+        LogUtil.error(LOG, ex, "could not parse CRL with id " + id);
+        throw new CRLException(ex.getMessage(), ex);
       }
 
-    } catch (SQLException ex) {
-      throw translate(null, ex);
-    } finally {
-      releaseResources(ps, null);
-    } // end try
+      byte[] octetString = x509Crl.getExtensionValue(Extension.cRLNumber.getId());
+      if (octetString == null) {
+        LOG.warn("CRL without CRL number, ignore it");
+        return false;
+      }
+      String sha1 = HashAlgo.SHA1.hexHash(crlBytes);
+
+      final String crlFilename = sha1 + ".crl";
+      ZipEntry certZipEntry = new ZipEntry(crlFilename);
+      currentEntriesZip.putNextEntry(certZipEntry);
+      try {
+        currentEntriesZip.write(crlBytes);
+      } finally {
+        currentEntriesZip.closeEntry();
+      }
 
-    processLog.printTrailer();
-    // all successful, delete the processLogFile
-    processLogFile.delete();
-    System.out.println(" exported " + sum + " entries from " + tablesText);
-  } // method exportEntries
+      CaCertstore.Crl crl = new CaCertstore.Crl();
+      crl.setId(id);
+
+      crl.setCaId(rs.getInt("CA_ID"));
+
+      byte[] extnValue = DEROctetString.getInstance(octetString).getOctets();
+      BigInteger crlNumber = ASN1Integer.getInstance(extnValue).getPositiveValue();
+      crl.setCrlNo(crlNumber.toString());
+      crl.setCrlScope(rs.getInt("CRL_SCOPE"));
+      crl.setFile(crlFilename);
+
+      crl.validate();
+      ((CaCertstore.Crls) entriesInCurrentFile).add(crl);
+    } else if (CaDbEntryType.REQUEST == type) {
+      byte[] dataBytes = Base64.decodeFast(rs.getString("DATA"));
+      String sha1 = HashAlgo.SHA1.hexHash(dataBytes);
+      final String dataFilename = sha1 + ".req";
+      ZipEntry certZipEntry = new ZipEntry(dataFilename);
+      currentEntriesZip.putNextEntry(certZipEntry);
+      try {
+        currentEntriesZip.write(dataBytes);
+      } finally {
+        currentEntriesZip.closeEntry();
+      }
+
+      CaCertstore.Request entry = new CaCertstore.Request();
+      entry.setId(id);
+      entry.setUpdate(rs.getLong("LUPDATE"));
+      entry.setFile(dataFilename);
+
+      entry.validate();
+      ((CaCertstore.Requests) entriesInCurrentFile).add(entry);
+    } else if (CaDbEntryType.REQCERT == type) {
+      CaCertstore.ReqCert entry = new CaCertstore.ReqCert();
+      entry.setId(id);
+      entry.setCid(rs.getLong("CID"));
+      entry.setRid(rs.getLong("RID"));
+
+      entry.validate();
+      ((CaCertstore.ReqCerts) entriesInCurrentFile).add(entry);
+    } else {
+      throw new IllegalStateException("unknown CaDbEntryType " + type);
+    }
+
+    return true;
+  } // method exportEntry
 
   private void exportPublishQueue(CaCertstore certstore)
       throws DataAccessException, InvalidConfException {
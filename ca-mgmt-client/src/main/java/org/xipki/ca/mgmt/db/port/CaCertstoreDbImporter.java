@@ -18,18 +18,27 @@
 package org.xipki.ca.mgmt.db.port;
 
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.security.cert.CRLException;
 import java.security.cert.CertificateException;
 import java.security.cert.X509CRL;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.SQLException;
 import java.sql.Types;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.StringTokenizer;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipFile;
@@ -54,9 +63,12 @@ import org.xipki.util.IoUtil;
 import org.xipki.util.ProcessLog;
 
 import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONReader;
 
 /**
- * Database importer of CA CertStore.
+ * Database importer of CA CertStore. The entries files are read with a streaming JSON reader,
+ * and the entries are inserted in batches by a pool of workers, each with its own database
+ * connection.
  *
  * @author Lijun Liao
  * @since 2.0.0
@@ -64,8 +76,240 @@ import com.alibaba.fastjson.JSON;
 
 class CaCertstoreDbImporter extends DbPorter {
 
+  /**
+   * Entry read from the entries file, together with the content of the referenced file.
+   */
+  private static class ImportEntry {
+
+    private final IdentifidDbObject entry;
+
+    private final byte[] content;
+
+    ImportEntry(IdentifidDbObject entry, byte[] content) {
+      this.entry = entry;
+      this.content = content;
+    }
+
+  } // class ImportEntry
+
+  /**
+   * Entries which are inserted with one {@code executeBatch()} and committed together.
+   */
+  private static class Batch {
+
+    private final long seqNo;
+
+    private final List<ImportEntry> entries;
+
+    private final long lastId;
+
+    Batch(long seqNo, List<ImportEntry> entries, long lastId) {
+      this.seqNo = seqNo;
+      this.entries = entries;
+      this.lastId = lastId;
+    }
+
+  } // class Batch
+
+  /**
+   * State of the import of one table. The batches are committed by the workers in any order,
+   * the process log file is however only advanced to the last batch of which all predecessors
+   * have been committed. On error, the entries committed after this point are deleted again, so
+   * that the import can be resumed from the process log file.
+   */
+  private class EntriesImport {
+
+    private final CaDbEntryType type;
+
+    private final String sql;
+
+    private final int numEntriesPerCommit;
+
+    private final File processLogFile;
+
+    private final ProcessLog processLog;
+
+    private final int numProcessedBefore;
+
+    private final BlockingQueue<Batch> queue;
+
+    // batches committed before one of their predecessors, by seqNo
+    private final Map<Long, Batch> committedBatches = new HashMap<>();
+
+    private List<ImportEntry> pendingEntries;
+
+    private long nextSeqNo;
+
+    private long nextCommitSeqNo;
+
+    private volatile long lastCommittedId;
+
+    private volatile Exception error;
+
+    EntriesImport(CaDbEntryType type, String sql, File processLogFile, ProcessLog processLog,
+        int numProcessedBefore, long lastCommittedId) {
+      this.type = type;
+      this.sql = sql;
+      this.numEntriesPerCommit = Math.max(1,
+          Math.round(type.getSqlBatchFactor() * numCertsPerCommit));
+      this.processLogFile = processLogFile;
+      this.processLog = processLog;
+      this.numProcessedBefore = numProcessedBefore;
+      this.lastCommittedId = lastCommittedId;
+      this.queue = new ArrayBlockingQueue<>(numThreads * QUEUED_BATCHES_PER_THREAD);
+      this.pendingEntries = new ArrayList<>(numEntriesPerCommit);
+    }
+
+    void add(ImportEntry entry) throws Exception {
+      pendingEntries.add(entry);
+      if (pendingEntries.size() >= numEntriesPerCommit) {
+        flush();
+      }
+    } // method add
+
+    void flush() throws Exception {
+      if (error != null) {
+        throw error;
+      }
+
+      if (pendingEntries.isEmpty()) {
+        return;
+      }
+
+      long lastId = pendingEntries.get(pendingEntries.size() - 1).entry.getId();
+      queue.put(new Batch(nextSeqNo++, pendingEntries, lastId));
+      pendingEntries = new ArrayList<>(numEntriesPerCommit);
+    } // method flush
+
+    synchronized void committed(Batch batch) throws IOException {
+      committedBatches.put(batch.seqNo, batch);
+
+      Batch next;
+      boolean advanced = false;
+      while ((next = committedBatches.remove(nextCommitSeqNo)) != null) {
+        nextCommitSeqNo++;
+        lastCommittedId = next.lastId;
+        processLog.addNumProcessed(next.entries.size());
+        advanced = true;
+      }
+
+      if (advanced) {
+        echoToFile(type + ":" + (numProcessedBefore + processLog.numProcessed()) + ":"
+            + lastCommittedId, processLogFile);
+        processLog.printStatus();
+      }
+    } // method committed
+
+    synchronized void fail(Throwable th) {
+      if (error == null) {
+        error = (th instanceof Exception) ? (Exception) th : new Exception(th);
+      }
+    } // method fail
+
+  } // class EntriesImport
+
+  /**
+   * Inserts the batches of an {@link EntriesImport} with its own database connection.
+   */
+  private class InsertWorker implements Runnable {
+
+    private final EntriesImport entriesImport;
+
+    InsertWorker(EntriesImport entriesImport) {
+      this.entriesImport = entriesImport;
+    }
+
+    @Override
+    public void run() {
+      Connection conn = null;
+      boolean autoCommit = true;
+      PreparedStatement stmt = null;
+
+      try {
+        conn = datasource.getConnection();
+        autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        stmt = conn.prepareStatement(entriesImport.sql);
+      } catch (SQLException ex) {
+        entriesImport.fail(datasource.translate(entriesImport.sql, ex));
+      } catch (Exception ex) {
+        entriesImport.fail(ex);
+      }
+
+      try {
+        while (true) {
+          Batch batch;
+          try {
+            batch = entriesImport.queue.take();
+          } catch (InterruptedException ex) {
+            entriesImport.fail(ex);
+            break;
+          }
+
+          if (batch == END_OF_BATCHES) {
+            break;
+          }
+
+          if (entriesImport.error != null) {
+            // skip the remaining batches
+            continue;
+          }
+
+          try {
+            int numEntriesInBatch = 0;
+            for (ImportEntry entry : batch.entries) {
+              if (bind(stmt, entry)) {
+                stmt.addBatch();
+                numEntriesInBatch++;
+              }
+            }
+
+            if (numEntriesInBatch > 0) {
+              stmt.executeBatch();
+            }
+            conn.commit();
+          } catch (Throwable th) {
+            try {
+              conn.rollback();
+            } catch (SQLException ex) {
+              LOG.warn("could not rollback: {}", ex.getMessage());
+            }
+
+            if (th instanceof SQLException) {
+              entriesImport.fail(datasource.translate(entriesImport.sql, (SQLException) th));
+            } else {
+              entriesImport.fail(th);
+            }
+            continue;
+          }
+
+          try {
+            entriesImport.committed(batch);
+          } catch (Throwable th) {
+            entriesImport.fail(th);
+          }
+        }
+      } finally {
+        if (conn != null) {
+          datasource.releaseResources(stmt, null, false);
+          try {
+            conn.setAutoCommit(autoCommit);
+          } catch (SQLException ex) {
+            LOG.warn("could not recover the auto-commit: {}", ex.getMessage());
+          }
+          datasource.returnConnection(conn);
+        }
+      }
+    } // method run
+
+  } // class InsertWorker
+
   private static final Logger LOG = LoggerFactory.getLogger(CaCertstoreDbImporter.class);
 
+  private static final Batch END_OF_BATCHES = new Batch(-1, null, -1);
+
+  private static final int QUEUED_BATCHES_PER_THREAD = 2;
+
   private static final String SQL_ADD_CERT =
       "INSERT INTO CERT (ID,LUPDATE,SN,SUBJECT,FP_S,FP_RS,NBEFORE,NAFTER,REV,RR,RT,RIT,"
       + "PID,CA_ID,RID,UID,FP_K,EE,RTYPE,TID,SHA1,REQ_SUBJECT,CRL_SCOPE,CERT)"
@@ -82,11 +326,22 @@ class CaCertstoreDbImporter extends DbPorter {
 
   private final int numCertsPerCommit;
 
+  private final int numThreads;
+
   CaCertstoreDbImporter(DataSourceWrapper datasource, String srcDir, int numCertsPerCommit,
-      boolean resume, AtomicBoolean stopMe) throws Exception {
+      int numThreads, boolean resume, AtomicBoolean stopMe) throws Exception {
     super(datasource, srcDir, stopMe);
 
     this.numCertsPerCommit = Args.positive(numCertsPerCommit, "numCertsPerCommit");
+    // one connection is used by this importer itself
+    int maxThreads = Math.max(1, datasource.getMaximumPoolSize() - 1);
+    if (Args.positive(numThreads, "numThreads") > maxThreads) {
+      LOG.info("reduced the number of threads from {} to {} (size of the connection pool)",
+          numThreads, maxThreads);
+      this.numThreads = maxThreads;
+    } else {
+      this.numThreads = numThreads;
+    }
 
     File processLogFile = new File(baseDir, DbPorter.IMPORT_PROCESS_LOG_FILENAME);
     if (resume) {
@@ -291,17 +546,26 @@ class CaCertstoreDbImporter extends DbPorter {
       System.out.println("importing entries to " + tablesText + " from ID " + minId);
       processLog.printHeader();
 
+      EntriesImport entriesImport = new EntriesImport(type, sql, processLogFile, processLog,
+          numProcessedBefore, minId - 1);
+
+      Thread[] workers = new Thread[numThreads];
+      for (int i = 0; i < numThreads; i++) {
+        workers[i] = new Thread(new InsertWorker(entriesImport),
+            "ca-import-" + type.getDirName() + "-" + (i + 1));
+        workers[i].setDaemon(true);
+        workers[i].start();
+      }
+
       DbPortFileNameIterator entriesFileIterator = null;
-      PreparedStatement stmt = null;
+      String entriesFile = null;
 
       try {
         entriesFileIterator = new DbPortFileNameIterator(
             baseDir + File.separator + type.getDirName() + ".mf");
 
-        stmt = prepareStatement(sql);
-
         while (entriesFileIterator.hasNext()) {
-          String entriesFile = baseDir + File.separator + type.getDirName()
+          entriesFile = baseDir + File.separator + type.getDirName()
               + File.separator + entriesFileIterator.next();
 
           // extract the toId from the filename
@@ -321,42 +585,38 @@ class CaCertstoreDbImporter extends DbPorter {
             LOG.warn("invalid file name '{}', but will still be processed", entriesFile);
           }
 
-          try {
-            long lastId;
-            switch (type) {
-              case CERT:
-                lastId = importCerts(entriesFile, minId, processLogFile,
-                    processLog, numProcessedBefore, stmt, sql);
-                break;
-              case CRL:
-                lastId = importCrls(entriesFile, minId, processLogFile,
-                    processLog, numProcessedBefore, stmt, sql);
-                break;
-              case REQUEST:
-                lastId = importRequests(entriesFile, minId, processLogFile,
-                    processLog, numProcessedBefore, stmt, sql);
-                break;
-              case REQCERT:
-                lastId = importReqCerts(entriesFile, minId, processLogFile,
-                    processLog, numProcessedBefore, stmt, sql);
-                break;
-              default:
-                throw new IllegalStateException("unknown CaDbEntryType " + type);
-            }
+          readEntries(entriesImport, entriesFile, minId);
+        } // end while
 
-            minId = lastId + 1;
-          } catch (Exception ex) {
-            System.err.println("\ncould not import entries from file "
-                + entriesFile + ".\nplease continue with the option '--resume'");
-            LOG.error("Exception", ex);
-            return ex;
-          }
-        } // end for
+        entriesImport.flush();
+      } catch (Exception ex) {
+        if (entriesFile != null) {
+          System.err.println("\ncould not import entries from file " + entriesFile);
+        }
+        entriesImport.fail(ex);
       } finally {
-        releaseResources(stmt, null);
         if (entriesFileIterator != null) {
           entriesFileIterator.close();
         }
+
+        // all batches before the end markers will be processed or skipped by the workers
+        for (int i = 0; i < numThreads; i++) {
+          entriesImport.queue.put(END_OF_BATCHES);
+        }
+
+        for (Thread worker : workers) {
+          worker.join();
+        }
+      }
+
+      Exception error = entriesImport.error;
+      if (error != null) {
+        // remove the entries committed by workers after the last consistent point
+        deleteFromTableWithLargerId(type.getTableName(), "ID",
+            entriesImport.lastCommittedId, LOG);
+        System.err.println("please continue with the option '--resume'");
+        LOG.error("Exception", error);
+        return error;
       }
 
       processLog.printTrailer();
@@ -373,498 +633,254 @@ class CaCertstoreDbImporter extends DbPorter {
     }
   } // method importEntries
 
-  private long importCerts(String entriesZipFile, long minId,
-      File processLogFile, ProcessLog processLog, int numProcessedInLastProcess,
-      PreparedStatement stmt, String sql) throws Exception {
-    final CaDbEntryType type = CaDbEntryType.CERT;
-    final int numEntriesPerCommit = Math.max(1,
-        Math.round(type.getSqlBatchFactor() * numCertsPerCommit));
-
-    ZipFile zipFile = new ZipFile(new File(entriesZipFile));
-    ZipEntry entriesEntry = zipFile.getEntry("overview.json");
-
-    CaCertstore.Certs certs;
-    try {
-      certs = JSON.parseObject(zipFile.getInputStream(entriesEntry), CaCertstore.Certs.class);
-    } catch (Exception ex) {
-      try {
-        zipFile.close();
-      } catch (Exception e2) {
-        LOG.error("could not close ZIP file {}: {}", entriesZipFile, e2.getMessage());
-        LOG.debug("could not close ZIP file " + entriesZipFile, e2);
-      }
-      throw ex;
+  /**
+   * Reads the entries of the given file with a streaming JSON reader, so that only the entries
+   * of the batches being processed are held in memory.
+   */
+  private void readEntries(EntriesImport entriesImport, String entriesZipFile, long minId)
+      throws Exception {
+    final CaDbEntryType type = entriesImport.type;
+    final String arrayName;
+    final Class<? extends IdentifidDbObject> entryClass;
+    switch (type) {
+      case CERT:
+        arrayName = "certs";
+        entryClass = CaCertstore.Cert.class;
+        break;
+      case CRL:
+        arrayName = "crls";
+        entryClass = CaCertstore.Crl.class;
+        break;
+      case REQUEST:
+        arrayName = "requests";
+        entryClass = CaCertstore.Request.class;
+        break;
+      case REQCERT:
+        arrayName = "reqCerts";
+        entryClass = CaCertstore.ReqCert.class;
+        break;
+      default:
+        throw new IllegalStateException("unknown CaDbEntryType " + type);
     }
-    certs.validate();
-
-    disableAutoCommit();
-
-    try {
-      int numEntriesInBatch = 0;
-      long lastSuccessfulEntryId = 0;
-
-      List<CaCertstore.Cert> list = certs.getCerts();
-      final int n = list.size();
-
-      for (int i = 0; i < n; i++) {
-        CaCertstore.Cert cert = list.get(i);
-
-        if (stopMe.get()) {
-          throw new InterruptedException("interrupted by the user");
-        }
-
-        long id = cert.getId();
-        if (id < minId) {
-          continue;
-        }
-
-        numEntriesInBatch++;
-
-        String filename = cert.getFile();
-        // rawcert
-        ZipEntry certZipEnty = zipFile.getEntry(filename);
-        // rawcert
-        byte[] encodedCert = IoUtil.read(zipFile.getInputStream(certZipEnty));
-
-        TBSCertificate tbsCert;
-        try {
-          Certificate cc = Certificate.getInstance(encodedCert);
-          tbsCert = cc.getTBSCertificate();
-        } catch (RuntimeException ex) {
-          LOG.error("could not parse certificate in file {}", filename);
-          LOG.debug("could not parse certificate in file " + filename, ex);
-          throw new CertificateException(ex.getMessage(), ex);
-        }
-
-        byte[] encodedKey = tbsCert.getSubjectPublicKeyInfo().getPublicKeyData().getBytes();
-
-        String b64Sha1FpCert = HashAlgo.SHA1.base64Hash(encodedCert);
-
-        // cert
-        String subjectText = X509Util.cutX500Name(tbsCert.getSubject(), maxX500nameLen);
-
-        try {
-          int idx = 1;
 
-          stmt.setLong(idx++, id);
-          stmt.setLong(idx++, cert.getUpdate());
-          stmt.setString(idx++, tbsCert.getSerialNumber().getPositiveValue().toString(16));
+    try (ZipFile zipFile = new ZipFile(new File(entriesZipFile))) {
+      ZipEntry entriesEntry = zipFile.getEntry("overview.json");
+      JSONReader reader = new JSONReader(new InputStreamReader(
+          zipFile.getInputStream(entriesEntry), StandardCharsets.UTF_8));
 
-          stmt.setString(idx++, subjectText);
-          long fpSubject = X509Util.fpCanonicalizedName(tbsCert.getSubject());
-          stmt.setLong(idx++, fpSubject);
-
-          if (cert.getFpRs() != null) {
-            stmt.setLong(idx++, cert.getFpRs());
-          } else {
-            stmt.setNull(idx++, Types.BIGINT);
-          }
-
-          stmt.setLong(idx++, tbsCert.getStartDate().getDate().getTime() / 1000);
-          stmt.setLong(idx++, tbsCert.getEndDate().getDate().getTime() / 1000);
-          setInt(stmt, idx++, cert.getRev());
-          setInt(stmt, idx++, cert.getRr());
-          setLong(stmt, idx++, cert.getRt());
-          setLong(stmt, idx++, cert.getRit());
-          setInt(stmt, idx++, cert.getPid());
-          setInt(stmt, idx++, cert.getCaId());
-
-          setInt(stmt, idx++, cert.getRid());
-          setInt(stmt, idx++, cert.getUid());
-          stmt.setLong(idx++, FpIdCalculator.hash(encodedKey));
-          Extension extension = tbsCert.getExtensions().getExtension(Extension.basicConstraints);
-          boolean ee = true;
-          if (extension != null) {
-            ASN1Encodable asn1 = extension.getParsedValue();
-            ee = !BasicConstraints.getInstance(asn1).isCA();
+      try {
+        reader.startObject();
+        while (reader.hasNext()) {
+          String key = reader.readString();
+          if (!arrayName.equals(key)) {
+            // ignore unknown field
+            reader.readObject();
+            continue;
           }
 
-          stmt.setInt(idx++, ee ? 1 : 0);
-          stmt.setInt(idx++, cert.getReqType());
-          String tidS = null;
-          if (cert.getTid() != null) {
-            tidS = cert.getTid();
-          }
-          stmt.setString(idx++, tidS);
-          stmt.setString(idx++, b64Sha1FpCert);
-          stmt.setString(idx++, cert.getRs());
-          stmt.setInt(idx++, cert.getCrlScope());
-          stmt.setString(idx++, Base64.encodeToString(encodedCert));
-          stmt.addBatch();
-        } catch (SQLException ex) {
-          throw translate(sql, ex);
-        }
-
-        boolean isLastBlock = i == n - 1;
-        if (numEntriesInBatch > 0
-            && (numEntriesInBatch % numEntriesPerCommit == 0 || isLastBlock)) {
-          try {
-            stmt.executeBatch();
-            commit("(commit import to CA)");
-          } catch (Throwable th) {
-            rollback();
-            deleteFromTableWithLargerId(type.getTableName(), "ID", id, LOG);
-            if (th instanceof SQLException) {
-              throw translate(sql, (SQLException) th);
-            } else if (th instanceof Exception) {
-              throw (Exception) th;
-            } else {
-              throw new Exception(th);
+          reader.startArray();
+          while (reader.hasNext()) {
+            if (stopMe.get()) {
+              throw new InterruptedException("interrupted by the user");
             }
-          }
-
-          lastSuccessfulEntryId = id;
-          processLog.addNumProcessed(numEntriesInBatch);
-          numEntriesInBatch = 0;
-          echoToFile(type + ":" + (numProcessedInLastProcess + processLog.numProcessed())
-              + ":" + lastSuccessfulEntryId, processLogFile);
-          processLog.printStatus();
-        }
-
-      } // end while
 
-      return lastSuccessfulEntryId;
-    } finally {
-      recoverAutoCommit();
-      zipFile.close();
-    }
-  } // method importCerts
+            IdentifidDbObject entry = reader.readObject(entryClass);
+            entry.validate();
+            if (entry.getId() < minId) {
+              continue;
+            }
 
-  private long importCrls(String entriesZipFile, long minId,
-      File processLogFile, ProcessLog processLog, int numProcessedInLastProcess,
-      PreparedStatement stmt, String sql) throws Exception {
-    final CaDbEntryType type = CaDbEntryType.CRL;
-    final int numEntriesPerCommit = Math.max(1,
-        Math.round(type.getSqlBatchFactor() * numCertsPerCommit));
+            String filename = null;
+            if (entry instanceof CaCertstore.Cert) {
+              filename = ((CaCertstore.Cert) entry).getFile();
+            } else if (entry instanceof CaCertstore.Crl) {
+              filename = ((CaCertstore.Crl) entry).getFile();
+            } else if (entry instanceof CaCertstore.Request) {
+              filename = ((CaCertstore.Request) entry).getFile();
+            }
 
-    ZipFile zipFile = new ZipFile(new File(entriesZipFile));
-    ZipEntry entriesEntry = zipFile.getEntry("overview.json");
+            byte[] content = null;
+            if (filename != null) {
+              ZipEntry zipEntry = zipFile.getEntry(filename);
+              if (zipEntry == null) {
+                throw new IOException("could not find " + filename + " in " + entriesZipFile);
+              }
+              content = IoUtil.read(zipFile.getInputStream(zipEntry));
+            }
 
-    CaCertstore.Crls crls;
-    try {
-      crls = JSON.parseObject(zipFile.getInputStream(entriesEntry), CaCertstore.Crls.class);
-    } catch (Exception ex) {
-      try {
-        zipFile.close();
-      } catch (Exception e2) {
-        LOG.error("could not close ZIP file {}: {}", entriesZipFile, e2.getMessage());
-        LOG.debug("could not close ZIP file " + entriesZipFile, e2);
+            entriesImport.add(new ImportEntry(entry, content));
+          }
+          reader.endArray();
+        }
+        reader.endObject();
+      } finally {
+        reader.close();
       }
-      throw ex;
     }
-    crls.validate();
-
-    disableAutoCommit();
+  } // method readEntries
 
+  private boolean bindCert(PreparedStatement stmt, CaCertstore.Cert cert, byte[] encodedCert)
+      throws SQLException, CertificateException {
+    String filename = cert.getFile();
+    TBSCertificate tbsCert;
     try {
-      int numEntriesInBatch = 0;
-      long lastSuccessfulEntryId = 0;
-
-      List<CaCertstore.Crl> list = crls.getCrls();
-      final int n = list.size();
-
-      for (int i = 0; i < n; i++) {
-        CaCertstore.Crl crl = list.get(i);
-
-        long id = crl.getId();
-        if (id < minId) {
-          continue;
-        }
-
-        numEntriesInBatch++;
-
-        String filename = crl.getFile();
-
-        // CRL
-        ZipEntry zipEnty = zipFile.getEntry(filename);
-
-        // rawcert
-        byte[] encodedCrl = IoUtil.read(zipFile.getInputStream(zipEnty));
-
-        X509CRL x509crl = null;
-        try {
-          x509crl = X509Util.parseCrl(encodedCrl);
-        } catch (Exception ex) {
-          LOG.error("could not parse CRL in file {}", filename);
-          LOG.debug("could not parse CRL in file " + filename, ex);
-          if (ex instanceof CRLException) {
-            throw (CRLException) ex;
-          } else {
-            throw new CRLException(ex.getMessage(), ex);
-          }
-        }
-
-        try {
-          byte[] octetString = x509crl.getExtensionValue(Extension.cRLNumber.getId());
-          if (octetString == null) {
-            LOG.warn("CRL without CRL number, ignore it");
-            continue;
-          }
-          byte[] extnValue = DEROctetString.getInstance(octetString).getOctets();
-          // CHECKSTYLE:SKIP
-          BigInteger crlNumber = ASN1Integer.getInstance(extnValue).getPositiveValue();
-
-          BigInteger baseCrlNumber = null;
-          octetString = x509crl.getExtensionValue(Extension.deltaCRLIndicator.getId());
-          if (octetString != null) {
-            extnValue = DEROctetString.getInstance(octetString).getOctets();
-            baseCrlNumber = ASN1Integer.getInstance(extnValue).getPositiveValue();
-          }
-
-          int idx = 1;
-          stmt.setLong(idx++, crl.getId());
-          stmt.setInt(idx++, crl.getCaId());
-          stmt.setLong(idx++, crlNumber.longValue());
-          stmt.setLong(idx++, x509crl.getThisUpdate().getTime() / 1000);
-          if (x509crl.getNextUpdate() != null) {
-            stmt.setLong(idx++, x509crl.getNextUpdate().getTime() / 1000);
-          } else {
-            stmt.setNull(idx++, Types.INTEGER);
-          }
+      Certificate cc = Certificate.getInstance(encodedCert);
+      tbsCert = cc.getTBSCertificate();
+    } catch (RuntimeException ex) {
+      LOG.error("could not parse certificate in file {}", filename);
+      LOG.debug("could not parse certificate in file " + filename, ex);
+      throw new CertificateException(ex.getMessage(), ex);
+    }
 
-          if (baseCrlNumber == null) {
-            setBoolean(stmt, idx++, false);
-            stmt.setNull(idx++, Types.BIGINT);
-          } else {
-            setBoolean(stmt, idx++, true);
-            stmt.setLong(idx++, baseCrlNumber.longValue());
-          }
+    byte[] encodedKey = tbsCert.getSubjectPublicKeyInfo().getPublicKeyData().getBytes();
 
-          stmt.setInt(idx++, crl.getCrlScope());
-          stmt.setString(idx++, Base64.encodeToString(encodedCrl));
+    String b64Sha1FpCert = HashAlgo.SHA1.base64Hash(encodedCert);
 
-          stmt.addBatch();
-        } catch (SQLException ex) {
-          System.err.println("could not import CRL with ID=" + crl.getId()
-              + ", message: " + ex.getMessage());
-          throw ex;
-        }
+    // cert
+    String subjectText = X509Util.cutX500Name(tbsCert.getSubject(), maxX500nameLen);
 
-        boolean isLastBlock = i == n - 1;
-        if (numEntriesInBatch > 0
-            && (numEntriesInBatch % numEntriesPerCommit == 0 || isLastBlock)) {
-          try {
-            stmt.executeBatch();
-            commit("(commit import to CA)");
-          } catch (Throwable th) {
-            rollback();
-            deleteFromTableWithLargerId(type.getTableName(), "ID", id, LOG);
-            if (th instanceof SQLException) {
-              throw translate(sql, (SQLException) th);
-            } else if (th instanceof Exception) {
-              throw (Exception) th;
-            } else {
-              throw new Exception(th);
-            }
-          }
+    int idx = 1;
 
-          lastSuccessfulEntryId = id;
-          processLog.addNumProcessed(numEntriesInBatch);
-          numEntriesInBatch = 0;
-          echoToFile(type + ":" + (numProcessedInLastProcess + processLog.numProcessed()) + ":"
-              + lastSuccessfulEntryId, processLogFile);
-          processLog.printStatus();
-        }
+    stmt.setLong(idx++, cert.getId());
+    stmt.setLong(idx++, cert.getUpdate());
+    stmt.setString(idx++, tbsCert.getSerialNumber().getPositiveValue().toString(16));
 
-      } // end while
+    stmt.setString(idx++, subjectText);
+    long fpSubject = X509Util.fpCanonicalizedName(tbsCert.getSubject());
+    stmt.setLong(idx++, fpSubject);
 
-      return lastSuccessfulEntryId;
-    } finally {
-      recoverAutoCommit();
-      zipFile.close();
+    if (cert.getFpRs() != null) {
+      stmt.setLong(idx++, cert.getFpRs());
+    } else {
+      stmt.setNull(idx++, Types.BIGINT);
     }
-  } // method importCrls
-
-  private long importRequests(String entriesZipFile, long minId,
-      File processLogFile, ProcessLog processLog, int numProcessedInLastProcess,
-      PreparedStatement stmt, String sql) throws Exception {
-    final CaDbEntryType type = CaDbEntryType.REQUEST;
-    final int numEntriesPerCommit = Math.max(1,
-        Math.round(type.getSqlBatchFactor() * numCertsPerCommit));
 
-    ZipFile zipFile = new ZipFile(new File(entriesZipFile));
-    ZipEntry entriesEntry = zipFile.getEntry("overview.json");
+    stmt.setLong(idx++, tbsCert.getStartDate().getDate().getTime() / 1000);
+    stmt.setLong(idx++, tbsCert.getEndDate().getDate().getTime() / 1000);
+    setInt(stmt, idx++, cert.getRev());
+    setInt(stmt, idx++, cert.getRr());
+    setLong(stmt, idx++, cert.getRt());
+    setLong(stmt, idx++, cert.getRit());
+    setInt(stmt, idx++, cert.getPid());
+    setInt(stmt, idx++, cert.getCaId());
+
+    setInt(stmt, idx++, cert.getRid());
+    setInt(stmt, idx++, cert.getUid());
+    stmt.setLong(idx++, FpIdCalculator.hash(encodedKey));
+    Extension extension = tbsCert.getExtensions().getExtension(Extension.basicConstraints);
+    boolean ee = true;
+    if (extension != null) {
+      ASN1Encodable asn1 = extension.getParsedValue();
+      ee = !BasicConstraints.getInstance(asn1).isCA();
+    }
 
-    CaCertstore.Requests requests;
+    stmt.setInt(idx++, ee ? 1 : 0);
+    stmt.setInt(idx++, cert.getReqType());
+    String tidS = null;
+    if (cert.getTid() != null) {
+      tidS = cert.getTid();
+    }
+    stmt.setString(idx++, tidS);
+    stmt.setString(idx++, b64Sha1FpCert);
+    stmt.setString(idx++, cert.getRs());
+    stmt.setInt(idx++, cert.getCrlScope());
+    stmt.setString(idx++, Base64.encodeToString(encodedCert));
+    return true;
+  } // method bindCert
+
+  private boolean bindCrl(PreparedStatement stmt, CaCertstore.Crl crl, byte[] encodedCrl)
+      throws SQLException, CRLException {
+    String filename = crl.getFile();
+    X509CRL x509crl = null;
     try {
-      requests = JSON.parseObject(zipFile.getInputStream(entriesEntry), CaCertstore.Requests.class);
+      x509crl = X509Util.parseCrl(encodedCrl);
     } catch (Exception ex) {
-      try {
-        zipFile.close();
-      } catch (Exception e2) {
-        LOG.error("could not close ZIP file {}: {}", entriesZipFile, e2.getMessage());
-        LOG.debug("could not close ZIP file " + entriesZipFile, e2);
+      LOG.error("could not parse CRL in file {}", filename);
+      LOG.debug("could not parse CRL in file " + filename, ex);
+      if (ex instanceof CRLException) {
+        throw (CRLException) ex;
+      } else {
+        throw new CRLException(ex.getMessage(), ex);
       }
-      throw ex;
     }
-    requests.validate();
-
-    disableAutoCommit();
-
-    try {
-      int numEntriesInBatch = 0;
-      long lastSuccessfulEntryId = 0;
-
-      List<CaCertstore.Request> list = requests.getRequests();
-      final int n = list.size();
-
-      for (int i = 0; i < n; i++) {
-        CaCertstore.Request request = list.get(i);
-
-        if (stopMe.get()) {
-          throw new InterruptedException("interrupted by the user");
-        }
-
-        long id = request.getId();
-        if (id < minId) {
-          continue;
-        }
-
-        numEntriesInBatch++;
-
-        String filename = request.getFile();
 
-        ZipEntry zipEnty = zipFile.getEntry(filename);
-        byte[] encodedRequest = IoUtil.read(zipFile.getInputStream(zipEnty));
-
-        try {
-          int idx = 1;
-          stmt.setLong(idx++, request.getId());
-          stmt.setLong(idx++, request.getUpdate());
-          stmt.setString(idx++, Base64.encodeToString(encodedRequest));
-          stmt.addBatch();
-        } catch (SQLException ex) {
-          System.err.println("could not import REQUEST with ID=" + request.getId()
-              + ", message: " + ex.getMessage());
-          throw ex;
-        }
-
-        boolean isLastBlock = i == n - 1;
-        if (numEntriesInBatch > 0
-            && (numEntriesInBatch % numEntriesPerCommit == 0 || isLastBlock)) {
-          try {
-            stmt.executeBatch();
-            commit("(commit import to CA)");
-          } catch (Throwable th) {
-            rollback();
-            deleteFromTableWithLargerId(type.getTableName(), "ID", id, LOG);
-            if (th instanceof SQLException) {
-              throw translate(sql, (SQLException) th);
-            } else if (th instanceof Exception) {
-              throw (Exception) th;
-            } else {
-              throw new Exception(th);
-            }
-          }
-
-          lastSuccessfulEntryId = id;
-          processLog.addNumProcessed(numEntriesInBatch);
-          numEntriesInBatch = 0;
-          echoToFile(type + ":" + (numProcessedInLastProcess + processLog.numProcessed()) + ":"
-              + lastSuccessfulEntryId, processLogFile);
-          processLog.printStatus();
-        }
-
-      } // end while
-
-      return lastSuccessfulEntryId;
-    } finally {
-      recoverAutoCommit();
-      zipFile.close();
+    byte[] octetString = x509crl.getExtensionValue(Extension.cRLNumber.getId());
+    if (octetString == null) {
+      LOG.warn("CRL without CRL number, ignore it");
+      return false;
+    }
+    byte[] extnValue = DEROctetString.getInstance(octetString).getOctets();
+    // CHECKSTYLE:SKIP
+    BigInteger crlNumber = ASN1Integer.getInstance(extnValue).getPositiveValue();
+
+    BigInteger baseCrlNumber = null;
+    octetString = x509crl.getExtensionValue(Extension.deltaCRLIndicator.getId());
+    if (octetString != null) {
+      extnValue = DEROctetString.getInstance(octetString).getOctets();
+      baseCrlNumber = ASN1Integer.getInstance(extnValue).getPositiveValue();
     }
-  } // method importRequests
 
-  private long importReqCerts(String entriesZipFile, long minId,
-      File processLogFile, ProcessLog processLog, int numProcessedInLastProcess,
-      PreparedStatement stmt, String sql) throws Exception {
-    final CaDbEntryType type = CaDbEntryType.REQCERT;
-    final int numEntriesPerCommit = Math.max(1,
-        Math.round(type.getSqlBatchFactor() * numCertsPerCommit));
+    int idx = 1;
+    stmt.setLong(idx++, crl.getId());
+    stmt.setInt(idx++, crl.getCaId());
+    stmt.setLong(idx++, crlNumber.longValue());
+    stmt.setLong(idx++, x509crl.getThisUpdate().getTime() / 1000);
+    if (x509crl.getNextUpdate() != null) {
+      stmt.setLong(idx++, x509crl.getNextUpdate().getTime() / 1000);
+    } else {
+      stmt.setNull(idx++, Types.INTEGER);
+    }
 
-    ZipFile zipFile = new ZipFile(new File(entriesZipFile));
-    ZipEntry entriesEntry = zipFile.getEntry("overview.json");
+    if (baseCrlNumber == null) {
+      setBoolean(stmt, idx++, false);
+      stmt.setNull(idx++, Types.BIGINT);
+    } else {
+      setBoolean(stmt, idx++, true);
+      stmt.setLong(idx++, baseCrlNumber.longValue());
+    }
 
-    CaCertstore.ReqCerts reqCerts;
+    stmt.setInt(idx++, crl.getCrlScope());
+    stmt.setString(idx++, Base64.encodeToString(encodedCrl));
+    return true;
+  } // method bindCrl
+
+  private static boolean bindRequest(PreparedStatement stmt, CaCertstore.Request request,
+      byte[] encodedRequest) throws SQLException {
+    int idx = 1;
+    stmt.setLong(idx++, request.getId());
+    stmt.setLong(idx++, request.getUpdate());
+    stmt.setString(idx++, Base64.encodeToString(encodedRequest));
+    return true;
+  } // method bindRequest
+
+  private static boolean bindReqCert(PreparedStatement stmt, CaCertstore.ReqCert reqCert)
+      throws SQLException {
+    int idx = 1;
+    stmt.setLong(idx++, reqCert.getId());
+    stmt.setLong(idx++, reqCert.getRid());
+    stmt.setLong(idx++, reqCert.getCid());
+    return true;
+  } // method bindReqCert
+
+  private boolean bind(PreparedStatement stmt, ImportEntry importEntry) throws Exception {
+    IdentifidDbObject entry = importEntry.entry;
     try {
-      reqCerts = JSON.parseObject(zipFile.getInputStream(entriesEntry), CaCertstore.ReqCerts.class);
-    } catch (Exception ex) {
-      try {
-        zipFile.close();
-      } catch (Exception e2) {
-        LOG.error("could not close ZIP file {}: {}", entriesZipFile, e2.getMessage());
-        LOG.debug("could not close ZIP file " + entriesZipFile, e2);
+      if (entry instanceof CaCertstore.Cert) {
+        return bindCert(stmt, (CaCertstore.Cert) entry, importEntry.content);
+      } else if (entry instanceof CaCertstore.Crl) {
+        return bindCrl(stmt, (CaCertstore.Crl) entry, importEntry.content);
+      } else if (entry instanceof CaCertstore.Request) {
+        return bindRequest(stmt, (CaCertstore.Request) entry, importEntry.content);
+      } else if (entry instanceof CaCertstore.ReqCert) {
+        return bindReqCert(stmt, (CaCertstore.ReqCert) entry);
+      } else {
+        throw new IllegalStateException("unknown entry " + entry.getClass().getName());
       }
+    } catch (SQLException ex) {
+      System.err.println("could not import entry with ID=" + entry.getId()
+          + ", message: " + ex.getMessage());
       throw ex;
     }
-    reqCerts.validate();
-
-    disableAutoCommit();
-
-    try {
-      int numEntriesInBatch = 0;
-      long lastSuccessfulEntryId = 0;
-
-      List<CaCertstore.ReqCert> list = reqCerts.getReqCerts();
-      final int n = list.size();
-
-      for (int i = 0; i < n; i++) {
-        CaCertstore.ReqCert reqCert = list.get(i);
-        if (stopMe.get()) {
-          throw new InterruptedException("interrupted by the user");
-        }
-
-        long id = reqCert.getId();
-        if (id < minId) {
-          continue;
-        }
-
-        numEntriesInBatch++;
-
-        try {
-          int idx = 1;
-          stmt.setLong(idx++, reqCert.getId());
-          stmt.setLong(idx++, reqCert.getRid());
-          stmt.setLong(idx++, reqCert.getCid());
-          stmt.addBatch();
-        } catch (SQLException ex) {
-          System.err.println("could not import REQUEST with ID=" + reqCert.getId()
-              + ", message: " + ex.getMessage());
-          throw ex;
-        }
-
-        boolean isLastBlock = i == n - 1;
-        if (numEntriesInBatch > 0
-            && (numEntriesInBatch % numEntriesPerCommit == 0 || isLastBlock)) {
-          try {
-            stmt.executeBatch();
-            commit("(commit import to CA)");
-          } catch (Throwable th) {
-            rollback();
-            deleteFromTableWithLargerId(type.getTableName(), "ID", id, LOG);
-            if (th instanceof SQLException) {
-              throw translate(sql, (SQLException) th);
-            } else if (th instanceof Exception) {
-              throw (Exception) th;
-            } else {
-              throw new Exception(th);
-            }
-          }
-
-          lastSuccessfulEntryId = id;
-          processLog.addNumProcessed(numEntriesInBatch);
-          numEntriesInBatch = 0;
-          echoToFile(type + ":" + (numProcessedInLastProcess + processLog.numProcessed()) + ":"
-              + lastSuccessfulEntryId, processLogFile);
-          processLog.printStatus();
-        }
-
-      } // end while
-
-      return lastSuccessfulEntryId;
-    } finally {
-      recoverAutoCommit();
-      zipFile.close();
-    }
-  } // method importReqCerts
+  } // method bind
 
 }
@@ -310,6 +310,8 @@ public class CaManagerImpl implements CaManager, Closeable {
 
   private CertStore certstore;
 
+  private KeypairPool keypairPool;
+
   private SecurityFactory securityFactory;
 
   private CaManagerQueryExecutor queryExecutor;
@@ -435,6 +437,31 @@ public class CaManagerImpl implements CaManager, Closeable {
       throw new CaMgmtException(ex.getMessage(), ex);
     }
 
+    CaServerConf.GroupCommit groupCommit = caServerConf.getGroupCommit();
+    if (groupCommit != null && groupCommit.isEnabled()) {
+      certstore.enableGroupCommit(groupCommit.getMaxBatchSize(), groupCommit.getMaxDelay());
+    }
+
+    CaServerConf.KeypairPoolConf keypairPoolConf = caServerConf.getKeypairPool();
+    if (keypairPool == null && keypairPoolConf != null && keypairPoolConf.isEnabled()) {
+      File file = null;
+      char[] password = null;
+      if (keypairPoolConf.getFile() != null) {
+        file = new File(IoUtil.expandFilepath(keypairPoolConf.getFile()));
+        try {
+          password = securityFactory.getPasswordResolver().resolvePassword(
+              keypairPoolConf.getPassword());
+        } catch (PasswordResolverException ex) {
+          throw new CaMgmtException("could not resolve the password of the keypair pool", ex);
+        }
+      }
+
+      keypairPool = new KeypairPool(keypairPoolConf.getDepth(), keypairPoolConf.getThreads(),
+          file, password);
+      LOG.info("keypair pool: depth {}, threads {}", keypairPoolConf.getDepth(),
+          keypairPoolConf.getThreads());
+    }
+
     initCaAliases();
     initCertprofiles();
     initPublishers();
@@ -526,6 +553,10 @@ public class CaManagerImpl implements CaManager, Closeable {
     publishersInitialized = false;
     casInitialized = false;
 
+    if (certstore != null) {
+      certstore.clearUserCache();
+    }
+
     shutdownScheduledThreadPoolExecutor();
   } // method reset
 
@@ -795,6 +826,15 @@ public class CaManagerImpl implements CaManager, Closeable {
       }
     }
 
+    if (certstore != null) {
+      certstore.close();
+    }
+
+    if (keypairPool != null) {
+      keypairPool.close();
+      keypairPool = null;
+    }
+
     if (datasource != null) {
       try {
         datasource.close();
@@ -830,6 +870,10 @@ public class CaManagerImpl implements CaManager, Closeable {
     return cmpResponders.get(Args.toNonBlankLower(name, "name"));
   }
 
+  KeypairPool getKeypairPool() {
+    return keypairPool;
+  }
+
   public ScheduledThreadPoolExecutor getScheduledThreadPoolExecutor() {
     return scheduledThreadPoolExecutor;
   }
@@ -1004,6 +1048,10 @@ public class CaManagerImpl implements CaManager, Closeable {
       if (profile != null) {
         dbEntry.setFaulty(false);
         certprofiles.put(name, profile);
+        if (keypairPool != null) {
+          // start generating the keypairs of this profile in the background
+          keypairPool.register(profile.getKeypairGenControl());
+        }
         LOG.info("loaded certprofile {}", name);
       } else {
         LOG.error("could not load certprofile {}", name);
@@ -1499,6 +1547,7 @@ public class CaManagerImpl implements CaManager, Closeable {
     assertMasterModeAndSetuped();
 
     queryExecutor.removeUserFromCa(userName, caName);
+    certstore.clearUserCache();
   } // method removeUserFromCa
 
   @Override
@@ -1512,6 +1561,7 @@ public class CaManagerImpl implements CaManager, Closeable {
     }
 
     queryExecutor.addUserToCa(user, ca.getCaIdent());
+    certstore.clearUserCache();
   } // method addUserToCa
 
   @Override
@@ -2353,12 +2403,14 @@ public class CaManagerImpl implements CaManager, Closeable {
   public void addUser(MgmtEntry.AddUser addUserEntry) throws CaMgmtException {
     assertMasterModeAndSetuped();
     queryExecutor.addUser(addUserEntry);
+    certstore.clearUserCache();
   }
 
   @Override
   public void changeUser(MgmtEntry.ChangeUser changeUserEntry) throws CaMgmtException {
     assertMasterModeAndSetuped();
     queryExecutor.changeUser(changeUserEntry);
+    certstore.clearUserCache();
   }
 
   @Override
@@ -2368,6 +2420,7 @@ public class CaManagerImpl implements CaManager, Closeable {
     if (!queryExecutor.deleteRowWithName(username, "TUSER")) {
       throw new CaMgmtException("unknown user " + username);
     }
+    certstore.clearUserCache();
   } // method removeUser
 
   @Override
@@ -112,12 +112,243 @@ public class CaServerConf extends ValidatableConf {
 
   } // class RemoteMgmt
 
+  /**
+   * Group commit of the certificates added by concurrent enrollments.
+   *
+   * @since 5.3.7
+   */
+  public static class GroupCommit extends ValidatableConf {
+
+    private boolean enabled;
+
+    /**
+     * maximal number of certificates written in one batch.
+     */
+    private int maxBatchSize = 100;
+
+    /**
+     * maximal time in milliseconds to wait for further certificates after the first one of
+     * a batch.
+     */
+    private int maxDelay = 5;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getMaxBatchSize() {
+      return maxBatchSize;
+    }
+
+    public void setMaxBatchSize(int maxBatchSize) {
+      this.maxBatchSize = maxBatchSize;
+    }
+
+    public int getMaxDelay() {
+      return maxDelay;
+    }
+
+    public void setMaxDelay(int maxDelay) {
+      this.maxDelay = maxDelay;
+    }
+
+    @Override
+    public void validate() throws InvalidConfException {
+      if (maxBatchSize < 1) {
+        throw new InvalidConfException("maxBatchSize is not positive");
+      }
+
+      if (maxDelay < 0) {
+        throw new InvalidConfException("maxDelay is negative");
+      }
+    }
+
+  } // class GroupCommit
+
+  /**
+   * Pool of the keypairs pre-generated for the certificates whose keypair is generated by
+   * the CA.
+   *
+   * @since 5.3.7
+   */
+  public static class KeypairPoolConf extends ValidatableConf {
+
+    private boolean enabled;
+
+    /**
+     * number of keypairs kept ready per key type, size and curve.
+     */
+    private int depth = 10;
+
+    /**
+     * number of threads generating the keypairs.
+     */
+    private int threads = 2;
+
+    /**
+     * file to save the pooled keypairs in when the CA is stopped. If not set, the pooled
+     * keypairs are discarded.
+     */
+    private String file;
+
+    /**
+     * password to encrypt the file, may be protected, e.g. PBE:... or OBF:...
+     */
+    private String password;
+
+    public boolean isEnabled() {
+      return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+      this.enabled = enabled;
+    }
+
+    public int getDepth() {
+      return depth;
+    }
+
+    public void setDepth(int depth) {
+      this.depth = depth;
+    }
+
+    public int getThreads() {
+      return threads;
+    }
+
+    public void setThreads(int threads) {
+      this.threads = threads;
+    }
+
+    public String getFile() {
+      return file;
+    }
+
+    public void setFile(String file) {
+      this.file = file;
+    }
+
+    public String getPassword() {
+      return password;
+    }
+
+    public void setPassword(String password) {
+      this.password = password;
+    }
+
+    @Override
+    public void validate() throws InvalidConfException {
+      if (depth < 1) {
+        throw new InvalidConfException("depth is not positive");
+      }
+
+      if (threads < 1) {
+        throw new InvalidConfException("threads is not positive");
+      }
+
+      if (file != null) {
+        notEmpty(password, "password");
+      }
+    }
+
+  } // class KeypairPoolConf
+
+  /**
+   * Drainer of the publish queue, which contains the certificates that could not be published.
+   *
+   * @since 5.3.7
+   */
+  public static class PublishQueueConf extends ValidatableConf {
+
+    /**
+     * number of threads publishing the certificates per publisher.
+     */
+    private int threads = 1;
+
+    /**
+     * maximal number of queue entries processed in one batch.
+     */
+    private int batchSize = 500;
+
+    /**
+     * number of retries to publish a certificate before it is left in the queue.
+     */
+    private int maxRetries = 3;
+
+    /**
+     * delay in milliseconds before the first retry, doubled for each further retry.
+     */
+    private int retryDelay = 1000;
+
+    public int getThreads() {
+      return threads;
+    }
+
+    public void setThreads(int threads) {
+      this.threads = threads;
+    }
+
+    public int getBatchSize() {
+      return batchSize;
+    }
+
+    public void setBatchSize(int batchSize) {
+      this.batchSize = batchSize;
+    }
+
+    public int getMaxRetries() {
+      return maxRetries;
+    }
+
+    public void setMaxRetries(int maxRetries) {
+      this.maxRetries = maxRetries;
+    }
+
+    public int getRetryDelay() {
+      return retryDelay;
+    }
+
+    public void setRetryDelay(int retryDelay) {
+      this.retryDelay = retryDelay;
+    }
+
+    @Override
+    public void validate() throws InvalidConfException {
+      if (threads < 1) {
+        throw new InvalidConfException("threads is not positive");
+      }
+
+      if (batchSize < 1) {
+        throw new InvalidConfException("batchSize is not positive");
+      }
+
+      if (maxRetries < 0) {
+        throw new InvalidConfException("maxRetries is negative");
+      }
+
+      if (retryDelay < 0) {
+        throw new InvalidConfException("retryDelay is negative");
+      }
+    }
+
+  } // class PublishQueueConf
+
   private AuditConf audit;
 
   private SecurityConf security;
 
   private RemoteMgmt remoteMgmt;
 
+  private GroupCommit groupCommit;
+
+  private KeypairPoolConf keypairPool;
+
+  private PublishQueueConf publishQueue;
+
   /**
    * master or slave, the default is master.
    */
@@ -223,6 +454,30 @@ public class CaServerConf extends ValidatableConf {
     this.remoteMgmt = remoteMgmt;
   }
 
+  public GroupCommit getGroupCommit() {
+    return groupCommit;
+  }
+
+  public void setGroupCommit(GroupCommit groupCommit) {
+    this.groupCommit = groupCommit;
+  }
+
+  public KeypairPoolConf getKeypairPool() {
+    return keypairPool;
+  }
+
+  public void setKeypairPool(KeypairPoolConf keypairPool) {
+    this.keypairPool = keypairPool;
+  }
+
+  public PublishQueueConf getPublishQueue() {
+    return publishQueue;
+  }
+
+  public void setPublishQueue(PublishQueueConf publishQueue) {
+    this.publishQueue = publishQueue;
+  }
+
   public List<String> getCertprofileFactories() {
     return certprofileFactories;
   }
@@ -261,6 +516,9 @@ public class CaServerConf extends ValidatableConf {
     notEmpty(datasources, "datasources");
     validate(remoteMgmt);
     validate(security);
+    validate(groupCommit);
+    validate(keypairPool);
+    validate(publishQueue);
   } // method validate
 
 }
@@ -20,6 +20,7 @@ package org.xipki.ca.server;
 import java.security.cert.CertificateException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
@@ -59,19 +60,19 @@ class CertRepublisher {
 
   } // class QueueEntry
 
-  private class SerialWithIdQueueEntry implements QueueEntry {
+  private class SerialWithIdsQueueEntry implements QueueEntry {
 
-    private final CertStore.SerialWithId serialWithId;
+    private final List<CertStore.SerialWithId> serialWithIds;
 
-    public SerialWithIdQueueEntry(CertStore.SerialWithId serialWithId) {
-      this.serialWithId = Args.notNull(serialWithId, "serialWithId");
+    public SerialWithIdsQueueEntry(List<CertStore.SerialWithId> serialWithIds) {
+      this.serialWithIds = Args.notEmpty(serialWithIds, "serialWithIds");
     }
 
-    public CertStore.SerialWithId serialWithId() {
-      return serialWithId;
+    public List<CertStore.SerialWithId> serialWithIds() {
+      return serialWithIds;
     }
 
-  } // class SerialWithIdQueueEntry
+  } // class SerialWithIdsQueueEntry
 
   private class CertRepublishProducer implements Runnable {
 
@@ -89,13 +90,17 @@ class CertRepublisher {
         List<CertStore.SerialWithId> serials;
         do {
           serials = certstore.getSerialNumbers(ca, startId, numEntries, onlyRevokedCerts);
+          if (serials.isEmpty()) {
+            break;
+          }
+
           long maxId = 1;
           for (CertStore.SerialWithId sid : serials) {
             if (sid.getId() > maxId) {
               maxId = sid.getId();
             }
-            queue.put(new SerialWithIdQueueEntry(sid));
           }
+          queue.put(new SerialWithIdsQueueEntry(serials));
 
           startId = maxId + 1;
         } while (serials.size() >= numEntries && !failed && !stopMe.get());
@@ -149,36 +154,58 @@ class CertRepublisher {
           break;
         }
 
-        CertStore.SerialWithId sid = ((SerialWithIdQueueEntry) entry).serialWithId();
-
-        CertificateInfo certInfo;
+        List<CertStore.SerialWithId> sids = ((SerialWithIdsQueueEntry) entry).serialWithIds();
+        List<Long> certIds = new ArrayList<>(sids.size());
+        for (CertStore.SerialWithId sid : sids) {
+          certIds.add(sid.getId());
+        }
 
+        Map<Long, CertificateInfo> certs;
         try {
-          certInfo = certstore.getCertForId(ca, caCert, sid.getId(), caIdNameMap);
+          certs = certstore.getCertsForIds(ca, caCert, certIds, caIdNameMap);
         } catch (OperationException | CertificateException ex) {
           LogUtil.error(LOG, ex);
           failed = true;
           break;
         }
 
+        List<CertificateInfo> certInfos = new ArrayList<>(certs.size());
+        List<CertificateInfo> revokedCertInfos = new ArrayList<>(certs.size());
+        for (Long certId : certIds) {
+          CertificateInfo certInfo = certs.get(certId);
+          if (certInfo == null) {
+            // certificate has been removed in the meantime
+            continue;
+          }
+
+          certInfos.add(certInfo);
+          if (certInfo.isRevoked()) {
+            revokedCertInfos.add(certInfo);
+          }
+        }
+
         boolean allSucc = true;
         for (IdentifiedCertPublisher publisher : publishers) {
-          if (!certInfo.isRevoked() && !publisher.publishsGoodCert()) {
+          List<CertificateInfo> toPublish =
+              publisher.publishsGoodCert() ? certInfos : revokedCertInfos;
+          if (toPublish.isEmpty()) {
             continue;
           }
 
-          boolean successful = publisher.certificateAdded(certInfo);
-          if (!successful) {
+          List<CertificateInfo> failedCertInfos = publisher.certificatesAdded(toPublish);
+          for (CertificateInfo certInfo : failedCertInfos) {
             LOG.error("republish certificate serial={} to publisher {} failed",
-                LogUtil.formatCsn(sid.getSerial()), publisher.getIdent());
+                LogUtil.formatCsn(certInfo.getCert().getCert().getSerialNumber()),
+                publisher.getIdent());
             allSucc = false;
           }
         }
 
         if (!allSucc) {
+          failed = true;
           break;
         }
-        processLog.addNumProcessed(1);
+        processLog.addNumProcessed(sids.size());
       }
     } // method run
 
@@ -193,6 +193,9 @@ public class CertStore {
   private static final String SQL_REMOVE_PUBLISHQUEUE =
       "DELETE FROM PUBLISHQUEUE WHERE PID=? AND CID=?";
 
+  private static final String SQL_CERTS_FOR_ID_RANGE =
+      "SELECT ID,PID,RID,REV,RR,RT,RIT,CERT FROM CERT WHERE ID>=? AND ID<=? AND CA_ID=?";
+
   private static final String SQL_MAXID_DELTACRL_CACHE =
       "SELECT MAX(ID) FROM DELTACRL_CACHE WHERE CA_ID=?";
 
@@ -259,6 +262,10 @@ public class CertStore {
 
   private final LruCache<Integer, String> cacheSqlCidFromPublishQueue = new LruCache<>(5);
 
+  private final UserCache userCache = new UserCache();
+
+  private final LruCache<Integer, String> cacheSqlCidFromPublishQueueFromId = new LruCache<>(5);
+
   private final LruCache<Integer, String> cacheSqlExpiredSerials = new LruCache<>(5);
 
   private final LruCache<Integer, String> cacheSqlSuspendedSerials = new LruCache<>(5);
@@ -282,6 +289,8 @@ public class CertStore {
 
   private final UniqueIdGenerator idGenerator;
 
+  private volatile GroupCommitWriter certWriter;
+
   public CertStore(DataSourceWrapper datasource, UniqueIdGenerator idGenerator)
       throws DataAccessException {
     this.datasource = Args.notNull(datasource, "datasource");
@@ -319,6 +328,34 @@ public class CertStore {
         "THISUPDATE,CRL FROM CRL WHERE CA_ID=? AND CRL_NO=?");
   } // constructor
 
+  /**
+   * Enables the group commit of the certificates added by concurrent threads.
+   *
+   * @param maxBatchSize
+   *          Maximal number of certificates written in one batch.
+   * @param maxDelayMs
+   *          Maximal time in milliseconds to wait for further certificates after the first one
+   *          of a batch.
+   */
+  public synchronized void enableGroupCommit(int maxBatchSize, int maxDelayMs) {
+    GroupCommitWriter oldWriter = certWriter;
+    certWriter = new GroupCommitWriter("certstore-group-commit", datasource, SQL_ADD_CERT,
+        maxBatchSize, maxDelayMs);
+    if (oldWriter != null) {
+      oldWriter.close();
+    }
+
+    LOG.info("enabled group commit of certificates, maxBatchSize={}, maxDelay={} ms",
+        maxBatchSize, maxDelayMs);
+  } // method enableGroupCommit
+
+  public synchronized void close() {
+    if (certWriter != null) {
+      certWriter.close();
+      certWriter = null;
+    }
+  } // method close
+
   private String buildSelectFirstSql(String coreSql) {
     return datasource.buildSelectFirstSql(1, coreSql);
   }
@@ -370,46 +407,63 @@ public class CertStore {
     String b64Cert = Base64.encodeToString(encodedCert);
     String tid = (transactionId == null) ? null : Base64.encodeToString(transactionId);
 
-    final String sql = SQL_ADD_CERT;
-    PreparedStatement ps = borrowPreparedStatement(sql);
-
-    try {
-      // cert
-      X509Certificate cert = certificate.getCert();
-      int idx = 1;
-      ps.setLong(idx++, certId);
-      ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
-      ps.setString(idx++, cert.getSerialNumber().toString(16));
-      ps.setString(idx++, subjectText);
-      ps.setLong(idx++, fpSubject);
-      setLong(ps, idx++, fpReqSubject);
-      ps.setLong(idx++, cert.getNotBefore().getTime() / 1000); // notBeforeSeconds
-      ps.setLong(idx++, cert.getNotAfter().getTime() / 1000); // notAfterSeconds
-      setBoolean(ps, idx++, false);
-      ps.setInt(idx++, certprofile.getId());
-      ps.setInt(idx++, ca.getId());
-      setInt(ps, idx++, requestor.getId());
-      setInt(ps, idx++, userId);
-      ps.setLong(idx++, fpPk);
-      boolean isEeCert = cert.getBasicConstraints() == -1;
-      ps.setInt(idx++, isEeCert ? 1 : 0);
-      ps.setInt(idx++, reqType.getCode());
-      ps.setString(idx++, tid);
-
-      ps.setString(idx++, b64FpCert);
-      ps.setString(idx++, reqSubjectText);
-      // in this version we set CRL_SCOPE to fixed value 0
-      ps.setInt(idx++, 0);
-      ps.setString(idx++, b64Cert);
+    final X509Certificate cert = certificate.getCert();
+    final long fpReqSubject0 = (fpReqSubject == null) ? 0 : fpReqSubject;
+    final boolean withFpReqSubject = fpReqSubject != null;
+    final String reqSubjectText0 = reqSubjectText;
+
+    GroupCommitWriter.ParameterSetter setter = new GroupCommitWriter.ParameterSetter() {
+
+      @Override
+      public void setParameters(PreparedStatement ps) throws SQLException {
+        // cert
+        int idx = 1;
+        ps.setLong(idx++, certId);
+        ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
+        ps.setString(idx++, cert.getSerialNumber().toString(16));
+        ps.setString(idx++, subjectText);
+        ps.setLong(idx++, fpSubject);
+        setLong(ps, idx++, withFpReqSubject ? fpReqSubject0 : null);
+        ps.setLong(idx++, cert.getNotBefore().getTime() / 1000); // notBeforeSeconds
+        ps.setLong(idx++, cert.getNotAfter().getTime() / 1000); // notAfterSeconds
+        setBoolean(ps, idx++, false);
+        ps.setInt(idx++, certprofile.getId());
+        ps.setInt(idx++, ca.getId());
+        setInt(ps, idx++, requestor.getId());
+        setInt(ps, idx++, userId);
+        ps.setLong(idx++, fpPk);
+        boolean isEeCert = cert.getBasicConstraints() == -1;
+        ps.setInt(idx++, isEeCert ? 1 : 0);
+        ps.setInt(idx++, reqType.getCode());
+        ps.setString(idx++, tid);
+
+        ps.setString(idx++, b64FpCert);
+        ps.setString(idx++, reqSubjectText0);
+        // in this version we set CRL_SCOPE to fixed value 0
+        ps.setInt(idx++, 0);
+        ps.setString(idx++, b64Cert);
+      }
 
-      ps.executeUpdate();
+    };
 
-      certificate.setCertId(certId);
-    } catch (SQLException ex) {
-      throw datasource.translate(null, ex);
-    } finally {
-      datasource.releaseResources(ps, null);
+    GroupCommitWriter writer = certWriter;
+    if (writer != null) {
+      // batched with the certificates added by other threads
+      writer.execute(setter);
+    } else {
+      final String sql = SQL_ADD_CERT;
+      PreparedStatement ps = borrowPreparedStatement(sql);
+      try {
+        setter.setParameters(ps);
+        ps.executeUpdate();
+      } catch (SQLException ex) {
+        throw datasource.translate(null, ex);
+      } finally {
+        datasource.releaseResources(ps, null);
+      }
     }
+
+    certificate.setCertId(certId);
   } // method addCert
 
   public void addToPublishQueue(NameId publisher, long certId, NameId ca)
@@ -444,6 +498,41 @@ public class CertStore {
     }
   } // method removeFromPublishQueue
 
+  /**
+   * Removes the given certificates from the publish queue of the publisher in one batch.
+   *
+   * @param publisher
+   *          Publisher. Must not be {@code null}.
+   * @param certIds
+   *          Database IDs of the certificates. Must not be {@code null}.
+   * @throws OperationException
+   *           if database error occurs.
+   * @since 5.3.7
+   */
+  public void removeFromPublishQueue(NameId publisher, List<Long> certIds)
+      throws OperationException {
+    Args.notNull(publisher, "publisher");
+    Args.notNull(certIds, "certIds");
+    if (certIds.isEmpty()) {
+      return;
+    }
+
+    final String sql = SQL_REMOVE_PUBLISHQUEUE;
+    PreparedStatement ps = borrowPreparedStatement(sql);
+    try {
+      for (Long certId : certIds) {
+        ps.setInt(1, publisher.getId());
+        ps.setLong(2, certId);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    } catch (SQLException ex) {
+      throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
+    } finally {
+      datasource.releaseResources(ps, null);
+    }
+  } // method removeFromPublishQueue
+
   public long getMaxIdOfDeltaCrlCache(NameId ca) throws OperationException {
     Args.notNull(ca, "ca");
 
@@ -884,6 +973,51 @@ public class CertStore {
     }
   } // method getPublishQueueEntries
 
+  /**
+   * Gets the database IDs of the certificates in the publish queue, in ascending order.
+   *
+   * @param ca
+   *          CA. Must not be {@code null}.
+   * @param publisher
+   *          Publisher. Must not be {@code null}.
+   * @param fromCertId
+   *          The minimal certificate ID (inclusive).
+   * @param numEntries
+   *          Maximal number of entries.
+   * @return the IDs of the certificates.
+   * @throws OperationException
+   *           if database error occurs.
+   * @since 5.3.7
+   */
+  public List<Long> getPublishQueueEntries(NameId ca, NameId publisher, long fromCertId,
+      int numEntries) throws OperationException {
+    final String sql = getSqlCidFromPublishQueueFromId(numEntries);
+    ResultSet rs = null;
+    PreparedStatement ps = borrowPreparedStatement(sql);
+
+    try {
+      ps.setInt(1, publisher.getId());
+      ps.setInt(2, ca.getId());
+      ps.setLong(3, fromCertId);
+      rs = ps.executeQuery();
+      List<Long> ret = new ArrayList<>();
+      long lastCertId = -1;
+      while (rs.next() && ret.size() < numEntries) {
+        long certId = rs.getLong("CID");
+        // the entries are sorted by CID
+        if (certId != lastCertId) {
+          ret.add(certId);
+          lastCertId = certId;
+        }
+      }
+      return ret;
+    } catch (SQLException ex) {
+      throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+  } // method getPublishQueueEntries
+
   public long getCountOfCerts(NameId ca, boolean onlyRevoked) throws OperationException {
     final String sql = onlyRevoked ? "SELECT COUNT(*) FROM CERT WHERE CA_ID=? AND REV=1"
                     : "SELECT COUNT(*) FROM CERT WHERE CA_ID=?";
@@ -1146,6 +1280,139 @@ public class CertStore {
       datasource.releaseResources(ps, rs);
     }
 
+    return buildCertInfo(ca, caCert, certId, b64Cert, certprofileId, requestorId, revoked,
+        revReason, revTime, revInvTime, idNameMap);
+  } // method getCertForId
+
+  /**
+   * Gets the certificates whose database ID is within the given range.
+   *
+   * @param ca
+   *          CA. Must not be {@code null}.
+   * @param caCert
+   *          Certificate of the CA. Must not be {@code null}.
+   * @param minCertId
+   *          Minimal certificate ID (inclusive).
+   * @param maxCertId
+   *          Maximal certificate ID (inclusive).
+   * @param idNameMap
+   *          CA ID name map. Must not be {@code null}.
+   * @return map of the certificate ID to the certificate.
+   * @throws OperationException
+   *           if database error occurs.
+   * @throws CertificateException
+   *           if a certificate could not be parsed.
+   * @since 5.3.7
+   */
+  public Map<Long, CertificateInfo> getCertsForIdRange(NameId ca, X509Cert caCert,
+      long minCertId, long maxCertId, CaIdNameMap idNameMap)
+          throws OperationException, CertificateException {
+    Args.notNull(ca, "ca");
+    Args.notNull(caCert, "caCert");
+    Args.notNull(idNameMap, "idNameMap");
+
+    final String sql = SQL_CERTS_FOR_ID_RANGE;
+
+    Map<Long, CertificateInfo> ret = new HashMap<>();
+    ResultSet rs = null;
+    PreparedStatement ps = borrowPreparedStatement(sql);
+    try {
+      ps.setLong(1, minCertId);
+      ps.setLong(2, maxCertId);
+      ps.setInt(3, ca.getId());
+      rs = ps.executeQuery();
+      while (rs.next()) {
+        long certId = rs.getLong("ID");
+        boolean revoked = rs.getBoolean("REV");
+        int revReason = 0;
+        long revTime = 0;
+        long revInvTime = 0;
+        if (revoked) {
+          revReason = rs.getInt("RR");
+          revTime = rs.getLong("RT");
+          revInvTime = rs.getLong("RIT");
+        }
+
+        ret.put(certId, buildCertInfo(ca, caCert, certId, rs.getString("CERT"),
+            rs.getInt("PID"), rs.getInt("RID"), revoked, revReason, revTime, revInvTime,
+            idNameMap));
+      }
+    } catch (SQLException ex) {
+      throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+
+    return ret;
+  } // method getCertsForIdRange
+
+  /**
+   * Gets the certificates with the given database IDs. Close IDs are read together with one
+   * range query, and single IDs are read one by one.
+   *
+   * @param ca
+   *          CA. Must not be {@code null}.
+   * @param caCert
+   *          Certificate of the CA. Must not be {@code null}.
+   * @param certIds
+   *          IDs of the certificates. Must not be {@code null}.
+   * @param idNameMap
+   *          CA ID name map. Must not be {@code null}.
+   * @return map of the certificate ID to the certificate. Certificates which do not exist are
+   *         not contained.
+   * @throws OperationException
+   *           if database error occurs.
+   * @throws CertificateException
+   *           if a certificate could not be parsed.
+   * @since 5.3.7
+   */
+  public Map<Long, CertificateInfo> getCertsForIds(NameId ca, X509Cert caCert,
+      List<Long> certIds, CaIdNameMap idNameMap)
+          throws OperationException, CertificateException {
+    Args.notNull(certIds, "certIds");
+
+    List<Long> sortedIds = new ArrayList<>(certIds);
+    Collections.sort(sortedIds);
+
+    // a range query shall not read much more certificates than requested.
+    final long maxSpan = 4L * Math.max(25, sortedIds.size());
+
+    Map<Long, CertificateInfo> ret = new HashMap<>();
+    int size = sortedIds.size();
+    int from = 0;
+    while (from < size) {
+      long minId = sortedIds.get(from);
+      int to = from + 1;
+      while (to < size && sortedIds.get(to) - minId < maxSpan) {
+        to++;
+      }
+
+      if (to - from == 1) {
+        CertificateInfo certInfo = getCertForId(ca, caCert, minId, idNameMap);
+        if (certInfo != null) {
+          ret.put(minId, certInfo);
+        }
+      } else {
+        Map<Long, CertificateInfo> certs =
+            getCertsForIdRange(ca, caCert, minId, sortedIds.get(to - 1), idNameMap);
+        for (int i = from; i < to; i++) {
+          Long certId = sortedIds.get(i);
+          CertificateInfo certInfo = certs.get(certId);
+          if (certInfo != null) {
+            ret.put(certId, certInfo);
+          }
+        }
+      }
+
+      from = to;
+    }
+
+    return ret;
+  } // method getCertsForIds
+
+  private static CertificateInfo buildCertInfo(NameId ca, X509Cert caCert, long certId,
+      String b64Cert, int certprofileId, int requestorId, boolean revoked, int revReason,
+      long revTime, long revInvTime, CaIdNameMap idNameMap) throws CertificateException {
     byte[] encodedCert = Base64.decodeFast(b64Cert);
     X509Certificate cert = X509Util.parseCert(encodedCert);
     CertWithDbId certWithMeta = new CertWithDbId(cert, encodedCert);
@@ -1162,7 +1429,7 @@ public class CertStore {
         new Date(revTime * 1000), invalidityTime);
     certInfo.setRevocationInfo(revInfo);
     return certInfo;
-  } // method getCertForId
+  } // method buildCertInfo
 
   public CertWithRevocationInfo getCertWithRevocationInfo(int caId, BigInteger serial,
       CaIdNameMap idNameMap) throws OperationException {
@@ -1531,6 +1798,12 @@ public class CertStore {
   } // method listCerts
 
   public NameId authenticateUser(String user, byte[] password) throws OperationException {
+    long cacheGeneration = userCache.getGeneration();
+    NameId ident = userCache.getAuthenticatedUser(user, password);
+    if (ident != null) {
+      return ident;
+    }
+
     final String sql = sqlActiveUserInfoForName;
 
     int id;
@@ -1559,8 +1832,13 @@ public class CertStore {
       return null;
     }
 
-    boolean valid = PasswordHash.validatePassword(password, expPasswordText);
-    return valid ? new NameId(id, user) : null;
+    if (!PasswordHash.validatePassword(password, expPasswordText)) {
+      return null;
+    }
+
+    ident = new NameId(id, user);
+    userCache.addAuthenticatedUser(ident, password, cacheGeneration);
+    return ident;
   } // method authenticateUser
 
   public String getUsername(int id) throws OperationException {
@@ -1586,6 +1864,12 @@ public class CertStore {
   } // method getUsername
 
   public MgmtEntry.CaHasUser getCaHasUser(NameId ca, NameId user) throws OperationException {
+    long cacheGeneration = userCache.getGeneration();
+    MgmtEntry.CaHasUser cached = userCache.getCaHasUser(ca, user);
+    if (cached != null) {
+      return cached;
+    }
+
     final String sql = sqlCaHasUser;
     ResultSet rs = null;
     PreparedStatement ps = borrowPreparedStatement(sql);
@@ -1605,6 +1889,7 @@ public class CertStore {
       MgmtEntry.CaHasUser entry = new MgmtEntry.CaHasUser(user);
       entry.setPermission(rs.getInt("PERMISSION"));
       entry.setProfiles(profiles);
+      userCache.addCaHasUser(ca, entry, cacheGeneration);
       return entry;
     } catch (SQLException ex) {
       throw new OperationException(DATABASE_FAILURE, datasource.translate(sql, ex).getMessage());
@@ -1613,6 +1898,16 @@ public class CertStore {
     }
   } // method getCaHasUser
 
+  /**
+   * Removes the cached user authentications and CA-has-user entries. Must be called after any
+   * user or CA-has-user has been changed.
+   *
+   * @since 5.3.7
+   */
+  public void clearUserCache() {
+    userCache.clear();
+  }
+
   public KnowCertResult knowsCertForSerial(NameId ca, BigInteger serial) throws OperationException {
     Args.notNull(serial, "serial");
     final String sql = sqlKnowsCertForSerial;
@@ -1951,6 +2246,16 @@ public class CertStore {
     return sql;
   } // method getSqlCidFromPublishQueue
 
+  private String getSqlCidFromPublishQueueFromId(int numEntries) {
+    String sql = cacheSqlCidFromPublishQueueFromId.get(numEntries);
+    if (sql == null) {
+      sql = datasource.buildSelectFirstSql(numEntries, "CID ASC",
+          "CID FROM PUBLISHQUEUE WHERE PID=? AND CA_ID=? AND CID>=?");
+      cacheSqlCidFromPublishQueueFromId.put(numEntries, sql);
+    }
+    return sql;
+  } // method getSqlCidFromPublishQueueFromId
+
   private String getSqlExpiredSerials(int numEntries) {
     String sql = cacheSqlExpiredSerials.get(numEntries);
     if (sql == null) {
@@ -0,0 +1,170 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.math.BigInteger;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.x509.CertificateList;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.Time;
+import org.xipki.security.HashAlgo;
+import org.xipki.util.Args;
+
+/**
+ * Cache of the DER-encoded current full CRL and delta CRL of a CA. The cached CRLs are
+ * immutable and served as they are, without parsing and re-encoding.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class CrlCache {
+
+  /**
+   * An encoded CRL with the fields required to serve it via HTTP.
+   */
+  public static class CachedCrl {
+
+    private final byte[] encoded;
+
+    private final BigInteger crlNumber;
+
+    private final boolean deltaCrl;
+
+    private final long thisUpdate;
+
+    private final Long nextUpdate;
+
+    private final String etag;
+
+    private CachedCrl(byte[] encoded) {
+      this.encoded = Args.notNull(encoded, "encoded");
+      CertificateList crl = CertificateList.getInstance(encoded);
+      this.thisUpdate = crl.getThisUpdate().getDate().getTime();
+      Time time = crl.getNextUpdate();
+      this.nextUpdate = (time == null) ? null : time.getDate().getTime();
+
+      Extensions extns = crl.getTBSCertList().getExtensions();
+      Extension extn = (extns == null) ? null : extns.getExtension(Extension.cRLNumber);
+      this.crlNumber = (extn == null) ? null
+          : ASN1Integer.getInstance(extn.getParsedValue()).getPositiveValue();
+      this.deltaCrl = (extns != null) && extns.getExtension(Extension.deltaCRLIndicator) != null;
+      // as recommended for the OCSP responses in RFC 5019
+      this.etag = "\"" + HashAlgo.SHA1.hexHash(encoded) + "\"";
+    }
+
+    /**
+     * Returns the DER-encoded CRL. The returned array must not be modified.
+     * @return the encoded CRL.
+     */
+    public byte[] getEncoded() {
+      return encoded;
+    }
+
+    public BigInteger getCrlNumber() {
+      return crlNumber;
+    }
+
+    public boolean isDeltaCrl() {
+      return deltaCrl;
+    }
+
+    public long getThisUpdate() {
+      return thisUpdate;
+    }
+
+    public Long getNextUpdate() {
+      return nextUpdate;
+    }
+
+    public String getEtag() {
+      return etag;
+    }
+
+  } // class CachedCrl
+
+  private volatile CachedCrl fullCrl;
+
+  private volatile CachedCrl deltaCrl;
+
+  /**
+   * Parses the encoded CRL and caches it if it is newer than the cached CRL of the same kind.
+   *
+   * @param encodedCrl
+   *          DER-encoded CRL. Must not be {@code null}.
+   * @return the cached CRL.
+   */
+  public CachedCrl put(byte[] encodedCrl) {
+    CachedCrl crl = new CachedCrl(encodedCrl);
+    synchronized (this) {
+      if (crl.deltaCrl) {
+        if (deltaCrl == null || deltaCrl.thisUpdate <= crl.thisUpdate) {
+          deltaCrl = crl;
+        }
+      } else {
+        if (fullCrl == null || fullCrl.thisUpdate <= crl.thisUpdate) {
+          fullCrl = crl;
+        }
+      }
+    }
+    return crl;
+  } // method put
+
+  /**
+   * Returns the current CRL, namely the cached CRL with the latest thisUpdate.
+   *
+   * @return the current CRL, or {@code null} if no CRL is cached.
+   */
+  public CachedCrl getCurrent() {
+    CachedCrl full = fullCrl;
+    CachedCrl delta = deltaCrl;
+    if (full == null) {
+      return delta;
+    } else if (delta == null) {
+      return full;
+    } else {
+      return (delta.thisUpdate > full.thisUpdate) ? delta : full;
+    }
+  } // method getCurrent
+
+  /**
+   * Returns the cached CRL with the given CRL number.
+   *
+   * @param crlNumber
+   *          CRL number. Must not be {@code null}.
+   * @return the CRL, or {@code null} if no CRL with the given number is cached.
+   */
+  public CachedCrl get(BigInteger crlNumber) {
+    Args.notNull(crlNumber, "crlNumber");
+    CachedCrl crl = fullCrl;
+    if (crl != null && crlNumber.equals(crl.crlNumber)) {
+      return crl;
+    }
+
+    crl = deltaCrl;
+    return (crl != null && crlNumber.equals(crl.crlNumber)) ? crl : null;
+  } // method get
+
+  public synchronized void clear() {
+    fullCrl = null;
+    deltaCrl = null;
+  }
+
+}
@@ -0,0 +1,222 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigInteger;
+import java.util.Date;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERTaggedObject;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.operator.ContentSigner;
+import org.xipki.util.Args;
+
+/**
+ * Builder of CRL which writes the revoked certificates to a temporary file as they are added,
+ * instead of keeping them in memory. The TBSCertList is streamed twice from this file: once to
+ * the signer and once to the encoded CRL.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+class CrlStreamBuilder implements Closeable {
+
+  private static final int TAG_SEQUENCE = 0x30;
+
+  private final X500Name issuer;
+
+  private final Date thisUpdate;
+
+  private final Date nextUpdate;
+
+  private final File entriesFile;
+
+  private OutputStream entriesOut;
+
+  private long entriesLength;
+
+  private long numEntries;
+
+  CrlStreamBuilder(X500Name issuer, Date thisUpdate, Date nextUpdate) throws IOException {
+    this.issuer = Args.notNull(issuer, "issuer");
+    this.thisUpdate = Args.notNull(thisUpdate, "thisUpdate");
+    this.nextUpdate = nextUpdate;
+    this.entriesFile = File.createTempFile("crl-entries-", ".tmp");
+    this.entriesOut = new BufferedOutputStream(new FileOutputStream(entriesFile), 65536);
+  }
+
+  long getNumEntries() {
+    return numEntries;
+  }
+
+  /**
+   * Adds a revoked certificate.
+   *
+   * @param serialNumber
+   *          Serial number of the certificate. Must not be {@code null}.
+   * @param revocationDate
+   *          Revocation date. Must not be {@code null}.
+   * @param extensions
+   *          CRL entry extensions. Could be {@code null}.
+   * @throws IOException
+   *           if the entry could not be written.
+   */
+  void addEntry(BigInteger serialNumber, Date revocationDate, Extensions extensions)
+      throws IOException {
+    ASN1Encodable[] fields = (extensions == null)
+        ? new ASN1Encodable[]{new ASN1Integer(serialNumber), new Time(revocationDate)}
+        : new ASN1Encodable[]{new ASN1Integer(serialNumber), new Time(revocationDate), extensions};
+    DERSequence entry = new DERSequence(fields);
+    byte[] encoded = entry.getEncoded(ASN1Encoding.DER);
+    entriesOut.write(encoded);
+    entriesLength += encoded.length;
+    numEntries++;
+  } // method addEntry
+
+  /**
+   * Builds the CRL.
+   *
+   * @param signer
+   *          Signer to sign the CRL. Must not be {@code null}.
+   * @param crlExtensions
+   *          CRL extensions. Could be {@code null}.
+   * @return the encoded CRL.
+   * @throws IOException
+   *           if error occurs while encoding or signing the CRL.
+   */
+  byte[] build(ContentSigner signer, Extensions crlExtensions) throws IOException {
+    Args.notNull(signer, "signer");
+    entriesOut.close();
+    entriesOut = null;
+
+    ByteArrayOutputStream prefixOut = new ByteArrayOutputStream();
+    // version v2
+    prefixOut.write(new ASN1Integer(1).getEncoded(ASN1Encoding.DER));
+    byte[] encodedSigAlgId = signer.getAlgorithmIdentifier().getEncoded(ASN1Encoding.DER);
+    prefixOut.write(encodedSigAlgId);
+    prefixOut.write(issuer.getEncoded(ASN1Encoding.DER));
+    prefixOut.write(new Time(thisUpdate).getEncoded(ASN1Encoding.DER));
+    if (nextUpdate != null) {
+      prefixOut.write(new Time(nextUpdate).getEncoded(ASN1Encoding.DER));
+    }
+    // revokedCertificates is absent if no certificate is revoked
+    if (numEntries > 0) {
+      writeHeader(prefixOut, TAG_SEQUENCE, entriesLength);
+    }
+    byte[] prefix = prefixOut.toByteArray();
+
+    byte[] suffix = (crlExtensions == null) ? new byte[0]
+        : new DERTaggedObject(true, 0, crlExtensions).getEncoded(ASN1Encoding.DER);
+
+    long tbsContentLength = prefix.length + entriesLength + suffix.length;
+
+    // sign the TBSCertList
+    OutputStream signerOut = signer.getOutputStream();
+    writeTbsCertList(signerOut, tbsContentLength, prefix, suffix);
+    signerOut.close();
+    byte[] encodedSignature = new DERBitString(signer.getSignature()).getEncoded(ASN1Encoding.DER);
+
+    // encode the CertificateList
+    long tbsLength = headerLength(tbsContentLength) + tbsContentLength;
+    long contentLength = tbsLength + encodedSigAlgId.length + encodedSignature.length;
+    long crlLength = headerLength(contentLength) + contentLength;
+    if (crlLength > Integer.MAX_VALUE - 8) {
+      throw new IOException("CRL too large: " + crlLength + " bytes");
+    }
+
+    ByteArrayOutputStream crlOut = new ByteArrayOutputStream((int) crlLength);
+    writeHeader(crlOut, TAG_SEQUENCE, contentLength);
+    writeTbsCertList(crlOut, tbsContentLength, prefix, suffix);
+    crlOut.write(encodedSigAlgId);
+    crlOut.write(encodedSignature);
+    return crlOut.toByteArray();
+  } // method build
+
+  @Override
+  public void close() {
+    if (entriesOut != null) {
+      try {
+        entriesOut.close();
+      } catch (IOException ex) { // CHECKSTYLE:SKIP
+      }
+      entriesOut = null;
+    }
+    entriesFile.delete();
+  }
+
+  private void writeTbsCertList(OutputStream out, long tbsContentLength, byte[] prefix,
+      byte[] suffix) throws IOException {
+    writeHeader(out, TAG_SEQUENCE, tbsContentLength);
+    out.write(prefix);
+
+    byte[] buffer = new byte[65536];
+    try (InputStream in = new BufferedInputStream(new FileInputStream(entriesFile))) {
+      int read;
+      while ((read = in.read(buffer)) != -1) {
+        out.write(buffer, 0, read);
+      }
+    }
+
+    out.write(suffix);
+  } // method writeTbsCertList
+
+  private static int headerLength(long contentLength) {
+    if (contentLength < 0x80) {
+      return 2;
+    }
+
+    int numLengthBytes = 0;
+    for (long len = contentLength; len != 0; len >>>= 8) {
+      numLengthBytes++;
+    }
+    return 2 + numLengthBytes;
+  } // method headerLength
+
+  private static void writeHeader(OutputStream out, int tag, long contentLength)
+      throws IOException {
+    out.write(tag);
+    if (contentLength < 0x80) {
+      out.write((int) contentLength);
+      return;
+    }
+
+    int numLengthBytes = headerLength(contentLength) - 2;
+    out.write(0x80 | numLengthBytes);
+    for (int i = numLengthBytes - 1; i >= 0; i--) {
+      out.write((int) (contentLength >>> (8 * i)));
+    }
+  } // method writeHeader
+
+}
@@ -0,0 +1,337 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.io.Closeable;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.util.Args;
+import org.xipki.util.LogUtil;
+
+/**
+ * Writer which coalesces the executions of one SQL statement by concurrent threads into
+ * JDBC batches, each committed in one transaction. Every caller waits until its own row has
+ * been committed, and gets its own result.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+class GroupCommitWriter implements Closeable {
+
+  /**
+   * Sets the parameters of the statement for one row.
+   */
+  interface ParameterSetter {
+
+    void setParameters(PreparedStatement ps) throws SQLException;
+
+  } // class ParameterSetter
+
+  private static class Request {
+
+    private final ParameterSetter setter;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private DataAccessException error;
+
+    Request(ParameterSetter setter) {
+      this.setter = setter;
+    }
+
+    synchronized void finish(DataAccessException error) {
+      // only the first result counts
+      if (done.getCount() != 0) {
+        this.error = error;
+        done.countDown();
+      }
+    }
+
+  } // class Request
+
+  private class Writer implements Runnable {
+
+    @Override
+    public void run() {
+      List<Request> batch = new ArrayList<>(maxBatchSize);
+      while (!stopped || !queue.isEmpty()) {
+        try {
+          Request first = queue.poll(1, TimeUnit.SECONDS);
+          if (first == null) {
+            continue;
+          }
+
+          batch.add(first);
+          long deadline = System.nanoTime() + maxDelayNanos;
+          while (batch.size() < maxBatchSize) {
+            Request next = queue.poll();
+            if (next == null) {
+              long remaining = deadline - System.nanoTime();
+              if (remaining <= 0) {
+                break;
+              }
+
+              next = queue.poll(remaining, TimeUnit.NANOSECONDS);
+              if (next == null) {
+                break;
+              }
+            }
+            batch.add(next);
+          }
+
+          write(batch);
+        } catch (InterruptedException ex) {
+          // stop waiting for further requests if interrupted, the requests taken so far are
+          // written with the remaining ones in the queue.
+          stopped = true;
+          queue.addAll(batch);
+        } catch (Throwable th) {
+          LogUtil.error(LOG, th, "error in group commit writer");
+          DataAccessException error = new DataAccessException(th.getMessage(), th);
+          for (Request request : batch) {
+            request.finish(error);
+          }
+        } finally {
+          batch.clear();
+        }
+      }
+    } // method run
+
+  } // class Writer
+
+  private static final Logger LOG = LoggerFactory.getLogger(GroupCommitWriter.class);
+
+  /**
+   * Maximal time in milliseconds a caller waits for its row to be taken by the writer.
+   */
+  private static final long MAX_WAIT_MS = 60000;
+
+  private final DataSourceWrapper datasource;
+
+  private final String sql;
+
+  private final int maxBatchSize;
+
+  private final long maxDelayNanos;
+
+  private final long maxWaitMs;
+
+  private final BlockingQueue<Request> queue = new LinkedBlockingQueue<>();
+
+  private final Thread writerThread;
+
+  private volatile boolean stopped;
+
+  /**
+   * Makes the adding of requests and the closing mutually exclusive, so that no request is
+   * added after the queue has been drained by {@link #close()}.
+   */
+  private final Object queueLock = new Object();
+
+  /**
+   * Constructor.
+   *
+   * @param name
+   *          Name of the writer thread. Must not be {@code null}.
+   * @param datasource
+   *          Datasource. Must not be {@code null}.
+   * @param sql
+   *          SQL statement. Must not be {@code null}.
+   * @param maxBatchSize
+   *          Maximal number of rows in one batch.
+   * @param maxDelayMs
+   *          Maximal time in milliseconds to wait for further rows after the first one of
+   *          a batch.
+   */
+  GroupCommitWriter(String name, DataSourceWrapper datasource, String sql, int maxBatchSize,
+      int maxDelayMs) {
+    this(name, datasource, sql, maxBatchSize, maxDelayMs, MAX_WAIT_MS);
+  }
+
+  GroupCommitWriter(String name, DataSourceWrapper datasource, String sql, int maxBatchSize,
+      int maxDelayMs, long maxWaitMs) {
+    this.maxWaitMs = Args.positive(maxWaitMs, "maxWaitMs");
+    this.datasource = Args.notNull(datasource, "datasource");
+    this.sql = Args.notBlank(sql, "sql");
+    this.maxBatchSize = Args.positive(maxBatchSize, "maxBatchSize");
+    this.maxDelayNanos =
+        TimeUnit.MILLISECONDS.toNanos(Args.notNegative(maxDelayMs, "maxDelayMs"));
+
+    this.writerThread = new Thread(new Writer(), Args.notBlank(name, "name"));
+    this.writerThread.setDaemon(true);
+    this.writerThread.start();
+  }
+
+  /**
+   * Executes the statement, and waits until the row has been committed.
+   *
+   * <p>A request is failed by the caller only after it has been removed from the queue, so that
+   * a failed row is never written. Once the writer has taken the request, the caller waits
+   * for its result as long as the writer is alive.
+   *
+   * @param setter
+   *          Setter of the parameters. Must not be {@code null}.
+   * @throws DataAccessException
+   *           if the row could not be written.
+   */
+  void execute(ParameterSetter setter) throws DataAccessException {
+    Request request = new Request(Args.notNull(setter, "setter"));
+    synchronized (queueLock) {
+      if (stopped) {
+        throw new DataAccessException("group commit writer has been closed");
+      }
+      queue.add(request);
+    }
+
+    // the row may be committed even after an interrupt, wait for the result
+    boolean interrupted = false;
+    long deadline = System.currentTimeMillis() + maxWaitMs;
+    while (true) {
+      try {
+        if (request.done.await(1, TimeUnit.SECONDS)) {
+          break;
+        }
+      } catch (InterruptedException ex) {
+        interrupted = true;
+      }
+
+      if (!writerThread.isAlive()) {
+        // the writer finishes every request taken from the queue before it terminates
+        queue.remove(request);
+        request.finish(new DataAccessException("group commit writer has been stopped"));
+      } else if (System.currentTimeMillis() > deadline && queue.remove(request)) {
+        request.finish(new DataAccessException(
+            "timeout while waiting for the group commit, the row has not been written"));
+      }
+    }
+
+    if (interrupted) {
+      Thread.currentThread().interrupt();
+    }
+
+    DataAccessException error;
+    synchronized (request) {
+      error = request.error;
+    }
+
+    if (error != null) {
+      throw error;
+    }
+  } // method execute
+
+  @Override
+  public void close() {
+    synchronized (queueLock) {
+      stopped = true;
+    }
+
+    try {
+      writerThread.join(5000);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    // fail the requests which have not been written
+    Request request;
+    while ((request = queue.poll()) != null) {
+      request.finish(new DataAccessException("group commit writer has been closed"));
+    }
+  } // method close
+
+  private void write(List<Request> batch) throws DataAccessException {
+    Connection conn = datasource.getConnection();
+    try {
+      boolean autoCommit = conn.getAutoCommit();
+      conn.setAutoCommit(false);
+      try {
+        try {
+          executeBatch(conn, batch);
+          conn.commit();
+        } catch (SQLException ex) {
+          conn.rollback();
+          if (batch.size() == 1) {
+            batch.get(0).finish(datasource.translate(sql, ex));
+            return;
+          }
+
+          // execute the rows one by one, so that each caller gets its own result
+          LOG.info("could not write batch of {} rows, retry them one by one: {}",
+              batch.size(), ex.getMessage());
+          for (Request request : batch) {
+            try {
+              execute(conn, request);
+              conn.commit();
+              request.finish(null);
+            } catch (SQLException ex2) {
+              conn.rollback();
+              request.finish(datasource.translate(sql, ex2));
+            }
+          }
+          return;
+        }
+      } finally {
+        conn.setAutoCommit(autoCommit);
+      }
+
+      for (Request request : batch) {
+        request.finish(null);
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      datasource.returnConnection(conn);
+    }
+  } // method write
+
+  private void executeBatch(Connection conn, List<Request> batch) throws SQLException {
+    PreparedStatement ps = conn.prepareStatement(sql);
+    try {
+      for (Request request : batch) {
+        request.setter.setParameters(ps);
+        ps.addBatch();
+      }
+      ps.executeBatch();
+    } finally {
+      ps.close();
+    }
+  } // method executeBatch
+
+  private void execute(Connection conn, Request request) throws SQLException {
+    PreparedStatement ps = conn.prepareStatement(sql);
+    try {
+      request.setter.setParameters(ps);
+      ps.executeUpdate();
+    } finally {
+      ps.close();
+    }
+  } // method execute
+
+}
@@ -0,0 +1,521 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.security.GeneralSecurityException;
+import java.security.InvalidAlgorithmParameterException;
+import java.security.KeyFactory;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.security.NoSuchProviderException;
+import java.security.PrivateKey;
+import java.security.PublicKey;
+import java.security.SecureRandom;
+import java.security.spec.DSAParameterSpec;
+import java.security.spec.ECGenParameterSpec;
+import java.security.spec.PKCS8EncodedKeySpec;
+import java.security.spec.RSAKeyGenParameterSpec;
+import java.security.spec.X509EncodedKeySpec;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.bouncycastle.asn1.ASN1Encodable;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.ASN1OctetString;
+import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.DERUTF8String;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ca.api.profile.KeypairGenControl;
+import org.xipki.password.PBEAlgo;
+import org.xipki.password.PasswordBasedEncryption;
+import org.xipki.security.EdECConstants;
+import org.xipki.security.HashAlgo;
+import org.xipki.security.SignerPoolMetrics.Histogram;
+import org.xipki.util.Args;
+import org.xipki.util.IoUtil;
+import org.xipki.util.LogUtil;
+
+/**
+ * Pool of pre-generated keypairs for the certificates whose keypair is generated by the CA.
+ * There is one pool per key specification (type, size, curve). Background threads keep up to
+ * {@code depth} keypairs ready for each key specification which has been requested once.
+ * If the pool of a key specification is empty, the keypair is generated by the calling thread.
+ *
+ * <p>Unlike {@code KeyUtil}, the keypair generators are not shared, so that the keypairs can
+ * be generated concurrently.
+ *
+ * <p>Optionally the pooled keypairs are saved encrypted in a file when the pool is closed,
+ * and are loaded when the pool is created. The file is deleted once it has been loaded, so
+ * that no keypair is issued twice.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+class KeypairPool implements Closeable {
+
+  private static class Entry {
+
+    private final String spec;
+
+    private final ConcurrentLinkedQueue<KeyPair> keypairs = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger size = new AtomicInteger();
+
+    private volatile KeypairGenControl control;
+
+    Entry(String spec) {
+      this.spec = spec;
+    }
+
+  } // class Entry
+
+  private static class RefillTask {
+
+    private final Entry entry;
+
+    private final long requestedAtNanos;
+
+    RefillTask(Entry entry) {
+      this.entry = entry;
+      this.requestedAtNanos = System.nanoTime();
+    }
+
+  } // class RefillTask
+
+  private class Worker implements Runnable {
+
+    private final SecureRandom random = new SecureRandom();
+
+    @Override
+    public void run() {
+      while (!closed) {
+        RefillTask task;
+        try {
+          task = tasks.poll(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+          break;
+        }
+
+        if (task == null) {
+          continue;
+        }
+
+        Entry entry = task.entry;
+        KeypairGenControl control = entry.control;
+        if (control == null || entry.size.get() >= depth) {
+          continue;
+        }
+
+        try {
+          KeyPair keypair = generateKeypair(control, random);
+          entry.keypairs.add(keypair);
+          entry.size.incrementAndGet();
+          refillLag.record(System.nanoTime() - task.requestedAtNanos);
+        } catch (Throwable th) {
+          LogUtil.error(LOG, th, "could not generate keypair " + entry.spec);
+        }
+      }
+    } // method run
+
+  } // class Worker
+
+  private static final Logger LOG = LoggerFactory.getLogger(KeypairPool.class);
+
+  private static final int FILE_VERSION = 1;
+
+  private static final int PBE_ITERATION_COUNT = 10000;
+
+  private final ConcurrentHashMap<String, Entry> entries = new ConcurrentHashMap<>();
+
+  private final LinkedBlockingQueue<RefillTask> tasks = new LinkedBlockingQueue<>();
+
+  private final int depth;
+
+  private final File file;
+
+  private final char[] password;
+
+  private final List<Thread> workers;
+
+  private final AtomicLong hits = new AtomicLong();
+
+  private final AtomicLong misses = new AtomicLong();
+
+  private final Histogram refillLag = new Histogram();
+
+  private volatile boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param depth
+   *          Number of keypairs kept ready per key specification.
+   * @param threads
+   *          Number of threads generating the keypairs.
+   * @param file
+   *          File to save the pooled keypairs in. {@code null} if the keypairs shall not be
+   *          saved.
+   * @param password
+   *          Password to encrypt the file. Must not be {@code null} if file is not
+   *          {@code null}.
+   */
+  KeypairPool(int depth, int threads, File file, char[] password) {
+    this.depth = Args.positive(depth, "depth");
+    Args.positive(threads, "threads");
+    this.file = file;
+    this.password = (file == null) ? null : Args.notNull(password, "password");
+
+    if (file != null && file.exists()) {
+      try {
+        load();
+      } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+        LogUtil.error(LOG, ex, "could not load the keypairs from " + file.getPath());
+      }
+    }
+
+    this.workers = new ArrayList<>(threads);
+    for (int i = 0; i < threads; i++) {
+      Thread thread = new Thread(new Worker(), "keypair-pool-" + (i + 1));
+      thread.setDaemon(true);
+      thread.start();
+      workers.add(thread);
+    }
+  } // constructor
+
+  /**
+   * Registers the key specification of the given control, so that keypairs are generated in
+   * the background before they are requested.
+   *
+   * @param control
+   *          Control of the keypair generation.
+   */
+  void register(KeypairGenControl control) {
+    String spec = getSpec(control);
+    if (spec != null) {
+      getEntry(spec, control);
+    }
+  } // method register
+
+  /**
+   * Takes a keypair from the pool. If the pool is empty, a new keypair is generated.
+   *
+   * @param control
+   *          Control of the keypair generation. Must not be {@code null}.
+   * @param random
+   *          Random to generate the keypair if the pool is empty.
+   * @return the keypair.
+   * @throws NoSuchAlgorithmException
+   *           If the key algorithm is not supported.
+   * @throws NoSuchProviderException
+   *           If the provider BC is not available.
+   * @throws InvalidAlgorithmParameterException
+   *           If the control is invalid.
+   */
+  KeyPair take(KeypairGenControl control, SecureRandom random)
+      throws NoSuchAlgorithmException, NoSuchProviderException,
+        InvalidAlgorithmParameterException {
+    Args.notNull(control, "control");
+    String spec = getSpec(control);
+    if (spec == null || closed) {
+      return generateKeypair(control, random);
+    }
+
+    Entry entry = getEntry(spec, control);
+    KeyPair keypair = entry.keypairs.poll();
+    if (keypair != null) {
+      entry.size.decrementAndGet();
+      hits.incrementAndGet();
+      tasks.add(new RefillTask(entry));
+      return keypair;
+    }
+
+    misses.incrementAndGet();
+    return generateKeypair(control, random);
+  } // method take
+
+  Map<String, Object> toMap() {
+    long numHits = hits.get();
+    long numTotal = numHits + misses.get();
+
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("depth", depth);
+    map.put("hits", numHits);
+    map.put("misses", numTotal - numHits);
+    map.put("hitRate", (numTotal == 0) ? 0 : numHits * 100 / numTotal);
+    map.put("refillLag", refillLag.toMap());
+
+    Map<String, Integer> available = new LinkedHashMap<>();
+    for (Entry entry : entries.values()) {
+      available.put(entry.spec, entry.size.get());
+    }
+    map.put("available", available);
+    return map;
+  } // method toMap
+
+  @Override
+  public String toString() {
+    return toMap().toString();
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+
+    closed = true;
+    for (Thread worker : workers) {
+      worker.interrupt();
+    }
+
+    for (Thread worker : workers) {
+      try {
+        worker.join(5000);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    LOG.info("close keypair pool: {}", this);
+    if (file != null) {
+      try {
+        save();
+      } catch (IOException | GeneralSecurityException | RuntimeException ex) {
+        LogUtil.error(LOG, ex, "could not save the keypairs to " + file.getPath());
+      }
+    }
+
+    entries.clear();
+    tasks.clear();
+  } // method close
+
+  private Entry getEntry(String spec, KeypairGenControl control) {
+    Entry entry = entries.get(spec);
+    if (entry == null) {
+      Entry newEntry = new Entry(spec);
+      entry = entries.putIfAbsent(spec, newEntry);
+      if (entry == null) {
+        entry = newEntry;
+      }
+    }
+
+    if (entry.control == null) {
+      synchronized (entry) {
+        if (entry.control == null) {
+          entry.control = control;
+          for (int i = entry.size.get(); i < depth; i++) {
+            tasks.add(new RefillTask(entry));
+          }
+          LOG.info("added keypair pool {}", spec);
+        }
+      }
+    }
+
+    return entry;
+  } // method getEntry
+
+  /**
+   * Returns the key specification of the control, {@code null} if the keypairs of the control
+   * are not pooled.
+   */
+  private static String getSpec(KeypairGenControl control) {
+    if (control instanceof KeypairGenControl.RSAKeypairGenControl) {
+      KeypairGenControl.RSAKeypairGenControl tkg = (KeypairGenControl.RSAKeypairGenControl) control;
+      return "RSA/" + tkg.getKeysize() + "/" + tkg.getPublicExponent().toString(16);
+    } else if (control instanceof KeypairGenControl.ECKeypairGenControl) {
+      return "EC/" + ((KeypairGenControl.ECKeypairGenControl) control).getCurveOid().getId();
+    } else if (control instanceof KeypairGenControl.DSAKeypairGenControl) {
+      DSAParameterSpec params =
+          ((KeypairGenControl.DSAKeypairGenControl) control).getParameterSpec();
+      BigInteger p = params.getP();
+      return "DSA/" + p.bitLength() + "/" + HashAlgo.SHA1.hexHash(p.toByteArray(),
+          params.getQ().toByteArray(), params.getG().toByteArray());
+    } else if (control instanceof KeypairGenControl.EDDSAKeypairGenControl) {
+      return ((KeypairGenControl.EDDSAKeypairGenControl) control).getKeyAlgorithm()
+          .getAlgorithm().getId();
+    } else {
+      return null;
+    }
+  } // method getSpec
+
+  /**
+   * Generates a new keypair with a keypair generator which is not shared with other threads.
+   *
+   * @param control
+   *          Control of the keypair generation. Must not be {@code null}.
+   * @param random
+   *          Random. Must not be {@code null}.
+   * @return the keypair.
+   * @throws NoSuchAlgorithmException
+   *           If the key algorithm is not supported.
+   * @throws NoSuchProviderException
+   *           If the provider BC is not available.
+   * @throws InvalidAlgorithmParameterException
+   *           If the control is invalid.
+   */
+  static KeyPair generateKeypair(KeypairGenControl control, SecureRandom random)
+      throws NoSuchAlgorithmException, NoSuchProviderException,
+        InvalidAlgorithmParameterException {
+    KeyPairGenerator kpGen;
+    if (control instanceof KeypairGenControl.RSAKeypairGenControl) {
+      KeypairGenControl.RSAKeypairGenControl tkg = (KeypairGenControl.RSAKeypairGenControl) control;
+      kpGen = KeyPairGenerator.getInstance("RSA", "BC");
+      kpGen.initialize(new RSAKeyGenParameterSpec(tkg.getKeysize(), tkg.getPublicExponent()),
+          random);
+    } else if (control instanceof KeypairGenControl.ECKeypairGenControl) {
+      KeypairGenControl.ECKeypairGenControl tkg = (KeypairGenControl.ECKeypairGenControl) control;
+      kpGen = KeyPairGenerator.getInstance("EC", "BC");
+      kpGen.initialize(new ECGenParameterSpec(tkg.getCurveOid().getId()), random);
+    } else if (control instanceof KeypairGenControl.DSAKeypairGenControl) {
+      kpGen = KeyPairGenerator.getInstance("DSA", "BC");
+      kpGen.initialize(((KeypairGenControl.DSAKeypairGenControl) control).getParameterSpec(),
+          random);
+    } else if (control instanceof KeypairGenControl.EDDSAKeypairGenControl) {
+      KeypairGenControl.EDDSAKeypairGenControl tkg =
+          (KeypairGenControl.EDDSAKeypairGenControl) control;
+      String algorithm = EdECConstants.getName(tkg.getKeyAlgorithm().getAlgorithm());
+      if (algorithm == null) {
+        throw new InvalidAlgorithmParameterException(
+            "unknown EdDSA key algorithm " + tkg.getKeyAlgorithm().getAlgorithm().getId());
+      }
+      kpGen = KeyPairGenerator.getInstance(algorithm, "BC");
+      kpGen.initialize(EdECConstants.getKeyBitSize(tkg.getKeyAlgorithm().getAlgorithm()), random);
+    } else {
+      throw new InvalidAlgorithmParameterException("unknown KeypairGenControl " + control);
+    }
+
+    return kpGen.generateKeyPair();
+  } // method generateKeypair
+
+  /*
+   * File ::= SEQUENCE {
+   *     version              INTEGER,
+   *     iterationCount       INTEGER,
+   *     salt                 OCTET STRING,
+   *     encryptedEntries     OCTET STRING } -- PBE encrypted DER encoded Entries
+   *
+   * Entries ::= SEQUENCE OF SEQUENCE {
+   *     spec                 UTF8String,
+   *     keypairs             SEQUENCE OF Keypair }
+   *
+   * Keypair ::= SEQUENCE {
+   *     algorithm            UTF8String,
+   *     privateKey           OCTET STRING, -- PKCS#8 PrivateKeyInfo
+   *     publicKey            OCTET STRING } -- SubjectPublicKeyInfo
+   */
+
+  private void save() throws IOException, GeneralSecurityException {
+    ASN1EncodableVector vecEntries = new ASN1EncodableVector();
+    int count = 0;
+    for (Entry entry : entries.values()) {
+      ASN1EncodableVector vecKeypairs = new ASN1EncodableVector();
+      KeyPair keypair;
+      while ((keypair = entry.keypairs.poll()) != null) {
+        vecKeypairs.add(new DERSequence(new ASN1Encodable[] {
+            new DERUTF8String(keypair.getPrivate().getAlgorithm()),
+            new DEROctetString(keypair.getPrivate().getEncoded()),
+            new DEROctetString(keypair.getPublic().getEncoded())}));
+        count++;
+      }
+
+      if (vecKeypairs.size() > 0) {
+        vecEntries.add(new DERSequence(new ASN1Encodable[] {
+            new DERUTF8String(entry.spec), new DERSequence(vecKeypairs)}));
+      }
+    }
+
+    if (count == 0) {
+      return;
+    }
+
+    byte[] salt = new byte[32];
+    new SecureRandom().nextBytes(salt);
+    byte[] encrypted = PasswordBasedEncryption.encrypt(PBEAlgo.PBEWithHmacSHA256AndAES_256,
+        new DERSequence(vecEntries).getEncoded(), password, PBE_ITERATION_COUNT, salt);
+
+    byte[] encoded = new DERSequence(new ASN1Encodable[] {
+        new ASN1Integer(FILE_VERSION), new ASN1Integer(PBE_ITERATION_COUNT),
+        new DEROctetString(salt), new DEROctetString(encrypted)}).getEncoded();
+    IoUtil.save(file, encoded);
+    LOG.info("saved {} keypairs to {}", count, file.getPath());
+  } // method save
+
+  private void load() throws IOException, GeneralSecurityException {
+    byte[] encoded = IoUtil.read(file);
+    // make sure that the keypairs are not loaded again after a crash
+    if (!file.delete()) {
+      throw new IOException("could not delete file " + file.getPath());
+    }
+
+    ASN1Sequence seq = ASN1Sequence.getInstance(encoded);
+    int version = ASN1Integer.getInstance(seq.getObjectAt(0)).getValue().intValue();
+    if (version != FILE_VERSION) {
+      throw new IOException("unknown version " + version);
+    }
+
+    int iterationCount = ASN1Integer.getInstance(seq.getObjectAt(1)).getValue().intValue();
+    byte[] salt = ASN1OctetString.getInstance(seq.getObjectAt(2)).getOctets();
+    byte[] encrypted = ASN1OctetString.getInstance(seq.getObjectAt(3)).getOctets();
+    byte[] plain = PasswordBasedEncryption.decrypt(PBEAlgo.PBEWithHmacSHA256AndAES_256,
+        encrypted, password, iterationCount, salt);
+
+    int count = 0;
+    for (ASN1Encodable asn1Entry : ASN1Sequence.getInstance(plain)) {
+      ASN1Sequence seqEntry = ASN1Sequence.getInstance(asn1Entry);
+      Entry entry = new Entry(DERUTF8String.getInstance(seqEntry.getObjectAt(0)).getString());
+      for (ASN1Encodable asn1Keypair : ASN1Sequence.getInstance(seqEntry.getObjectAt(1))) {
+        if (entry.size.get() >= depth) {
+          break;
+        }
+
+        ASN1Sequence seqKeypair = ASN1Sequence.getInstance(asn1Keypair);
+        KeyFactory kf = KeyFactory.getInstance(
+            DERUTF8String.getInstance(seqKeypair.getObjectAt(0)).getString(), "BC");
+        PrivateKey privateKey = kf.generatePrivate(new PKCS8EncodedKeySpec(
+            ASN1OctetString.getInstance(seqKeypair.getObjectAt(1)).getOctets()));
+        PublicKey publicKey = kf.generatePublic(new X509EncodedKeySpec(
+            ASN1OctetString.getInstance(seqKeypair.getObjectAt(2)).getOctets()));
+        entry.keypairs.add(new KeyPair(publicKey, privateKey));
+        entry.size.incrementAndGet();
+        count++;
+      }
+      entries.put(entry.spec, entry);
+    }
+
+    LOG.info("loaded {} keypairs from {}", count, file.getPath());
+  } // method load
+
+}
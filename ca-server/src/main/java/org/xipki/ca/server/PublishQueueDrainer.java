@@ -0,0 +1,355 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.security.cert.CertificateException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ca.api.CertificateInfo;
+import org.xipki.ca.api.NameId;
+import org.xipki.ca.api.OperationException;
+import org.xipki.security.X509Cert;
+import org.xipki.util.Args;
+import org.xipki.util.LogUtil;
+
+/**
+ * Publishes the certificates in the publish queue of a publisher. The queue entries are read
+ * in batches by several threads, the certificates of a batch are read with range queries and
+ * published with one call of {@link IdentifiedCertPublisher#certificatesAdded(List)}, and the
+ * published entries are removed from the queue in one batch. A certificate which could not be
+ * published is retried with backoff and then left in the queue.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+class PublishQueueDrainer {
+
+  private static class Batch {
+
+    private final List<Long> certIds;
+
+    private Batch(List<Long> certIds) {
+      this.certIds = certIds;
+    }
+
+  } // class Batch
+
+  private class DrainProducer implements Runnable {
+
+    @Override
+    public void run() {
+      try {
+        long fromId = 0;
+        while (!stopMe.get()) {
+          List<Long> certIds = certstore.getPublishQueueEntries(ca, publisher.getIdent(), fromId,
+              batchSize);
+          if (certIds.isEmpty()) {
+            break;
+          }
+
+          put(new Batch(certIds));
+
+          if (certIds.size() < batchSize) {
+            break;
+          }
+          fromId = certIds.get(certIds.size() - 1) + 1;
+        }
+      } catch (OperationException ex) {
+        LogUtil.error(LOG, ex, "could not read PUBLISHQUEUE");
+        failed.set(true);
+        stopMe.set(true);
+      } catch (InterruptedException ex) {
+        LogUtil.error(LOG, ex, "interrupted");
+        failed.set(true);
+        stopMe.set(true);
+      }
+
+      try {
+        put(END_OF_QUEUE);
+      } catch (InterruptedException ex) {
+        LogUtil.warn(LOG, ex, "could not add EndOfQueue to queue");
+        stopMe.set(true);
+      }
+    } // method run
+
+    private void put(Batch batch) throws InterruptedException {
+      // the consumers do not take entries anymore if stopMe is set.
+      while (!queue.offer(batch, 1, TimeUnit.SECONDS)) {
+        if (stopMe.get()) {
+          return;
+        }
+      }
+    } // method put
+
+  } // class DrainProducer
+
+  private class DrainConsumer implements Runnable {
+
+    @Override
+    public void run() {
+      while (!stopMe.get()) {
+        Batch batch;
+        try {
+          batch = queue.poll(1, TimeUnit.SECONDS);
+        } catch (InterruptedException ex) {
+          LogUtil.error(LOG, ex, "could not take from queue");
+          stopMe.set(true);
+          break;
+        }
+
+        if (batch == null) {
+          continue;
+        } else if (batch == END_OF_QUEUE) {
+          // re-add it to queue so that other consumers know it
+          queue.offer(batch);
+          break;
+        }
+
+        process(batch);
+      }
+    } // method run
+
+    private void process(Batch batch) {
+      List<Long> certIds = batch.certIds;
+      Map<Long, CertificateInfo> certs;
+      try {
+        certs = certstore.getCertsForIds(ca, caCert, certIds, caIdNameMap);
+      } catch (OperationException | CertificateException ex) {
+        LogUtil.error(LOG, ex, "could not read certificates");
+        failed.set(true);
+        stopMe.set(true);
+        return;
+      }
+
+      List<Long> processedIds = new ArrayList<>(certIds.size());
+      List<CertificateInfo> certInfos = new ArrayList<>(certs.size());
+      for (Long certId : certIds) {
+        CertificateInfo certInfo = certs.get(certId);
+        if (certInfo == null) {
+          LOG.warn("certificate id={} does not exist, remove it from PUBLISHQUEUE", certId);
+          processedIds.add(certId);
+        } else {
+          certInfos.add(certInfo);
+        }
+      }
+
+      List<CertificateInfo> failedCertInfos;
+      if (certInfos.isEmpty()) {
+        failedCertInfos = Collections.emptyList();
+      } else {
+        try {
+          failedCertInfos = publisher.certificatesAdded(certInfos);
+        } catch (RuntimeException ex) {
+          LogUtil.warn(LOG, ex, "could not publish " + certInfos.size()
+              + " certificates to the publisher " + publisher.getIdent());
+          failedCertInfos = certInfos;
+        }
+      }
+
+      Set<Long> failedIds = new HashSet<>();
+      for (CertificateInfo certInfo : failedCertInfos) {
+        failedIds.add(certInfo.getCert().getCertId());
+      }
+
+      for (CertificateInfo certInfo : certInfos) {
+        long certId = certInfo.getCert().getCertId();
+        if (!failedIds.contains(certId)) {
+          processedIds.add(certId);
+          numPublished.incrementAndGet();
+          consecutiveFailures.set(0);
+        }
+      }
+
+      for (CertificateInfo certInfo : failedCertInfos) {
+        if (stopMe.get()) {
+          break;
+        }
+
+        long certId = certInfo.getCert().getCertId();
+        if (retryPublish(certInfo, certId)) {
+          processedIds.add(certId);
+          numPublished.incrementAndGet();
+          consecutiveFailures.set(0);
+        } else {
+          numFailed.incrementAndGet();
+          if (consecutiveFailures.incrementAndGet() >= MAX_CONSECUTIVE_FAILURES) {
+            LOG.error("publishing {} certificates in sequence to publisher {} failed, "
+                + "stop processing the PUBLISHQUEUE", MAX_CONSECUTIVE_FAILURES,
+                publisher.getIdent().getName());
+            stopMe.set(true);
+          }
+        }
+      }
+
+      try {
+        certstore.removeFromPublishQueue(publisher.getIdent(), processedIds);
+      } catch (OperationException ex) {
+        // the entries will be published again
+        LogUtil.warn(LOG, ex, "could not remove published certificates from PUBLISHQUEUE");
+      }
+    } // method process
+
+    private boolean retryPublish(CertificateInfo certInfo, long certId) {
+      // the first try has been done within the batch
+      for (int i = 1; i <= maxRetries; i++) {
+        long delay = Math.min(MAX_RETRY_DELAY, (long) retryDelay << (i - 1));
+        try {
+          Thread.sleep(delay);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          return false;
+        }
+
+        try {
+          if (publisher.certificateAdded(certInfo)) {
+            return true;
+          }
+        } catch (RuntimeException ex) {
+          LogUtil.warn(LOG, ex, "could not publish certificate id=" + certId
+              + " to the publisher " + publisher.getIdent());
+        }
+
+        if (stopMe.get()) {
+          break;
+        }
+      }
+
+      LOG.error("publishing certificate id={} to publisher {} failed, keep it in PUBLISHQUEUE",
+          certId, publisher.getIdent().getName());
+      return false;
+    } // method retryPublish
+
+  } // class DrainConsumer
+
+  private static final Logger LOG = LoggerFactory.getLogger(PublishQueueDrainer.class);
+
+  private static final Batch END_OF_QUEUE = new Batch(Collections.<Long>emptyList());
+
+  /**
+   * If so many certificates in sequence could not be published, the publisher is regarded as
+   * unavailable. The remaining entries will be processed in the next run.
+   */
+  private static final int MAX_CONSECUTIVE_FAILURES = 10;
+
+  private static final long MAX_RETRY_DELAY = 60000;
+
+  private static final long STATUS_LOG_INTERVAL = 60000;
+
+  private final NameId ca;
+
+  private final X509Cert caCert;
+
+  private final CaIdNameMap caIdNameMap;
+
+  private final CertStore certstore;
+
+  private final IdentifiedCertPublisher publisher;
+
+  private final int numThreads;
+
+  private final int batchSize;
+
+  private final int maxRetries;
+
+  private final int retryDelay;
+
+  private final BlockingQueue<Batch> queue;
+
+  private final AtomicBoolean stopMe = new AtomicBoolean(false);
+
+  private final AtomicBoolean failed = new AtomicBoolean(false);
+
+  private final AtomicInteger consecutiveFailures = new AtomicInteger(0);
+
+  private final AtomicLong numPublished = new AtomicLong(0);
+
+  private final AtomicLong numFailed = new AtomicLong(0);
+
+  PublishQueueDrainer(NameId ca, X509Cert caCert, CaIdNameMap caIdNameMap, CertStore certstore,
+      IdentifiedCertPublisher publisher, CaServerConf.PublishQueueConf conf) {
+    this.ca = Args.notNull(ca, "ca");
+    this.caCert = Args.notNull(caCert, "caCert");
+    this.caIdNameMap = Args.notNull(caIdNameMap, "caIdNameMap");
+    this.certstore = Args.notNull(certstore, "certstore");
+    this.publisher = Args.notNull(publisher, "publisher");
+    Args.notNull(conf, "conf");
+    this.numThreads = Args.positive(conf.getThreads(), "conf.threads");
+    this.batchSize = Args.positive(conf.getBatchSize(), "conf.batchSize");
+    this.maxRetries = Args.notNegative(conf.getMaxRetries(), "conf.maxRetries");
+    this.retryDelay = Args.notNegative(conf.getRetryDelay(), "conf.retryDelay");
+    this.queue = new ArrayBlockingQueue<>(2 * numThreads);
+  } // constructor
+
+  /**
+   * Publishes the certificates in the publish queue.
+   *
+   * @return whether all certificates in the queue have been published.
+   */
+  boolean drain() {
+    String name = publisher.getIdent().getName();
+    ExecutorService executor = Executors.newFixedThreadPool(numThreads + 1);
+    executor.execute(new DrainProducer());
+    for (int i = 0; i < numThreads; i++) {
+      executor.execute(new DrainConsumer());
+    }
+    executor.shutdown();
+
+    long nextStatusLog = System.currentTimeMillis() + STATUS_LOG_INTERVAL;
+    while (true) {
+      try {
+        if (executor.awaitTermination(1, TimeUnit.SECONDS)) {
+          break;
+        }
+      } catch (InterruptedException ex) {
+        stopMe.set(true);
+        LogUtil.warn(LOG, ex, "interrupted: " + ex.getMessage());
+      }
+
+      if (System.currentTimeMillis() > nextStatusLog) {
+        LOG.info("publishing certificates in PUBLISHQUEUE of CA {} to publisher {}: "
+            + "published {}, failed {}", ca.getName(), name, numPublished.get(),
+            numFailed.get());
+        nextStatusLog = System.currentTimeMillis() + STATUS_LOG_INTERVAL;
+      }
+    }
+
+    boolean successful = !failed.get() && !stopMe.get() && numFailed.get() == 0;
+    if (numPublished.get() > 0 || !successful) {
+      LOG.info("published certificates in PUBLISHQUEUE of CA {} to publisher {}: "
+          + "published {}, failed {}", ca.getName(), name, numPublished.get(), numFailed.get());
+    }
+    return successful;
+  } // method drain
+
+}
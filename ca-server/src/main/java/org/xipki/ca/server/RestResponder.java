@@ -26,9 +26,15 @@ import java.io.EOFException;
 import java.math.BigInteger;
 import java.security.cert.X509CRL;
 import java.security.cert.X509Certificate;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
 
@@ -53,6 +59,7 @@ import org.xipki.ca.api.RestAPIConstants;
 import org.xipki.ca.api.mgmt.CaStatus;
 import org.xipki.ca.api.mgmt.PermissionConstants;
 import org.xipki.ca.api.mgmt.RequestorInfo;
+import org.xipki.ca.server.CrlCache.CachedCrl;
 import org.xipki.ca.server.cmp.CmpResponder;
 import org.xipki.security.CrlReason;
 import org.xipki.security.X509Cert;
@@ -168,6 +175,8 @@ public class RestResponder {
 
   private static final int OK = 200;
 
+  private static final int NOT_MODIFIED = 304;
+
   private static final int BAD_REQUEST = 400;
 
   private static final int UNAUTHORIZED = 401;
@@ -184,6 +193,10 @@ public class RestResponder {
 
   private static final Logger LOG = LoggerFactory.getLogger(RestResponder.class);
 
+  private static final DateTimeFormatter HTTP_DATE_FORMATTER =
+      DateTimeFormatter.ofPattern("EEE, dd MMM yyyy HH:mm:ss 'GMT'", Locale.US)
+        .withZone(ZoneOffset.UTC);
+
   private final CaManagerImpl responderManager;
 
   public RestResponder(CaManagerImpl responderManager) {
@@ -527,15 +540,20 @@ public class RestResponder {
           }
         }
 
-        X509CRL crl = ca.getCrl(crlNumber);
+        CachedCrl crl = ca.getEncodedCrl(crlNumber);
         if (crl == null) {
           String message = "could not get CRL";
           LOG.warn(message);
           throw new HttpRespAuditException(INTERNAL_SERVER_ERROR, message, INFO, FAILED);
         }
 
-        respCt = RestAPIConstants.CT_pkix_crl;
-        respBytes = crl.getEncoded();
+        Map<String, String> headers = new HashMap<>();
+        headers.put(RestAPIConstants.HEADER_PKISTATUS, RestAPIConstants.PKISTATUS_accepted);
+        addCacheHeaders(headers, crl);
+        if (isNotModified(httpRetriever, crl)) {
+          return new RestResponse(NOT_MODIFIED, null, headers, null);
+        }
+        return new RestResponse(OK, RestAPIConstants.CT_pkix_crl, headers, crl.getEncoded());
       } else if (RestAPIConstants.CMD_new_crl.equalsIgnoreCase(command)) {
         try {
           requestor.assertPermitted(PermissionConstants.GEN_CRL);
@@ -670,6 +688,70 @@ public class RestResponder {
     }
   } // method service
 
+  /**
+   * Adds the HTTP cache headers of the CRL, similar to those of the OCSP responses in RFC 5019.
+   */
+  private static void addCacheHeaders(Map<String, String> headers, CachedCrl crl) {
+    long now = System.currentTimeMillis();
+    headers.put("Date", formatHttpDate(now));
+    headers.put("Last-Modified", formatHttpDate(crl.getThisUpdate()));
+    headers.put("ETag", crl.getEtag());
+
+    // Max age must be in seconds in the cache-control header
+    long maxAge = 0;
+    if (crl.getNextUpdate() != null) {
+      long nextUpdate = crl.getNextUpdate().longValue();
+      headers.put("Expires", formatHttpDate(nextUpdate));
+      maxAge = Math.max(0, (nextUpdate - now) / 1000);
+    }
+    headers.put("Cache-Control", StringUtil.concat("max-age=", Long.toString(maxAge),
+        ",public,no-transform,must-revalidate"));
+  } // method addCacheHeaders
+
+  /**
+   * Evaluates the conditional headers If-None-Match and If-Modified-Since as specified in
+   * RFC 7232.
+   */
+  private static boolean isNotModified(HttpRequestMetadataRetriever httpRetriever,
+      CachedCrl crl) {
+    String ifNoneMatch = httpRetriever.getHeader("If-None-Match");
+    if (ifNoneMatch != null) {
+      // If-Modified-Since is ignored if If-None-Match is present
+      for (String token : ifNoneMatch.split(",")) {
+        String tag = token.trim();
+        if (tag.startsWith("W/")) {
+          tag = tag.substring(2);
+        }
+
+        if ("*".equals(tag) || crl.getEtag().equals(tag)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    String ifModifiedSince = httpRetriever.getHeader("If-Modified-Since");
+    if (ifModifiedSince == null) {
+      return false;
+    }
+
+    long since;
+    try {
+      since = ZonedDateTime.parse(ifModifiedSince.trim(), DateTimeFormatter.RFC_1123_DATE_TIME)
+          .toInstant().toEpochMilli();
+    } catch (DateTimeParseException ex) {
+      LOG.debug("ignore invalid If-Modified-Since '{}'", ifModifiedSince);
+      return false;
+    }
+
+    // HTTP dates have the precision of seconds
+    return crl.getThisUpdate() / 1000 <= since / 1000;
+  } // method isNotModified
+
+  private static String formatHttpDate(long millis) {
+    return HTTP_DATE_FORMATTER.format(Instant.ofEpochMilli(millis));
+  }
+
   private static BigInteger toBigInt(String str) {
     String tmpStr = str.trim();
     if (tmpStr.startsWith("0x") || tmpStr.startsWith("0X")) {
@@ -0,0 +1,224 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xipki.ca.server;
+
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+
+import org.xipki.ca.api.NameId;
+import org.xipki.ca.api.mgmt.MgmtEntry;
+import org.xipki.security.HashAlgo;
+import org.xipki.util.Args;
+import org.xipki.util.LruCache;
+
+/**
+ * Cache of the successfully verified user credentials and of the CA-has-user entries. It
+ * avoids the database queries and the expensive password hash verification for clients
+ * which authenticate on every request. The entries expire after a short time, so that
+ * changes of other CA instances sharing the database become effective.
+ *
+ * <p>The entries are read from the database without holding any lock. To prevent that an entry
+ * read before {@link #clear()} is added afterwards, the caller gets the generation via
+ * {@link #getGeneration()} before reading the database, and passes it when adding the entry.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+class UserCache {
+
+  private static class AuthEntry {
+
+    private final NameId ident;
+
+    private final byte[] passwordDigest;
+
+    private final long expiresAt;
+
+    private AuthEntry(NameId ident, byte[] passwordDigest, long expiresAt) {
+      this.ident = ident;
+      this.passwordDigest = passwordDigest;
+      this.expiresAt = expiresAt;
+    }
+
+  } // class AuthEntry
+
+  private static class CaHasUserEntry {
+
+    private final MgmtEntry.CaHasUser caHasUser;
+
+    private final long expiresAt;
+
+    private CaHasUserEntry(MgmtEntry.CaHasUser caHasUser, long expiresAt) {
+      this.caHasUser = caHasUser;
+      this.expiresAt = expiresAt;
+    }
+
+  } // class CaHasUserEntry
+
+  private static final int DFLT_MAX_SIZE = 1000;
+
+  private static final long DFLT_TTL = 60 * 1000L; // 1 minute
+
+  private final LruCache<String, AuthEntry> authCache;
+
+  private final LruCache<String, CaHasUserEntry> caHasUserCache;
+
+  private final long ttl;
+
+  /**
+   * Incremented by {@link #clear()}.
+   */
+  private volatile long generation;
+
+  /**
+   * Random salt of the password digests, so that the cached digests cannot be used to check
+   * passwords outside this instance.
+   */
+  private final byte[] salt = new byte[16];
+
+  UserCache() {
+    this(DFLT_MAX_SIZE, DFLT_TTL);
+  }
+
+  UserCache(int maxSize, long ttl) {
+    this.authCache = new LruCache<>(maxSize);
+    this.caHasUserCache = new LruCache<>(maxSize);
+    this.ttl = Args.positive(ttl, "ttl");
+    new SecureRandom().nextBytes(salt);
+  }
+
+  /**
+   * Gets the identifier of the user if the same password has been verified recently.
+   *
+   * @param user
+   *          Name of the user. Must not be {@code null}.
+   * @param password
+   *          Password. Must not be {@code null}.
+   * @return the identifier of the user, or {@code null} if not cached.
+   */
+  NameId getAuthenticatedUser(String user, byte[] password) {
+    AuthEntry entry = authCache.get(user);
+    if (entry == null) {
+      return null;
+    }
+
+    if (entry.expiresAt < System.currentTimeMillis()) {
+      authCache.remove(user);
+      return null;
+    }
+
+    return MessageDigest.isEqual(entry.passwordDigest, digest(password))
+        ? copy(entry.ident) : null;
+  } // method getAuthenticatedUser
+
+  /**
+   * Gets the current generation of the cache.
+   *
+   * @return the current generation.
+   */
+  long getGeneration() {
+    return generation;
+  }
+
+  /**
+   * Adds the verified user credential.
+   *
+   * @param ident
+   *          Identifier of the user. Must not be {@code null}.
+   * @param password
+   *          Verified password. Must not be {@code null}.
+   * @param generation
+   *          Generation of the cache before the user has been read from the database. The entry
+   *          is not added if the cache has been cleared since then.
+   */
+  synchronized void addAuthenticatedUser(NameId ident, byte[] password, long generation) {
+    if (generation != this.generation) {
+      return;
+    }
+
+    authCache.put(ident.getName(),
+        new AuthEntry(copy(ident), digest(password), System.currentTimeMillis() + ttl));
+  } // method addAuthenticatedUser
+
+  MgmtEntry.CaHasUser getCaHasUser(NameId ca, NameId user) {
+    String key = caHasUserKey(ca, user);
+    CaHasUserEntry entry = caHasUserCache.get(key);
+    if (entry == null) {
+      return null;
+    }
+
+    if (entry.expiresAt < System.currentTimeMillis()) {
+      caHasUserCache.remove(key);
+      return null;
+    }
+
+    return copy(entry.caHasUser);
+  } // method getCaHasUser
+
+  /**
+   * Adds the CA-has-user entry.
+   *
+   * @param ca
+   *          Identifier of the CA. Must not be {@code null}.
+   * @param caHasUser
+   *          CA-has-user entry. Must not be {@code null}.
+   * @param generation
+   *          Generation of the cache before the entry has been read from the database. The
+   *          entry is not added if the cache has been cleared since then.
+   */
+  synchronized void addCaHasUser(NameId ca, MgmtEntry.CaHasUser caHasUser, long generation) {
+    if (generation != this.generation) {
+      return;
+    }
+
+    caHasUserCache.put(caHasUserKey(ca, caHasUser.getUserIdent()),
+        new CaHasUserEntry(copy(caHasUser), System.currentTimeMillis() + ttl));
+  } // method addCaHasUser
+
+  /**
+   * Removes all cached entries. To be called after any user or CA-has-user has been changed.
+   */
+  synchronized void clear() {
+    generation++;
+    authCache.evictAll();
+    caHasUserCache.evictAll();
+  } // method clear
+
+  private byte[] digest(byte[] password) {
+    return HashAlgo.SHA256.hash(salt, password);
+  }
+
+  // NameId and CaHasUser are mutable, the cached ones are never passed to the callers
+  private static NameId copy(NameId ident) {
+    return new NameId(ident.getId(), ident.getName());
+  }
+
+  private static MgmtEntry.CaHasUser copy(MgmtEntry.CaHasUser caHasUser) {
+    MgmtEntry.CaHasUser ret = new MgmtEntry.CaHasUser(copy(caHasUser.getUserIdent()));
+    ret.setPermission(caHasUser.getPermission());
+    ret.setProfiles(caHasUser.getProfiles());
+    return ret;
+  } // method copy
+
+  private static String caHasUserKey(NameId ca, NameId user) {
+    return ca.getId() + ":" + user.getId();
+  }
+
+}
@@ -93,6 +93,7 @@ import org.bouncycastle.asn1.x509.CertificateList;
 import org.bouncycastle.asn1.x509.DistributionPointName;
 import org.bouncycastle.asn1.x509.Extension;
 import org.bouncycastle.asn1.x509.Extensions;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
 import org.bouncycastle.asn1.x509.GeneralName;
 import org.bouncycastle.asn1.x509.GeneralNames;
 import org.bouncycastle.asn1.x509.IssuingDistributionPoint;
@@ -138,6 +139,7 @@ import org.xipki.ca.api.profile.CertprofileException;
 import org.xipki.ca.api.profile.ExtensionValue;
 import org.xipki.ca.api.profile.ExtensionValues;
 import org.xipki.ca.api.profile.KeypairGenControl;
+import org.xipki.ca.server.CrlCache.CachedCrl;
 import org.xipki.security.CertRevocationInfo;
 import org.xipki.security.ConcurrentBagEntrySigner;
 import org.xipki.security.ConcurrentContentSigner;
@@ -438,6 +440,8 @@ public class X509Ca implements Closeable {
 
   private AtomicBoolean crlGenInProcess = new AtomicBoolean(false);
 
+  private final CrlCache crlCache = new CrlCache();
+
   private ScheduledFuture<?> crlGenerationService;
 
   private ScheduledFuture<?> expiredCertsRemover;
@@ -621,13 +625,13 @@ public class X509Ca implements Closeable {
     boolean successful = false;
 
     try {
-      byte[] encodedCrl = certstore.getEncodedCrl(caIdent, crlNumber);
-      if (encodedCrl == null) {
+      CachedCrl cachedCrl = getEncodedCrl0(crlNumber);
+      if (cachedCrl == null) {
         return null;
       }
 
       try {
-        X509CRL crl = X509Util.parseCrl(encodedCrl);
+        X509CRL crl = X509Util.parseCrl(cachedCrl.getEncoded());
         successful = true;
         if (LOG.isInfoEnabled()) {
           String timeStr = new Time(crl.getThisUpdate()).getTime();
@@ -655,13 +659,13 @@ public class X509Ca implements Closeable {
     boolean successful = false;
 
     try {
-      byte[] encodedCrl = certstore.getEncodedCrl(caIdent, crlNumber);
-      if (encodedCrl == null) {
+      CachedCrl cachedCrl = getEncodedCrl0(crlNumber);
+      if (cachedCrl == null) {
         return null;
       }
 
       try {
-        CertificateList crl = CertificateList.getInstance(encodedCrl);
+        CertificateList crl = CertificateList.getInstance(cachedCrl.getEncoded());
         successful = true;
         if (LOG.isInfoEnabled()) {
           LOG.info("SUCCESSFUL getCrl: ca={}, thisUpdate={}", caIdent.getName(),
@@ -676,7 +680,54 @@ public class X509Ca implements Closeable {
         LOG.info("    FAILED getCrl: ca={}", caIdent.getName());
       }
     }
-  } // method getCrl
+  } // method getBcCrl
+
+  /**
+   * Returns the DER-encoded CRL without parsing it.
+   *
+   * @param crlNumber
+   *          CRL number. {@code null} for the current CRL.
+   * @return the CRL, or {@code null} if the specified CRL does not exist.
+   * @throws OperationException
+   *           if the CRL could not be retrieved.
+   * @since 5.3.7
+   */
+  public CachedCrl getEncodedCrl(BigInteger crlNumber) throws OperationException {
+    LOG.info("     START getEncodedCrl: ca={}, crlNumber={}", caIdent.getName(), crlNumber);
+    CachedCrl crl = getEncodedCrl0(crlNumber);
+    if (crl == null) {
+      LOG.info("    FAILED getEncodedCrl: ca={}", caIdent.getName());
+    } else {
+      LOG.info("SUCCESSFUL getEncodedCrl: ca={}, crlNumber={}", caIdent.getName(),
+          crl.getCrlNumber());
+    }
+    return crl;
+  } // method getEncodedCrl
+
+  private CachedCrl getEncodedCrl0(BigInteger crlNumber) throws OperationException {
+    CachedCrl crl;
+    if (crlNumber != null) {
+      crl = crlCache.get(crlNumber);
+    } else {
+      // Only the master generates CRLs, the cached current CRL may be outdated in the slaves.
+      crl = masterMode ? crlCache.getCurrent() : null;
+    }
+
+    if (crl != null) {
+      return crl;
+    }
+
+    byte[] encodedCrl = certstore.getEncodedCrl(caIdent, crlNumber);
+    if (encodedCrl == null) {
+      return null;
+    }
+
+    try {
+      return crlCache.put(encodedCrl);
+    } catch (RuntimeException ex) {
+      throw new OperationException(SYSTEM_FAILURE, ex);
+    }
+  } // method getEncodedCrl0
 
   private void cleanupCrlsWithoutException(String msgId) throws OperationException {
     try {
@@ -786,6 +837,7 @@ public class X509Ca implements Closeable {
     }
 
     boolean successful = false;
+    CrlStreamBuilder crlBuilder = null;
 
     try {
       SignerEntryWrapper crlSigner = getCrlSigner();
@@ -794,12 +846,7 @@ public class X509Ca implements Closeable {
       boolean indirectCrl = (crlSigner != null);
       X500Name crlIssuer = indirectCrl ? crlSigner.getSubjectAsX500Name() : pci.getX500Subject();
 
-      X509v2CRLBuilder crlBuilder = new X509v2CRLBuilder(crlIssuer, thisUpdate);
-      if (nextUpdate != null) {
-        crlBuilder.setNextUpdate(nextUpdate);
-      }
-
-      final int numEntries = 100;
+      final int numEntries = control.getPageSize();
 
       Date notExpireAt;
       if (control.isIncludeExpiredCerts()) {
@@ -809,10 +856,13 @@ public class X509Ca implements Closeable {
         notExpireAt = new Date(thisUpdate.getTime() - 600L * MS_PER_SECOND);
       }
 
-      long startId = 1;
+      // the revoked certificates are written to a temporary file page by page, in the order
+      // of their IDs, instead of being kept in memory.
+      crlBuilder = new CrlStreamBuilder(crlIssuer, thisUpdate, nextUpdate);
 
-      // we have to cache the serial entries to sort them
-      List<CertRevInfoWithSerial> allRevInfos = new LinkedList<>();
+      long startId = 1;
+      boolean isFirstCrlEntry = true;
+      CrlControl crlControl = caInfo.getCrlControl();
 
       List<CertRevInfoWithSerial> revInfos;
 
@@ -824,84 +874,60 @@ public class X509Ca implements Closeable {
           revInfos = certstore.getRevokedCerts(caIdent, notExpireAt, startId, numEntries,
               control.isOnlyContainsCaCerts(), control.isOnlyContainsUserCerts());
         }
-        allRevInfos.addAll(revInfos);
 
         long maxId = 1;
         for (CertRevInfoWithSerial revInfo : revInfos) {
           if (revInfo.getId() > maxId) {
             maxId = revInfo.getId();
           }
-        } // end for
-        startId = maxId + 1;
-      } while (revInfos.size() >= numEntries); // end do
-
-      if (revInfos != null) { // free the memory
-        revInfos.clear();
-      }
-
-      // sort the list by SerialNumber ASC
-      Collections.sort(allRevInfos);
-
-      boolean isFirstCrlEntry = true;
-      CrlControl crlControl = caInfo.getCrlControl();
-
-      for (CertRevInfoWithSerial revInfo : allRevInfos) {
-        CrlReason reason = revInfo.getReason();
-        if (crlControl.isExcludeReason() && reason != CrlReason.REMOVE_FROM_CRL) {
-          reason = CrlReason.UNSPECIFIED;
-        }
 
-        Date revocationTime = revInfo.getRevocationTime();
-        Date invalidityTime = revInfo.getInvalidityTime();
+          CrlReason reason = revInfo.getReason();
+          if (crlControl.isExcludeReason() && reason != CrlReason.REMOVE_FROM_CRL) {
+            reason = CrlReason.UNSPECIFIED;
+          }
 
-        switch (crlControl.getInvalidityDateMode()) {
-          case forbidden:
-            invalidityTime = null;
-            break;
-          case optional:
-            break;
-          case required:
-            if (invalidityTime == null) {
-              invalidityTime = revocationTime;
-            }
-            break;
-          default:
-            throw new IllegalStateException(
-                "unknown TripleState " + crlControl.getInvalidityDateMode());
-        }
+          Date revocationTime = revInfo.getRevocationTime();
+          Date invalidityTime = revInfo.getInvalidityTime();
+
+          switch (crlControl.getInvalidityDateMode()) {
+            case forbidden:
+              invalidityTime = null;
+              break;
+            case optional:
+              break;
+            case required:
+              if (invalidityTime == null) {
+                invalidityTime = revocationTime;
+              }
+              break;
+            default:
+              throw new IllegalStateException(
+                  "unknown TripleState " + crlControl.getInvalidityDateMode());
+          }
 
-        BigInteger serial = revInfo.getSerial();
-        LOG.debug("added cert ca={} serial={} to CRL", caIdent, serial);
+          BigInteger serial = revInfo.getSerial();
+          LOG.debug("added cert ca={} serial={} to CRL", caIdent, serial);
 
-        if (!indirectCrl || !isFirstCrlEntry) {
+          List<Extension> extensions = new ArrayList<>(3);
+          if (reason != CrlReason.UNSPECIFIED) {
+            extensions.add(createReasonExtension(reason.getCode()));
+          }
           if (invalidityTime != null) {
-            crlBuilder.addCRLEntry(serial, revocationTime, reason.getCode(),
-                invalidityTime);
-          } else {
-            crlBuilder.addCRLEntry(serial, revocationTime, reason.getCode());
+            extensions.add(createInvalidityDateExtension(invalidityTime));
           }
-          continue;
-        }
-
-        List<Extension> extensions = new ArrayList<>(3);
-        if (reason != CrlReason.UNSPECIFIED) {
-          Extension ext = createReasonExtension(reason.getCode());
-          extensions.add(ext);
-        }
-        if (invalidityTime != null) {
-          Extension ext = createInvalidityDateExtension(invalidityTime);
-          extensions.add(ext);
-        }
 
-        Extension ext = createCertificateIssuerExtension(pci.getX500Subject());
-        extensions.add(ext);
+          if (indirectCrl && isFirstCrlEntry) {
+            extensions.add(createCertificateIssuerExtension(pci.getX500Subject()));
+            isFirstCrlEntry = false;
+          }
 
-        crlBuilder.addCRLEntry(serial, revocationTime,
-            new Extensions(extensions.toArray(new Extension[0])));
-        isFirstCrlEntry = false;
-      }
+          crlBuilder.addEntry(serial, revocationTime, extensions.isEmpty()
+              ? null : new Extensions(extensions.toArray(new Extension[0])));
+        } // end for
+        startId = maxId + 1;
+      } while (revInfos.size() >= numEntries); // end do
 
-      allRevInfos.clear(); // free the memory
+      LOG.info("added {} entries to CRL of ca={}", crlBuilder.getNumEntries(), caIdent);
 
       BigInteger crlNumber = caInfo.nextCrlNumber();
       event.addEventData(CaAuditConstants.NAME_crl_number, crlNumber);
@@ -913,16 +939,17 @@ public class X509Ca implements Closeable {
             "should not reach here, onlyUserCerts and onlyCACerts are both true");
       }
 
+      ExtensionsGenerator crlExtensions = new ExtensionsGenerator();
       try {
         // AuthorityKeyIdentifier
         byte[] akiValues = indirectCrl
             ? X509Util.extractSki(crlSigner.getSigner().getCertificate())
             : pci.getSubjectKeyIdentifer();
         AuthorityKeyIdentifier aki = new AuthorityKeyIdentifier(akiValues);
-        crlBuilder.addExtension(Extension.authorityKeyIdentifier, false, aki);
+        crlExtensions.addExtension(Extension.authorityKeyIdentifier, false, aki);
 
         // add extension CRL Number
-        crlBuilder.addExtension(Extension.cRLNumber, false, new ASN1Integer(crlNumber));
+        crlExtensions.addExtension(Extension.cRLNumber, false, new ASN1Integer(crlNumber));
 
         // IssuingDistributionPoint
         if (onlyUserCerts || onlyCaCerts || indirectCrl) {
@@ -934,7 +961,7 @@ public class X509Ca implements Closeable {
               indirectCrl, // indirectCRL,
               false); // onlyContainsAttributeCerts
 
-          crlBuilder.addExtension(Extension.issuingDistributionPoint, true, idp);
+          crlExtensions.addExtension(Extension.issuingDistributionPoint, true, idp);
         }
 
         // freshestCRL
@@ -942,14 +969,14 @@ public class X509Ca implements Closeable {
         if (control.getDeltaCrlIntervals() > 0 && CollectionUtil.isNotEmpty(deltaCrlUris)) {
           CRLDistPoint cdp = CaUtil.createCrlDistributionPoints(deltaCrlUris, pci.getX500Subject(),
               crlIssuer);
-          crlBuilder.addExtension(Extension.freshestCRL, false, cdp);
+          crlExtensions.addExtension(Extension.freshestCRL, false, cdp);
         }
-      } catch (CertIOException | CertificateEncodingException ex) {
-        LogUtil.error(LOG, ex, "crlBuilder.addExtension");
+      } catch (IOException | CertificateEncodingException ex) {
+        LogUtil.error(LOG, ex, "crlExtensions.addExtension");
         throw new OperationException(INVALID_EXTENSION, ex);
       }
 
-      addXipkiCertset(crlBuilder, deltaCrl, control, notExpireAt, onlyCaCerts, onlyUserCerts);
+      addXipkiCertset(crlExtensions, deltaCrl, control, notExpireAt, onlyCaCerts, onlyUserCerts);
 
       @SuppressWarnings("resource")
       ConcurrentContentSigner concurrentSigner = (crlSigner == null)
@@ -962,15 +989,15 @@ public class X509Ca implements Closeable {
         throw new OperationException(SYSTEM_FAILURE, "NoIdleSignerException: " + ex.getMessage());
       }
 
-      X509CRLHolder crlHolder;
+      byte[] encodedCrl;
       try {
-        crlHolder = crlBuilder.build(signer0.value());
+        encodedCrl = crlBuilder.build(signer0.value(), crlExtensions.generate());
       } finally {
         concurrentSigner.requiteSigner(signer0);
       }
 
       try {
-        X509CRL crl = X509Util.toX509Crl(crlHolder.toASN1Structure());
+        X509CRL crl = X509Util.parseCrl(encodedCrl);
         caInfo.getCaEntry().setNextCrlNumber(crlNumber.longValue() + 1);
         caManager.commitNextCrlNo(caIdent, caInfo.getCaEntry().getNextCrlNumber());
         publishCrl(crl);
@@ -987,7 +1014,13 @@ public class X509Ca implements Closeable {
       } catch (CRLException | CertificateException ex) {
         throw new OperationException(CRL_FAILURE, ex);
       }
+    } catch (IOException ex) {
+      throw new OperationException(CRL_FAILURE, ex);
     } finally {
+      if (crlBuilder != null) {
+        crlBuilder.close();
+      }
+
       if (!successful) {
         LOG.info("    FAILED generateCrl: ca={}", caIdent.getName());
       }
@@ -1007,14 +1040,15 @@ public class X509Ca implements Closeable {
    * }
    * </pre>
    */
-  private void addXipkiCertset(X509v2CRLBuilder crlBuilder, boolean deltaCrl, CrlControl control,
-      Date notExpireAt, boolean onlyCaCerts, boolean onlyUserCerts) throws OperationException {
+  private void addXipkiCertset(ExtensionsGenerator crlExtensions, boolean deltaCrl,
+      CrlControl control, Date notExpireAt, boolean onlyCaCerts, boolean onlyUserCerts)
+      throws OperationException {
     if (deltaCrl || !control.isXipkiCertsetIncluded()) {
       return;
     }
 
     ASN1EncodableVector vector = new ASN1EncodableVector();
-    final int numEntries = 100;
+    final int numEntries = control.getPageSize();
     long startId = 1;
 
     List<CertStore.SerialWithId> serials;
@@ -1061,10 +1095,10 @@ public class X509Ca implements Closeable {
     // end do
 
     try {
-      crlBuilder.addExtension(ObjectIdentifiers.Xipki.id_xipki_ext_crlCertset,
+      crlExtensions.addExtension(ObjectIdentifiers.Xipki.id_xipki_ext_crlCertset,
           false, new DERSet(vector));
-    } catch (CertIOException ex) {
-      throw new OperationException(INVALID_EXTENSION, "CertIOException: " + ex.getMessage());
+    } catch (IOException ex) {
+      throw new OperationException(INVALID_EXTENSION, "IOException: " + ex.getMessage());
     }
   }
 
@@ -1245,48 +1279,13 @@ public class X509Ca implements Closeable {
 
   private boolean publishCertsInQueue(IdentifiedCertPublisher publisher) {
     Args.notNull(publisher, "publisher");
-    final int numEntries = 500;
-
-    while (true) {
-      List<Long> certIds;
-      try {
-        certIds = certstore.getPublishQueueEntries(caIdent, publisher.getIdent(), numEntries);
-      } catch (OperationException ex) {
-        LogUtil.error(LOG, ex);
-        return false;
-      }
-
-      if (CollectionUtil.isEmpty(certIds)) {
-        break;
-      }
-
-      for (Long certId : certIds) {
-        CertificateInfo certInfo;
-
-        try {
-          certInfo = certstore.getCertForId(caIdent, caCert, certId, caIdNameMap);
-        } catch (OperationException | CertificateException ex) {
-          LogUtil.error(LOG, ex);
-          return false;
-        }
-
-        boolean successful = publisher.certificateAdded(certInfo);
-        if (!successful) {
-          LOG.error("republishing certificate id={} failed", certId);
-          return false;
-        }
-
-        try {
-          certstore.removeFromPublishQueue(publisher.getIdent(), certId);
-        } catch (OperationException ex) {
-          LogUtil.warn(LOG, ex, "could not remove republished cert id=" + certId
-              + " and publisher=" + publisher.getIdent().getName());
-          continue;
-        }
-      } // end for
-    } // end while
+    CaServerConf.PublishQueueConf conf = caManager.getCaServerConf().getPublishQueue();
+    if (conf == null) {
+      conf = new CaServerConf.PublishQueueConf();
+    }
 
-    return true;
+    return new PublishQueueDrainer(caIdent, caCert, caIdNameMap, certstore, publisher, conf)
+        .drain();
   } // method publishCertsInQueue
 
   private boolean publishCrl(X509CRL crl) {
@@ -1299,6 +1298,12 @@ public class X509Ca implements Closeable {
       return false;
     }
 
+    try {
+      crlCache.put(crl.getEncoded());
+    } catch (CRLException | RuntimeException ex) {
+      LogUtil.warn(LOG, ex, "could not cache CRL of CA " + caIdent.getName());
+    }
+
     for (IdentifiedCertPublisher publisher : publishers()) {
       try {
         publisher.crlAdded(caCert, crl);
@@ -2152,9 +2157,7 @@ public class X509Ca implements Closeable {
             throw new OperationException(BAD_CERT_TEMPLATE, "keysize too large");
           }
 
-          BigInteger publicExponent = tkg.getPublicExponent();
-
-          KeyPair kp = KeyUtil.generateRSAKeypair(keysize, publicExponent, random);
+          KeyPair kp = newKeypair(tkg);
           java.security.interfaces.RSAPublicKey rsaPubKey =
               (java.security.interfaces.RSAPublicKey) kp.getPublic();
 
@@ -2186,8 +2189,7 @@ public class X509Ca implements Closeable {
                  priv.getCrtCoefficient()));
         } else if (kg instanceof KeypairGenControl.ECKeypairGenControl) {
           KeypairGenControl.ECKeypairGenControl tkg = (KeypairGenControl.ECKeypairGenControl) kg;
-          ASN1ObjectIdentifier curveOid = tkg.getCurveOid();
-          KeyPair kp = KeyUtil.generateECKeypair(curveOid, random);
+          KeyPair kp = newKeypair(tkg);
           ECPublicKey pub = (ECPublicKey) kp.getPublic();
           int orderBitLength = pub.getParams().getOrder().bitLength();
 
@@ -2214,7 +2216,7 @@ public class X509Ca implements Closeable {
               new org.bouncycastle.asn1.sec.ECPrivateKey(orderBitLength, priv.getS()));
         } else if (kg instanceof KeypairGenControl.DSAKeypairGenControl) {
           KeypairGenControl.DSAKeypairGenControl tkg = (KeypairGenControl.DSAKeypairGenControl) kg;
-          KeyPair kp = KeyUtil.generateDSAKeypair(tkg.getParameterSpec(), random);
+          KeyPair kp = newKeypair(tkg);
 
           grantedPublicKeyInfo = new SubjectPublicKeyInfo(tkg.getKeyAlgorithm(),
               new ASN1Integer(((DSAPublicKey) kp.getPublic()).getY()));
@@ -2226,7 +2228,7 @@ public class X509Ca implements Closeable {
         } else if (kg instanceof KeypairGenControl.EDDSAKeypairGenControl) {
           KeypairGenControl.EDDSAKeypairGenControl tkg =
               (KeypairGenControl.EDDSAKeypairGenControl) kg;
-          KeyPair kp = KeyUtil.generateEdECKeypair(tkg.getKeyAlgorithm().getAlgorithm(), random);
+          KeyPair kp = newKeypair(tkg);
           grantedPublicKeyInfo = KeyUtil.createSubjectPublicKeyInfo(kp.getPublic());
           // make sure that the algorithm match
           if (!grantedPublicKeyInfo.getAlgorithm().equals(tkg.getKeyAlgorithm())) {
@@ -2593,6 +2595,13 @@ public class X509Ca implements Closeable {
     } // end while (true)
   } // method removeExpirtedCerts
 
+  private KeyPair newKeypair(KeypairGenControl control) throws NoSuchAlgorithmException,
+      NoSuchProviderException, InvalidAlgorithmParameterException {
+    KeypairPool keypairPool = caManager.getKeypairPool();
+    return (keypairPool == null) ? KeypairPool.generateKeypair(control, random)
+        : keypairPool.take(control, random);
+  } // method newKeypair
+
   public HealthCheckResult healthCheck() {
     HealthCheckResult result = new HealthCheckResult();
     result.setName("X509CA");
@@ -2629,6 +2638,15 @@ public class X509Ca implements Closeable {
       result.addChildCheck(crlSignerHealth);
     }
 
+    KeypairPool keypairPool = caManager.getKeypairPool();
+    if (keypairPool != null) {
+      HealthCheckResult keypairPoolHealth = new HealthCheckResult();
+      keypairPoolHealth.setName("KeypairPool");
+      keypairPoolHealth.setHealthy(true);
+      keypairPoolHealth.getStatuses().putAll(keypairPool.toMap());
+      result.addChildCheck(keypairPoolHealth);
+    }
+
     for (IdentifiedCertPublisher publisher : publishers()) {
       boolean ph = publisher.isHealthy();
       healthy &= ph;
@@ -2701,6 +2719,8 @@ public class X509Ca implements Closeable {
 
   @Override
   public void close() {
+    crlCache.clear();
+
     if (crlGenerationService != null) {
       crlGenerationService.cancel(false);
       crlGenerationService = null;
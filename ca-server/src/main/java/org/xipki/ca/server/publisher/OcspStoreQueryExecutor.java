@@ -20,6 +20,7 @@ package org.xipki.ca.server.publisher;
 import java.math.BigInteger;
 import java.security.NoSuchAlgorithmException;
 import java.security.cert.X509Certificate;
+import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
@@ -35,6 +36,7 @@ import java.util.Map;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.ca.api.CertWithDbId;
+import org.xipki.ca.api.CertificateInfo;
 import org.xipki.ca.api.OperationException;
 import org.xipki.ca.api.OperationException.ErrorCode;
 import org.xipki.datasource.DataAccessException;
@@ -114,6 +116,27 @@ class OcspStoreQueryExecutor {
 
   } // class IssuerStore
 
+  private static class CertToAdd {
+
+    private final int issuerId;
+
+    private final CertWithDbId cert;
+
+    private final CertRevocationInfo revInfo;
+
+    private final String serial;
+
+    private Long registeredId;
+
+    CertToAdd(int issuerId, CertWithDbId cert, CertRevocationInfo revInfo) {
+      this.issuerId = issuerId;
+      this.cert = cert;
+      this.revInfo = revInfo;
+      this.serial = cert.getCert().getSerialNumber().toString(16);
+    }
+
+  } // class CertToAdd
+
   private static final String SQL_ADD_REVOKED_CERT =
       "INSERT INTO CERT (ID,LUPDATE,SN,NBEFORE,NAFTER,REV,IID,HASH,SUBJECT,RT,RIT,RR)"
       + " VALUES (?,?,?,?,?,?,?,?,?,?,?,?)";
@@ -122,6 +145,15 @@ class OcspStoreQueryExecutor {
       "INSERT INTO CERT (ID,LUPDATE,SN,NBEFORE,NAFTER,REV,IID,HASH,SUBJECT) "
       + "VALUES (?,?,?,?,?,?,?,?,?)";
 
+  private static final String SQL_UPDATE_CERT =
+      "UPDATE CERT SET LUPDATE=?,REV=?,RT=?,RIT=?,RR=? WHERE ID=?";
+
+  /**
+   * Maximal number of serial numbers in the IN clause to check whether certificates are
+   * registered.
+   */
+  private static final int MAX_SERIALS_PER_QUERY = 100;
+
   private static final Logger LOG = LoggerFactory.getLogger(OcspStoreQueryExecutor.class);
 
   private final DataSourceWrapper datasource;
@@ -231,40 +263,10 @@ class OcspStoreQueryExecutor {
     final String sql = revoked ? SQL_ADD_REVOKED_CERT : SQL_ADD_CERT;
 
     long certId = certificate.getCertId();
-    byte[] encodedCert = certificate.getEncodedCert();
-    String certHash = certhashAlgo.base64Hash(encodedCert);
-
-    X509Certificate cert = certificate.getCert();
-    long notBeforeSeconds = cert.getNotBefore().getTime() / 1000;
-    long notAfterSeconds = cert.getNotAfter().getTime() / 1000;
-    String cuttedSubject = X509Util.cutText(certificate.getSubject(), maxX500nameLen);
-
     PreparedStatement ps = datasource.prepareStatement(sql);
 
     try {
-      // CERT
-      int idx = 1;
-      ps.setLong(idx++, certId);
-      ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
-      ps.setString(idx++, serialNumber.toString(16));
-      ps.setLong(idx++, notBeforeSeconds);
-      ps.setLong(idx++, notAfterSeconds);
-      setBoolean(ps, idx++, revoked);
-      ps.setInt(idx++, issuerId);
-      ps.setString(idx++, certHash);
-      ps.setString(idx++, cuttedSubject);
-
-      if (revoked) {
-        long revTime = revInfo.getRevocationTime().getTime() / 1000;
-        ps.setLong(idx++, revTime);
-        if (revInfo.getInvalidityTime() != null) {
-          ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
-        } else {
-          ps.setNull(idx++, Types.BIGINT);
-        }
-        int reasonCode = (revInfo.getReason() == null) ? 0 : revInfo.getReason().getCode();
-        ps.setInt(idx++, reasonCode);
-      }
+      setInsertParameters(ps, issuerId, certificate, revInfo);
 
       try {
         ps.executeUpdate();
@@ -290,31 +292,12 @@ class OcspStoreQueryExecutor {
 
   private void updateRegisteredCert(long registeredCertId, CertRevocationInfo revInfo)
       throws DataAccessException {
-    boolean revoked = (revInfo != null);
-
-    final String sql = "UPDATE CERT SET LUPDATE=?,REV=?,RT=?,RIT=?,RR=? WHERE ID=?";
+    final String sql = SQL_UPDATE_CERT;
 
     PreparedStatement ps = datasource.prepareStatement(sql);
 
     try {
-      int idx = 1;
-      ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
-      setBoolean(ps, idx++, revoked);
-      if (revoked) {
-        long revTime = revInfo.getRevocationTime().getTime() / 1000;
-        ps.setLong(idx++, revTime);
-        if (revInfo.getInvalidityTime() != null) {
-          ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
-        } else {
-          ps.setNull(idx++, Types.INTEGER);
-        }
-        ps.setInt(idx++, revInfo.getReason().getCode());
-      } else {
-        ps.setNull(idx++, Types.INTEGER); // rev_time
-        ps.setNull(idx++, Types.INTEGER); // rev_invalidity_time
-        ps.setNull(idx++, Types.INTEGER); // rev_reason
-      }
-      ps.setLong(idx++, registeredCertId);
+      setUpdateParameters(ps, registeredCertId, revInfo);
       ps.executeUpdate();
     } catch (SQLException ex) {
       throw datasource.translate(sql, ex);
@@ -323,6 +306,194 @@ class OcspStoreQueryExecutor {
     }
   } // method updateRegisteredCert
 
+  /**
+   * Adds or updates the certificates in one transaction. Whether the certificates are already
+   * registered is checked with one query per up to {@link #MAX_SERIALS_PER_QUERY}
+   * certificates, and the certificates are written with batched INSERT and UPDATE statements.
+   *
+   * @param certInfos
+   *          Certificates to be added. Must not be {@code null}.
+   * @throws DataAccessException
+   *           if database error occurs. None of the certificates is written in this case.
+   * @since 5.3.7
+   */
+  void addCerts(List<CertificateInfo> certInfos) throws DataAccessException {
+    Args.notNull(certInfos, "certInfos");
+    if (certInfos.isEmpty()) {
+      return;
+    }
+
+    // group the certificates by issuer to check which are registered
+    Map<Integer, List<CertToAdd>> issuerCerts = new HashMap<>();
+    for (CertificateInfo certInfo : certInfos) {
+      int issuerId = getIssuerId(certInfo.getIssuerCert());
+      List<CertToAdd> certs = issuerCerts.get(issuerId);
+      if (certs == null) {
+        certs = new ArrayList<>();
+        issuerCerts.put(issuerId, certs);
+      }
+      certs.add(new CertToAdd(issuerId, certInfo.getCert(), certInfo.getRevocationInfo()));
+    }
+
+    Connection conn = datasource.getConnection();
+    try {
+      boolean autoCommit = conn.getAutoCommit();
+      conn.setAutoCommit(false);
+      try {
+        PreparedStatement insertPs = null;
+        PreparedStatement updatePs = null;
+        try {
+          for (List<CertToAdd> certs : issuerCerts.values()) {
+            for (int from = 0; from < certs.size(); from += MAX_SERIALS_PER_QUERY) {
+              setRegisteredIds(conn,
+                  certs.subList(from, Math.min(certs.size(), from + MAX_SERIALS_PER_QUERY)));
+            }
+
+            for (CertToAdd cert : certs) {
+              boolean revoked = (cert.revInfo != null);
+              if (cert.registeredId != null) {
+                if (!publishGoodCerts && !revoked) {
+                  continue;
+                }
+
+                if (updatePs == null) {
+                  updatePs = conn.prepareStatement(SQL_UPDATE_CERT);
+                }
+                setUpdateParameters(updatePs, cert.registeredId, cert.revInfo);
+                updatePs.addBatch();
+              } else {
+                if (insertPs == null) {
+                  // RT, RIT and RR are set to NULL for the not-revoked certificates
+                  insertPs = conn.prepareStatement(SQL_ADD_REVOKED_CERT);
+                }
+                setInsertParameters(insertPs, cert.issuerId, cert.cert, cert.revInfo);
+                if (!revoked) {
+                  insertPs.setNull(10, Types.BIGINT);
+                  insertPs.setNull(11, Types.BIGINT);
+                  insertPs.setNull(12, Types.INTEGER);
+                }
+                insertPs.addBatch();
+              }
+            }
+          }
+
+          if (insertPs != null) {
+            insertPs.executeBatch();
+          }
+
+          if (updatePs != null) {
+            updatePs.executeBatch();
+          }
+          conn.commit();
+        } catch (SQLException ex) {
+          conn.rollback();
+          LOG.error("datasource {} could not add {} certificates: {}",
+              datasource.getName(), certInfos.size(), ex.getMessage());
+          throw datasource.translate(null, ex);
+        } finally {
+          datasource.releaseResources(insertPs, null, false);
+          datasource.releaseResources(updatePs, null, false);
+        }
+      } finally {
+        conn.setAutoCommit(autoCommit);
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(null, ex);
+    } finally {
+      datasource.returnConnection(conn);
+    }
+  } // method addCerts
+
+  private void setRegisteredIds(Connection conn, List<CertToAdd> certs) throws SQLException {
+    StringBuilder sb = new StringBuilder(50 + 2 * certs.size());
+    sb.append("SELECT ID,SN FROM CERT WHERE IID=? AND SN IN (?");
+    for (int i = 1; i < certs.size(); i++) {
+      sb.append(",?");
+    }
+    sb.append(")");
+
+    Map<String, CertToAdd> serialMap = new HashMap<>();
+    PreparedStatement ps = conn.prepareStatement(sb.toString());
+    ResultSet rs = null;
+    try {
+      int idx = 1;
+      ps.setInt(idx++, certs.get(0).issuerId);
+      for (CertToAdd cert : certs) {
+        ps.setString(idx++, cert.serial);
+        serialMap.put(cert.serial, cert);
+      }
+
+      rs = ps.executeQuery();
+      while (rs.next()) {
+        CertToAdd cert = serialMap.get(rs.getString("SN"));
+        if (cert != null) {
+          cert.registeredId = rs.getLong("ID");
+        }
+      }
+    } finally {
+      datasource.releaseResources(ps, rs, false);
+    }
+  } // method setRegisteredIds
+
+  private void setInsertParameters(PreparedStatement ps, int issuerId,
+      CertWithDbId certificate, CertRevocationInfo revInfo) throws SQLException {
+    boolean revoked = (revInfo != null);
+    byte[] encodedCert = certificate.getEncodedCert();
+    String certHash = certhashAlgo.base64Hash(encodedCert);
+
+    X509Certificate cert = certificate.getCert();
+    long notBeforeSeconds = cert.getNotBefore().getTime() / 1000;
+    long notAfterSeconds = cert.getNotAfter().getTime() / 1000;
+    String cuttedSubject = X509Util.cutText(certificate.getSubject(), maxX500nameLen);
+
+    // CERT
+    int idx = 1;
+    ps.setLong(idx++, certificate.getCertId());
+    ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
+    ps.setString(idx++, cert.getSerialNumber().toString(16));
+    ps.setLong(idx++, notBeforeSeconds);
+    ps.setLong(idx++, notAfterSeconds);
+    setBoolean(ps, idx++, revoked);
+    ps.setInt(idx++, issuerId);
+    ps.setString(idx++, certHash);
+    ps.setString(idx++, cuttedSubject);
+
+    if (revoked) {
+      long revTime = revInfo.getRevocationTime().getTime() / 1000;
+      ps.setLong(idx++, revTime);
+      if (revInfo.getInvalidityTime() != null) {
+        ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
+      } else {
+        ps.setNull(idx++, Types.BIGINT);
+      }
+      int reasonCode = (revInfo.getReason() == null) ? 0 : revInfo.getReason().getCode();
+      ps.setInt(idx++, reasonCode);
+    }
+  } // method setInsertParameters
+
+  private static void setUpdateParameters(PreparedStatement ps, long registeredCertId,
+      CertRevocationInfo revInfo) throws SQLException {
+    boolean revoked = (revInfo != null);
+    int idx = 1;
+    ps.setLong(idx++, System.currentTimeMillis() / 1000); // currentTimeSeconds
+    setBoolean(ps, idx++, revoked);
+    if (revoked) {
+      long revTime = revInfo.getRevocationTime().getTime() / 1000;
+      ps.setLong(idx++, revTime);
+      if (revInfo.getInvalidityTime() != null) {
+        ps.setLong(idx++, revInfo.getInvalidityTime().getTime() / 1000);
+      } else {
+        ps.setNull(idx++, Types.INTEGER);
+      }
+      ps.setInt(idx++, revInfo.getReason().getCode());
+    } else {
+      ps.setNull(idx++, Types.INTEGER); // rev_time
+      ps.setNull(idx++, Types.INTEGER); // rev_invalidity_time
+      ps.setNull(idx++, Types.INTEGER); // rev_reason
+    }
+    ps.setLong(idx++, registeredCertId);
+  } // method setUpdateParameters
+
   void revokeCert(X509Cert caCert, CertWithDbId cert, CertRevocationInfo revInfo)
       throws DataAccessException, OperationException {
     addOrUpdateCert(caCert, cert, revInfo);
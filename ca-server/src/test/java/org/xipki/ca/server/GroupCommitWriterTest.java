@@ -0,0 +1,354 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.server;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.logging.Logger;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceFactory;
+import org.xipki.datasource.DataSourceWrapper;
+
+/**
+ * Test for the timeout, close and writer death paths of {@link GroupCommitWriter}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class GroupCommitWriterTest {
+
+  private static final String JDBC_URL = "jdbc:h2:mem:group-commit-test";
+
+  private static final String WRITER_NAME = "group-commit-test";
+
+  private static final String SQL = "INSERT INTO T (ID) VALUES (?)";
+
+  /**
+   * Driver without database, which records the IDs written by the batches.
+   */
+  private static class RecordingDriver implements Driver {
+
+    private final List<Long> written = Collections.synchronizedList(new ArrayList<Long>());
+
+    private volatile CountDownLatch batchEntered = new CountDownLatch(0);
+
+    private volatile CountDownLatch batchReleased = new CountDownLatch(0);
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+      if (!acceptsURL(url)) {
+        return null;
+      }
+
+      return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+          new Class<?>[] {Connection.class}, new ConnectionHandler());
+    }
+
+    @Override
+    public boolean acceptsURL(String url) throws SQLException {
+      return JDBC_URL.equals(url);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+      return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+      return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+      return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+      return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+      throw new SQLFeatureNotSupportedException();
+    }
+
+    private class ConnectionHandler implements InvocationHandler {
+
+      private boolean autoCommit = true;
+
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if ("prepareStatement".equals(name)) {
+          return Proxy.newProxyInstance(getClass().getClassLoader(),
+              new Class<?>[] {PreparedStatement.class}, new StatementHandler());
+        } else if ("isValid".equals(name)) {
+          return true;
+        } else if ("getAutoCommit".equals(name)) {
+          return autoCommit;
+        } else if ("setAutoCommit".equals(name)) {
+          autoCommit = (Boolean) args[0];
+          return null;
+        } else if ("getTransactionIsolation".equals(name)) {
+          return Connection.TRANSACTION_READ_COMMITTED;
+        } else {
+          return defaultValue(method.getReturnType());
+        }
+      }
+
+    } // class ConnectionHandler
+
+    private class StatementHandler implements InvocationHandler {
+
+      private long id;
+
+      private final List<Long> pending = new ArrayList<>();
+
+      @Override
+      public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+        String name = method.getName();
+        if ("setLong".equals(name)) {
+          id = (Long) args[1];
+          return null;
+        } else if ("addBatch".equals(name)) {
+          pending.add(id);
+          return null;
+        } else if ("executeBatch".equals(name)) {
+          batchEntered.countDown();
+          batchReleased.await();
+          int[] counts = new int[pending.size()];
+          for (int i = 0; i < counts.length; i++) {
+            counts[i] = 1;
+          }
+          written.addAll(pending);
+          pending.clear();
+          return counts;
+        } else if ("executeUpdate".equals(name)) {
+          written.add(id);
+          return 1;
+        } else {
+          return defaultValue(method.getReturnType());
+        }
+      }
+
+    } // class StatementHandler
+
+    private static Object defaultValue(Class<?> type) {
+      if (type == boolean.class) {
+        return false;
+      } else if (type == int.class) {
+        return 0;
+      } else if (type == long.class) {
+        return 0L;
+      } else {
+        return null;
+      }
+    }
+
+  } // class RecordingDriver
+
+  /**
+   * Thread which writes one row, and keeps the result.
+   */
+  private static class ExecuteThread extends Thread {
+
+    private final GroupCommitWriter writer;
+
+    private final long id;
+
+    private volatile Throwable error;
+
+    ExecuteThread(GroupCommitWriter writer, long id) {
+      this.writer = writer;
+      this.id = id;
+    }
+
+    @Override
+    public void run() {
+      try {
+        writer.execute(setter(id));
+      } catch (Throwable th) {
+        error = th;
+      }
+    }
+
+  } // class ExecuteThread
+
+  private static RecordingDriver driver;
+
+  private static DataSourceWrapper datasource;
+
+  private GroupCommitWriter writer;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    driver = new RecordingDriver();
+    DriverManager.registerDriver(driver);
+
+    Properties props = new Properties();
+    props.setProperty("jdbcUrl", JDBC_URL);
+    props.setProperty("minimumIdle", "1");
+    props.setProperty("maximumPoolSize", "2");
+    datasource = new DataSourceFactory().createDataSource(WRITER_NAME, props, null);
+  }
+
+  @AfterClass
+  public static void shutdown() throws Exception {
+    if (datasource != null) {
+      datasource.close();
+    }
+    DriverManager.deregisterDriver(driver);
+  }
+
+  @Before
+  public void createWriter() {
+    driver.written.clear();
+    driver.batchEntered = new CountDownLatch(1);
+    driver.batchReleased = new CountDownLatch(1);
+    writer = new GroupCommitWriter(WRITER_NAME, datasource, SQL, 10, 0, 100);
+  }
+
+  @After
+  public void closeWriter() {
+    driver.batchReleased.countDown();
+    writer.close();
+  }
+
+  @Test
+  public void testTimeout() throws Exception {
+    // the writer is blocked in the batch of row 1
+    ExecuteThread first = new ExecuteThread(writer, 1);
+    first.start();
+    Assert.assertTrue("batch not started", driver.batchEntered.await(10, TimeUnit.SECONDS));
+
+    // row 2 is still in the queue after the timeout
+    try {
+      writer.execute(setter(2));
+      Assert.fail("DataAccessException expected");
+    } catch (DataAccessException ex) {
+      Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("timeout"));
+    }
+
+    // row 1 has been taken by the writer, its caller waits for the result beyond the timeout
+    Assert.assertTrue("row 1 is not written", first.isAlive());
+    driver.batchReleased.countDown();
+    first.join(10000);
+    Assert.assertNull("row 1", first.error);
+
+    // the timed out row is never written
+    writer.close();
+    Assert.assertEquals(Collections.singletonList(1L), driver.written);
+  } // method testTimeout
+
+  @Test
+  public void testClose() throws Exception {
+    ExecuteThread first = new ExecuteThread(writer, 1);
+    first.start();
+    Assert.assertTrue("batch not started", driver.batchEntered.await(10, TimeUnit.SECONDS));
+
+    ExecuteThread second = new ExecuteThread(writer, 2);
+    ExecuteThread third = new ExecuteThread(writer, 3);
+    second.start();
+    third.start();
+    Thread.sleep(100);
+
+    // the queued rows are written before the writer terminates
+    driver.batchReleased.countDown();
+    writer.close();
+    first.join(10000);
+    second.join(10000);
+    third.join(10000);
+    Assert.assertNull("row 1", first.error);
+    Assert.assertNull("row 2", second.error);
+    Assert.assertNull("row 3", third.error);
+    Assert.assertEquals(3, driver.written.size());
+
+    try {
+      writer.execute(setter(4));
+      Assert.fail("DataAccessException expected");
+    } catch (DataAccessException ex) {
+      Assert.assertTrue(ex.getMessage(), ex.getMessage().contains("closed"));
+    }
+    Assert.assertEquals(3, driver.written.size());
+  } // method testClose
+
+  @Test
+  public void testWriterDeath() throws Exception {
+    driver.batchReleased.countDown();
+    writer.execute(setter(1));
+
+    Thread writerThread = findThread(WRITER_NAME);
+    Assert.assertNotNull("writer thread not found", writerThread);
+    writerThread.interrupt();
+    writerThread.join(10000);
+    Assert.assertFalse("writer thread is alive", writerThread.isAlive());
+
+    long start = System.currentTimeMillis();
+    try {
+      writer.execute(setter(2));
+      Assert.fail("DataAccessException expected");
+    } catch (DataAccessException ex) {
+      // expected
+    }
+    Assert.assertTrue("execute() waited too long", System.currentTimeMillis() - start < 5000);
+    Assert.assertEquals(Collections.singletonList(1L), driver.written);
+  } // method testWriterDeath
+
+  private static GroupCommitWriter.ParameterSetter setter(final long id) {
+    return new GroupCommitWriter.ParameterSetter() {
+      @Override
+      public void setParameters(PreparedStatement ps) throws SQLException {
+        ps.setLong(1, id);
+      }
+    };
+  }
+
+  private static Thread findThread(String name) {
+    for (Thread thread : Thread.getAllStackTraces().keySet()) {
+      if (name.equals(thread.getName()) && thread.isAlive()) {
+        return thread;
+      }
+    }
+    return null;
+  }
+
+}
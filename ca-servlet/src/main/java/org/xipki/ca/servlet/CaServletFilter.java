@@ -111,7 +111,7 @@ public class CaServletFilter implements Filter {
       auditConf = DFLT_SYSLOG_AUDIT_CFG;
     }
 
-    Audits.init(auditType, auditConf);
+    Audits.init(auditType, auditConf, audit.getAsync());
 
     securities = new Securities();
     try {
@@ -194,6 +194,9 @@ public class CaServletFilter implements Filter {
     if (caManager != null) {
       caManager.close();
     }
+
+    // forward the buffered audit events
+    Audits.shutdown();
   } // method destroy
 
   @Override
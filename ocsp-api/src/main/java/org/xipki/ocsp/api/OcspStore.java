@@ -20,11 +20,15 @@ package org.xipki.ocsp.api;
 import java.io.Closeable;
 import java.math.BigInteger;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Date;
+import java.util.List;
 import java.util.Map;
 
 import org.xipki.datasource.DataSourceWrapper;
 import org.xipki.ocsp.api.CertStatusInfo.UnknownCertBehaviour;
+import org.xipki.security.HashAlgo;
 import org.xipki.util.Args;
 import org.xipki.util.Validity;
 
@@ -110,7 +114,44 @@ public abstract class OcspStore implements Closeable {
       boolean inheritCaRevocation) throws OcspStoreException {
     CertStatusInfo info = getCertStatus0(time, reqIssuer, serialNumber,
         includeCertHash, includeRit, inheritCaRevocation);
+    adaptNextUpdate(time, info);
+    return info;
+  } // method getCertStatus
+
+  /**
+   * Return the status of several certificates issued by the same issuer.
+   *
+   * @param time
+   *          Time of the certificate status. Must not be {@code null}.
+   * @param reqIssuer
+   *          Requested issuer
+   * @param serialNumbers
+   *          Serial numbers of the target certificates. Must not be {@code null}.
+   * @param includeCertHash
+   *          Whether to include the hash of target certificate in the response.
+   * @param includeRit
+   *          Whether to include the revocation invalidity time in the response.
+   * @param inheritCaRevocation
+   *          Whether to inherit CA revocation
+   * @return the certificate status in the same order as the serialNumbers, or {@code null}
+   *         if the issuer is unknown.
+   * @throws OcspStoreException
+   *           If OCSP store failed to retrieve the status.
+   */
+  public final List<CertStatusInfo> getCertStatus(Date time, RequestIssuer reqIssuer,
+      List<BigInteger> serialNumbers, boolean includeCertHash, boolean includeRit,
+      boolean inheritCaRevocation) throws OcspStoreException {
+    List<CertStatusInfo> infos = getCertStatus0(time, reqIssuer, serialNumbers,
+        includeCertHash, includeRit, inheritCaRevocation);
+    if (infos != null) {
+      for (CertStatusInfo info : infos) {
+        adaptNextUpdate(time, info);
+      }
+    }
+    return infos;
+  } // method getCertStatus
 
+  private void adaptNextUpdate(Date time, CertStatusInfo info) {
     if (info != null && minNextUpdatePeriod != null && !isIgnoreExpiredCrls()) {
       if (unknownCertBehaviour == UnknownCertBehaviour.good
           || unknownCertBehaviour == UnknownCertBehaviour.unknown) {
@@ -126,9 +167,7 @@ public abstract class OcspStore implements Closeable {
         }
       }
     }
-
-    return info;
-  } // method getCertStatus
+  } // method adaptNextUpdate
 
   /**
    * Return the certificate status.
@@ -153,6 +192,80 @@ public abstract class OcspStore implements Closeable {
       BigInteger serialNumber, boolean includeCertHash, boolean includeRit,
       boolean inheritCaRevocation) throws OcspStoreException;
 
+  /**
+   * Return the status of several certificates issued by the same issuer. The default
+   * implementation calls
+   * {@link #getCertStatus0(Date, RequestIssuer, BigInteger, boolean, boolean, boolean)}
+   * for each serial number, stores which can retrieve the status of several certificates
+   * at once should overwrite this method.
+   *
+   * @param time
+   *          Time of the certificate status. Must not be {@code null}.
+   * @param reqIssuer
+   *          Requested issuer
+   * @param serialNumbers
+   *          Serial numbers of the target certificates. Must not be {@code null}.
+   * @param includeCertHash
+   *          Whether to include the hash of target certificate in the response.
+   * @param includeRit
+   *          Whether to include the revocation invalidity time in the response.
+   * @param inheritCaRevocation
+   *          Whether to inherit CA revocation
+   * @return the certificate status in the same order as the serialNumbers, or {@code null}
+   *         if the issuer is unknown.
+   * @throws OcspStoreException
+   *           If OCSP store failed to retrieve the status.
+   */
+  protected List<CertStatusInfo> getCertStatus0(Date time, RequestIssuer reqIssuer,
+      List<BigInteger> serialNumbers, boolean includeCertHash, boolean includeRit,
+      boolean inheritCaRevocation) throws OcspStoreException {
+    List<CertStatusInfo> infos = new ArrayList<>(serialNumbers.size());
+    for (BigInteger serialNumber : serialNumbers) {
+      CertStatusInfo info = getCertStatus0(time, reqIssuer, serialNumber,
+          includeCertHash, includeRit, inheritCaRevocation);
+      if (info == null) {
+        return null;
+      }
+      infos.add(info);
+    }
+    return infos;
+  } // method getCertStatus0
+
+  /**
+   * Returns the issuers known to this store. The default implementation returns an empty list,
+   * meaning that the store does not support the enumeration of issuers.
+   *
+   * @param hashAlgo
+   *          Hash algorithm of the issuerNameHash and issuerKeyHash. Must not be {@code null}.
+   * @return the issuers known to this store.
+   */
+  public List<RequestIssuer> getIssuers(HashAlgo hashAlgo) {
+    return Collections.emptyList();
+  } // method getIssuers
+
+  /**
+   * Retrieves the serial numbers of the certificates issued by the given issuer which are
+   * still valid. The entries are returned in ascending order of the store-specific id.
+   * The default implementation returns no entries.
+   *
+   * @param reqIssuer
+   *          Requested issuer. Must not be {@code null}.
+   * @param startId
+   *          The entries with id greater than startId will be returned. Use 0 for the
+   *          first call.
+   * @param numEntries
+   *          Maximal number of entries to be returned.
+   * @param serialNumbers
+   *          List to which the serial numbers are added. Must not be {@code null}.
+   * @return the startId for the next call, or 0 if there are no more entries.
+   * @throws OcspStoreException
+   *           If OCSP store failed to retrieve the serial numbers.
+   */
+  public long getSerialNumbers(RequestIssuer reqIssuer, long startId, int numEntries,
+      List<BigInteger> serialNumbers) throws OcspStoreException {
+    return 0;
+  } // method getSerialNumbers
+
   /**
    * Initialize the OCSP store.
    *
@@ -120,7 +120,13 @@ public class RequestIssuer {
 
   @Override
   public int hashCode() {
-    return toString().hashCode();
+    // computed over the bytes directly, without creating the hex string
+    int result = 1;
+    final int to = from + length;
+    for (int i = from; i < to; i++) {
+      result = 31 * result + data[i];
+    }
+    return result;
   }
 
   @Override
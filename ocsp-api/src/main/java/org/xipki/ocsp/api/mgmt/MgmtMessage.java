@@ -27,6 +27,7 @@ public abstract class MgmtMessage {
 
   public enum MgmtAction {
 
+    buildStaticResponses,
     refreshTokenForSignerType,
     restartServer;
 
@@ -25,6 +25,61 @@ package org.xipki.ocsp.api.mgmt;
 
 public abstract class MgmtRequest extends MgmtMessage {
 
+  public static class BuildStaticResponses extends MgmtRequest {
+
+    private String responder;
+
+    private String file;
+
+    private String certIdHashAlgo;
+
+    private int parallelism;
+
+    public BuildStaticResponses() {
+    }
+
+    public BuildStaticResponses(String responder, String file, String certIdHashAlgo,
+        int parallelism) {
+      this.responder = responder;
+      this.file = file;
+      this.certIdHashAlgo = certIdHashAlgo;
+      this.parallelism = parallelism;
+    }
+
+    public String getResponder() {
+      return responder;
+    }
+
+    public void setResponder(String responder) {
+      this.responder = responder;
+    }
+
+    public String getFile() {
+      return file;
+    }
+
+    public void setFile(String file) {
+      this.file = file;
+    }
+
+    public String getCertIdHashAlgo() {
+      return certIdHashAlgo;
+    }
+
+    public void setCertIdHashAlgo(String certIdHashAlgo) {
+      this.certIdHashAlgo = certIdHashAlgo;
+    }
+
+    public int getParallelism() {
+      return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+      this.parallelism = parallelism;
+    }
+
+  }
+
   public static class Name extends MgmtRequest {
 
     private String name;
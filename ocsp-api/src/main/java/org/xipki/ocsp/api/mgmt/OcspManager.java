@@ -29,4 +29,23 @@ public interface OcspManager {
   void restartOcspServer() throws OcspMgmtException;
 
   void refreshTokenForSignerType(String signerType) throws OcspMgmtException;
+
+  /**
+   * Builds the file of pre-produced responses of all valid certificates known to the
+   * responder.
+   *
+   * @param responder
+   *          Name of the responder.
+   * @param file
+   *          Path of the file on the OCSP server. It will be replaced atomically.
+   * @param certIdHashAlgo
+   *          Hash algorithm of the CertID in the responses.
+   * @param parallelism
+   *          Number of threads to build the responses.
+   * @throws OcspMgmtException
+   *           if error occurs.
+   */
+  void buildStaticResponses(String responder, String file, String certIdHashAlgo,
+      int parallelism) throws OcspMgmtException;
+
 }
@@ -120,6 +120,14 @@ public class OcspMgmtClient implements OcspManager {
     voidTransmit(MgmtAction.refreshTokenForSignerType, req);
   }
 
+  @Override
+  public void buildStaticResponses(String responder, String file, String certIdHashAlgo,
+      int parallelism) throws OcspMgmtException {
+    MgmtRequest.BuildStaticResponses req =
+        new MgmtRequest.BuildStaticResponses(responder, file, certIdHashAlgo, parallelism);
+    voidTransmit(MgmtAction.buildStaticResponses, req);
+  }
+
   private void voidTransmit(MgmtAction action, MgmtRequest req) throws OcspMgmtException {
     transmit(action, req, true);
   }
@@ -29,6 +29,7 @@ import org.xipki.datasource.DataSourceConf;
 import org.xipki.ocsp.api.CertStatusInfo.UnknownCertBehaviour;
 import org.xipki.ocsp.api.CertStatusInfo.UnknownIssuerBehaviour;
 import org.xipki.security.CertpathValidationModel;
+import org.xipki.security.HashAlgo;
 import org.xipki.security.Securities.KeystoreConf;
 import org.xipki.util.Args;
 import org.xipki.util.FileOrBinary;
@@ -321,6 +322,13 @@ public class OcspServerConf extends ValidatableConf {
 
     private List<String> stores;
 
+    /**
+     * File of the pre-produced responses generated by the management action
+     * buildStaticResponses. The requests without nonce will be answered from this file.
+     * The stores may be empty if this file is set.
+     */
+    private String staticResponseFile;
+
     private String name;
 
     public List<String> getServletPaths() {
@@ -385,6 +393,14 @@ public class OcspServerConf extends ValidatableConf {
       this.stores = stores;
     }
 
+    public String getStaticResponseFile() {
+      return staticResponseFile;
+    }
+
+    public void setStaticResponseFile(String staticResponseFile) {
+      this.staticResponseFile = staticResponseFile;
+    }
+
     public String getName() {
       return name;
     }
@@ -399,18 +415,118 @@ public class OcspServerConf extends ValidatableConf {
       notEmpty(signer, "signer");
       notEmpty(request, "request");
       notEmpty(response, "response");
-      notEmpty(stores, "stores");
+      if (staticResponseFile == null) {
+        notEmpty(stores, "stores");
+      }
       notEmpty(name, "name");
     }
 
   } // class Responder
 
+  public static class PreSigning extends ValidatableConf {
+
+    /**
+     * Names of the responders whose responses will be pre-signed. {@code null} for all
+     * responders.
+     */
+    private List<String> responders;
+
+    /**
+     * Interval between two runs. Defaults to the half of the response cache's validity.
+     */
+    private String interval;
+
+    /**
+     * Number of threads signing the responses.
+     */
+    private int parallelism = 1;
+
+    /**
+     * Maximal number of responses signed per second. 0 for no limit.
+     */
+    private int rateLimit;
+
+    /**
+     * Hash algorithm of the CertID in the pre-signed responses. Only requests whose CertID uses
+     * this hash algorithm are answered with the pre-signed responses.
+     */
+    private String certIdHashAlgo = "SHA1";
+
+    public List<String> getResponders() {
+      return responders;
+    }
+
+    public void setResponders(List<String> responders) {
+      this.responders = responders;
+    }
+
+    public String getInterval() {
+      return interval;
+    }
+
+    public void setInterval(String interval) {
+      this.interval = interval;
+    }
+
+    public int getParallelism() {
+      return parallelism;
+    }
+
+    public void setParallelism(int parallelism) {
+      this.parallelism = parallelism;
+    }
+
+    public int getRateLimit() {
+      return rateLimit;
+    }
+
+    public void setRateLimit(int rateLimit) {
+      this.rateLimit = rateLimit;
+    }
+
+    public String getCertIdHashAlgo() {
+      return certIdHashAlgo;
+    }
+
+    public void setCertIdHashAlgo(String certIdHashAlgo) {
+      this.certIdHashAlgo = certIdHashAlgo;
+    }
+
+    @Override
+    public void validate() throws InvalidConfException {
+      notEmpty(certIdHashAlgo, "certIdHashAlgo");
+      if (HashAlgo.getInstance(certIdHashAlgo) == null) {
+        throw new InvalidConfException("unsupported certIdHashAlgo " + certIdHashAlgo);
+      }
+
+      if (parallelism < 1) {
+        throw new InvalidConfException("parallelism may not be less than 1");
+      }
+
+      if (rateLimit < 0) {
+        throw new InvalidConfException("rateLimit may not be negative");
+      }
+    }
+
+  } // class PreSigning
+
   public static class ResponseCache extends ValidatableConf {
 
     private DataSourceConf datasource;
 
     private String validity;
 
+    /**
+     * Maximal size, in MB, of the responses cached in memory in front of the
+     * database. A value of {@code null} or {@code 0} disables the in-memory cache.
+     */
+    private Integer memoryCacheSize;
+
+    /**
+     * Configuration of the background pre-signing of responses. {@code null} to disable it.
+     */
+    private PreSigning preSigning;
+
     public DataSourceConf getDatasource() {
       return datasource;
     }
@@ -431,9 +547,29 @@ public class OcspServerConf extends ValidatableConf {
       return validity == null ? new Validity(1, Unit.DAY) : Validity.getInstance(validity);
     }
 
+    public Integer getMemoryCacheSize() {
+      return memoryCacheSize;
+    }
+
+    public void setMemoryCacheSize(Integer memoryCacheSize) {
+      this.memoryCacheSize = memoryCacheSize;
+    }
+
+    public PreSigning getPreSigning() {
+      return preSigning;
+    }
+
+    public void setPreSigning(PreSigning preSigning) {
+      this.preSigning = preSigning;
+    }
+
     @Override
     public void validate() throws InvalidConfException {
       notNull(datasource, "datasource");
+      if (memoryCacheSize != null && memoryCacheSize < 0) {
+        throw new InvalidConfException("memoryCacheSize may not be negative");
+      }
+      validate(preSigning);
     }
 
   } // class ResponseCache
@@ -42,6 +42,8 @@ import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import org.bouncycastle.asn1.ASN1InputStream;
@@ -77,6 +79,7 @@ import org.xipki.ocsp.server.store.CaDbCertStatusStore;
 import org.xipki.ocsp.server.store.CrlDbCertStatusStore;
 import org.xipki.ocsp.server.store.DbCertStatusStore;
 import org.xipki.ocsp.server.store.ResponseCacher;
+import org.xipki.ocsp.server.store.StaticResponseStore;
 import org.xipki.ocsp.server.store.ejbca.EjbcaCertStatusStore;
 import org.xipki.ocsp.server.type.CertID;
 import org.xipki.ocsp.server.type.EncodingException;
@@ -155,6 +158,19 @@ public class OcspServerImpl implements OcspServer {
     }
   } // class OcspRespControl
 
+  /**
+   * Certificate status retrieved in advance for the CertIDs of the same issuer.
+   */
+  private static class PrefetchedCertStatus {
+    final OcspStore store;
+    final CertStatusInfo certStatusInfo;
+
+    PrefetchedCertStatus(OcspStore store, CertStatusInfo certStatusInfo) {
+      this.store = store;
+      this.certStatusInfo = certStatusInfo;
+    }
+  } // class PrefetchedCertStatus
+
   public static final long DFLT_CACHE_MAX_AGE = 60; // 1 minute
 
   private static final String STORE_TYPE_XIPKI_DB = "xipki-db";
@@ -192,6 +208,10 @@ public class OcspServerImpl implements OcspServer {
 
   private ResponseCacher responseCacher;
 
+  private ResponsePreSigner responsePreSigner;
+
+  private ScheduledThreadPoolExecutor staticResponsesUpdater;
+
   private Map<String, ResponderImpl> responders = new HashMap<>();
 
   private Map<String, ResponseSigner> signers = new HashMap<>();
@@ -310,6 +330,11 @@ public class OcspServerImpl implements OcspServer {
     initialized.set(false);
 
     // reset
+    if (responsePreSigner != null) {
+      responsePreSigner.close();
+      responsePreSigner = null;
+    }
+    closeStaticResponseStores();
     responseCacher = null;
     responders.clear();
     signers.clear();
@@ -463,7 +488,9 @@ public class OcspServerImpl implements OcspServer {
       } finally {
         closeStream(dsStream);
       }
-      responseCacher = new ResponseCacher(datasource, master, cacheType.validity());
+      Integer memoryCacheSize = cacheType.getMemoryCacheSize();
+      responseCacher = new ResponseCacher(datasource, master, cacheType.validity(),
+          memoryCacheSize == null ? 0 : memoryCacheSize.intValue());
       responseCacher.init();
     }
 
@@ -592,11 +619,64 @@ public class OcspServerImpl implements OcspServer {
       list2.add(m.str);
     }
     this.servletPaths = list2;
+
+    // static responses
+    boolean withStaticResponses = false;
+    for (ResponderImpl responder : responders.values()) {
+      if (responder.getResponderOption().getStaticResponseFile() != null) {
+        withStaticResponses = true;
+        updateStaticResponseStore(responder);
+      }
+    }
+
+    if (withStaticResponses) {
+      staticResponsesUpdater = new ScheduledThreadPoolExecutor(1);
+      staticResponsesUpdater.setRemoveOnCancelPolicy(true);
+      // check every 60 seconds whether the files have been replaced
+      staticResponsesUpdater.scheduleAtFixedRate(new Runnable() {
+        @Override
+        public void run() {
+          for (ResponderImpl responder : responders.values()) {
+            if (responder.getResponderOption().getStaticResponseFile() != null) {
+              updateStaticResponseStore(responder);
+            }
+          }
+        }
+      }, 60, 60, TimeUnit.SECONDS);
+    }
+
+    // pre-signing of responses
+    if (cacheType != null && cacheType.getPreSigning() != null) {
+      OcspServerConf.PreSigning preSigning = cacheType.getPreSigning();
+      List<ResponderImpl> preSignResponders;
+      if (preSigning.getResponders() == null) {
+        preSignResponders = new ArrayList<>(responders.values());
+      } else {
+        preSignResponders = new ArrayList<>(preSigning.getResponders().size());
+        for (String name : preSigning.getResponders()) {
+          ResponderImpl responder = responders.get(name);
+          if (responder == null) {
+            throw new InvalidConfException("no responder named '" + name + "' is defined");
+          }
+          preSignResponders.add(responder);
+        }
+      }
+
+      responsePreSigner = new ResponsePreSigner(this, responseCacher, master,
+          preSignResponders, preSigning, cacheType.validity());
+      responsePreSigner.start();
+    }
   } // method init0
 
   @Override
   public void close() {
     LOG.info("stopped OCSP Responder");
+    if (responsePreSigner != null) {
+      responsePreSigner.close();
+    }
+
+    closeStaticResponseStores();
+
     if (responseCacher != null) {
       responseCacher.close();
     }
@@ -610,6 +690,91 @@ public class OcspServerImpl implements OcspServer {
     }
   } // method close
 
+  /**
+   * Opens the static response file of the responder, if it has not been opened yet or has
+   * been replaced.
+   */
+  private static void updateStaticResponseStore(ResponderImpl responder) {
+    File file = new File(responder.getResponderOption().getStaticResponseFile());
+    StaticResponseStore current = responder.getStaticResponseStore();
+    if (current != null && !current.isModified()) {
+      return;
+    }
+
+    if (!file.exists()) {
+      if (current == null) {
+        LOG.warn("static response file {} does not exist", file.getPath());
+      }
+      return;
+    }
+
+    try {
+      responder.setStaticResponseStore(StaticResponseStore.open(file));
+      if (current != null) {
+        current.close();
+      }
+    } catch (IOException ex) {
+      LogUtil.error(LOG, ex, "could not open static response file " + file.getPath());
+    }
+  } // method updateStaticResponseStore
+
+  private void closeStaticResponseStores() {
+    if (staticResponsesUpdater != null) {
+      staticResponsesUpdater.shutdownNow();
+      staticResponsesUpdater = null;
+    }
+
+    for (ResponderImpl responder : responders.values()) {
+      StaticResponseStore store = responder.getStaticResponseStore();
+      if (store != null) {
+        responder.setStaticResponseStore(null);
+        store.close();
+      }
+    }
+  } // method closeStaticResponseStores
+
+  /**
+   * Builds the file of pre-produced responses of all valid certificates known to the
+   * responder. The file can be used as staticResponseFile of responders without access to
+   * the stores.
+   *
+   * @param responderName
+   *          Name of the responder. Must not be {@code null}.
+   * @param file
+   *          Target file. It will be replaced atomically. Must not be {@code null}.
+   * @param certIdHashAlgo
+   *          Hash algorithm of the CertID in the responses. Must not be {@code null}.
+   * @param parallelism
+   *          Number of threads to build the responses.
+   * @return number of responses in the file.
+   * @throws OcspStoreException
+   *           if the file could not be built.
+   */
+  public int buildStaticResponseFile(String responderName, String file, String certIdHashAlgo,
+      int parallelism) throws OcspStoreException {
+    Args.notBlank(file, "file");
+    ResponderImpl responder = responders.get(Args.notBlank(responderName, "responderName"));
+    if (responder == null) {
+      throw new OcspStoreException("unknown responder " + responderName);
+    }
+
+    HashAlgo hashAlgo = HashAlgo.getInstance(Args.notBlank(certIdHashAlgo, "certIdHashAlgo"));
+    if (hashAlgo == null) {
+      throw new OcspStoreException("unknown hash algorithm " + certIdHashAlgo);
+    }
+
+    try {
+      return new StaticResponseFileProducer(this, responder, hashAlgo, parallelism)
+          .produce(new File(file));
+    } catch (IOException ex) {
+      throw new OcspStoreException("could not build static response file: " + ex.getMessage(),
+          ex);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new OcspStoreException("interrupted", ex);
+    }
+  } // method buildStaticResponseFile
+
   @Override
   public OcspRespWithCacheInfo answer(Responder responder2, byte[] request, boolean viaGet) {
     ResponderImpl responder = (ResponderImpl) responder2;
@@ -738,8 +903,19 @@ public class OcspServerImpl implements OcspServer {
         concurrentSigner = signer.getFirstSigner();
       }
 
+      StaticResponseStore staticResponseStore = responder.getStaticResponseStore();
+      if (requestsSize == 1 && nonceExtn == null && staticResponseStore != null) {
+        CertID certId = requestList.get(0);
+        if (reqOpt.allows(certId.getIssuer().hashAlgorithm())) {
+          OcspRespWithCacheInfo staticResp = staticResponseStore.getResponse(certId);
+          if (staticResp != null) {
+            return staticResp;
+          }
+        }
+      }
+
       AlgorithmCode cacheDbSigAlgCode = null;
-      BigInteger cacheDbSerialNumber = null;
+      CertID cacheDbCertId = null;
       Integer cacheDbIssuerId = null;
 
       boolean canCacheDb = (requestsSize == 1) && (responseCacher != null)
@@ -757,11 +933,11 @@ public class OcspServerImpl implements OcspServer {
         cacheDbSigAlgCode = concurrentSigner.getAlgorithmCode();
 
         cacheDbIssuerId = responseCacher.getIssuerId(certId.getIssuer());
-        cacheDbSerialNumber = certId.getSerialNumber();
+        cacheDbCertId = certId;
 
         if (cacheDbIssuerId != null) {
           OcspRespWithCacheInfo cachedResp = responseCacher.getOcspResponse(
-              cacheDbIssuerId.intValue(), cacheDbSerialNumber, cacheDbSigAlgCode);
+              cacheDbIssuerId.intValue(), cacheDbCertId, cacheDbSigAlgCode);
           if (cachedResp != null) {
             return cachedResp;
           }
@@ -788,11 +964,15 @@ public class OcspServerImpl implements OcspServer {
       ResponderID responderId = signer.getResponderId(repOpt.isResponderIdByName());
       OCSPRespBuilder builder = new OCSPRespBuilder(responderId);
 
+      PrefetchedCertStatus[] prefetchedStatuses = (requestsSize < 2) ? null
+          : prefetchCertStatus(requestList, responder, reqOpt, repOpt);
+
       boolean unknownAsRevoked = false;
       AtomicBoolean unknownAsRevoked0 = new AtomicBoolean(false);
       for (int i = 0; i < requestsSize; i++) {
         OcspRespWithCacheInfo failureOcspResp = processCertReq(
             unknownAsRevoked0, requestList.get(i),
+            prefetchedStatuses == null ? null : prefetchedStatuses[i],
             builder, responder, reqOpt, repOpt, repControl);
 
         if (failureOcspResp != null) {
@@ -812,21 +992,13 @@ public class OcspServerImpl implements OcspServer {
         builder.setResponseExtensions(new Extensions(respExtensions));
       }
 
-      TaggedCertSequence certsInResp;
-      EmbedCertsMode certsMode = repOpt.getEmbedCertsMode();
-      if (certsMode == EmbedCertsMode.SIGNER) {
-        certsInResp = signer.getSequenceOfCert();
-      } else if (certsMode == EmbedCertsMode.NONE) {
-        certsInResp = null;
-      } else {
-        // certsMode == EmbedCertsMode.SIGNER_AND_CA
-        certsInResp = signer.getSequenceOfCertChain();
-      }
+      TaggedCertSequence certsInResp = getCertsInResp(signer, repOpt);
 
       byte[] encodeOcspResponse;
       try {
         encodeOcspResponse = builder.buildOCSPResponse(concurrentSigner, certsInResp, new Date());
       } catch (NoIdleSignerException ex) {
+        LOG.warn("no idle signer, signer pool: {}", concurrentSigner.getMetrics());
         return unsuccesfulOCSPRespMap.get(OcspResponseStatus.tryLater);
       } catch (OCSPException ex) {
         LogUtil.error(LOG, ex, "answer() basicOcspBuilder.build");
@@ -837,7 +1009,7 @@ public class OcspServerImpl implements OcspServer {
       if (canCacheDb && repControl.canCacheInfo) {
         // Don't cache the response with status UNKNOWN, since this may result in DDoS
         // of storage
-        responseCacher.storeOcspResponse(cacheDbIssuerId.intValue(), cacheDbSerialNumber,
+        responseCacher.storeOcspResponse(cacheDbIssuerId.intValue(), cacheDbCertId,
             repControl.cacheThisUpdate, repControl.cacheNextUpdate, cacheDbSigAlgCode,
             encodeOcspResponse);
       }
@@ -857,8 +1029,161 @@ public class OcspServerImpl implements OcspServer {
     }
   } // method ask
 
+  /**
+   * Builds the response without nonce for the given CertID, and stores it in the response
+   * cache.
+   *
+   * @param responder
+   *          Responder. Must not be {@code null}.
+   * @param cacheDbIssuerId
+   *          Id of the issuer in the cache database.
+   * @param certId
+   *          CertID. Must not be {@code null}.
+   * @return whether the response has been cached.
+   */
+  boolean preSignResponse(ResponderImpl responder, int cacheDbIssuerId, CertID certId) {
+    ResponseCacher cacher = responseCacher;
+    if (cacher == null || !cacher.isOnService()) {
+      return false;
+    }
+
+    OcspRespWithCacheInfo resp = buildCacheableResponse(responder, certId);
+    if (resp == null) {
+      return false;
+    }
+
+    ResponseCacheInfo cacheInfo = resp.getCacheInfo();
+    cacher.storeOcspResponse(cacheDbIssuerId, certId,
+        cacheInfo.getThisUpdate(), cacheInfo.getNextUpdate(),
+        responder.getSigner().getFirstSigner().getAlgorithmCode(), resp.getResponse());
+    return true;
+  } // method preSignResponse
+
+  /**
+   * Builds the response without nonce for the given CertID, signed by the first signer of
+   * the responder.
+   *
+   * @param responder
+   *          Responder. Must not be {@code null}.
+   * @param certId
+   *          CertID. Must not be {@code null}.
+   * @return the response with thisUpdate and nextUpdate (in seconds, {@code Long.MAX_VALUE}
+   *         if not present), or {@code null} if the response could not be built or may not
+   *         be cached.
+   */
+  OcspRespWithCacheInfo buildCacheableResponse(ResponderImpl responder, CertID certId) {
+    ResponseSigner signer = responder.getSigner();
+    OcspServerConf.ResponseOption repOpt = responder.getResponseOption();
+
+    OcspRespControl repControl = new OcspRespControl();
+    repControl.canCacheInfo = true;
+
+    ResponderID responderId = signer.getResponderId(repOpt.isResponderIdByName());
+    OCSPRespBuilder builder = new OCSPRespBuilder(responderId);
+
+    try {
+      OcspRespWithCacheInfo failureOcspResp = processCertReq(new AtomicBoolean(false), certId,
+          null, builder, responder, responder.getRequestOption(), repOpt, repControl);
+      // Don't cache the response with status UNKNOWN, same as in answer()
+      if (failureOcspResp != null || !repControl.canCacheInfo) {
+        return null;
+      }
+
+      byte[] encodeOcspResponse = builder.buildOCSPResponse(signer.getFirstSigner(),
+          getCertsInResp(signer, repOpt), new Date());
+
+      ResponseCacheInfo cacheInfo = new ResponseCacheInfo(repControl.cacheThisUpdate);
+      cacheInfo.setNextUpdate(repControl.cacheNextUpdate);
+      return new OcspRespWithCacheInfo(encodeOcspResponse, cacheInfo);
+    } catch (NoIdleSignerException ex) {
+      LOG.warn("no idle signer to build response");
+      return null;
+    } catch (IOException | OCSPException ex) {
+      LogUtil.error(LOG, ex, "could not build response");
+      return null;
+    }
+  } // method buildCacheableResponse
+
+  private static TaggedCertSequence getCertsInResp(ResponseSigner signer,
+      OcspServerConf.ResponseOption repOpt) {
+    EmbedCertsMode certsMode = repOpt.getEmbedCertsMode();
+    if (certsMode == EmbedCertsMode.SIGNER) {
+      return signer.getSequenceOfCert();
+    } else if (certsMode == EmbedCertsMode.NONE) {
+      return null;
+    } else {
+      // certsMode == EmbedCertsMode.SIGNER_AND_CA
+      return signer.getSequenceOfCertChain();
+    }
+  } // method getCertsInResp
+
+  /**
+   * Retrieves the status of the certificates with the same issuer at once.
+   *
+   * @return the prefetched status, with the same order as requestList. The element is
+   *         {@code null} if the status is not prefetched.
+   */
+  private PrefetchedCertStatus[] prefetchCertStatus(List<CertID> requestList,
+      ResponderImpl responder, RequestOption reqOpt, OcspServerConf.ResponseOption repOpt) {
+    final int size = requestList.size();
+    PrefetchedCertStatus[] prefetchedStatuses = new PrefetchedCertStatus[size];
+    boolean[] processed = new boolean[size];
+
+    Date now = new Date();
+    for (int i = 0; i < size; i++) {
+      if (processed[i]) {
+        continue;
+      }
+
+      RequestIssuer reqIssuer = requestList.get(i).getIssuer();
+      List<Integer> indexes = new ArrayList<>(size - i);
+      for (int j = i; j < size; j++) {
+        if (!processed[j] && reqIssuer.equals(requestList.get(j).getIssuer())) {
+          processed[j] = true;
+          indexes.add(j);
+        }
+      }
+
+      // the status of single CertID will be retrieved in processCertReq
+      if (indexes.size() < 2 || !reqOpt.allows(reqIssuer.hashAlgorithm())) {
+        continue;
+      }
+
+      List<BigInteger> serials = new ArrayList<>(indexes.size());
+      for (Integer idx : indexes) {
+        serials.add(requestList.get(idx).getSerialNumber());
+      }
+
+      for (OcspStore store : responder.getStores()) {
+        if (!store.knowsIssuer(reqIssuer)) {
+          continue;
+        }
+
+        List<CertStatusInfo> infos;
+        try {
+          infos = store.getCertStatus(now, reqIssuer, serials, repOpt.isIncludeCerthash(),
+              repOpt.isIncludeInvalidityDate(),
+              responder.getResponderOption().isInheritCaRevocation());
+        } catch (OcspStoreException ex) {
+          // the status will be retrieved again in processCertReq
+          LogUtil.warn(LOG, ex, "getCertStatus() of CertStatusStore " + store.getName());
+          infos = null;
+        }
+
+        if (infos != null) {
+          for (int k = 0; k < indexes.size(); k++) {
+            prefetchedStatuses[indexes.get(k)] = new PrefetchedCertStatus(store, infos.get(k));
+          }
+        }
+        break;
+      }
+    }
+
+    return prefetchedStatuses;
+  } // method prefetchCertStatus
+
   private OcspRespWithCacheInfo processCertReq(AtomicBoolean unknownAsRevoked,
-      CertID certId, OCSPRespBuilder builder,
+      CertID certId, PrefetchedCertStatus prefetchedStatus, OCSPRespBuilder builder,
       ResponderImpl responder, RequestOption reqOpt, OcspServerConf.ResponseOption repOpt,
       OcspRespControl repControl) throws IOException {
     HashAlgo reqHashAlgo = certId.getIssuer().hashAlgorithm();
@@ -870,8 +1195,6 @@ public class OcspServerImpl implements OcspServer {
     CertStatusInfo certStatusInfo = null;
     boolean exceptionOccurs = false;
 
-    BigInteger serial = certId.getSerialNumber();
-
     RequestIssuer reqIssuer = certId.getIssuer();
     Date now = new Date();
     for (OcspStore store : responder.getStores()) {
@@ -880,9 +1203,15 @@ public class OcspServerImpl implements OcspServer {
       }
 
       try {
-        certStatusInfo = store.getCertStatus(now, certId.getIssuer(), serial,
-            repOpt.isIncludeCerthash(), repOpt.isIncludeInvalidityDate(),
-            responder.getResponderOption().isInheritCaRevocation());
+        if (prefetchedStatus != null && prefetchedStatus.store == store
+            && prefetchedStatus.certStatusInfo != null) {
+          certStatusInfo = prefetchedStatus.certStatusInfo;
+        } else {
+          // the serial number is created only if a store is queried
+          certStatusInfo = store.getCertStatus(now, reqIssuer, certId.getSerialNumber(),
+              repOpt.isIncludeCerthash(), repOpt.isIncludeInvalidityDate(),
+              responder.getResponderOption().isInheritCaRevocation());
+        }
         if (certStatusInfo != null) {
           CertStatus status = certStatusInfo.getCertStatus();
           if (status == CertStatus.UNKNOWN || status == CertStatus.IGNORE) {
@@ -1062,6 +1391,9 @@ public class OcspServerImpl implements OcspServer {
     HealthCheckResult signerHealth = new HealthCheckResult();
     signerHealth.setName("Signer");
     signerHealth.setHealthy(signerHealthy);
+    for (ConcurrentContentSigner signer : responder.getSigner().getSigners()) {
+      signerHealth.getStatuses().put(signer.getAlgorithmName(), signer.getMetrics().toMap());
+    }
     result.addChildCheck(signerHealth);
 
     result.setHealthy(healthy);
@@ -22,6 +22,7 @@ import java.util.List;
 import org.xipki.ocsp.api.OcspStore;
 import org.xipki.ocsp.api.Responder;
 import org.xipki.ocsp.server.OcspServerConf.ResponseOption;
+import org.xipki.ocsp.server.store.StaticResponseStore;
 import org.xipki.util.Args;
 
 /**
@@ -43,13 +44,15 @@ public class ResponderImpl implements Responder {
 
   private final List<OcspStore> stores;
 
+  private volatile StaticResponseStore staticResponseStore;
+
   ResponderImpl(ResponderOption responderOption, RequestOption requestOption,
       ResponseOption responseOption, ResponseSigner signer, List<OcspStore> stores) {
     this.responderOption = Args.notNull(responderOption, "responderOption");
     this.requestOption = Args.notNull(requestOption, "requestOption");
     this.responseOption = Args.notNull(responseOption, "responseOption");
     this.signer = Args.notNull(signer, "signer");
-    this.stores = Args.notEmpty(stores, "stores");
+    this.stores = Args.notNull(stores, "stores");
   }
 
   public ResponderOption getResponderOption() {
@@ -72,6 +75,14 @@ public class ResponderImpl implements Responder {
     return stores;
   }
 
+  public StaticResponseStore getStaticResponseStore() {
+    return staticResponseStore;
+  }
+
+  void setStaticResponseStore(StaticResponseStore staticResponseStore) {
+    this.staticResponseStore = staticResponseStore;
+  }
+
   @Override
   public int getMaxRequestSize() {
     return requestOption.getMaxRequestSize();
@@ -54,6 +54,8 @@ class ResponderOption {
 
   private final List<String> servletPaths;
 
+  private final String staticResponseFile;
+
   ResponderOption(OcspServerConf.Responder conf) throws InvalidConfException {
     Args.notNull(conf, "conf");
     String str = conf.getMode();
@@ -85,6 +87,7 @@ class ResponderOption {
     }
     list = new ArrayList<>(paths);
     this.servletPaths = Collections.unmodifiableList(list);
+    this.staticResponseFile = conf.getStaticResponseFile();
   } // constructor
 
   public OcspMode getMode() {
@@ -115,4 +118,8 @@ class ResponderOption {
     return servletPaths;
   }
 
+  public String getStaticResponseFile() {
+    return staticResponseFile;
+  }
+
 }
@@ -0,0 +1,310 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server;
+
+import java.io.Closeable;
+import java.math.BigInteger;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ocsp.api.OcspStore;
+import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.ocsp.server.store.ResponseCacher;
+import org.xipki.ocsp.server.type.CertID;
+import org.xipki.security.HashAlgo;
+import org.xipki.util.Args;
+import org.xipki.util.LogUtil;
+import org.xipki.util.Validity;
+
+/**
+ * Background producer which signs the responses of all valid certificates known to the
+ * responders in advance, and stores them via the {@link ResponseCacher}. Requests without
+ * nonce can then be answered without signing.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+class ResponsePreSigner implements Closeable {
+
+  private class PreSignService implements Runnable {
+
+    @Override
+    public void run() {
+      if (!inProcess.compareAndSet(false, true)) {
+        return;
+      }
+
+      try {
+        preSign();
+      } catch (Throwable th) {
+        LogUtil.error(LOG, th, "error while pre-signing the responses");
+      } finally {
+        inProcess.set(false);
+      }
+    }
+
+  } // class PreSignService
+
+  private class PreSignTask implements Callable<Boolean> {
+
+    private final ResponderImpl responder;
+
+    private final int cacheIssuerId;
+
+    private final CertID certId;
+
+    PreSignTask(ResponderImpl responder, int cacheIssuerId, CertID certId) {
+      this.responder = responder;
+      this.cacheIssuerId = cacheIssuerId;
+      this.certId = certId;
+    }
+
+    @Override
+    public Boolean call() throws InterruptedException {
+      if (stopped) {
+        return false;
+      }
+
+      acquirePermit();
+      return server.preSignResponse(responder, cacheIssuerId, certId);
+    }
+
+  } // class PreSignTask
+
+  private static final Logger LOG = LoggerFactory.getLogger(ResponsePreSigner.class);
+
+  private static final int PAGE_SIZE = 1000;
+
+  private final OcspServerImpl server;
+
+  private final ResponseCacher responseCacher;
+
+  private final boolean master;
+
+  private final List<ResponderImpl> responders;
+
+  private final HashAlgo certIdHashAlgo;
+
+  private final int parallelism;
+
+  // interval between two signing operations in nano-seconds, 0 for no limit.
+  private final long permitIntervalNanos;
+
+  // interval between two runs in seconds
+  private final long interval;
+
+  private final AtomicBoolean inProcess = new AtomicBoolean(false);
+
+  private long nextPermitNanos;
+
+  private volatile boolean stopped;
+
+  private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
+
+  private ScheduledFuture<?> preSignService;
+
+  private ExecutorService signingExecutor;
+
+  /**
+   * Constructor.
+   *
+   * @param server
+   *          OCSP server which builds the responses. Must not be {@code null}.
+   * @param responseCacher
+   *          Cacher to store the responses. Must not be {@code null}.
+   * @param master
+   *          Whether this server is allowed to write issuers to the cache database.
+   * @param responders
+   *          Responders whose responses will be pre-signed. Must not be {@code null}.
+   * @param conf
+   *          Configuration. Must not be {@code null}.
+   * @param cacheValidity
+   *          Validity of the cached responses. Must not be {@code null}.
+   */
+  ResponsePreSigner(OcspServerImpl server, ResponseCacher responseCacher, boolean master,
+      List<ResponderImpl> responders, OcspServerConf.PreSigning conf, Validity cacheValidity) {
+    this.server = Args.notNull(server, "server");
+    this.responseCacher = Args.notNull(responseCacher, "responseCacher");
+    this.master = master;
+    this.responders = Args.notNull(responders, "responders");
+    Args.notNull(conf, "conf");
+    Args.notNull(cacheValidity, "cacheValidity");
+
+    this.certIdHashAlgo = HashAlgo.getNonNullInstance(conf.getCertIdHashAlgo());
+    this.parallelism = Args.positive(conf.getParallelism(), "conf.parallelism");
+    int rateLimit = Args.notNegative(conf.getRateLimit(), "conf.rateLimit");
+    this.permitIntervalNanos = (rateLimit == 0) ? 0 : TimeUnit.SECONDS.toNanos(1) / rateLimit;
+
+    long minutes = (conf.getInterval() == null)
+        ? cacheValidity.approxMinutes() / 2
+        : Validity.getInstance(conf.getInterval()).approxMinutes();
+    // responses signed in the previous run would be removed before the next run
+    if (minutes >= cacheValidity.approxMinutes()) {
+      LOG.warn("interval of pre-signing is not less than the validity of cached responses");
+    }
+    this.interval = Math.max(1, minutes) * 60;
+  }
+
+  void start() {
+    signingExecutor = Executors.newFixedThreadPool(parallelism);
+    scheduledThreadPoolExecutor = new ScheduledThreadPoolExecutor(1);
+    scheduledThreadPoolExecutor.setRemoveOnCancelPolicy(true);
+
+    // give the stores time to load the issuers
+    this.preSignService = scheduledThreadPoolExecutor.scheduleAtFixedRate(
+        new PreSignService(), 60, interval, TimeUnit.SECONDS);
+    LOG.info("started pre-signing of responses every {} minutes with {} threads",
+        interval / 60, parallelism);
+  } // method start
+
+  @Override
+  public void close() {
+    stopped = true;
+
+    if (preSignService != null) {
+      preSignService.cancel(false);
+      preSignService = null;
+    }
+
+    if (signingExecutor != null) {
+      signingExecutor.shutdownNow();
+      signingExecutor = null;
+    }
+
+    if (scheduledThreadPoolExecutor != null) {
+      scheduledThreadPoolExecutor.shutdownNow();
+      scheduledThreadPoolExecutor = null;
+    }
+  } // method close
+
+  private void preSign() throws InterruptedException {
+    long start = System.currentTimeMillis();
+    long num = 0;
+    for (ResponderImpl responder : responders) {
+      if (!responder.getRequestOption().allows(certIdHashAlgo)) {
+        LOG.warn("CertID.hashAlgorithm {} is not allowed, skip pre-signing", certIdHashAlgo);
+        continue;
+      }
+
+      List<OcspStore> stores = responder.getStores();
+      for (int i = 0; i < stores.size(); i++) {
+        OcspStore store = stores.get(i);
+        for (RequestIssuer reqIssuer : store.getIssuers(certIdHashAlgo)) {
+          if (stopped) {
+            return;
+          }
+
+          // the status of this issuer will be retrieved from a previous store
+          boolean knownByPreviousStore = false;
+          for (int j = 0; j < i; j++) {
+            if (stores.get(j).knowsIssuer(reqIssuer)) {
+              knownByPreviousStore = true;
+              break;
+            }
+          }
+
+          if (!knownByPreviousStore) {
+            num += preSign(responder, store, reqIssuer);
+          }
+        }
+      }
+    }
+
+    LOG.info("pre-signed {} responses in {} ms", num, System.currentTimeMillis() - start);
+  } // method preSign
+
+  private long preSign(ResponderImpl responder, OcspStore store, RequestIssuer reqIssuer)
+      throws InterruptedException {
+    Integer cacheIssuerId = responseCacher.getIssuerId(reqIssuer);
+    try {
+      if (cacheIssuerId == null && master) {
+        X509Certificate issuerCert = store.getIssuerCert(reqIssuer);
+        if (issuerCert != null) {
+          cacheIssuerId = responseCacher.storeIssuer(issuerCert);
+        }
+      }
+    } catch (Exception ex) {
+      LogUtil.error(LOG, ex, "could not store issuer in the cache database");
+    }
+
+    if (cacheIssuerId == null) {
+      return 0;
+    }
+
+    long num = 0;
+    long startId = 0;
+    do {
+      List<BigInteger> serialNumbers = new ArrayList<>(PAGE_SIZE);
+      try {
+        startId = store.getSerialNumbers(reqIssuer, startId, PAGE_SIZE, serialNumbers);
+      } catch (Exception ex) {
+        LogUtil.error(LOG, ex, "could not get serial numbers from store " + store.getName());
+        break;
+      }
+
+      List<PreSignTask> tasks = new ArrayList<>(serialNumbers.size());
+      for (BigInteger serialNumber : serialNumbers) {
+        tasks.add(new PreSignTask(responder, cacheIssuerId, new CertID(reqIssuer, serialNumber)));
+      }
+
+      for (Future<Boolean> future : signingExecutor.invokeAll(tasks)) {
+        try {
+          if (future.get()) {
+            num++;
+          }
+        } catch (ExecutionException ex) {
+          LogUtil.warn(LOG, ex.getCause(), "could not pre-sign response");
+        }
+      }
+    } while (startId != 0 && !stopped);
+
+    return num;
+  } // method preSign
+
+  private void acquirePermit() throws InterruptedException {
+    if (permitIntervalNanos == 0) {
+      return;
+    }
+
+    long waitNanos;
+    synchronized (this) {
+      long now = System.nanoTime();
+      long permit = Math.max(now, nextPermitNanos);
+      nextPermitNanos = permit + permitIntervalNanos;
+      waitNanos = permit - now;
+    }
+
+    if (waitNanos > 0) {
+      TimeUnit.NANOSECONDS.sleep(waitNanos);
+    }
+  } // method acquirePermit
+
+}
@@ -122,6 +122,10 @@ class ResponseSigner {
     return macSigner;
   }
 
+  public List<ConcurrentContentSigner> getSigners() {
+    return signers;
+  }
+
   public ConcurrentContentSigner getFirstSigner() {
     return signers.get(0);
   }
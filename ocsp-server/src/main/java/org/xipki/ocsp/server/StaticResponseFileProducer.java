@@ -0,0 +1,171 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ocsp.api.OcspRespWithCacheInfo;
+import org.xipki.ocsp.api.OcspRespWithCacheInfo.ResponseCacheInfo;
+import org.xipki.ocsp.api.OcspStore;
+import org.xipki.ocsp.api.OcspStoreException;
+import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.ocsp.server.store.StaticResponseFileBuilder;
+import org.xipki.ocsp.server.store.StaticResponseStore;
+import org.xipki.ocsp.server.type.CertID;
+import org.xipki.security.HashAlgo;
+import org.xipki.util.Args;
+
+/**
+ * Produces the file of {@link StaticResponseStore} with the responses of all valid
+ * certificates known to a responder.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+class StaticResponseFileProducer {
+
+  private class BuildTask implements Callable<Boolean> {
+
+    private final StaticResponseFileBuilder builder;
+
+    private final CertID certId;
+
+    BuildTask(StaticResponseFileBuilder builder, CertID certId) {
+      this.builder = builder;
+      this.certId = certId;
+    }
+
+    @Override
+    public Boolean call() throws IOException {
+      OcspRespWithCacheInfo resp = server.buildCacheableResponse(responder, certId);
+      if (resp == null) {
+        return false;
+      }
+
+      ResponseCacheInfo cacheInfo = resp.getCacheInfo();
+      long nextUpdate = cacheInfo.getNextUpdate();
+      builder.add(certId.getIssuer(), certId.getSerialNumber(), cacheInfo.getThisUpdate(),
+          nextUpdate == Long.MAX_VALUE ? 0 : nextUpdate, resp.getResponse());
+      return true;
+    }
+
+  } // class BuildTask
+
+  private static final Logger LOG = LoggerFactory.getLogger(StaticResponseFileProducer.class);
+
+  private static final int PAGE_SIZE = 1000;
+
+  private final OcspServerImpl server;
+
+  private final ResponderImpl responder;
+
+  private final HashAlgo certIdHashAlgo;
+
+  private final int parallelism;
+
+  StaticResponseFileProducer(OcspServerImpl server, ResponderImpl responder,
+      HashAlgo certIdHashAlgo, int parallelism) {
+    this.server = Args.notNull(server, "server");
+    this.responder = Args.notNull(responder, "responder");
+    this.certIdHashAlgo = Args.notNull(certIdHashAlgo, "certIdHashAlgo");
+    this.parallelism = Args.positive(parallelism, "parallelism");
+  }
+
+  /**
+   * Produces the file.
+   *
+   * @param file
+   *          Target file. It will be replaced atomically. Must not be {@code null}.
+   * @return number of responses in the file.
+   * @throws IOException
+   *           if the file could not be written.
+   * @throws OcspStoreException
+   *           if the serial numbers could not be retrieved.
+   * @throws InterruptedException
+   *           if interrupted.
+   */
+  int produce(File file) throws IOException, OcspStoreException, InterruptedException {
+    long start = System.currentTimeMillis();
+    ExecutorService executor = Executors.newFixedThreadPool(parallelism);
+    try (StaticResponseFileBuilder builder = new StaticResponseFileBuilder(file)) {
+      List<OcspStore> stores = responder.getStores();
+      for (int i = 0; i < stores.size(); i++) {
+        OcspStore store = stores.get(i);
+        for (RequestIssuer reqIssuer : store.getIssuers(certIdHashAlgo)) {
+          // the status of this issuer will be retrieved from a previous store
+          boolean knownByPreviousStore = false;
+          for (int j = 0; j < i; j++) {
+            if (stores.get(j).knowsIssuer(reqIssuer)) {
+              knownByPreviousStore = true;
+              break;
+            }
+          }
+
+          if (!knownByPreviousStore) {
+            produce(executor, builder, store, reqIssuer);
+          }
+        }
+      }
+
+      builder.build();
+      LOG.info("produced {} responses in the file {} in {} ms", builder.size(),
+          file.getPath(), System.currentTimeMillis() - start);
+      return builder.size();
+    } finally {
+      executor.shutdownNow();
+    }
+  } // method produce
+
+  private void produce(ExecutorService executor, StaticResponseFileBuilder builder,
+      OcspStore store, RequestIssuer reqIssuer)
+      throws IOException, OcspStoreException, InterruptedException {
+    long startId = 0;
+    do {
+      List<BigInteger> serialNumbers = new ArrayList<>(PAGE_SIZE);
+      startId = store.getSerialNumbers(reqIssuer, startId, PAGE_SIZE, serialNumbers);
+
+      List<BuildTask> tasks = new ArrayList<>(serialNumbers.size());
+      for (BigInteger serialNumber : serialNumbers) {
+        tasks.add(new BuildTask(builder, new CertID(reqIssuer, serialNumber)));
+      }
+
+      for (Future<Boolean> future : executor.invokeAll(tasks)) {
+        try {
+          future.get();
+        } catch (ExecutionException ex) {
+          Throwable cause = ex.getCause();
+          throw (cause instanceof IOException) ? (IOException) cause
+              : new IOException(cause.getMessage(), cause);
+        }
+      }
+    } while (startId != 0);
+  } // method produce
+
+}
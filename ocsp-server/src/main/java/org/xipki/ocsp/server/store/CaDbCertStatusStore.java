@@ -24,6 +24,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.Date;
@@ -69,6 +70,41 @@ import com.alibaba.fastjson.JSON;
 
 public class CaDbCertStatusStore extends OcspStore {
 
+  private static class CertStatusRow {
+
+    private final long notBefore;
+
+    private final long notAfter;
+
+    private final boolean revoked;
+
+    private final int reason;
+
+    private final long revTime;
+
+    private final long invalTime;
+
+    private final String b64CertHash;
+
+    CertStatusRow(ResultSet rs, boolean includeCertHash, boolean includeRit)
+        throws SQLException {
+      this.notBefore = rs.getLong("NBEFORE");
+      this.notAfter = rs.getLong("NAFTER");
+      this.b64CertHash = includeCertHash ? rs.getString("SHA1") : null;
+      this.revoked = rs.getBoolean("REV");
+      if (revoked) {
+        this.reason = rs.getInt("RR");
+        this.revTime = rs.getLong("RT");
+        this.invalTime = includeRit ? rs.getLong("RIT") : 0;
+      } else {
+        this.reason = 0;
+        this.revTime = 0;
+        this.invalTime = 0;
+      }
+    }
+
+  } // class CertStatusRow
+
   private class StoreUpdateService implements Runnable {
 
     @Override
@@ -226,164 +262,233 @@ public class CaDbCertStatusStore extends OcspStore {
   protected CertStatusInfo getCertStatus0(Date time, RequestIssuer reqIssuer,
       BigInteger serialNumber, boolean includeCertHash, boolean includeRit,
       boolean inheritCaRevocation) throws OcspStoreException {
-    if (serialNumber.signum() != 1) { // non-positive serial number
-      return CertStatusInfo.getUnknownCertStatusInfo(new Date(), null);
+    List<CertStatusInfo> infos = getCertStatus0(time, reqIssuer,
+        Collections.singletonList(serialNumber), includeCertHash, includeRit,
+        inheritCaRevocation);
+    return (infos == null) ? null : infos.get(0);
+  } // method getCertStatus0
+
+  @Override
+  protected List<CertStatusInfo> getCertStatus0(Date time, RequestIssuer reqIssuer,
+      List<BigInteger> serialNumbers, boolean includeCertHash, boolean includeRit,
+      boolean inheritCaRevocation) throws OcspStoreException {
+    final int n = serialNumbers.size();
+    List<String> hexSerials = new ArrayList<>(n);
+    for (BigInteger serialNumber : serialNumbers) {
+      // non-positive serial number will not be queried
+      if (serialNumber.signum() == 1) {
+        hexSerials.add(serialNumber.toString(16));
+      }
+    }
+
+    if (hexSerials.isEmpty()) {
+      List<CertStatusInfo> infos = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        infos.add(CertStatusInfo.getUnknownCertStatusInfo(new Date(), null));
+      }
+      return infos;
     }
 
     if (!initialized) {
       throw new OcspStoreException("initialization of CertStore is still in process");
     }
 
-    String sql;
-
     try {
       IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
       if (issuer == null) {
         return null;
       }
 
-      if (includeCertHash) {
-        sql = includeRit ? sqlCsWithCertHash : sqlCsNoRitWithCertHash;
-      } else {
-        sql = includeRit ? sqlCs : sqlCsNoRit;
-      }
-
-      Date thisUpdate = new Date();
+      Map<String, CertStatusRow> rows = (hexSerials.size() == 1)
+          ? queryCertStatus(issuer.getId(), hexSerials.get(0), includeCertHash, includeRit)
+          : queryCertStatus(issuer.getId(), hexSerials, includeCertHash, includeRit);
 
-      ResultSet rs = null;
-      CertStatusInfo certStatusInfo = null;
-
-      boolean unknown = true;
-      boolean ignore = false;
-      String b64CertHash = null;
-      boolean revoked = false;
-      int reason = 0;
-      long revTime = 0;
-      long invalTime = 0;
-
-      PreparedStatement ps = datasource.prepareStatement(sql);
+      List<CertStatusInfo> infos = new ArrayList<>(n);
+      for (BigInteger serialNumber : serialNumbers) {
+        if (serialNumber.signum() != 1) { // non-positive serial number
+          infos.add(CertStatusInfo.getUnknownCertStatusInfo(new Date(), null));
+        } else {
+          CertStatusRow row = rows.get(serialNumber.toString(16));
+          infos.add(buildCertStatusInfo(time, issuer, row,
+              includeCertHash, includeRit, inheritCaRevocation));
+        }
+      }
+      return infos;
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
+  } // method getCertStatus0
 
-      try {
-        ps.setInt(1, issuer.getId());
-        ps.setString(2, serialNumber.toString(16));
-        rs = ps.executeQuery();
+  private Map<String, CertStatusRow> queryCertStatus(int issuerId, String hexSerial,
+      boolean includeCertHash, boolean includeRit) throws DataAccessException {
+    String sql;
+    if (includeCertHash) {
+      sql = includeRit ? sqlCsWithCertHash : sqlCsNoRitWithCertHash;
+    } else {
+      sql = includeRit ? sqlCs : sqlCsNoRit;
+    }
 
-        if (rs.next()) {
-          unknown = false;
+    ResultSet rs = null;
+    PreparedStatement ps = datasource.prepareStatement(sql);
 
-          long timeInSec = time.getTime() / 1000;
-          if (!ignore && ignoreNotYetValidCert) {
-            long notBeforeInSec = rs.getLong("NBEFORE");
-            if (notBeforeInSec != 0 && timeInSec < notBeforeInSec) {
-              ignore = true;
-            }
-          }
+    try {
+      ps.setInt(1, issuerId);
+      ps.setString(2, hexSerial);
+      rs = ps.executeQuery();
 
-          if (!ignore && ignoreExpiredCert) {
-            long notAfterInSec = rs.getLong("NAFTER");
-            if (notAfterInSec != 0 && timeInSec > notAfterInSec) {
-              ignore = true;
-            }
-          }
+      if (rs.next()) {
+        return Collections.singletonMap(hexSerial,
+            new CertStatusRow(rs, includeCertHash, includeRit));
+      } else {
+        return Collections.emptyMap();
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      releaseDbResources(ps, rs);
+    }
+  } // method queryCertStatus
+
+  private Map<String, CertStatusRow> queryCertStatus(int issuerId, List<String> hexSerials,
+      boolean includeCertHash, boolean includeRit) throws DataAccessException {
+    StringBuilder sb = new StringBuilder(120 + 2 * hexSerials.size());
+    sb.append("SELECT SN,NBEFORE,NAFTER,REV,RR,RT");
+    if (includeRit) {
+      sb.append(",RIT");
+    }
+    if (includeCertHash) {
+      sb.append(",SHA1");
+    }
+    sb.append(" FROM CERT WHERE CA_ID=? AND SN IN (?");
+    for (int i = 1; i < hexSerials.size(); i++) {
+      sb.append(",?");
+    }
+    sb.append(")");
+    final String sql = sb.toString();
 
-          if (!ignore) {
-            if (includeCertHash) {
-              b64CertHash = rs.getString("SHA1");
-            }
+    ResultSet rs = null;
+    PreparedStatement ps = datasource.prepareStatement(sql);
 
-            revoked = rs.getBoolean("REV");
-            if (revoked) {
-              reason = rs.getInt("RR");
-              revTime = rs.getLong("RT");
-              if (includeRit) {
-                invalTime = rs.getLong("RIT");
-              }
-            }
-          }
-        } // end if (rs.next())
-      } catch (SQLException ex) {
-        throw datasource.translate(sql, ex);
-      } finally {
-        releaseDbResources(ps, rs);
+    try {
+      int idx = 1;
+      ps.setInt(idx++, issuerId);
+      for (String hexSerial : hexSerials) {
+        ps.setString(idx++, hexSerial);
       }
+      rs = ps.executeQuery();
 
-      Date nextUpdate = null;
-
-      if (unknown) {
-        certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, nextUpdate);
-      } else if (ignore) {
-        certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, nextUpdate);
-      } else {
-        byte[] certHash = (b64CertHash == null) ? null : Base64.decodeFast(b64CertHash);
-        if (revoked) {
-          Date invTime = (invalTime == 0 || invalTime == revTime)
-              ? null : new Date(invalTime * 1000);
-          CertRevocationInfo revInfo = new CertRevocationInfo(reason,
-              new Date(revTime * 1000), invTime);
-          certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
-              certHashAlgo, certHash, thisUpdate, nextUpdate, null);
-        } else {
-          certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo,
-              certHash, thisUpdate, nextUpdate, null);
+      Map<String, CertStatusRow> rows = new HashMap<>();
+      while (rs.next()) {
+        String sn = rs.getString("SN");
+        if (!rows.containsKey(sn)) {
+          rows.put(sn, new CertStatusRow(rs, includeCertHash, includeRit));
         }
       }
-
-      if (includeArchiveCutoff) {
-        if (retentionInterval != 0) {
-          Date date;
-          // expired certificate remains in status store for ever
-          if (retentionInterval < 0) {
-            date = issuer.getNotBefore();
-          } else {
-            long nowInMs = System.currentTimeMillis();
-            long dateInMs = Math.max(issuer.getNotBefore().getTime(),
-                nowInMs - DAY * retentionInterval);
-            date = new Date(dateInMs);
-          }
-
-          certStatusInfo.setArchiveCutOff(date);
+      return rows;
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      releaseDbResources(ps, rs);
+    }
+  } // method queryCertStatus
+
+  private CertStatusInfo buildCertStatusInfo(Date time, IssuerEntry issuer, CertStatusRow row,
+      boolean includeCertHash, boolean includeRit, boolean inheritCaRevocation) {
+    boolean unknown = (row == null);
+    boolean ignore = false;
+
+    if (row != null) {
+      long timeInSec = time.getTime() / 1000;
+      if (ignoreNotYetValidCert) {
+        if (row.notBefore != 0 && timeInSec < row.notBefore) {
+          ignore = true;
         }
       }
 
-      if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
-        return certStatusInfo;
+      if (!ignore && ignoreExpiredCert) {
+        if (row.notAfter != 0 && timeInSec > row.notAfter) {
+          ignore = true;
+        }
       }
+    }
 
-      CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
-      CertStatus certStatus = certStatusInfo.getCertStatus();
-      boolean replaced = false;
-      if (certStatus == CertStatus.GOOD) {
-        replaced = true;
-      } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
-        if (unknownCertBehaviour == UnknownCertBehaviour.good) {
-          replaced = true;
-        }
-      } else if (certStatus == CertStatus.REVOKED) {
-        if (certStatusInfo.getRevocationInfo().getRevocationTime().after(
-              caRevInfo.getRevocationTime())) {
-          replaced = true;
-        }
+    Date thisUpdate = new Date();
+    Date nextUpdate = null;
+
+    CertStatusInfo certStatusInfo;
+    if (unknown) {
+      certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, nextUpdate);
+    } else if (ignore) {
+      certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, nextUpdate);
+    } else {
+      String b64CertHash = includeCertHash ? row.b64CertHash : null;
+      byte[] certHash = (b64CertHash == null) ? null : Base64.decodeFast(b64CertHash);
+      if (row.revoked) {
+        long invalTime = includeRit ? row.invalTime : 0;
+        Date invTime = (invalTime == 0 || invalTime == row.revTime)
+            ? null : new Date(invalTime * 1000);
+        CertRevocationInfo revInfo = new CertRevocationInfo(row.reason,
+            new Date(row.revTime * 1000), invTime);
+        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
+            certHashAlgo, certHash, thisUpdate, nextUpdate, null);
+      } else {
+        certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo,
+            certHash, thisUpdate, nextUpdate, null);
       }
+    }
 
-      if (replaced) {
-        CertRevocationInfo newRevInfo;
-        if (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) {
-          newRevInfo = caRevInfo;
+    if (includeArchiveCutoff) {
+      if (retentionInterval != 0) {
+        Date date;
+        // expired certificate remains in status store for ever
+        if (retentionInterval < 0) {
+          date = issuer.getNotBefore();
         } else {
-          newRevInfo = new CertRevocationInfo(CrlReason.CA_COMPROMISE,
-              caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
+          long nowInMs = System.currentTimeMillis();
+          long dateInMs = Math.max(issuer.getNotBefore().getTime(),
+              nowInMs - DAY * retentionInterval);
+          date = new Date(dateInMs);
         }
-        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
-            certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
-            certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
-            certStatusInfo.getCertprofile());
+
+        certStatusInfo.setArchiveCutOff(date);
       }
+    }
+
+    if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
       return certStatusInfo;
-    } catch (DataAccessException ex) {
-      throw new OcspStoreException(ex.getMessage(), ex);
     }
 
-  } // method getCertStatus0
+    CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
+    CertStatus certStatus = certStatusInfo.getCertStatus();
+    boolean replaced = false;
+    if (certStatus == CertStatus.GOOD) {
+      replaced = true;
+    } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
+      if (unknownCertBehaviour == UnknownCertBehaviour.good) {
+        replaced = true;
+      }
+    } else if (certStatus == CertStatus.REVOKED) {
+      if (certStatusInfo.getRevocationInfo().getRevocationTime().after(
+            caRevInfo.getRevocationTime())) {
+        replaced = true;
+      }
+    }
+
+    if (replaced) {
+      CertRevocationInfo newRevInfo;
+      if (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) {
+        newRevInfo = caRevInfo;
+      } else {
+        newRevInfo = new CertRevocationInfo(CrlReason.CA_COMPROMISE,
+            caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
+      }
+      certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
+          certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
+          certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
+          certStatusInfo.getCertprofile());
+    }
+    return certStatusInfo;
+  } // method buildCertStatusInfo
 
   /**
    * Borrow Prepared Statement.
@@ -525,6 +630,61 @@ public class CaDbCertStatusStore extends OcspStore {
     return (issuer == null) ? null : issuer.getCert();
   } // method getIssuerCert
 
+  @Override
+  public List<RequestIssuer> getIssuers(HashAlgo hashAlgo) {
+    Args.notNull(hashAlgo, "hashAlgo");
+    if (issuerStore == null) {
+      return Collections.emptyList();
+    }
+
+    List<IssuerEntry> issuers = issuerStore.getIssuers();
+    List<RequestIssuer> reqIssuers = new ArrayList<>(issuers.size());
+    for (IssuerEntry issuer : issuers) {
+      reqIssuers.add(new RequestIssuer(hashAlgo, issuer.getEncodedHash(hashAlgo)));
+    }
+    return reqIssuers;
+  } // method getIssuers
+
+  @Override
+  public long getSerialNumbers(RequestIssuer reqIssuer, long startId, int numEntries,
+      List<BigInteger> serialNumbers) throws OcspStoreException {
+    Args.positive(numEntries, "numEntries");
+    Args.notNull(serialNumbers, "serialNumbers");
+
+    IssuerEntry issuer = (issuerStore == null) ? null : issuerStore.getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return 0;
+    }
+
+    final String sql = datasource.buildSelectFirstSql(numEntries, "ID ASC",
+        "ID,SN FROM CERT WHERE CA_ID=? AND ID>? AND NAFTER>?");
+    PreparedStatement ps = null;
+    ResultSet rs = null;
+    try {
+      ps = datasource.prepareStatement(sql);
+      ps.setInt(1, issuer.getId());
+      ps.setLong(2, startId);
+      ps.setLong(3, System.currentTimeMillis() / 1000);
+      rs = ps.executeQuery();
+
+      long lastId = 0;
+      int num = 0;
+      while (rs.next()) {
+        lastId = rs.getLong("ID");
+        serialNumbers.add(new BigInteger(rs.getString("SN"), 16));
+        num++;
+      }
+      return (num < numEntries) ? 0 : lastId;
+    } catch (SQLException ex) {
+      DataAccessException dex = datasource.translate(sql, ex);
+      throw new OcspStoreException(dex.getMessage(), dex);
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+  } // method getSerialNumbers
+
   protected boolean isInitialized() {
     return initialized;
   }
@@ -0,0 +1,690 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.math.BigInteger;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceWrapper;
+import org.xipki.ocsp.server.store.DbCertStatusStore.CertStatusRow;
+import org.xipki.util.Args;
+import org.xipki.util.Base64;
+
+/**
+ * Memory-resident snapshot of the table CERT in the OCSP database.
+ *
+ * <p>For each issuer, the status of the certificates is kept in an open-addressing hash
+ * table of primitive arrays: the serial number (at most 20 bytes) is stored in three longs,
+ * the times in unsigned ints (seconds since January 1, 1970, 00:00:00 GMT) and the revocation
+ * flag and reason in one byte. Times after 2106-02-07T06:28:15Z are stored as this time.
+ * Certificates with serial numbers longer than 20 bytes are not contained in the snapshot.
+ *
+ * <p>The snapshot is loaded completely via {@link #load()}, and refreshed with the entries
+ * whose column LUPDATE has been changed via {@link #refresh()}. To detect the deleted
+ * certificates, the IDs are distributed over {@value #NUM_ID_BUCKETS} buckets, and the number
+ * of entries in each bucket is maintained. On each refresh, the IDs of the table CERT are
+ * counted per bucket page by page without keeping them. Only the IDs of the buckets with less
+ * entries in the database than in the snapshot are read, and the entries of these buckets
+ * which do not exist anymore are marked as deleted, so that they are looked up in the database
+ * again. The marking is done in chunks, each under a short write lock. If too many buckets have
+ * been changed, the snapshot is loaded completely and swapped instead. The slots of the deleted
+ * entries are released by the next complete load.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+class CertStatusSnapshot {
+
+  /**
+   * Growable list of primitive longs, the IDs are read in ascending order.
+   */
+  private static class LongList {
+
+    private long[] values = new long[1024];
+
+    private int size;
+
+    void add(long value) {
+      if (size == values.length) {
+        values = Arrays.copyOf(values, size << 1);
+      }
+      values[size++] = value;
+    }
+
+  } // class LongList
+
+  static class IssuerTable {
+
+    private static final long OCCUPIED = 1L << 32;
+
+    private static final byte FLAG_REVOKED = (byte) 0x80;
+
+    private static final byte FLAG_DELETED = (byte) 0x40;
+
+    private final StampedLock lock = new StampedLock();
+
+    private final int hashLen;
+
+    private int size;
+
+    private int mask;
+
+    private long[] k0;
+
+    private long[] k1;
+
+    private long[] k2;
+
+    private long[] ids;
+
+    private int[] notBefores;
+
+    private int[] notAfters;
+
+    private int[] revTimes;
+
+    private int[] invalTimes;
+
+    private int[] crlIds;
+
+    private byte[] flags;
+
+    private byte[] hashes;
+
+    IssuerTable(int hashLen) {
+      this.hashLen = hashLen;
+      allocate(1024);
+    }
+
+    private void allocate(int capacity) {
+      this.mask = capacity - 1;
+      this.k0 = new long[capacity];
+      this.k1 = new long[capacity];
+      this.k2 = new long[capacity];
+      this.ids = new long[capacity];
+      this.notBefores = new int[capacity];
+      this.notAfters = new int[capacity];
+      this.revTimes = new int[capacity];
+      this.invalTimes = new int[capacity];
+      this.crlIds = new int[capacity];
+      this.flags = new byte[capacity];
+      this.hashes = (hashLen == 0) ? null : new byte[capacity * hashLen];
+    }
+
+    private int slot(long key0, long key1, long key2) {
+      long hash = key0 * 31 + key1;
+      hash = hash * 31 + key2;
+      hash ^= (hash >>> 33);
+      hash *= 0xff51afd7ed558ccdL;
+      hash ^= (hash >>> 33);
+      return (int) hash & mask;
+    }
+
+    CertStatusRow get(long key0, long key1, long key2) {
+      long stamp = lock.tryOptimisticRead();
+      CertStatusRow row = get0(key0, key1, key2);
+      if (lock.validate(stamp)) {
+        return row;
+      }
+
+      stamp = lock.readLock();
+      try {
+        return get0(key0, key1, key2);
+      } finally {
+        lock.unlockRead(stamp);
+      }
+    }
+
+    private CertStatusRow get0(long key0, long key1, long key2) {
+      long[] tk0 = k0;
+      long[] tk1 = k1;
+      long[] tk2 = k2;
+      int tmask = tk0.length - 1;
+      if (tk1.length != tk0.length || tk2.length != tk0.length) {
+        // inconsistent state read while resizing, validate() will fail.
+        return null;
+      }
+
+      int idx = slot(key0, key1, key2) & tmask;
+      for (int i = 0; i <= tmask; i++) {
+        long v0 = tk0[idx];
+        if (v0 == 0) {
+          return null;
+        }
+
+        if (v0 == key0 && tk1[idx] == key1 && tk2[idx] == key2) {
+          try {
+            byte flag = flags[idx];
+            if ((flag & FLAG_DELETED) != 0) {
+              return null;
+            }
+
+            boolean revoked = (flag & FLAG_REVOKED) != 0;
+            byte[] certHash = null;
+            if (hashes != null && hashes.length >= (idx + 1) * hashLen) {
+              certHash = Arrays.copyOfRange(hashes, idx * hashLen, (idx + 1) * hashLen);
+            }
+            return new CertStatusRow(crlIds[idx], toLong(notBefores[idx]),
+                toLong(notAfters[idx]), revoked, flag & 0x0F,
+                toLong(revTimes[idx]), toLong(invalTimes[idx]), certHash);
+          } catch (ArrayIndexOutOfBoundsException ex) {
+            // inconsistent state read while resizing, validate() will fail.
+            return null;
+          }
+        }
+        idx = (idx + 1) & tmask;
+      }
+      return null;
+    }
+
+    /**
+     * Adds or replaces the entry.
+     * @return the ID of the replaced entry, or 0 if no entry has been replaced.
+     */
+    long put(long key0, long key1, long key2, long id, long notBefore, long notAfter,
+        boolean revoked, int reason, long revTime, long invalTime, int crlId, byte[] certHash) {
+      long prevId = 0;
+      long stamp = lock.writeLock();
+      try {
+        if ((size + 1) * 4L > (mask + 1) * 3L) {
+          resize();
+        }
+
+        int idx = slot(key0, key1, key2);
+        while (true) {
+          if (k0[idx] == 0) {
+            k0[idx] = key0;
+            k1[idx] = key1;
+            k2[idx] = key2;
+            size++;
+            break;
+          } else if (k0[idx] == key0 && k1[idx] == key1 && k2[idx] == key2) {
+            if ((flags[idx] & FLAG_DELETED) == 0) {
+              prevId = ids[idx];
+            }
+            break;
+          }
+          idx = (idx + 1) & mask;
+        }
+
+        ids[idx] = id;
+        notBefores[idx] = toInt(notBefore);
+        notAfters[idx] = toInt(notAfter);
+        revTimes[idx] = toInt(revTime);
+        invalTimes[idx] = toInt(invalTime);
+        crlIds[idx] = crlId;
+        flags[idx] = (byte) ((revoked ? FLAG_REVOKED : 0) | (reason & 0x0F));
+        if (hashes != null) {
+          if (certHash != null && certHash.length == hashLen) {
+            System.arraycopy(certHash, 0, hashes, idx * hashLen, hashLen);
+          } else {
+            Arrays.fill(hashes, idx * hashLen, (idx + 1) * hashLen, (byte) 0);
+          }
+        }
+      } finally {
+        lock.unlockWrite(stamp);
+      }
+      return prevId;
+    } // method put
+
+    private void resize() {
+      long[] ok0 = k0;
+      long[] ok1 = k1;
+      long[] ok2 = k2;
+      long[] oIds = ids;
+      int[] oNotBefores = notBefores;
+      int[] oNotAfters = notAfters;
+      int[] oRevTimes = revTimes;
+      int[] oInvalTimes = invalTimes;
+      int[] oCrlIds = crlIds;
+      byte[] oFlags = flags;
+      byte[] oHashes = hashes;
+
+      allocate(ok0.length << 1);
+      for (int i = 0; i < ok0.length; i++) {
+        if (ok0[i] == 0) {
+          continue;
+        }
+
+        int idx = slot(ok0[i], ok1[i], ok2[i]);
+        while (k0[idx] != 0) {
+          idx = (idx + 1) & mask;
+        }
+
+        k0[idx] = ok0[i];
+        k1[idx] = ok1[i];
+        k2[idx] = ok2[i];
+        ids[idx] = oIds[i];
+        notBefores[idx] = oNotBefores[i];
+        notAfters[idx] = oNotAfters[i];
+        revTimes[idx] = oRevTimes[i];
+        invalTimes[idx] = oInvalTimes[i];
+        crlIds[idx] = oCrlIds[i];
+        flags[idx] = oFlags[i];
+        if (oHashes != null) {
+          System.arraycopy(oHashes, i * hashLen, hashes, idx * hashLen, hashLen);
+        }
+      }
+    }
+
+    /**
+     * Marks the entries of the changed buckets whose IDs are not contained in the given IDs as
+     * deleted. Must only be called by the thread which modifies the table, so that the table
+     * can be read without lock. The write lock is only held to mark the entries of a chunk.
+     * @param changedBuckets
+     *          Whether the ID bucket has been changed.
+     * @param existingIds
+     *          Sorted IDs of the existing certificates in the changed buckets.
+     * @param numExistingIds
+     *          Number of valid IDs in existingIds.
+     * @param bucketCounts
+     *          Number of entries in each ID bucket, will be updated.
+     * @return number of entries marked as deleted.
+     */
+    int markDeleted(boolean[] changedBuckets, long[] existingIds, int numExistingIds,
+        int[] bucketCounts) {
+      int num = 0;
+      int[] chunk = new int[MARK_CHUNK_SIZE];
+      for (int from = 0; from < k0.length; from += MARK_CHUNK_SIZE) {
+        int to = Math.min(from + MARK_CHUNK_SIZE, k0.length);
+        int numInChunk = 0;
+        for (int i = from; i < to; i++) {
+          if (k0[i] == 0 || (flags[i] & FLAG_DELETED) != 0) {
+            continue;
+          }
+
+          int bucket = idBucket(ids[i]);
+          if (changedBuckets[bucket]
+              && Arrays.binarySearch(existingIds, 0, numExistingIds, ids[i]) < 0) {
+            chunk[numInChunk++] = i;
+            bucketCounts[bucket]--;
+          }
+        }
+
+        if (numInChunk == 0) {
+          continue;
+        }
+
+        long stamp = lock.writeLock();
+        try {
+          for (int i = 0; i < numInChunk; i++) {
+            flags[chunk[i]] |= FLAG_DELETED;
+          }
+        } finally {
+          lock.unlockWrite(stamp);
+        }
+        num += numInChunk;
+      }
+      return num;
+    } // method markDeleted
+
+    private static int toInt(long unsignedInt) {
+      // clamp, so that a far future time is not wrapped to the past
+      return (int) Math.max(0, Math.min(unsignedInt, 0xFFFFFFFFL));
+    }
+
+    private static long toLong(int unsignedInt) {
+      return 0xFFFFFFFFL & unsignedInt;
+    }
+
+  } // class IssuerTable
+
+  private static final Logger LOG = LoggerFactory.getLogger(CertStatusSnapshot.class);
+
+  // LUPDATE has the precision of seconds, take the entries written in the same second again.
+  private static final long LUPDATE_OVERLAP = 60;
+
+  private static final int NUM_ID_BUCKETS = 4096;
+
+  // If more buckets have been changed, the snapshot is loaded completely.
+  private static final int MAX_CHANGED_BUCKETS = 64;
+
+  private static final int MARK_CHUNK_SIZE = 4096;
+
+  private final DataSourceWrapper datasource;
+
+  private final int hashLen;
+
+  private final String sqlLoad;
+
+  private final String sqlRefresh;
+
+  private final String sqlIds;
+
+  private volatile Map<Integer, IssuerTable> tables = new HashMap<>();
+
+  private volatile boolean ready;
+
+  private long maxLastUpdate;
+
+  // number of entries per ID bucket, only accessed by load() and refresh()
+  private int[] idBucketCounts = new int[NUM_ID_BUCKETS];
+
+  // IDs of the certificates which are not contained in the snapshot, but counted in
+  // idBucketCounts, only accessed by load() and refresh()
+  private Set<Long> skippedIds = new HashSet<>();
+
+  CertStatusSnapshot(DataSourceWrapper datasource, int hashLen, int pageSize) {
+    this.datasource = Args.notNull(datasource, "datasource");
+    this.hashLen = Args.notNegative(hashLen, "hashLen");
+    Args.positive(pageSize, "pageSize");
+
+    String columns = "ID,IID,SN,LUPDATE,NBEFORE,NAFTER,REV,RR,RT,RIT,CRL_ID"
+        + (hashLen == 0 ? "" : ",HASH");
+    this.sqlLoad = datasource.buildSelectFirstSql(pageSize, "ID ASC",
+        columns + " FROM CERT WHERE ID>?");
+    this.sqlRefresh = "SELECT " + columns + " FROM CERT WHERE LUPDATE>=?";
+    this.sqlIds = datasource.buildSelectFirstSql(pageSize, "ID ASC", "ID FROM CERT WHERE ID>?");
+  }
+
+  boolean isReady() {
+    return ready;
+  }
+
+  boolean containsCertHash() {
+    return hashLen != 0;
+  }
+
+  /**
+   * Returns the status row of the given certificate.
+   * @param issuerId
+   *          Issuer id.
+   * @param serialNumber
+   *          Serial number.
+   * @return the status row, or {@code null} if the certificate is not contained in the snapshot.
+   */
+  CertStatusRow get(int issuerId, BigInteger serialNumber) {
+    IssuerTable table = tables.get(issuerId);
+    if (table == null) {
+      return null;
+    }
+
+    long[] keys = toKeys(serialNumber);
+    return (keys == null) ? null : table.get(keys[0], keys[1], keys[2]);
+  }
+
+  /**
+   * Loads the complete table CERT, and replaces the current snapshot by the new one.
+   * @throws DataAccessException
+   *          if database error occurs.
+   */
+  synchronized void load() throws DataAccessException {
+    long start = System.currentTimeMillis();
+    // remember the time before the loading starts, entries changed during the loading
+    // will be loaded by the next refresh.
+    long startLastUpdate = start / 1000 - LUPDATE_OVERLAP;
+
+    Map<Integer, IssuerTable> newTables = new HashMap<>();
+    int[] newIdBucketCounts = new int[NUM_ID_BUCKETS];
+    Set<Long> newSkippedIds = new HashSet<>();
+    long lastId = 0;
+    long num = 0;
+
+    PreparedStatement ps = datasource.prepareStatement(sqlLoad);
+    ResultSet rs = null;
+    try {
+      while (true) {
+        ps.setLong(1, lastId);
+        rs = ps.executeQuery();
+
+        boolean found = false;
+        while (rs.next()) {
+          found = true;
+          lastId = rs.getLong("ID");
+          addEntry(newTables, newIdBucketCounts, newSkippedIds, rs);
+          num++;
+        }
+        rs.close();
+        rs = null;
+
+        if (!found) {
+          break;
+        }
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sqlLoad, ex);
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+
+    this.tables = newTables;
+    this.idBucketCounts = newIdBucketCounts;
+    this.skippedIds = newSkippedIds;
+    this.maxLastUpdate = startLastUpdate;
+    this.ready = true;
+    LOG.info("loaded {} certificates in the snapshot in {} ms",
+        num, System.currentTimeMillis() - start);
+  } // method load
+
+  /**
+   * Loads the entries which have been changed since the last load or refresh, and marks the
+   * entries of deleted certificates as deleted.
+   * @throws DataAccessException
+   *          if database error occurs.
+   */
+  synchronized void refresh() throws DataAccessException {
+    if (!ready) {
+      return;
+    }
+
+    long start = System.currentTimeMillis();
+    long startLastUpdate = start / 1000 - LUPDATE_OVERLAP;
+    long num = 0;
+
+    PreparedStatement ps = datasource.prepareStatement(sqlRefresh);
+    ResultSet rs = null;
+    try {
+      ps.setLong(1, maxLastUpdate);
+      rs = ps.executeQuery();
+      Map<Integer, IssuerTable> currentTables = tables;
+      Map<Integer, IssuerTable> newTables = null;
+      while (rs.next()) {
+        int iid = rs.getInt("IID");
+        if (!currentTables.containsKey(iid) && newTables == null) {
+          // new issuer, the map of tables will be replaced
+          newTables = new HashMap<>(currentTables);
+        }
+        addEntry(newTables == null ? currentTables : newTables, idBucketCounts, skippedIds,
+            rs);
+        num++;
+      }
+
+      if (newTables != null) {
+        this.tables = newTables;
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sqlRefresh, ex);
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+
+    this.maxLastUpdate = startLastUpdate;
+
+    // Count the IDs after the changed entries have been read, so that all entries in the
+    // snapshot which still exist are counted.
+    int[] dbIdBucketCounts = new int[NUM_ID_BUCKETS];
+    readIds(dbIdBucketCounts, null, null);
+
+    boolean[] changedBuckets = new boolean[NUM_ID_BUCKETS];
+    int numChangedBuckets = 0;
+    for (int i = 0; i < NUM_ID_BUCKETS; i++) {
+      // buckets with more entries in the database contain certificates added after the
+      // refresh, they will be loaded by the next refresh.
+      if (idBucketCounts[i] > dbIdBucketCounts[i]) {
+        changedBuckets[i] = true;
+        numChangedBuckets++;
+      }
+    }
+
+    int numDeleted = 0;
+    if (numChangedBuckets > MAX_CHANGED_BUCKETS) {
+      LOG.info("refreshed {} certificates in the snapshot, {} of {} ID buckets contain deleted "
+          + "certificates, reload the snapshot", num, numChangedBuckets, NUM_ID_BUCKETS);
+      load();
+      return;
+    } else if (numChangedBuckets > 0) {
+      LongList existingIds = new LongList();
+      readIds(null, changedBuckets, existingIds);
+      for (IssuerTable table : tables.values()) {
+        numDeleted += table.markDeleted(changedBuckets, existingIds.values, existingIds.size,
+            idBucketCounts);
+      }
+
+      Iterator<Long> it = skippedIds.iterator();
+      while (it.hasNext()) {
+        long id = it.next();
+        int bucket = idBucket(id);
+        if (changedBuckets[bucket]
+            && Arrays.binarySearch(existingIds.values, 0, existingIds.size, id) < 0) {
+          it.remove();
+          idBucketCounts[bucket]--;
+        }
+      }
+    }
+
+    LOG.info("refreshed {} certificates and removed {} certificates in the snapshot in {} ms",
+        num, numDeleted, System.currentTimeMillis() - start);
+  } // method refresh
+
+  /**
+   * Reads the IDs of the table CERT page by page.
+   * @param bucketCounts
+   *          If not {@code null}, the IDs are counted per bucket.
+   * @param buckets
+   *          If not {@code null}, only the IDs of the buckets marked here are added to ids.
+   * @param ids
+   *          If not {@code null}, the IDs are added in ascending order.
+   */
+  private void readIds(int[] bucketCounts, boolean[] buckets, LongList ids)
+      throws DataAccessException {
+    long lastId = 0;
+
+    PreparedStatement ps = datasource.prepareStatement(sqlIds);
+    ResultSet rs = null;
+    try {
+      while (true) {
+        ps.setLong(1, lastId);
+        rs = ps.executeQuery();
+
+        boolean found = false;
+        while (rs.next()) {
+          found = true;
+          lastId = rs.getLong("ID");
+          int bucket = idBucket(lastId);
+          if (bucketCounts != null) {
+            bucketCounts[bucket]++;
+          }
+
+          if (ids != null && (buckets == null || buckets[bucket])) {
+            ids.add(lastId);
+          }
+        }
+        rs.close();
+        rs = null;
+
+        if (!found) {
+          break;
+        }
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sqlIds, ex);
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+  } // method readIds
+
+  private void addEntry(Map<Integer, IssuerTable> tables, int[] bucketCounts,
+      Set<Long> skippedIds, ResultSet rs) throws SQLException {
+    long id = rs.getLong("ID");
+    long[] keys = toKeys(new BigInteger(rs.getString("SN"), 16));
+    if (keys == null) {
+      // not contained in the snapshot, but counted, since it is counted in the database
+      if (skippedIds.add(id)) {
+        bucketCounts[idBucket(id)]++;
+      }
+      return;
+    }
+
+    int iid = rs.getInt("IID");
+    IssuerTable table = tables.get(iid);
+    if (table == null) {
+      table = new IssuerTable(hashLen);
+      tables.put(iid, table);
+    }
+
+    boolean revoked = rs.getBoolean("REV");
+    int reason = 0;
+    long revTime = 0;
+    long invalTime = 0;
+    if (revoked) {
+      reason = rs.getInt("RR");
+      revTime = rs.getLong("RT");
+      invalTime = rs.getLong("RIT");
+    }
+
+    byte[] certHash = null;
+    if (hashLen != 0) {
+      String b64CertHash = rs.getString("HASH");
+      if (b64CertHash != null) {
+        certHash = Base64.decodeFast(b64CertHash);
+      }
+    }
+
+    long prevId = table.put(keys[0], keys[1], keys[2], id, rs.getLong("NBEFORE"),
+        rs.getLong("NAFTER"), revoked, reason, revTime, invalTime, rs.getInt("CRL_ID"), certHash);
+    if (prevId != 0) {
+      bucketCounts[idBucket(prevId)]--;
+    }
+    bucketCounts[idBucket(id)]++;
+  } // method addEntry
+
+  private static int idBucket(long id) {
+    long hash = (id ^ (id >>> 32)) * 0x9E3779B97F4A7C15L;
+    return (int) (hash >>> 52) & (NUM_ID_BUCKETS - 1);
+  }
+
+  /**
+   * Converts the serial number to three longs.
+   * @return the keys, or {@code null} if the serial number is not positive or is longer
+   *         than 20 bytes.
+   */
+  private static long[] toKeys(BigInteger serialNumber) {
+    if (serialNumber.signum() != 1 || serialNumber.bitLength() > 160) {
+      return null;
+    }
+
+    long key2 = serialNumber.longValue();
+    long key1 = serialNumber.shiftRight(64).longValue();
+    long key0 = serialNumber.shiftRight(128).longValue() | IssuerTable.OCCUPIED;
+    return new long[]{key0, key1, key2};
+  }
+
+}
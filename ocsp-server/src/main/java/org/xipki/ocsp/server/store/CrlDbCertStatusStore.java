@@ -68,6 +68,8 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
 
   private boolean ignoreExpiredCrls;
 
+  private int importThreads;
+
   private boolean crlUpdated;
 
   /**
@@ -85,6 +87,12 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
    * <li>ignoreExpiredCrls:
    *   <p>
    *   Whether expired CRLs are ignored, default to true.</li>
+   * <li>importThreads:
+   *   <p>
+   *   Number of threads, each with its own database connection, to write the changed
+   *   revoked certificates. If positive, the CRL is compared with the entries in the
+   *   database, and only the changes are written. Default to 0 (all entries are written
+   *   one by one).</li>
    * </ul>
    * @param datasource DataSource.
    */
@@ -99,6 +107,9 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
     value = getStrValue(sourceConf, "ignoreExpiredCrls", false);
     this.ignoreExpiredCrls = StringUtil.isBlank(value) ? true : Boolean.parseBoolean(value);
 
+    value = getStrValue(sourceConf, "importThreads", false);
+    this.importThreads = StringUtil.isBlank(value) ? 0 : Integer.parseInt(value);
+
     super.datasource = datasource;
     updateStore(true);
     super.init(sourceConf, datasource);
@@ -169,7 +180,8 @@ public class CrlDbCertStatusStore extends DbCertStatusStore {
           return;
         }
 
-        ImportCrl importCrl = new ImportCrl(datasource, dir, sqlBatchCommit, ignoreExpiredCrls);
+        ImportCrl importCrl = new ImportCrl(datasource, dir, sqlBatchCommit, ignoreExpiredCrls,
+            importThreads);
 
         if (importCrl.importCrlToOcspDb()) {
           LOG.info("updated CertStore {} successfully", name);
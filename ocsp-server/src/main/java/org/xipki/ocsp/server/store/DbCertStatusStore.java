@@ -26,6 +26,7 @@ import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
@@ -62,6 +63,8 @@ import org.xipki.util.Base64;
 import org.xipki.util.CollectionUtil;
 import org.xipki.util.LogUtil;
 import org.xipki.util.StringUtil;
+import org.xipki.util.Validity;
+import org.xipki.util.Validity.Unit;
 
 import com.alibaba.fastjson.JSON;
 
@@ -74,6 +77,77 @@ import com.alibaba.fastjson.JSON;
 
 public class DbCertStatusStore extends OcspStore {
 
+  static class CertStatusRow {
+
+    private final int crlId;
+
+    private final long notBefore;
+
+    private final long notAfter;
+
+    private final boolean revoked;
+
+    private final int reason;
+
+    private final long revTime;
+
+    private final long invalTime;
+
+    private final byte[] certHash;
+
+    CertStatusRow(int crlId, long notBefore, long notAfter, boolean revoked, int reason,
+        long revTime, long invalTime, byte[] certHash) {
+      this.crlId = crlId;
+      this.notBefore = notBefore;
+      this.notAfter = notAfter;
+      this.revoked = revoked;
+      this.reason = reason;
+      this.revTime = revTime;
+      this.invalTime = invalTime;
+      this.certHash = certHash;
+    }
+
+    CertStatusRow(ResultSet rs, boolean includeCertHash, boolean includeRit)
+        throws SQLException {
+      this.crlId = rs.getInt("CRL_ID");
+      this.notBefore = rs.getLong("NBEFORE");
+      this.notAfter = rs.getLong("NAFTER");
+      String b64CertHash = includeCertHash ? rs.getString("HASH") : null;
+      this.certHash = (b64CertHash == null) ? null : Base64.decodeFast(b64CertHash);
+      this.revoked = rs.getBoolean("REV");
+      if (revoked) {
+        this.reason = rs.getInt("RR");
+        this.revTime = rs.getLong("RT");
+        this.invalTime = includeRit ? rs.getLong("RIT") : 0;
+      } else {
+        this.reason = 0;
+        this.revTime = 0;
+        this.invalTime = 0;
+      }
+    }
+
+    long getNotBefore() {
+      return notBefore;
+    }
+
+    long getNotAfter() {
+      return notAfter;
+    }
+
+    boolean isRevoked() {
+      return revoked;
+    }
+
+    long getRevTime() {
+      return revTime;
+    }
+
+    long getInvalTime() {
+      return invalTime;
+    }
+
+  } // class CertStatusRow
+
   private class StoreUpdateService implements Runnable {
 
     @Override
@@ -89,6 +163,8 @@ public class DbCertStatusStore extends OcspStore {
 
   private static final long MS_PER_5MIN = 300L * 1000;
 
+  private static final int SNAPSHOT_PAGE_SIZE = 10000;
+
   private final Object lock = new Object();
 
   private final AtomicBoolean storeUpdateInProcess = new AtomicBoolean(false);
@@ -111,6 +187,14 @@ public class DbCertStatusStore extends OcspStore {
 
   private boolean initialized;
 
+  private CertStatusSnapshot snapshot;
+
+  private long snapshotFullRefreshMs;
+
+  private volatile long lastSnapshotLoadMs;
+
+  private final AtomicBoolean snapshotLoading = new AtomicBoolean(false);
+
   private ScheduledThreadPoolExecutor scheduledThreadPoolExecutor;
 
   protected List<Runnable> getScheduledServices() {
@@ -147,6 +231,7 @@ public class DbCertStatusStore extends OcspStore {
       try {
         updateIssuers();
         updateCrls();
+        updateSnapshot(force);
       } finally {
         initialized = true;
         storeUpdateInProcess.set(false);
@@ -154,6 +239,67 @@ public class DbCertStatusStore extends OcspStore {
     } // end lock
   } // method updateIssuerStore
 
+  void updateSnapshot(boolean force) {
+    if (snapshot == null) {
+      return;
+    }
+
+    if (!snapshot.isReady()) {
+      // the initial loading is still in process, or has failed and is started again.
+      startSnapshotLoader();
+      return;
+    }
+
+    try {
+      if (force || System.currentTimeMillis() - lastSnapshotLoadMs > snapshotFullRefreshMs) {
+        loadSnapshot();
+      } else {
+        snapshot.refresh();
+      }
+    } catch (Throwable th) {
+      LogUtil.error(LOG, th, "error while executing updateSnapshot()");
+    }
+  } // method updateSnapshot
+
+  private void loadSnapshot() throws DataAccessException {
+    lastSnapshotLoadMs = System.currentTimeMillis();
+    snapshot.load();
+  } // method loadSnapshot
+
+  /**
+   * Loads the snapshot in a background thread, if it is not being loaded. Till the snapshot is
+   * loaded, the status is retrieved from the database.
+   */
+  private void startSnapshotLoader() {
+    if (!snapshotLoading.compareAndSet(false, true)) {
+      return;
+    }
+
+    Thread loader = new Thread(name + "-snapshot-loader") {
+      @Override
+      public void run() {
+        try {
+          loadSnapshot();
+        } catch (Throwable th) {
+          LogUtil.error(LOG, th, "could not load the snapshot of store " + name
+              + ", will retry with the next update");
+        } finally {
+          snapshotLoading.set(false);
+        }
+      }
+    };
+    loader.setDaemon(true);
+    loader.start();
+  } // method startSnapshotLoader
+
+  /**
+   * Sets the snapshot, which will be loaded by {@link #updateSnapshot(boolean)}.
+   */
+  void initSnapshot(CertStatusSnapshot snapshot, long fullRefreshMs) {
+    this.snapshot = snapshot;
+    this.snapshotFullRefreshMs = fullRefreshMs;
+  } // method initSnapshot
+
   private void updateIssuers() {
     try {
       if (initialized) {
@@ -287,16 +433,37 @@ public class DbCertStatusStore extends OcspStore {
   protected CertStatusInfo getCertStatus0(Date time, RequestIssuer reqIssuer,
       BigInteger serialNumber, boolean includeCertHash, boolean includeRit,
       boolean inheritCaRevocation) throws OcspStoreException {
-    if (serialNumber.signum() != 1) { // non-positive serial number
-      return CertStatusInfo.getUnknownCertStatusInfo(new Date(), null);
+    List<CertStatusInfo> infos = getCertStatus0(time, reqIssuer,
+        Collections.singletonList(serialNumber), includeCertHash, includeRit,
+        inheritCaRevocation);
+    return (infos == null) ? null : infos.get(0);
+  } // method getCertStatus0
+
+  @Override
+  protected List<CertStatusInfo> getCertStatus0(Date time, RequestIssuer reqIssuer,
+      List<BigInteger> serialNumbers, boolean includeCertHash, boolean includeRit,
+      boolean inheritCaRevocation) throws OcspStoreException {
+    final int n = serialNumbers.size();
+    List<String> hexSerials = new ArrayList<>(n);
+    for (BigInteger serialNumber : serialNumbers) {
+      // non-positive serial number will not be queried
+      if (serialNumber.signum() == 1) {
+        hexSerials.add(serialNumber.toString(16));
+      }
+    }
+
+    if (hexSerials.isEmpty()) {
+      List<CertStatusInfo> infos = new ArrayList<>(n);
+      for (int i = 0; i < n; i++) {
+        infos.add(CertStatusInfo.getUnknownCertStatusInfo(new Date(), null));
+      }
+      return infos;
     }
 
     if (!initialized) {
       throw new OcspStoreException("initialization of CertStore is still in process");
     }
 
-    String sql;
-
     try {
       IssuerEntry issuer = issuerStore.getIssuerForFp(reqIssuer);
       if (issuer == null) {
@@ -310,180 +477,266 @@ public class DbCertStatusStore extends OcspStore {
         if (isIgnoreExpiredCrls()) {
           // CRL will expire in 5 minutes
           if (crlInfo.getNextUpdate().getTime() < time.getTime() + MS_PER_5MIN) {
-            return CertStatusInfo.getCrlExpiredStatusInfo();
+            List<CertStatusInfo> infos = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+              infos.add(CertStatusInfo.getCrlExpiredStatusInfo());
+            }
+            return infos;
           }
         }
       }
 
-      if (includeCertHash) {
-        sql = includeRit ? sqlCsWithCertHash : sqlCsNoRitWithCertHash;
-      } else {
-        sql = includeRit ? sqlCs : sqlCsNoRit;
-      }
-
-      ResultSet rs = null;
-      CertStatusInfo certStatusInfo = null;
+      Map<String, CertStatusRow> rows;
+      if (snapshot != null && snapshot.isReady()
+          && (!includeCertHash || snapshot.containsCertHash())) {
+        rows = new HashMap<>();
+        List<String> missedSerials = new ArrayList<>(1);
+        for (BigInteger serialNumber : serialNumbers) {
+          if (serialNumber.signum() != 1) {
+            continue;
+          }
 
-      boolean unknown = true;
-      boolean ignore = false;
-      String b64CertHash = null;
-      boolean revoked = false;
-      int reason = 0;
-      long revTime = 0;
-      long invalTime = 0;
-      int crlId = 0;
+          String hexSerial = serialNumber.toString(16);
+          CertStatusRow row = snapshot.get(issuer.getId(), serialNumber);
+          if (row == null) {
+            missedSerials.add(hexSerial);
+          } else {
+            rows.put(hexSerial, row);
+          }
+        }
 
-      PreparedStatement ps = datasource.prepareStatement(sql);
+        // certificate may be added after the last refresh of the snapshot
+        if (!missedSerials.isEmpty()) {
+          rows.putAll(queryCertStatus(issuer.getId(), missedSerials,
+              includeCertHash, includeRit));
+        }
+      } else {
+        rows = queryCertStatus(issuer.getId(), hexSerials, includeCertHash, includeRit);
+      }
 
-      try {
-        ps.setInt(1, issuer.getId());
-        ps.setString(2, serialNumber.toString(16));
-        rs = ps.executeQuery();
+      List<CertStatusInfo> infos = new ArrayList<>(n);
+      for (BigInteger serialNumber : serialNumbers) {
+        if (serialNumber.signum() != 1) { // non-positive serial number
+          infos.add(CertStatusInfo.getUnknownCertStatusInfo(new Date(), null));
+        } else {
+          CertStatusRow row = rows.get(serialNumber.toString(16));
+          infos.add(buildCertStatusInfo(time, issuer, crlInfo, row,
+              includeCertHash, includeRit, inheritCaRevocation));
+        }
+      }
+      return infos;
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    }
+  } // method getCertStatus0
 
-        if (rs.next()) {
-          unknown = false;
-          crlId = rs.getInt("CRL_ID");
+  private Map<String, CertStatusRow> queryCertStatus(int issuerId, List<String> hexSerials,
+      boolean includeCertHash, boolean includeRit) throws DataAccessException {
+    return (hexSerials.size() == 1)
+        ? querySingleCertStatus(issuerId, hexSerials.get(0), includeCertHash, includeRit)
+        : queryMultipleCertStatus(issuerId, hexSerials, includeCertHash, includeRit);
+  } // method queryCertStatus
 
-          long timeInSec = time.getTime() / 1000;
-          if (!ignore && ignoreNotYetValidCert) {
-            long notBeforeInSec = rs.getLong("NBEFORE");
-            if (notBeforeInSec != 0 && timeInSec < notBeforeInSec) {
-              ignore = true;
-            }
-          }
+  private Map<String, CertStatusRow> querySingleCertStatus(int issuerId, String hexSerial,
+      boolean includeCertHash, boolean includeRit) throws DataAccessException {
+    String sql;
+    if (includeCertHash) {
+      sql = includeRit ? sqlCsWithCertHash : sqlCsNoRitWithCertHash;
+    } else {
+      sql = includeRit ? sqlCs : sqlCsNoRit;
+    }
 
-          if (!ignore && ignoreExpiredCert) {
-            long notAfterInSec = rs.getLong("NAFTER");
-            if (notAfterInSec != 0 && timeInSec > notAfterInSec) {
-              ignore = true;
-            }
-          }
+    ResultSet rs = null;
+    PreparedStatement ps = datasource.prepareStatement(sql);
 
-          if (!ignore) {
-            if (includeCertHash) {
-              b64CertHash = rs.getString("HASH");
-            }
+    try {
+      ps.setInt(1, issuerId);
+      ps.setString(2, hexSerial);
+      rs = ps.executeQuery();
 
-            revoked = rs.getBoolean("REV");
-            if (revoked) {
-              reason = rs.getInt("RR");
-              revTime = rs.getLong("RT");
-              if (includeRit) {
-                invalTime = rs.getLong("RIT");
-              }
-            }
-          }
-        } // end if (rs.next())
-      } catch (SQLException ex) {
-        throw datasource.translate(sql, ex);
-      } finally {
-        releaseDbResources(ps, rs);
+      if (rs.next()) {
+        return Collections.singletonMap(hexSerial,
+            new CertStatusRow(rs, includeCertHash, includeRit));
+      } else {
+        return Collections.emptyMap();
       }
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      releaseDbResources(ps, rs);
+    }
+  } // method querySingleCertStatus
+
+  private Map<String, CertStatusRow> queryMultipleCertStatus(int issuerId,
+      List<String> hexSerials, boolean includeCertHash, boolean includeRit)
+      throws DataAccessException {
+    StringBuilder sb = new StringBuilder(120 + 2 * hexSerials.size());
+    sb.append("SELECT SN,NBEFORE,NAFTER,REV,RR,RT");
+    if (includeRit) {
+      sb.append(",RIT");
+    }
+    if (includeCertHash) {
+      sb.append(",HASH");
+    }
+    sb.append(",CRL_ID FROM CERT WHERE IID=? AND SN IN (?");
+    for (int i = 1; i < hexSerials.size(); i++) {
+      sb.append(",?");
+    }
+    sb.append(")");
+    final String sql = sb.toString();
 
-      if (crlId == 0) {
-        crlId = issuer.getCrlId();
-      }
+    ResultSet rs = null;
+    PreparedStatement ps = datasource.prepareStatement(sql);
 
-      if (crlInfo == null && crlId != 0) {
-        crlInfo = issuerStore.getCrlInfo(crlId);
+    try {
+      int idx = 1;
+      ps.setInt(idx++, issuerId);
+      for (String hexSerial : hexSerials) {
+        ps.setString(idx++, hexSerial);
       }
+      rs = ps.executeQuery();
 
-      Date thisUpdate;
-      Date nextUpdate;
-      if (crlInfo == null) {
-        thisUpdate = new Date();
-        nextUpdate = null;
-      } else {
-        thisUpdate = crlInfo.getThisUpdate();
-        nextUpdate = crlInfo.getNextUpdate();
-
-        if (isIgnoreExpiredCrls()) {
-          // CRL will expire in 5 minutes
-          if (crlInfo.getNextUpdate().getTime() < time.getTime() + MS_PER_5MIN) {
-            return CertStatusInfo.getCrlExpiredStatusInfo();
-          }
+      Map<String, CertStatusRow> rows = new HashMap<>();
+      while (rs.next()) {
+        String sn = rs.getString("SN");
+        if (!rows.containsKey(sn)) {
+          rows.put(sn, new CertStatusRow(rs, includeCertHash, includeRit));
         }
       }
-
-      if (unknown) {
-        certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, nextUpdate);
-      } else if (ignore) {
-        certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, nextUpdate);
-      } else {
-        byte[] certHash = (b64CertHash == null) ? null : Base64.decodeFast(b64CertHash);
-        if (revoked) {
-          Date invTime = (invalTime == 0 || invalTime == revTime)
-              ? null : new Date(invalTime * 1000);
-          CertRevocationInfo revInfo = new CertRevocationInfo(reason,
-              new Date(revTime * 1000), invTime);
-          certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
-              certHashAlgo, certHash, thisUpdate, nextUpdate, null);
-        } else {
-          certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo,
-              certHash, thisUpdate, nextUpdate, null);
+      return rows;
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      releaseDbResources(ps, rs);
+    }
+  } // method queryMultipleCertStatus
+
+  private CertStatusInfo buildCertStatusInfo(Date time, IssuerEntry issuer, CrlInfo crlInfo,
+      CertStatusRow row, boolean includeCertHash, boolean includeRit,
+      boolean inheritCaRevocation) {
+    boolean unknown = (row == null);
+    boolean ignore = false;
+    int crlId = 0;
+
+    if (row != null) {
+      crlId = row.crlId;
+
+      long timeInSec = time.getTime() / 1000;
+      if (ignoreNotYetValidCert) {
+        if (row.notBefore != 0 && timeInSec < row.notBefore) {
+          ignore = true;
         }
       }
 
-      if (includeCrlId && crlInfo != null) {
-        certStatusInfo.setCrlId(crlInfo.getCrlId());
+      if (!ignore && ignoreExpiredCert) {
+        if (row.notAfter != 0 && timeInSec > row.notAfter) {
+          ignore = true;
+        }
       }
+    }
 
-      if (includeArchiveCutoff) {
-        if (retentionInterval != 0) {
-          Date date;
-          // expired certificate remains in status store for ever
-          if (retentionInterval < 0) {
-            date = issuer.getNotBefore();
-          } else {
-            long nowInMs = System.currentTimeMillis();
-            long dateInMs = Math.max(issuer.getNotBefore().getTime(),
-                nowInMs - DAY * retentionInterval);
-            date = new Date(dateInMs);
-          }
+    if (crlId == 0) {
+      crlId = issuer.getCrlId();
+    }
 
-          certStatusInfo.setArchiveCutOff(date);
+    if (crlInfo == null && crlId != 0) {
+      crlInfo = issuerStore.getCrlInfo(crlId);
+    }
+
+    Date thisUpdate;
+    Date nextUpdate;
+    if (crlInfo == null) {
+      thisUpdate = new Date();
+      nextUpdate = null;
+    } else {
+      thisUpdate = crlInfo.getThisUpdate();
+      nextUpdate = crlInfo.getNextUpdate();
+
+      if (isIgnoreExpiredCrls()) {
+        // CRL will expire in 5 minutes
+        if (crlInfo.getNextUpdate().getTime() < time.getTime() + MS_PER_5MIN) {
+          return CertStatusInfo.getCrlExpiredStatusInfo();
         }
       }
+    }
 
-      if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
-        return certStatusInfo;
+    CertStatusInfo certStatusInfo;
+    if (unknown) {
+      certStatusInfo = CertStatusInfo.getUnknownCertStatusInfo(thisUpdate, nextUpdate);
+    } else if (ignore) {
+      certStatusInfo = CertStatusInfo.getIgnoreCertStatusInfo(thisUpdate, nextUpdate);
+    } else {
+      byte[] certHash = includeCertHash ? row.certHash : null;
+      if (row.revoked) {
+        long invalTime = includeRit ? row.invalTime : 0;
+        Date invTime = (invalTime == 0 || invalTime == row.revTime)
+            ? null : new Date(invalTime * 1000);
+        CertRevocationInfo revInfo = new CertRevocationInfo(row.reason,
+            new Date(row.revTime * 1000), invTime);
+        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(revInfo,
+            certHashAlgo, certHash, thisUpdate, nextUpdate, null);
+      } else {
+        certStatusInfo = CertStatusInfo.getGoodCertStatusInfo(certHashAlgo,
+            certHash, thisUpdate, nextUpdate, null);
       }
+    }
 
-      CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
-      CertStatus certStatus = certStatusInfo.getCertStatus();
-      boolean replaced = false;
-      if (certStatus == CertStatus.GOOD) {
-        replaced = true;
-      } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
-        if (unknownCertBehaviour == UnknownCertBehaviour.good) {
-          replaced = true;
-        }
-      } else if (certStatus == CertStatus.REVOKED) {
-        if (certStatusInfo.getRevocationInfo().getRevocationTime().after(
-              caRevInfo.getRevocationTime())) {
-          replaced = true;
-        }
-      }
+    if (includeCrlId && crlInfo != null) {
+      certStatusInfo.setCrlId(crlInfo.getCrlId());
+    }
 
-      if (replaced) {
-        CertRevocationInfo newRevInfo;
-        if (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) {
-          newRevInfo = caRevInfo;
+    if (includeArchiveCutoff) {
+      if (retentionInterval != 0) {
+        Date date;
+        // expired certificate remains in status store for ever
+        if (retentionInterval < 0) {
+          date = issuer.getNotBefore();
         } else {
-          newRevInfo = new CertRevocationInfo(CrlReason.CA_COMPROMISE,
-              caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
+          long nowInMs = System.currentTimeMillis();
+          long dateInMs = Math.max(issuer.getNotBefore().getTime(),
+              nowInMs - DAY * retentionInterval);
+          date = new Date(dateInMs);
         }
-        certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
-            certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
-            certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
-            certStatusInfo.getCertprofile());
+
+        certStatusInfo.setArchiveCutOff(date);
       }
+    }
+
+    if ((!inheritCaRevocation) || issuer.getRevocationInfo() == null) {
       return certStatusInfo;
-    } catch (DataAccessException ex) {
-      throw new OcspStoreException(ex.getMessage(), ex);
     }
 
-  } // method getCertStatus0
+    CertRevocationInfo caRevInfo = issuer.getRevocationInfo();
+    CertStatus certStatus = certStatusInfo.getCertStatus();
+    boolean replaced = false;
+    if (certStatus == CertStatus.GOOD) {
+      replaced = true;
+    } else if (certStatus == CertStatus.UNKNOWN || certStatus == CertStatus.IGNORE) {
+      if (unknownCertBehaviour == UnknownCertBehaviour.good) {
+        replaced = true;
+      }
+    } else if (certStatus == CertStatus.REVOKED) {
+      if (certStatusInfo.getRevocationInfo().getRevocationTime().after(
+            caRevInfo.getRevocationTime())) {
+        replaced = true;
+      }
+    }
+
+    if (replaced) {
+      CertRevocationInfo newRevInfo;
+      if (caRevInfo.getReason() == CrlReason.CA_COMPROMISE) {
+        newRevInfo = caRevInfo;
+      } else {
+        newRevInfo = new CertRevocationInfo(CrlReason.CA_COMPROMISE,
+            caRevInfo.getRevocationTime(), caRevInfo.getInvalidityTime());
+      }
+      certStatusInfo = CertStatusInfo.getRevokedCertStatusInfo(newRevInfo,
+          certStatusInfo.getCertHashAlgo(), certStatusInfo.getCertHash(),
+          certStatusInfo.getThisUpdate(), certStatusInfo.getNextUpdate(),
+          certStatusInfo.getCertprofile());
+    }
+    return certStatusInfo;
+  } // method buildCertStatusInfo
 
   /**
    * Borrow Prepared Statement.
@@ -530,6 +783,18 @@ public class DbCertStatusStore extends OcspStore {
    * <li>caCerts: optional
    *   <p>
    *   CA certificate files to be included / excluded.</li>
+   * <li>memorySnapshot: optional, default to false
+   *   <p>
+   *   Whether the table CERT will be kept in memory. The snapshot is refreshed by the
+   *   scheduled update service, and completely reloaded as specified by
+   *   memorySnapshotFullRefresh.</li>
+   * <li>memorySnapshotFullRefresh: optional, default to 1d
+   *   <p>
+   *   Interval to reload the complete snapshot. Deleted certificates are already detected by
+   *   each refresh, the complete reload releases their memory.</li>
+   * <li>memorySnapshotCertHash: optional, default to false
+   *   <p>
+   *   Whether the snapshot contains the certificate hash.</li>
    *  </ul>
    * @param datasource DataSource.
    */
@@ -537,11 +802,29 @@ public class DbCertStatusStore extends OcspStore {
   public void init(Map<String, ? extends Object> sourceConf, DataSourceWrapper datasource)
       throws OcspStoreException {
     OcspServerConf.CaCerts caCerts = null;
+    boolean memorySnapshot = false;
+    boolean memorySnapshotCertHash = false;
+    Validity memorySnapshotFullRefresh = new Validity(1, Unit.DAY);
     if (sourceConf != null) {
       Object objValue = sourceConf.get("caCerts");
       if (objValue != null) {
         caCerts = JSON.parseObject(JSON.toJSONBytes(objValue), OcspServerConf.CaCerts.class);
       }
+
+      objValue = sourceConf.get("memorySnapshot");
+      if (objValue != null) {
+        memorySnapshot = Boolean.parseBoolean(objValue.toString());
+      }
+
+      objValue = sourceConf.get("memorySnapshotCertHash");
+      if (objValue != null) {
+        memorySnapshotCertHash = Boolean.parseBoolean(objValue.toString());
+      }
+
+      objValue = sourceConf.get("memorySnapshotFullRefresh");
+      if (objValue != null) {
+        memorySnapshotFullRefresh = Validity.getInstance(objValue.toString());
+      }
     }
 
     this.datasource = Args.notNull(datasource, "datasource");
@@ -582,6 +865,15 @@ public class DbCertStatusStore extends OcspStore {
       throw new OcspStoreException(ex.getMessage(), ex);
     } // end try
 
+    if (memorySnapshot) {
+      initSnapshot(new CertStatusSnapshot(datasource,
+          memorySnapshotCertHash ? certHashAlgo.getLength() : 0, SNAPSHOT_PAGE_SIZE),
+          memorySnapshotFullRefresh.approxMinutes() * 60L * 1000);
+    } else {
+      initSnapshot(null, 0);
+    }
+
+    // also starts the initial loading of the snapshot
     updateIssuerStore();
 
     if (this.scheduledThreadPoolExecutor != null) {
@@ -630,6 +922,61 @@ public class DbCertStatusStore extends OcspStore {
     return (issuer == null) ? null : issuer.getCert();
   }
 
+  @Override
+  public List<RequestIssuer> getIssuers(HashAlgo hashAlgo) {
+    Args.notNull(hashAlgo, "hashAlgo");
+    if (issuerStore == null) {
+      return Collections.emptyList();
+    }
+
+    List<IssuerEntry> issuers = issuerStore.getIssuers();
+    List<RequestIssuer> reqIssuers = new ArrayList<>(issuers.size());
+    for (IssuerEntry issuer : issuers) {
+      reqIssuers.add(new RequestIssuer(hashAlgo, issuer.getEncodedHash(hashAlgo)));
+    }
+    return reqIssuers;
+  } // method getIssuers
+
+  @Override
+  public long getSerialNumbers(RequestIssuer reqIssuer, long startId, int numEntries,
+      List<BigInteger> serialNumbers) throws OcspStoreException {
+    Args.positive(numEntries, "numEntries");
+    Args.notNull(serialNumbers, "serialNumbers");
+
+    IssuerEntry issuer = (issuerStore == null) ? null : issuerStore.getIssuerForFp(reqIssuer);
+    if (issuer == null) {
+      return 0;
+    }
+
+    final String sql = datasource.buildSelectFirstSql(numEntries, "ID ASC",
+        "ID,SN FROM CERT WHERE IID=? AND ID>? AND NAFTER>?");
+    PreparedStatement ps = null;
+    ResultSet rs = null;
+    try {
+      ps = datasource.prepareStatement(sql);
+      ps.setInt(1, issuer.getId());
+      ps.setLong(2, startId);
+      ps.setLong(3, System.currentTimeMillis() / 1000);
+      rs = ps.executeQuery();
+
+      long lastId = 0;
+      int num = 0;
+      while (rs.next()) {
+        lastId = rs.getLong("ID");
+        serialNumbers.add(new BigInteger(rs.getString("SN"), 16));
+        num++;
+      }
+      return (num < numEntries) ? 0 : lastId;
+    } catch (SQLException ex) {
+      DataAccessException dex = datasource.translate(sql, ex);
+      throw new OcspStoreException(dex.getMessage(), dex);
+    } catch (DataAccessException ex) {
+      throw new OcspStoreException(ex.getMessage(), ex);
+    } finally {
+      datasource.releaseResources(ps, rs);
+    }
+  } // method getSerialNumbers
+
   protected boolean isInitialized() {
     return initialized;
   }
@@ -34,11 +34,22 @@ import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.sql.Statement;
 import java.sql.Types;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Properties;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
@@ -95,6 +106,8 @@ class ImportCrl {
 
     private long invalidityTime;
 
+    private boolean seen;
+
     boolean isDifferent(RevokedCert revokedCert, int crlId) {
       if (this.crlId != crlId) {
         return true;
@@ -193,6 +206,147 @@ class ImportCrl {
 
   } // class ImportCrlException
 
+  private static class RevokedCertChange {
+
+    private final long id;
+
+    private final String serial;
+
+    private final int reason;
+
+    private final long revocationTime;
+
+    private final long invalidityTime;
+
+    RevokedCertChange(long id, String serial, RevokedCert revCert) {
+      this.id = id;
+      this.serial = serial;
+      this.reason = revCert.getReason();
+      this.revocationTime = revCert.getRevocationDate();
+      this.invalidityTime = revCert.getInvalidityDate();
+    }
+
+  } // class RevokedCertChange
+
+  /**
+   * Changes of revoked certificates, written in one transaction with its own connection.
+   */
+  private class RevokedCertChangeBatch implements Callable<Void> {
+
+    private final int caId;
+
+    private final int crlInfoId;
+
+    private final long updateTimeSec;
+
+    private final List<RevokedCertChange> inserts = new ArrayList<>();
+
+    private final List<RevokedCertChange> updates = new ArrayList<>();
+
+    private final List<Long> deletes = new ArrayList<>();
+
+    RevokedCertChangeBatch(int caId, int crlInfoId, long updateTimeSec) {
+      this.caId = caId;
+      this.crlInfoId = crlInfoId;
+      this.updateTimeSec = updateTimeSec;
+    }
+
+    int size() {
+      return inserts.size() + updates.size() + deletes.size();
+    }
+
+    @Override
+    public Void call() throws DataAccessException {
+      Connection conn = datasource.getConnection();
+      String sql = null;
+      try {
+        boolean autoCommit = conn.getAutoCommit();
+        conn.setAutoCommit(false);
+        try {
+          if (!inserts.isEmpty()) {
+            sql = SQL_INSERT_CERT_REV;
+            PreparedStatement ps = datasource.prepareStatement(conn, sql);
+            try {
+              for (RevokedCertChange change : inserts) {
+                int offset = 1;
+                ps.setLong(offset++, change.id);
+                ps.setInt(offset++, caId);
+                ps.setString(offset++, change.serial);
+                ps.setInt(offset++, 1);
+                offset = setRevocationInfo(ps, offset, change);
+                ps.setLong(offset++, updateTimeSec);
+                ps.setInt(offset++, crlInfoId);
+                ps.addBatch();
+              }
+              ps.executeBatch();
+            } finally {
+              releaseResources(ps, null);
+            }
+          }
+
+          if (!updates.isEmpty()) {
+            sql = SQL_UPDATE_CERT_REV;
+            PreparedStatement ps = datasource.prepareStatement(conn, sql);
+            try {
+              for (RevokedCertChange change : updates) {
+                int offset = 1;
+                ps.setInt(offset++, 1);
+                offset = setRevocationInfo(ps, offset, change);
+                ps.setLong(offset++, updateTimeSec);
+                ps.setInt(offset++, crlInfoId);
+                ps.setLong(offset++, change.id);
+                ps.addBatch();
+              }
+              ps.executeBatch();
+            } finally {
+              releaseResources(ps, null);
+            }
+          }
+
+          if (!deletes.isEmpty()) {
+            sql = SQL_DELETE_CERT_ID;
+            PreparedStatement ps = datasource.prepareStatement(conn, sql);
+            try {
+              for (Long id : deletes) {
+                ps.setLong(1, id);
+                ps.addBatch();
+              }
+              ps.executeBatch();
+            } finally {
+              releaseResources(ps, null);
+            }
+          }
+
+          sql = "commit";
+          conn.commit();
+        } catch (SQLException ex) {
+          conn.rollback();
+          throw ex;
+        } finally {
+          conn.setAutoCommit(autoCommit);
+        }
+      } catch (SQLException ex) {
+        throw datasource.translate(sql, ex);
+      } finally {
+        datasource.returnConnection(conn);
+      }
+      return null;
+    } // method call
+
+    private int setRevocationInfo(PreparedStatement ps, int offset, RevokedCertChange change)
+        throws SQLException {
+      ps.setInt(offset++, change.reason);
+      ps.setLong(offset++, change.revocationTime);
+      if (change.invalidityTime != 0) {
+        ps.setLong(offset++, change.invalidityTime);
+      } else {
+        ps.setNull(offset++, Types.BIGINT);
+      }
+      return offset;
+    } // method setRevocationInfo
+
+  } // class RevokedCertChangeBatch
+
   private static final Logger LOG = LoggerFactory.getLogger(ImportCrl.class);
 
   private static final String KEY_CA_REVOCATION_TIME = "ca.revocation.time";
@@ -213,6 +367,11 @@ class ImportCrl {
 
   private static final String SQL_DELETE_CERT = "DELETE FROM CERT WHERE IID=? AND SN=?";
 
+  private static final String SQL_DELETE_CERT_ID = "DELETE FROM CERT WHERE ID=?";
+
+  private static final String SQL_SELECT_CERTS_OF_ISSUER
+      = "SELECT ID,SN,REV,RR,RT,RIT,CRL_ID FROM CERT WHERE IID=?";
+
   private static final String SQL_UPDATE_CERT_LUPDATE = "UPDATE CERT SET LUPDATE=? WHERE ID=?";
 
   private static final String SQL_UPDATE_CERT
@@ -237,6 +396,8 @@ class ImportCrl {
 
   private final boolean ignoreExpiredCrls;
 
+  private final int importThreads;
+
   private PreparedStatement psDeleteCert;
 
   private PreparedStatement psInsertCert;
@@ -251,10 +412,30 @@ class ImportCrl {
 
   private PreparedStatement psUpdateCertLastupdate;
 
+  /**
+   * Constructor.
+   *
+   * @param datasource
+   *          Datasource of the OCSP database. Must not be {@code null}.
+   * @param basedir
+   *          Directory of the CRL resources. Must not be {@code null}.
+   * @param sqlBatchCommit
+   *          Number of SQL queries before next commit.
+   * @param ignoreExpiredCrls
+   *          Whether expired CRLs are ignored.
+   * @param importThreads
+   *          Number of threads to write the changed revoked certificates. If positive, the
+   *          CRL is compared with the entries in the database, and only the changes are
+   *          written. If this fails, all entries are written again one by one. If 0, all
+   *          entries are written one by one.
+   * @throws DataAccessException
+   *           if database exception occurs.
+   */
   public ImportCrl(DataSourceWrapper datasource, String basedir, int sqlBatchCommit,
-      boolean ignoreExpiredCrls) throws DataAccessException {
+      boolean ignoreExpiredCrls, int importThreads) throws DataAccessException {
     this.sqlBatchCommit = Args.min(sqlBatchCommit, "sqlBatchCommit", 1);
     this.ignoreExpiredCrls = ignoreExpiredCrls;
+    this.importThreads = Args.notNegative(importThreads, "importThreads");
     this.datasource = Args.notNull(datasource, "datasource");
     this.basedir = Args.notNull(basedir, "basedir");
     this.certhashAlgo = DbCertStatusStore.getCertHashAlgo(datasource);
@@ -599,11 +780,14 @@ class ImportCrl {
             crlDirInfo.shareCaWithOtherCrl, caCert.base64Sha1Fp);
         commit(conn);
 
-        importCrlRevokedCertificates(conn, id, caCert, crl, startTimeSec);
+        boolean importedByDiff =
+            importCrlRevokedCertificates(conn, id, caCert, crl, startTimeSec);
         commit(conn);
 
         if (!crl.isDeltaCrl()) {
-          deleteEntriesNotUpdatedSince(conn, id, startTimeSec);
+          // in the diff mode, the unchanged revoked certificates are not updated, and the
+          // removed ones have been deleted already.
+          deleteEntriesNotUpdatedSince(conn, id, startTimeSec, importedByDiff);
           commit(conn);
         }
       }
@@ -778,110 +962,37 @@ class ImportCrl {
     }
   } // method importCrlInfo
 
-  private void importCrlRevokedCertificates(Connection conn, int crlInfoId, CertWrapper caCert,
-      CrlStreamParser crl, long startTimeSec)
+  /**
+   * Imports the revoked certificates.
+   *
+   * <p>If the import by diff fails, the batches committed before the failure remain in the
+   * database. In this case, all entries of the CRL are imported again one by one, so that the
+   * database is consistent with the CRL after a successful import.
+   *
+   * @return whether the revoked certificates have been imported by diff, namely whether the
+   *         unchanged entries have not been updated.
+   */
+  private boolean importCrlRevokedCertificates(Connection conn, int crlInfoId,
+      CertWrapper caCert, CrlStreamParser crl, long startTimeSec)
           throws DataAccessException, ImportCrlException, IOException {
     int caId = caCert.databaseId.intValue();
     AtomicLong maxId = new AtomicLong(datasource.getMax(conn, "CERT", "ID"));
 
-    boolean isDeltaCrl = crl.isDeltaCrl();
-
-    // import the revoked information
-    try (RevokedCertsIterator revokedCertList = crl.revokedCertificates()) {
-      int num = 0;
-      while (revokedCertList.hasNext()) {
-        num++;
-
-        // If the system time is adjusted to a previous time point during the
-        // import process, System.currentTime...() may be before startTime.
-        // Since all entries in the database whose Last-Update is before
-        // startTime will be deleted, we must ensure that the Last-Update is
-        // not before startTime.
-        long updateTimeSec = Math.max(System.currentTimeMillis() / 1000, startTimeSec);
-
-        RevokedCert revCert = revokedCertList.next();
-        BigInteger serial = revCert.getSerialNumber();
-        long rt = revCert.getRevocationDate();
-        long rit = revCert.getInvalidityDate();
-        int reason = revCert.getReason();
-        X500Name issuer = revCert.getCertificateIssuer();
-        if (issuer != null && !issuer.equals(caCert.subject)) {
-          throw new ImportCrlException("invalid CRLEntry for certificate number " + serial);
-        }
-
-        String sql = null;
-        try {
-          if (reason == CrlReason.REMOVE_FROM_CRL.getCode()) {
-            if (isDeltaCrl) {
-              // delete the entry
-              sql = SQL_DELETE_CERT;
-              psDeleteCert.setInt(1, caId);
-              psDeleteCert.setString(2, serial.toString(16));
-              psDeleteCert.executeUpdate();
-            } else {
-              LOG.warn("ignore CRL entry with reason removeFromCRL in non-Delta CRL");
-            }
-            continue;
-          }
-
-          CertInfo existingCertInfo = getCertInfo(caId, serial);
-          PreparedStatement ps;
-
-          if (existingCertInfo == null) {
-            sql = SQL_INSERT_CERT_REV;
-            long id = maxId.incrementAndGet();
-            ps = psInsertCertRev;
-            int offset = 1;
-
-            ps.setLong(offset++, id);
-            ps.setInt(offset++, caId);
-            ps.setString(offset++, serial.toString(16));
-            ps.setInt(offset++, 1);
-            ps.setInt(offset++, reason);
-            ps.setLong(offset++, rt);
-            if (rit != 0) {
-              ps.setLong(offset++, rit);
-            } else {
-              ps.setNull(offset++, Types.BIGINT);
-            }
-            ps.setLong(offset++, updateTimeSec);
-            ps.setInt(offset++, crlInfoId);
-          } else {
-            if (existingCertInfo.isDifferent(revCert, crlInfoId)) {
-              sql = SQL_UPDATE_CERT_REV;
-              ps = psUpdateCertRev;
-              int offset = 1;
-
-              ps.setInt(offset++, 1);
-              ps.setInt(offset++, reason);
-              ps.setLong(offset++, rt);
-              if (rit != 0) {
-                ps.setLong(offset++, rit);
-              } else {
-                ps.setNull(offset++, Types.BIGINT);
-              }
-              ps.setLong(offset++, updateTimeSec);
-              ps.setInt(offset++, crlInfoId);
-              ps.setLong(offset++, existingCertInfo.id);
-            } else {
-              sql = SQL_UPDATE_CERT_LUPDATE;
-              ps = psUpdateCertLastupdate;
-              ps.setLong(1, updateTimeSec);
-              ps.setLong(2, existingCertInfo.id);
-            }
-          }
-
-          ps.executeUpdate();
-
-          if (num % sqlBatchCommit == 0) {
-            commit(conn);
-          }
-        } catch (SQLException ex) {
-          throw datasource.translate(sql, ex);
-        }
+    boolean importedByDiff = false;
+    if (importThreads > 0) {
+      try {
+        importRevokedCertificatesByDiff(conn, caId, crlInfoId, caCert, crl, maxId,
+            startTimeSec);
+        importedByDiff = true;
+      } catch (DataAccessException ex) {
+        LogUtil.error(LOG, ex,
+            "could not import the revoked certificates by diff, import all of them again");
+        maxId.set(datasource.getMax(conn, "CERT", "ID"));
       }
+    }
 
-      LOG.info("imported {} revoked certificates", num);
+    if (!importedByDiff) {
+      importRevokedCertificates(conn, caId, crlInfoId, caCert, crl, maxId, startTimeSec);
     }
 
     commit(conn);
@@ -937,17 +1048,17 @@ class ImportCrl {
 
       if (!certsDir.exists()) {
         LOG.info("the folder {} does not exist, ignore it", certsDir.getPath());
-        return;
+        return importedByDiff;
       }
 
       if (!certsDir.isDirectory()) {
         LOG.warn("the path {} does not point to a folder, ignore it", certsDir.getPath());
-        return;
+        return importedByDiff;
       }
 
       if (!certsDir.canRead()) {
         LOG.warn("the folder {} may not be read, ignore it", certsDir.getPath());
-        return;
+        return importedByDiff;
       }
 
       // import certificates
@@ -1015,8 +1126,284 @@ class ImportCrl {
         commit(conn);
       }
     }
+
+    return importedByDiff;
   } // method importCrlRevokedCertificates
 
+  private void importRevokedCertificates(Connection conn, int caId, int crlInfoId,
+      CertWrapper caCert, CrlStreamParser crl, AtomicLong maxId, long startTimeSec)
+          throws DataAccessException, ImportCrlException, IOException {
+    boolean isDeltaCrl = crl.isDeltaCrl();
+
+    // import the revoked information
+    try (RevokedCertsIterator revokedCertList = crl.revokedCertificates()) {
+      int num = 0;
+      while (revokedCertList.hasNext()) {
+        num++;
+
+        // If the system time is adjusted to a previous time point during the
+        // import process, System.currentTime...() may be before startTime.
+        // Since all entries in the database whose Last-Update is before
+        // startTime will be deleted, we must ensure that the Last-Update is
+        // not before startTime.
+        long updateTimeSec = Math.max(System.currentTimeMillis() / 1000, startTimeSec);
+
+        RevokedCert revCert = revokedCertList.next();
+        BigInteger serial = revCert.getSerialNumber();
+        long rt = revCert.getRevocationDate();
+        long rit = revCert.getInvalidityDate();
+        int reason = revCert.getReason();
+        X500Name issuer = revCert.getCertificateIssuer();
+        if (issuer != null && !issuer.equals(caCert.subject)) {
+          throw new ImportCrlException("invalid CRLEntry for certificate number " + serial);
+        }
+
+        String sql = null;
+        try {
+          if (reason == CrlReason.REMOVE_FROM_CRL.getCode()) {
+            if (isDeltaCrl) {
+              // delete the entry
+              sql = SQL_DELETE_CERT;
+              psDeleteCert.setInt(1, caId);
+              psDeleteCert.setString(2, serial.toString(16));
+              psDeleteCert.executeUpdate();
+            } else {
+              LOG.warn("ignore CRL entry with reason removeFromCRL in non-Delta CRL");
+            }
+            continue;
+          }
+
+          CertInfo existingCertInfo = getCertInfo(caId, serial);
+          PreparedStatement ps;
+
+          if (existingCertInfo == null) {
+            sql = SQL_INSERT_CERT_REV;
+            long id = maxId.incrementAndGet();
+            ps = psInsertCertRev;
+            int offset = 1;
+
+            ps.setLong(offset++, id);
+            ps.setInt(offset++, caId);
+            ps.setString(offset++, serial.toString(16));
+            ps.setInt(offset++, 1);
+            ps.setInt(offset++, reason);
+            ps.setLong(offset++, rt);
+            if (rit != 0) {
+              ps.setLong(offset++, rit);
+            } else {
+              ps.setNull(offset++, Types.BIGINT);
+            }
+            ps.setLong(offset++, updateTimeSec);
+            ps.setInt(offset++, crlInfoId);
+          } else {
+            if (existingCertInfo.isDifferent(revCert, crlInfoId)) {
+              sql = SQL_UPDATE_CERT_REV;
+              ps = psUpdateCertRev;
+              int offset = 1;
+
+              ps.setInt(offset++, 1);
+              ps.setInt(offset++, reason);
+              ps.setLong(offset++, rt);
+              if (rit != 0) {
+                ps.setLong(offset++, rit);
+              } else {
+                ps.setNull(offset++, Types.BIGINT);
+              }
+              ps.setLong(offset++, updateTimeSec);
+              ps.setInt(offset++, crlInfoId);
+              ps.setLong(offset++, existingCertInfo.id);
+            } else {
+              sql = SQL_UPDATE_CERT_LUPDATE;
+              ps = psUpdateCertLastupdate;
+              ps.setLong(1, updateTimeSec);
+              ps.setLong(2, existingCertInfo.id);
+            }
+          }
+
+          ps.executeUpdate();
+
+          if (num % sqlBatchCommit == 0) {
+            commit(conn);
+          }
+        } catch (SQLException ex) {
+          throw datasource.translate(sql, ex);
+        }
+      }
+
+      LOG.info("imported {} revoked certificates", num);
+    }
+  } // method importRevokedCertificates
+
+  /**
+   * Imports the revoked certificates by comparing the CRL with the entries of the issuer in the
+   * database. The existing entries are loaded once, and only the changed entries are written,
+   * as JDBC batches by {@link #importThreads} threads, each with its own connection.
+   */
+  private void importRevokedCertificatesByDiff(Connection conn, int caId, int crlInfoId,
+      CertWrapper caCert, CrlStreamParser crl, AtomicLong maxId, long startTimeSec)
+          throws DataAccessException, ImportCrlException, IOException {
+    boolean isDeltaCrl = crl.isDeltaCrl();
+
+    Map<String, CertInfo> existingCerts = loadCertInfos(conn, caId);
+    LOG.info("loaded {} certificates of the issuer from the database", existingCerts.size());
+
+    ExecutorService executor = Executors.newFixedThreadPool(importThreads);
+    LinkedList<Future<Void>> futures = new LinkedList<>();
+
+    int num = 0;
+    int numChanges = 0;
+    try {
+      // If the system time is adjusted to a previous time point during the
+      // import process, System.currentTime...() may be before startTime.
+      long updateTimeSec = Math.max(System.currentTimeMillis() / 1000, startTimeSec);
+      RevokedCertChangeBatch batch = new RevokedCertChangeBatch(caId, crlInfoId, updateTimeSec);
+
+      try (RevokedCertsIterator revokedCertList = crl.revokedCertificates()) {
+        while (revokedCertList.hasNext()) {
+          num++;
+
+          RevokedCert revCert = revokedCertList.next();
+          BigInteger serial = revCert.getSerialNumber();
+          X500Name issuer = revCert.getCertificateIssuer();
+          if (issuer != null && !issuer.equals(caCert.subject)) {
+            throw new ImportCrlException("invalid CRLEntry for certificate number " + serial);
+          }
+
+          String hexSerial = serial.toString(16);
+          CertInfo existingCertInfo = existingCerts.get(hexSerial);
+          if (existingCertInfo != null) {
+            if (existingCertInfo.seen) {
+              LOG.warn("ignore duplicated CRL entry for certificate number {}", hexSerial);
+              continue;
+            }
+            existingCertInfo.seen = true;
+          }
+
+          if (revCert.getReason() == CrlReason.REMOVE_FROM_CRL.getCode()) {
+            if (!isDeltaCrl) {
+              LOG.warn("ignore CRL entry with reason removeFromCRL in non-Delta CRL");
+            } else if (existingCertInfo != null) {
+              batch.deletes.add(existingCertInfo.id);
+            }
+          } else if (existingCertInfo == null) {
+            long id = maxId.incrementAndGet();
+            batch.inserts.add(new RevokedCertChange(id, hexSerial, revCert));
+
+            // remember the new entry, so that a duplicated CRL entry is not inserted again
+            CertInfo newCertInfo = new CertInfo();
+            newCertInfo.id = id;
+            newCertInfo.crlId = crlInfoId;
+            newCertInfo.revoked = true;
+            newCertInfo.seen = true;
+            existingCerts.put(hexSerial, newCertInfo);
+          } else if (existingCertInfo.isDifferent(revCert, crlInfoId)) {
+            batch.updates.add(new RevokedCertChange(existingCertInfo.id, null, revCert));
+          } else {
+            // unchanged
+            continue;
+          }
+
+          numChanges++;
+          if (batch.size() >= sqlBatchCommit) {
+            submit(executor, futures, batch);
+            updateTimeSec = Math.max(System.currentTimeMillis() / 1000, startTimeSec);
+            batch = new RevokedCertChangeBatch(caId, crlInfoId, updateTimeSec);
+          }
+        }
+      }
+
+      if (!isDeltaCrl) {
+        // remove the revoked certificates which are no more contained in the full CRL
+        for (CertInfo m : existingCerts.values()) {
+          if (!m.seen && m.revoked && m.crlId == crlInfoId) {
+            batch.deletes.add(m.id);
+            numChanges++;
+            if (batch.size() >= sqlBatchCommit) {
+              submit(executor, futures, batch);
+              batch = new RevokedCertChangeBatch(caId, crlInfoId, updateTimeSec);
+            }
+          }
+        }
+      }
+
+      if (batch.size() > 0) {
+        submit(executor, futures, batch);
+      }
+
+      while (!futures.isEmpty()) {
+        waitFor(futures.removeFirst());
+      }
+    } finally {
+      executor.shutdownNow();
+      // the batches still running must not interfere with a following complete import
+      boolean terminated = false;
+      try {
+        terminated = executor.awaitTermination(1, TimeUnit.MINUTES);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+
+      if (!terminated) {
+        throw new ImportCrlException("import threads did not terminate");
+      }
+    }
+
+    LOG.info("imported {} revoked certificates, {} changed entries", num, numChanges);
+  } // method importRevokedCertificatesByDiff
+
+  private Map<String, CertInfo> loadCertInfos(Connection conn, int caId)
+      throws DataAccessException {
+    final String sql = SQL_SELECT_CERTS_OF_ISSUER;
+    Map<String, CertInfo> certInfos = new HashMap<>();
+
+    PreparedStatement ps = datasource.prepareStatement(conn, sql);
+    ResultSet rs = null;
+    try {
+      // do not fetch all rows into memory at once
+      ps.setFetchSize(sqlBatchCommit);
+      ps.setInt(1, caId);
+      rs = ps.executeQuery();
+      while (rs.next()) {
+        CertInfo ci = new CertInfo();
+        ci.crlId = rs.getInt("CRL_ID");
+        ci.id = rs.getLong("ID");
+        ci.invalidityTime = rs.getLong("RIT");
+        ci.revocationReason = rs.getInt("RR");
+        ci.revocationTime = rs.getLong("RT");
+        ci.revoked = rs.getBoolean("REV");
+        certInfos.put(rs.getString("SN"), ci);
+      }
+    } catch (SQLException ex) {
+      throw datasource.translate(sql, ex);
+    } finally {
+      releaseResources(ps, rs);
+    }
+
+    return certInfos;
+  } // method loadCertInfos
+
+  private void submit(ExecutorService executor, LinkedList<Future<Void>> futures,
+      RevokedCertChangeBatch batch) throws DataAccessException {
+    futures.add(executor.submit(batch));
+    // limit the number of batches held in memory
+    while (futures.size() > 2 * importThreads) {
+      waitFor(futures.removeFirst());
+    }
+  } // method submit
+
+  private static void waitFor(Future<Void> future) throws DataAccessException {
+    try {
+      future.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new DataAccessException("interrupted while importing CRL", ex);
+    } catch (ExecutionException ex) {
+      Throwable cause = ex.getCause();
+      throw (cause instanceof DataAccessException) ? (DataAccessException) cause
+          : new DataAccessException(cause.getMessage(), cause);
+    }
+  } // method waitFor
+
   private static Certificate parseCert(File certFile) throws ImportCrlException {
     try {
       return X509Util.parseBcCert(certFile);
@@ -1231,10 +1618,13 @@ class ImportCrl {
     LOG.info(" Imported certificate by serial number {}", serialNumber);
   } // method addCertificateBySerialNumber
 
-  private void deleteEntriesNotUpdatedSince(Connection conn, int crlInfoId, long timeSec)
-      throws DataAccessException {
+  private void deleteEntriesNotUpdatedSince(Connection conn, int crlInfoId, long timeSec,
+      boolean onlyUnrevoked) throws DataAccessException {
     // remove the unmodified entries
     String sql = "DELETE FROM CERT WHERE CRL_ID=" + crlInfoId + " AND LUPDATE<" + timeSec;
+    if (onlyUnrevoked) {
+      sql += " AND REV=0";
+    }
     Statement stmt = datasource.createStatement(conn);
     try {
       stmt.executeUpdate(sql);
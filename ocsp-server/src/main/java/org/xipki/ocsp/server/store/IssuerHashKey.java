@@ -0,0 +1,114 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.security.HashAlgo;
+import org.xipki.util.Args;
+import org.xipki.util.CompareUtil;
+
+/**
+ * Hash key (hashAlgorithm, issuerNameHash, issuerKeyHash) of an issuer. The key refers to
+ * the underlying byte array without copying it.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public final class IssuerHashKey {
+
+  private final HashAlgo hashAlgo;
+
+  private final byte[] data;
+
+  private final int from;
+
+  private final int length;
+
+  private final int hashCode;
+
+  private IssuerHashKey(HashAlgo hashAlgo, byte[] data, int from, int length) {
+    this.hashAlgo = hashAlgo;
+    this.data = data;
+    this.from = from;
+    this.length = length;
+
+    int hash = hashAlgo.hashCode();
+    final int to = from + length;
+    for (int i = from; i < to; i++) {
+      hash = 31 * hash + data[i];
+    }
+    this.hashCode = hash;
+  }
+
+  /**
+   * Creates the key from the encoded issuerNameHash and issuerKeyHash.
+   * @param hashAlgo
+   *          Hash algorithm. Must not be {@code null}.
+   * @param encodedHash
+   *          Encoded OCTET STRING issuerNameHash followed by the encoded OCTET STRING
+   *          issuerKeyHash. Must not be {@code null}.
+   * @return the key.
+   */
+  public static IssuerHashKey getInstance(HashAlgo hashAlgo, byte[] encodedHash) {
+    Args.notNull(hashAlgo, "hashAlgo");
+    Args.notNull(encodedHash, "encodedHash");
+    return new IssuerHashKey(hashAlgo, encodedHash, 0, encodedHash.length);
+  }
+
+  /**
+   * Creates the key from the issuer in the request.
+   * @param reqIssuer
+   *          Issuer in the request. Must not be {@code null}.
+   * @return the key, or {@code null} if the hash algorithm is unknown or the hash values
+   *         are too short.
+   */
+  public static IssuerHashKey getInstance(RequestIssuer reqIssuer) {
+    HashAlgo hashAlgo = reqIssuer.hashAlgorithm();
+    if (hashAlgo == null) {
+      return null;
+    }
+
+    int length = (2 + hashAlgo.getLength()) << 1;
+    int from = reqIssuer.getNameHashFrom();
+    if (from + length > reqIssuer.getFrom() + reqIssuer.getLength()) {
+      return null;
+    }
+
+    return new IssuerHashKey(hashAlgo, reqIssuer.getData(), from, length);
+  }
+
+  @Override
+  public int hashCode() {
+    return hashCode;
+  }
+
+  @Override
+  public boolean equals(Object obj) {
+    if (this == obj) {
+      return true;
+    } else if (!(obj instanceof IssuerHashKey)) {
+      return false;
+    }
+
+    IssuerHashKey other = (IssuerHashKey) obj;
+    return hashCode == other.hashCode && hashAlgo == other.hashAlgo && length == other.length
+        && CompareUtil.areEqual(data, from, other.data, other.from, length);
+  }
+
+}
@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 
 import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.security.HashAlgo;
 
 /**
  * Issuer store.
@@ -36,38 +37,71 @@ import org.xipki.ocsp.api.RequestIssuer;
 
 class IssuerStore {
 
-  private List<IssuerEntry> issuers = new ArrayList<>();
+  /**
+   * Immutable index of the issuers. It will be replaced as a whole if the issuers change.
+   */
+  private static class Index {
 
-  private Set<Integer> ids = Collections.emptySet();
+    private final List<IssuerEntry> issuers;
 
-  private Map<Integer, CrlInfo> crlInfos = new HashMap<>();
+    private final Set<Integer> ids;
 
-  public IssuerStore() {
-  }
+    private final Map<Integer, IssuerEntry> idMap;
+
+    private final Map<IssuerHashKey, IssuerEntry> hashMap;
+
+    Index(List<IssuerEntry> issuers) {
+      Set<Integer> newIds = new HashSet<>();
+      Map<Integer, IssuerEntry> newIdMap = new HashMap<>();
+      Map<IssuerHashKey, IssuerEntry> newHashMap = new HashMap<>();
+
+      for (IssuerEntry issuer : issuers) {
+        int id = issuer.getId();
+        if (newIds.contains(id)) {
+          throw new IllegalArgumentException(
+              "issuer with the same id " + id + " duplicated");
+        }
+        newIds.add(id);
+        newIdMap.put(id, issuer);
 
-  public void setIssuers(List<IssuerEntry> issuers) {
-    Set<Integer> newIds = new HashSet<>();
-    for (IssuerEntry issuer : issuers) {
-      int id = issuer.getId();
-      if (newIds.contains(id)) {
-        throw new IllegalArgumentException(
-            "issuer with the same id " + id + " duplicated");
+        for (HashAlgo ha : HashAlgo.values()) {
+          IssuerHashKey key = IssuerHashKey.getInstance(ha, issuer.getEncodedHash(ha));
+          // the first one wins, as in the former linear search
+          if (!newHashMap.containsKey(key)) {
+            newHashMap.put(key, issuer);
+          }
+        }
       }
-      newIds.add(id);
+
+      this.issuers = Collections.unmodifiableList(new ArrayList<>(issuers));
+      this.ids = Collections.unmodifiableSet(newIds);
+      this.idMap = newIdMap;
+      this.hashMap = newHashMap;
     }
 
-    // to accelerate the switch
-    List<IssuerEntry> copy = new ArrayList<IssuerEntry>(issuers);
-    this.ids = Collections.unmodifiableSet(newIds);
-    this.issuers = copy;
+  } // class Index
+
+  private volatile Index index = new Index(Collections.emptyList());
+
+  private Map<Integer, CrlInfo> crlInfos = new HashMap<>();
+
+  public IssuerStore() {
+  }
+
+  public synchronized void setIssuers(List<IssuerEntry> issuers) {
+    this.index = new Index(issuers);
   } // method setIssuers
 
   public int size() {
-    return ids.size();
+    return index.ids.size();
   }
 
   public Set<Integer> getIds() {
-    return ids;
+    return index.ids;
+  }
+
+  public List<IssuerEntry> getIssuers() {
+    return index.issuers;
   }
 
   public Integer getIssuerIdForFp(RequestIssuer reqIssuer) {
@@ -76,31 +110,18 @@ class IssuerStore {
   }
 
   public IssuerEntry getIssuerForId(int id) {
-    for (IssuerEntry entry : issuers) {
-      if (entry.getId() == id) {
-        return entry;
-      }
-    }
-
-    return null;
+    return index.idMap.get(id);
   }
 
   public IssuerEntry getIssuerForFp(RequestIssuer reqIssuer) {
-    for (IssuerEntry entry : issuers) {
-      if (entry.matchHash(reqIssuer)) {
-        return entry;
-      }
-    }
-
-    return null;
+    IssuerHashKey key = IssuerHashKey.getInstance(reqIssuer);
+    return (key == null) ? null : index.hashMap.get(key);
   }
 
-  public void addIssuer(IssuerEntry issuer) {
-    this.issuers.add(issuer);
-
-    Set<Integer> newIds = new HashSet<>(this.ids);
-    newIds.add(issuer.getId());
-    this.ids = Collections.unmodifiableSet(newIds);
+  public synchronized void addIssuer(IssuerEntry issuer) {
+    List<IssuerEntry> newIssuers = new ArrayList<>(index.issuers);
+    newIssuers.add(issuer);
+    this.index = new Index(newIssuers);
   }
 
   public void setCrlInfos(Map<Integer, CrlInfo> crlInfos) {
@@ -18,16 +18,17 @@
 package org.xipki.ocsp.server.store;
 
 import java.io.Closeable;
-import java.math.BigInteger;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
@@ -43,6 +44,7 @@ import org.xipki.datasource.DataSourceWrapper;
 import org.xipki.ocsp.api.OcspRespWithCacheInfo;
 import org.xipki.ocsp.api.OcspRespWithCacheInfo.ResponseCacheInfo;
 import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.ocsp.server.type.CertID;
 import org.xipki.security.AlgorithmCode;
 import org.xipki.security.HashAlgo;
 import org.xipki.security.util.X509Util;
@@ -50,6 +52,7 @@ import org.xipki.util.Args;
 import org.xipki.util.Base64;
 import org.xipki.util.InvalidConfException;
 import org.xipki.util.LogUtil;
+import org.xipki.util.LruCache;
 import org.xipki.util.StringUtil;
 import org.xipki.util.Validity;
 import org.xipki.util.concurrent.ConcurrentBag;
@@ -86,6 +89,72 @@ public class ResponseCacher implements Closeable {
 
   private final ConcurrentBag<ConcurrentBagEntry<Digest>> idDigesters;
 
+  private static class MemCacheKey {
+
+    private final int issuerId;
+
+    private final byte[] ident;
+
+    private final int hashCode;
+
+    MemCacheKey(int issuerId, byte[] ident) {
+      this.issuerId = issuerId;
+      this.ident = ident;
+      this.hashCode = 31 * issuerId + Arrays.hashCode(ident);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+      if (this == obj) {
+        return true;
+      } else if (!(obj instanceof MemCacheKey)) {
+        return false;
+      }
+
+      MemCacheKey other = (MemCacheKey) obj;
+      return issuerId == other.issuerId && Arrays.equals(ident, other.ident);
+    }
+
+  } // class MemCacheKey
+
+  private static class MemCacheEntry {
+
+    private final long thisUpdate;
+
+    private final long nextUpdate;
+
+    private final byte[] response;
+
+    MemCacheEntry(long thisUpdate, long nextUpdate, byte[] response) {
+      this.thisUpdate = thisUpdate;
+      this.nextUpdate = nextUpdate;
+      this.response = response;
+    }
+
+  } // class MemCacheEntry
+
+  /**
+   * In-memory cache in front of the database, the weight of an entry is the length of
+   * its encoded response.
+   */
+  private static class MemCache extends LruCache<MemCacheKey, MemCacheEntry> {
+
+    MemCache(int maxSize) {
+      super(maxSize);
+    }
+
+    @Override
+    protected int sizeOf(MemCacheKey key, MemCacheEntry value) {
+      return value.response.length + key.ident.length;
+    }
+
+  } // class MemCache
+
   private class IssuerUpdater implements Runnable {
 
     @Override
@@ -115,6 +184,11 @@ public class ResponseCacher implements Closeable {
         inProcess.set(true);
         long maxThisUpdate = System.currentTimeMillis() / 1000 - validity;
         try {
+          if (memCache != null) {
+            int num = removeExpiredMemCacheEntries(maxThisUpdate);
+            LOG.info("removed {} in-memory response with thisUpdate < {}", num, maxThisUpdate);
+          }
+
           int num = removeExpiredResponses(maxThisUpdate);
           LOG.info("removed {} response with thisUpdate < {}", num, maxThisUpdate);
         } catch (Throwable th) {
@@ -138,6 +212,8 @@ public class ResponseCacher implements Closeable {
 
   private final AtomicBoolean onService;
 
+  private final MemCache memCache;
+
   private DataSourceWrapper datasource;
 
   private IssuerStore issuerStore = new IssuerStore();
@@ -149,6 +225,23 @@ public class ResponseCacher implements Closeable {
   private ScheduledFuture<?> issuerUpdater;
 
   public ResponseCacher(DataSourceWrapper datasource, boolean master, Validity validity) {
+    this(datasource, master, validity, 0);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param datasource
+   *          Datasource of the cache database. Must not be {@code null}.
+   * @param master
+   *          Whether this cacher is allowed to write issuers to the database.
+   * @param validity
+   *          Validity of the cached responses. Must not be {@code null}.
+   * @param memoryCacheSize
+   *          Maximal size, in MB, of responses cached in memory. 0 to disable the in-memory cache.
+   */
+  public ResponseCacher(DataSourceWrapper datasource, boolean master, Validity validity,
+      int memoryCacheSize) {
     this.datasource = Args.notNull(datasource, "datasource");
     this.master = master;
     this.validity = (int) (Args.notNull(validity, "validity").approxMinutes() * 60);
@@ -157,6 +250,16 @@ public class ResponseCacher implements Closeable {
         "IID,IDENT,THIS_UPDATE,NEXT_UPDATE,RESP FROM OCSP WHERE ID=?");
     this.onService = new AtomicBoolean(false);
 
+    Args.notNegative(memoryCacheSize, "memoryCacheSize");
+    if (memoryCacheSize == 0) {
+      this.memCache = null;
+    } else {
+      long maxBytes = 1024L * 1024 * memoryCacheSize;
+      this.memCache = new MemCache((int) Math.min(Integer.MAX_VALUE, maxBytes));
+      LOG.info("in-memory OCSP response cache with maximal size {} MB is enabled",
+          memoryCacheSize);
+    }
+
     this.idDigesters = new ConcurrentBag<>();
     for (int i = 0; i < 20; i++) {
       Digest md = HashAlgo.SHA1.createDigest();
@@ -185,6 +288,10 @@ public class ResponseCacher implements Closeable {
 
   @Override
   public void close() {
+    if (memCache != null) {
+      memCache.evictAll();
+    }
+
     if (datasource != null) {
       datasource.close();
       datasource = null;
@@ -263,10 +370,24 @@ public class ResponseCacher implements Closeable {
     }
   } // method storeIssuer
 
-  public OcspRespWithCacheInfo getOcspResponse(int issuerId, BigInteger serialNumber,
+  public OcspRespWithCacheInfo getOcspResponse(int issuerId, CertID certId,
       AlgorithmCode sigAlg) throws DataAccessException {
+    byte[] identBytes = buildIdent(certId, sigAlg);
+
+    MemCacheKey memCacheKey = null;
+    if (memCache != null) {
+      memCacheKey = new MemCacheKey(issuerId, identBytes);
+      MemCacheEntry entry = memCache.get(memCacheKey);
+      if (entry != null) {
+        if (isNextUpdateValid(entry.nextUpdate)) {
+          return toOcspRespWithCacheInfo(entry.thisUpdate, entry.nextUpdate, entry.response);
+        }
+
+        memCache.remove(memCacheKey);
+      }
+    }
+
     final String sql = sqlSelectOcsp;
-    byte[] identBytes = buildIdent(serialNumber, sigAlg);
     long id = deriveId(issuerId, identBytes);
     PreparedStatement ps = datasource.prepareStatement(sql);
     ResultSet rs = null;
@@ -290,23 +411,17 @@ public class ResponseCacher implements Closeable {
       }
 
       long nextUpdate = rs.getLong("NEXT_UPDATE");
-      if (nextUpdate != 0) {
-        // nextUpdate must be at least in 600 seconds
-        long minNextUpdate = System.currentTimeMillis() / 1000 + 600;
-
-        if (nextUpdate < minNextUpdate) {
-          return null;
-        }
+      if (!isNextUpdateValid(nextUpdate)) {
+        return null;
       }
 
       long thisUpdate = rs.getLong("THIS_UPDATE");
       String b64Resp = rs.getString("RESP");
       byte[] resp = Base64.decodeFast(b64Resp);
-      ResponseCacheInfo cacheInfo = new ResponseCacheInfo(thisUpdate);
-      if (nextUpdate != 0) {
-        cacheInfo.setNextUpdate(nextUpdate);
+      if (memCacheKey != null) {
+        memCache.put(memCacheKey, new MemCacheEntry(thisUpdate, nextUpdate, resp));
       }
-      return new OcspRespWithCacheInfo(resp, cacheInfo);
+      return toOcspRespWithCacheInfo(thisUpdate, nextUpdate, resp);
     } catch (SQLException ex) {
       throw datasource.translate(sql, ex);
     } finally {
@@ -314,7 +429,7 @@ public class ResponseCacher implements Closeable {
     }
   } // method getOcspResponse
 
-  public void storeOcspResponse(int issuerId, BigInteger serialNumber, long thisUpdate,
+  public void storeOcspResponse(int issuerId, CertID certId, long thisUpdate,
       Long nextUpdate, AlgorithmCode sigAlgCode, byte[] response) {
     long nowInSec = System.currentTimeMillis() / 1000;
     if (nextUpdate == null) {
@@ -325,7 +440,12 @@ public class ResponseCacher implements Closeable {
       return;
     }
 
-    byte[] identBytes = buildIdent(serialNumber, sigAlgCode);
+    byte[] identBytes = buildIdent(certId, sigAlgCode);
+    if (memCache != null) {
+      memCache.put(new MemCacheKey(issuerId, identBytes),
+          new MemCacheEntry(thisUpdate, nextUpdate, response));
+    }
+
     String ident = Base64.encodeToString(identBytes);
     try {
       long id = deriveId(issuerId, identBytes);
@@ -387,6 +507,19 @@ public class ResponseCacher implements Closeable {
     }
   } // method storeOcspResponse
 
+  private int removeExpiredMemCacheEntries(long maxThisUpdate) {
+    int num = 0;
+    for (Map.Entry<MemCacheKey, MemCacheEntry> entry : memCache.snapshot().entrySet()) {
+      MemCacheEntry value = entry.getValue();
+      if (value.thisUpdate < maxThisUpdate || !isNextUpdateValid(value.nextUpdate)) {
+        if (memCache.remove(entry.getKey()) != null) {
+          num++;
+        }
+      }
+    }
+    return num;
+  } // method removeExpiredMemCacheEntries
+
   private int removeExpiredResponses(long maxThisUpdate) throws DataAccessException {
     final String sql = SQL_DELETE_EXPIRED_RESP;
     PreparedStatement ps = null;
@@ -544,13 +677,37 @@ public class ResponseCacher implements Closeable {
     return true;
   } // method initIssuerStore
 
-  private static byte[] buildIdent(BigInteger serialNumber, AlgorithmCode sigAlg) {
-    byte[] snBytes = serialNumber.toByteArray();
-    byte[] bytes = new byte[1 + snBytes.length];
+  private static boolean isNextUpdateValid(long nextUpdate) {
+    if (nextUpdate == 0) {
+      return true;
+    }
+
+    // nextUpdate must be at least in 600 seconds
+    long minNextUpdate = System.currentTimeMillis() / 1000 + 600;
+    return nextUpdate >= minNextUpdate;
+  }
+
+  private static OcspRespWithCacheInfo toOcspRespWithCacheInfo(long thisUpdate, long nextUpdate,
+      byte[] response) {
+    ResponseCacheInfo cacheInfo = new ResponseCacheInfo(thisUpdate);
+    if (nextUpdate != 0) {
+      cacheInfo.setNextUpdate(nextUpdate);
+    }
+    return new OcspRespWithCacheInfo(response, cacheInfo);
+  }
+
+  /**
+   * Builds the identifier of the response within the issuer. The response contains the CertID
+   * of the request, hence the hash algorithm of the CertID is part of the identifier.
+   */
+  private static byte[] buildIdent(CertID certId, AlgorithmCode sigAlg) {
+    HashAlgo hashAlgo = certId.getIssuer().hashAlgorithm();
+    byte[] bytes = new byte[2 + certId.getSerialNumberLength()];
     bytes[0] = sigAlg.getCode();
-    System.arraycopy(snBytes, 0, bytes, 1, snBytes.length);
+    bytes[1] = (hashAlgo == null) ? 0 : hashAlgo.getAlgorithmCode().getCode();
+    certId.writeSerialNumber(bytes, 2);
     return bytes;
-  }
+  } // method buildIdent
 
   private long deriveId(int issuerId, byte[] identBytes) {
     ConcurrentBagEntry<Digest> digest0 = null;
@@ -0,0 +1,226 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.util.Args;
+
+/**
+ * Builder of the file read by {@link StaticResponseStore}. The entries are written to a
+ * temporary file, which replaces the target file atomically in {@link #build()}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class StaticResponseFileBuilder implements Closeable {
+
+  private final File file;
+
+  private final File tmpFile;
+
+  private final DataOutputStream out;
+
+  private final Map<IssuerHashKey, Integer> issuerIndexes = new HashMap<>();
+
+  private final List<byte[]> encodedIssuers = new ArrayList<>();
+
+  private long offset;
+
+  private int size;
+
+  private long[] recordOffsets = new long[1024];
+
+  private int[] recordHashes = new int[1024];
+
+  private boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param file
+   *          Target file. Must not be {@code null}.
+   * @throws IOException
+   *           if the temporary file could not be created.
+   */
+  public StaticResponseFileBuilder(File file) throws IOException {
+    this.file = Args.notNull(file, "file");
+    this.tmpFile = new File(file.getPath() + ".tmp");
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (parent != null && !parent.exists()) {
+      parent.mkdirs();
+    }
+
+    this.out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile)));
+    out.write(StaticResponseStore.MAGIC);
+    out.writeInt(StaticResponseStore.VERSION);
+    this.offset = StaticResponseStore.HEADER_SIZE;
+  }
+
+  public int size() {
+    return size;
+  }
+
+  /**
+   * Adds the response of a certificate. Each certificate may be only added once.
+   *
+   * @param reqIssuer
+   *          Issuer of the certificate, with the same hash algorithm as in the CertID of the
+   *          response. Must not be {@code null}.
+   * @param serialNumber
+   *          Serial number of the certificate. Must not be {@code null}.
+   * @param thisUpdate
+   *          thisUpdate of the response, in seconds since January 1, 1970, 00:00:00 GMT.
+   * @param nextUpdate
+   *          nextUpdate of the response, in seconds since January 1, 1970, 00:00:00 GMT. 0 if
+   *          not present.
+   * @param response
+   *          Encoded OCSP response. Must not be {@code null}.
+   * @throws IOException
+   *           if the entry could not be written.
+   */
+  public synchronized void add(RequestIssuer reqIssuer, BigInteger serialNumber,
+      long thisUpdate, long nextUpdate, byte[] response) throws IOException {
+    Args.notNull(reqIssuer, "reqIssuer");
+    Args.notNull(serialNumber, "serialNumber");
+    Args.notNull(response, "response");
+
+    byte[] snBytes = serialNumber.toByteArray();
+    int recordSize = 4 + 1 + snBytes.length + 8 + 8 + 4 + response.length;
+    if (snBytes.length > 127 || recordSize > StaticResponseStore.MAX_RECORD_SIZE) {
+      throw new IOException("entry too large");
+    }
+
+    int issuerIndex = getIssuerIndex(reqIssuer);
+
+    if (size == recordOffsets.length) {
+      recordOffsets = Arrays.copyOf(recordOffsets, size << 1);
+      recordHashes = Arrays.copyOf(recordHashes, size << 1);
+    }
+    recordOffsets[size] = offset;
+    recordHashes[size] = StaticResponseStore.hash(issuerIndex, snBytes);
+    size++;
+
+    out.writeInt(issuerIndex);
+    out.writeByte(snBytes.length);
+    out.write(snBytes);
+    out.writeLong(thisUpdate);
+    out.writeLong(nextUpdate);
+    out.writeInt(response.length);
+    out.write(response);
+    offset += recordSize;
+  } // method add
+
+  /**
+   * Writes the issuers and the index, and replaces the target file by the new one.
+   *
+   * @throws IOException
+   *           if the file could not be written.
+   */
+  public synchronized void build() throws IOException {
+    if (closed) {
+      throw new IOException("builder already closed");
+    }
+
+    // issuers
+    long issuersOffset = offset;
+    out.writeInt(encodedIssuers.size());
+    offset += 4;
+    for (byte[] encoded : encodedIssuers) {
+      out.writeShort(encoded.length);
+      out.write(encoded);
+      offset += 2 + encoded.length;
+    }
+
+    // index, at most half of the slots are occupied
+    int numSlots = 16;
+    while (numSlots < 2L * size) {
+      numSlots <<= 1;
+    }
+
+    long[] slots = new long[numSlots];
+    int mask = numSlots - 1;
+    for (int i = 0; i < size; i++) {
+      int slot = recordHashes[i] & mask;
+      while (slots[slot] != 0) {
+        slot = (slot + 1) & mask;
+      }
+      slots[slot] = recordOffsets[i];
+    }
+
+    long indexOffset = offset;
+    out.writeInt(numSlots);
+    for (long slot : slots) {
+      out.writeLong(slot);
+    }
+
+    // trailer
+    out.writeLong(issuersOffset);
+    out.writeLong(indexOffset);
+    out.write(StaticResponseStore.MAGIC);
+    out.close();
+    closed = true;
+
+    Files.move(tmpFile.toPath(), file.toPath(),
+        StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+  } // method build
+
+  @Override
+  public synchronized void close() throws IOException {
+    if (!closed) {
+      closed = true;
+      out.close();
+      tmpFile.delete();
+    }
+  }
+
+  private int getIssuerIndex(RequestIssuer reqIssuer) throws IOException {
+    IssuerHashKey key = IssuerHashKey.getInstance(reqIssuer);
+    if (key == null) {
+      throw new IOException("unsupported issuer");
+    }
+
+    Integer index = issuerIndexes.get(key);
+    if (index == null) {
+      byte[] encoded = new byte[reqIssuer.getLength()];
+      reqIssuer.write(encoded, 0);
+      // key refers to the data of reqIssuer, use the copy instead
+      key = IssuerHashKey.getInstance(new RequestIssuer(encoded));
+      index = encodedIssuers.size();
+      encodedIssuers.add(encoded);
+      issuerIndexes.put(key, index);
+    }
+    return index;
+  } // method getIssuerIndex
+
+}
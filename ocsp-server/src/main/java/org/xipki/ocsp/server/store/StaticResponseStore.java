@@ -0,0 +1,323 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.ocsp.api.OcspRespWithCacheInfo;
+import org.xipki.ocsp.api.OcspRespWithCacheInfo.ResponseCacheInfo;
+import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.ocsp.server.type.CertID;
+import org.xipki.util.Args;
+
+/**
+ * Read-only store of the pre-produced OCSP responses in a memory-mapped file, which is
+ * generated by {@link StaticResponseFileBuilder}.
+ *
+ * <p>Format of the file (all integers are in big-endian):
+ * <pre>
+ * header:  MAGIC (4 bytes), VERSION (int)
+ * records: issuer index (int), length of serial number (byte), serial number,
+ *          thisUpdate (long), nextUpdate (long), length of response (int), response
+ * issuers: number of issuers (int), for each issuer: length (short), encoded
+ *          (hashAlgorithm, issuerNameHash, issuerKeyHash)
+ * index:   number of slots (int, power of 2), offset of the record (long) for each slot,
+ *          0 for empty slot
+ * trailer: offset of issuers (long), offset of index (long), MAGIC (4 bytes)
+ * </pre>
+ *
+ * <p>The file is mapped in segments of {@link #SEGMENT_SIZE} bytes, where each segment overlaps
+ * the next one by {@link #MAX_RECORD_SIZE} bytes, so that every record can be read from one
+ * segment.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class StaticResponseStore implements Closeable {
+
+  static final byte[] MAGIC = new byte[]{'X', 'O', 'R', 'S'};
+
+  static final int VERSION = 1;
+
+  static final int HEADER_SIZE = 8;
+
+  static final int TRAILER_SIZE = 20;
+
+  static final int MAX_RECORD_SIZE = 1024 * 1024;
+
+  private static final long SEGMENT_SIZE = 1024L * 1024 * 1024;
+
+  private static final Logger LOG = LoggerFactory.getLogger(StaticResponseStore.class);
+
+  private final File file;
+
+  private final long lastModified;
+
+  private final MappedByteBuffer[] segments;
+
+  /**
+   * Immutable map, replaced by an empty one in {@link #close()}, so that the request threads
+   * can read it without synchronization.
+   */
+  private volatile Map<IssuerHashKey, Integer> issuerIndexes;
+
+  private final long indexOffset;
+
+  private final int slotsMask;
+
+  private StaticResponseStore(File file) throws IOException {
+    this.file = file;
+    this.lastModified = file.lastModified();
+
+    try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+      FileChannel channel = raf.getChannel();
+      long size = channel.size();
+      if (size < HEADER_SIZE + TRAILER_SIZE) {
+        throw new IOException("file too short");
+      }
+
+      int numSegments = (int) ((size + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+      this.segments = new MappedByteBuffer[numSegments];
+      for (int i = 0; i < numSegments; i++) {
+        long position = i * SEGMENT_SIZE;
+        long len = Math.min(size - position, SEGMENT_SIZE + MAX_RECORD_SIZE);
+        segments[i] = channel.map(MapMode.READ_ONLY, position, len);
+      }
+    }
+
+    // header
+    ByteBuffer buf = segment(0);
+    checkMagic(buf, 0);
+    int version = buf.getInt(4);
+    if (version != VERSION) {
+      throw new IOException("unsupported version " + version);
+    }
+
+    // trailer
+    long size = (segments.length - 1) * SEGMENT_SIZE + segments[segments.length - 1].capacity();
+    long trailerOffset = size - TRAILER_SIZE;
+    buf = segment(trailerOffset);
+    int pos = position(trailerOffset);
+    long issuersOffset = buf.getLong(pos);
+    this.indexOffset = buf.getLong(pos + 8);
+    checkMagic(buf, pos + 16);
+
+    // issuers
+    buf = segment(issuersOffset);
+    pos = position(issuersOffset);
+    int numIssuers = buf.getInt(pos);
+    pos += 4;
+    Map<IssuerHashKey, Integer> indexes = new HashMap<>();
+    for (int i = 0; i < numIssuers; i++) {
+      byte[] encoded = new byte[buf.getShort(pos)];
+      pos += 2;
+      for (int j = 0; j < encoded.length; j++) {
+        encoded[j] = buf.get(pos++);
+      }
+
+      IssuerHashKey key = IssuerHashKey.getInstance(new RequestIssuer(encoded));
+      if (key != null) {
+        indexes.put(key, i);
+      }
+    }
+    this.issuerIndexes = Collections.unmodifiableMap(indexes);
+
+    // index
+    int numSlots = segment(indexOffset).getInt(position(indexOffset));
+    if (Integer.bitCount(numSlots) != 1) {
+      throw new IOException("invalid number of slots " + numSlots);
+    }
+    this.slotsMask = numSlots - 1;
+  } // constructor
+
+  /**
+   * Opens the static response file.
+   *
+   * @param file
+   *          File generated by {@link StaticResponseFileBuilder}. Must not be {@code null}.
+   * @return the store.
+   * @throws IOException
+   *           if the file could not be read or has invalid format.
+   */
+  public static StaticResponseStore open(File file) throws IOException {
+    Args.notNull(file, "file");
+    try {
+      StaticResponseStore store = new StaticResponseStore(file);
+      LOG.info("opened static OCSP response file {} with {} issuers",
+          file.getPath(), store.issuerIndexes.size());
+      return store;
+    } catch (RuntimeException ex) {
+      throw new IOException("invalid static OCSP response file " + file.getPath(), ex);
+    }
+  } // method open
+
+  public File getFile() {
+    return file;
+  }
+
+  /**
+   * Whether the file has been replaced since it is opened.
+   *
+   * @return whether the file has been replaced.
+   */
+  public boolean isModified() {
+    return file.lastModified() != lastModified;
+  }
+
+  public boolean knowsIssuer(RequestIssuer reqIssuer) {
+    IssuerHashKey key = IssuerHashKey.getInstance(reqIssuer);
+    return key != null && issuerIndexes.containsKey(key);
+  }
+
+  /**
+   * Returns the response for the given certificate.
+   *
+   * @param reqIssuer
+   *          Requested issuer. Must not be {@code null}.
+   * @param serialNumber
+   *          Serial number of the certificate. Must not be {@code null}.
+   * @return the response, or {@code null} if no valid response is available.
+   */
+  public OcspRespWithCacheInfo getResponse(RequestIssuer reqIssuer, BigInteger serialNumber) {
+    Integer issuerIndex = getIssuerIndex(reqIssuer);
+    return (issuerIndex == null) ? null : getResponse(issuerIndex, serialNumber.toByteArray());
+  } // method getResponse
+
+  /**
+   * Returns the response for the given CertID, without creating the serial number as
+   * {@link BigInteger}.
+   *
+   * @param certId
+   *          CertID of the certificate. Must not be {@code null}.
+   * @return the response, or {@code null} if no valid response is available.
+   */
+  public OcspRespWithCacheInfo getResponse(CertID certId) {
+    Integer issuerIndex = getIssuerIndex(certId.getIssuer());
+    if (issuerIndex == null) {
+      return null;
+    }
+
+    byte[] snBytes = new byte[certId.getSerialNumberLength()];
+    certId.writeSerialNumber(snBytes, 0);
+    return getResponse(issuerIndex, snBytes);
+  } // method getResponse
+
+  private Integer getIssuerIndex(RequestIssuer reqIssuer) {
+    IssuerHashKey key = IssuerHashKey.getInstance(reqIssuer);
+    return (key == null) ? null : issuerIndexes.get(key);
+  }
+
+  private OcspRespWithCacheInfo getResponse(int issuerIndex, byte[] snBytes) {
+    int slot = hash(issuerIndex, snBytes) & slotsMask;
+    for (int i = 0; i <= slotsMask; i++) {
+      long slotOffset = indexOffset + 4 + 8L * slot;
+      long recordOffset = segment(slotOffset).getLong(position(slotOffset));
+      if (recordOffset == 0) {
+        return null;
+      }
+
+      ByteBuffer buf = segment(recordOffset);
+      int pos = position(recordOffset);
+      if (buf.getInt(pos) == issuerIndex && matchSerialNumber(buf, pos + 4, snBytes)) {
+        pos += 5 + snBytes.length;
+        long thisUpdate = buf.getLong(pos);
+        long nextUpdate = buf.getLong(pos + 8);
+        // nextUpdate must be at least in 600 seconds, as in ResponseCacher
+        if (nextUpdate != 0 && nextUpdate < System.currentTimeMillis() / 1000 + 600) {
+          return null;
+        }
+
+        byte[] response = new byte[buf.getInt(pos + 16)];
+        ByteBuffer dup = buf.duplicate();
+        dup.position(pos + 20);
+        dup.get(response);
+
+        ResponseCacheInfo cacheInfo = new ResponseCacheInfo(thisUpdate);
+        if (nextUpdate != 0) {
+          cacheInfo.setNextUpdate(nextUpdate);
+        }
+        return new OcspRespWithCacheInfo(response, cacheInfo);
+      }
+
+      slot = (slot + 1) & slotsMask;
+    }
+
+    return null;
+  } // method getResponse
+
+  @Override
+  public void close() {
+    // the mapped segments will be released by the garbage collector
+    issuerIndexes = Collections.emptyMap();
+  }
+
+  static int hash(int issuerIndex, byte[] snBytes) {
+    int hash = issuerIndex;
+    for (byte b : snBytes) {
+      hash = 31 * hash + b;
+    }
+    hash ^= (hash >>> 16);
+    hash *= 0x85ebca6b;
+    hash ^= (hash >>> 13);
+    return hash;
+  }
+
+  private ByteBuffer segment(long offset) {
+    return segments[(int) (offset / SEGMENT_SIZE)];
+  }
+
+  private static int position(long offset) {
+    return (int) (offset % SEGMENT_SIZE);
+  }
+
+  private static boolean matchSerialNumber(ByteBuffer buf, int pos, byte[] snBytes) {
+    if (buf.get(pos) != snBytes.length) {
+      return false;
+    }
+
+    for (int i = 0; i < snBytes.length; i++) {
+      if (buf.get(pos + 1 + i) != snBytes[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void checkMagic(ByteBuffer buf, int pos) throws IOException {
+    for (int i = 0; i < MAGIC.length; i++) {
+      if (buf.get(pos + i) != MAGIC[i]) {
+        throw new IOException("invalid magic");
+      }
+    }
+  }
+
+}
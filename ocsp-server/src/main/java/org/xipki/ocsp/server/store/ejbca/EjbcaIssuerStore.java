@@ -20,11 +20,15 @@ package org.xipki.ocsp.server.store.ejbca;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import org.xipki.ocsp.api.RequestIssuer;
+import org.xipki.ocsp.server.store.IssuerHashKey;
+import org.xipki.security.HashAlgo;
 
 /**
  * IssuerStore for the EJBCA database.
@@ -35,34 +39,59 @@ import org.xipki.ocsp.api.RequestIssuer;
 
 class EjbcaIssuerStore {
 
-  private final List<EjbcaIssuerEntry> entries;
+  /**
+   * Immutable index of the issuers. It will be replaced as a whole if the issuers change.
+   */
+  private static class Index {
 
-  private Set<String> ids;
+    private final List<EjbcaIssuerEntry> entries;
 
-  public EjbcaIssuerStore(Collection<EjbcaIssuerEntry> entries) {
-    this.entries = new ArrayList<>(entries.size());
-    Set<String> idSet = new HashSet<>(entries.size());
+    private final Set<String> ids;
+
+    private final Map<String, EjbcaIssuerEntry> idMap;
+
+    private final Map<IssuerHashKey, EjbcaIssuerEntry> hashMap;
+
+    Index(Collection<EjbcaIssuerEntry> entries) {
+      Map<String, EjbcaIssuerEntry> newIdMap = new HashMap<>();
+      Map<IssuerHashKey, EjbcaIssuerEntry> newHashMap = new HashMap<>();
 
-    for (EjbcaIssuerEntry entry : entries) {
-      for (EjbcaIssuerEntry existingEntry : this.entries) {
-        if (existingEntry.getId().contentEquals(entry.getId())) {
+      for (EjbcaIssuerEntry entry : entries) {
+        if (newIdMap.containsKey(entry.getId())) {
           throw new IllegalArgumentException(
               "issuer with the same id (fingerprint) " + entry.getId() + " already available");
         }
+        newIdMap.put(entry.getId(), entry);
+
+        for (HashAlgo ha : HashAlgo.values()) {
+          IssuerHashKey key = IssuerHashKey.getInstance(ha, entry.getEncodedHash(ha));
+          // the first one wins, as in the former linear search
+          if (!newHashMap.containsKey(key)) {
+            newHashMap.put(key, entry);
+          }
+        }
       }
-      this.entries.add(entry);
-      idSet.add(entry.getId());
+
+      this.entries = Collections.unmodifiableList(new ArrayList<>(entries));
+      this.ids = Collections.unmodifiableSet(new HashSet<>(newIdMap.keySet()));
+      this.idMap = newIdMap;
+      this.hashMap = newHashMap;
     }
 
-    this.ids = Collections.unmodifiableSet(idSet);
+  } // class Index
+
+  private volatile Index index;
+
+  public EjbcaIssuerStore(Collection<EjbcaIssuerEntry> entries) {
+    this.index = new Index(entries);
   }
 
   public int size() {
-    return ids.size();
+    return index.ids.size();
   }
 
   public Set<String> getIds() {
-    return ids;
+    return index.ids;
   }
 
   public String getIssuerIdForFp(RequestIssuer reqIssuer) {
@@ -71,30 +100,18 @@ class EjbcaIssuerStore {
   }
 
   public EjbcaIssuerEntry getIssuerForId(String id) {
-    for (EjbcaIssuerEntry entry : entries) {
-      if (entry.getId().contentEquals(id)) {
-        return entry;
-      }
-    }
-
-    return null;
+    return index.idMap.get(id);
   }
 
   public EjbcaIssuerEntry getIssuerForFp(RequestIssuer reqIssuer) {
-    for (EjbcaIssuerEntry entry : entries) {
-      if (entry.matchHash(reqIssuer)) {
-        return entry;
-      }
-    }
-
-    return null;
+    IssuerHashKey key = IssuerHashKey.getInstance(reqIssuer);
+    return (key == null) ? null : index.hashMap.get(key);
   }
 
-  public void addIssuer(EjbcaIssuerEntry issuer) {
-    this.entries.add(issuer);
-    Set<String> newIds = new HashSet<>(this.ids);
-    newIds.add(issuer.getId());
-    this.ids = Collections.unmodifiableSet(newIds);
+  public synchronized void addIssuer(EjbcaIssuerEntry issuer) {
+    List<EjbcaIssuerEntry> newEntries = new ArrayList<>(index.entries);
+    newEntries.add(issuer);
+    this.index = new Index(newEntries);
   }
 
 }
@@ -18,6 +18,7 @@
 package org.xipki.ocsp.server.type;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 
 import org.xipki.ocsp.api.RequestIssuer;
 
@@ -33,33 +34,113 @@ public class CertID extends ASN1Type {
 
   private final RequestIssuer issuer;
 
-  private final BigInteger serialNumber;
+  /*
+   * The content octets of the serialNumber, in the minimal two's-complement form as returned
+   * by BigInteger.toByteArray(). If parsed from an OCSP request, they refer to the request.
+   */
+  private final byte[] serialData;
+
+  private final int serialFrom;
+
+  private final int serialLength;
 
   private final int bodyLength;
 
   private final int encodedLength;
 
+  // created on demand
+  private BigInteger serialNumber;
+
   public CertID(RequestIssuer issuer, BigInteger serialNumber) {
     this.issuer = issuer;
     this.serialNumber = serialNumber;
+    this.serialData = serialNumber.toByteArray();
+    this.serialFrom = 0;
+    this.serialLength = serialData.length;
 
-    int len = issuer.getLength();
+    this.bodyLength = issuer.getLength() + getLen(serialLength);
+    this.encodedLength = getLen(bodyLength);
+  } // constructor
+
+  /**
+   * Constructor without copying the serial number.
+   *
+   * @param issuer
+   *          Issuer.
+   * @param data
+   *          Data containing the content octets of the ASN.1 INTEGER serialNumber.
+   * @param serialFrom
+   *          Offset of the content octets in {@code data}.
+   * @param serialLength
+   *          Number of the content octets.
+   * @throws EncodingException
+   *           if the serialNumber is empty.
+   * @since 5.3.7
+   */
+  CertID(RequestIssuer issuer, byte[] data, int serialFrom, int serialLength)
+      throws EncodingException {
+    if (serialLength < 1) {
+      throw new EncodingException("empty serialNumber");
+    }
+
+    // remove the redundant leading bytes
+    while (serialLength > 1) {
+      byte b0 = data[serialFrom];
+      byte b1 = data[serialFrom + 1];
+      if ((b0 == 0 && (b1 & 0x80) == 0) || (b0 == (byte) 0xFF && (b1 & 0x80) != 0)) {
+        serialFrom++;
+        serialLength--;
+      } else {
+        break;
+      }
+    }
 
-    int snBytesLen = 1 + serialNumber.bitLength() / 8;
-    len += getLen(snBytesLen);
+    this.issuer = issuer;
+    this.serialData = data;
+    this.serialFrom = serialFrom;
+    this.serialLength = serialLength;
 
-    this.bodyLength = len;
+    this.bodyLength = issuer.getLength() + getLen(serialLength);
     this.encodedLength = getLen(bodyLength);
-  }
+  } // constructor
 
   public RequestIssuer getIssuer() {
     return issuer;
   }
 
   public BigInteger getSerialNumber() {
+    if (serialNumber == null) {
+      serialNumber = new BigInteger(
+          Arrays.copyOfRange(serialData, serialFrom, serialFrom + serialLength));
+    }
     return serialNumber;
   }
 
+  /**
+   * Returns the number of content octets of the serialNumber.
+   * @return the number of content octets of the serialNumber.
+   * @since 5.3.7
+   */
+  public int getSerialNumberLength() {
+    return serialLength;
+  }
+
+  /**
+   * Writes the content octets of the serialNumber, namely the bytes returned by
+   * {@code getSerialNumber().toByteArray()}.
+   *
+   * @param out
+   *          Output buffer.
+   * @param offset
+   *          Offset in the output buffer.
+   * @return number of written bytes.
+   * @since 5.3.7
+   */
+  public int writeSerialNumber(byte[] out, int offset) {
+    System.arraycopy(serialData, serialFrom, out, offset, serialLength);
+    return serialLength;
+  }
+
   @Override
   public int getEncodedLength() {
     return encodedLength;
@@ -71,9 +152,8 @@ public class CertID extends ASN1Type {
     idx += issuer.write(out, idx);
 
     // serialNumbers
-    byte[] snBytes = serialNumber.toByteArray();
-    idx += writeHeader((byte) 0x02, snBytes.length, out, idx);
-    idx += arraycopy(snBytes, out, idx);
+    idx += writeHeader((byte) 0x02, serialLength, out, idx);
+    idx += writeSerialNumber(out, idx);
 
     return idx - offset;
   }
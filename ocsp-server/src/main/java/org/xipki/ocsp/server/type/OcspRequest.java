@@ -19,10 +19,9 @@ package org.xipki.ocsp.server.type;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 
@@ -103,7 +102,7 @@ public class OcspRequest {
       }
     }
 
-    List<CertID> requestList = new LinkedList<>();
+    List<CertID> requestList = new ArrayList<>(1);
     Header hdrRequestList = hdr;
 
     Header hdrSingleReq = readHeader(request, hdr.readerIndex);
@@ -117,8 +116,8 @@ public class OcspRequest {
       RequestIssuer issuer = new RequestIssuer(request, hdrCertId.readerIndex,
           hdrKeyHash.readerIndex + hdrKeyHash.len - hdrCertId.readerIndex);
 
-      BigInteger serialNumber = new BigInteger(readContent(request, hdrSerial));
-      CertID certId = new CertID(issuer, serialNumber);
+      // refer to the serialNumber in the request instead of copying it
+      CertID certId = new CertID(issuer, request, hdrSerial.readerIndex, hdrSerial.len);
       requestList.add(certId);
 
       int nextIndex = hdrSingleReq.readerIndex + hdrSingleReq.len;
@@ -130,7 +129,7 @@ public class OcspRequest {
     }
 
     // extensions
-    List<ExtendedExtension> extensions = new LinkedList<>();
+    List<ExtendedExtension> extensions = Collections.emptyList();
     int extensionsOffset = hdrRequestList.readerIndex + hdrRequestList.len;
 
     if (extensionsOffset < hdrTbs.readerIndex + hdrTbs.len) {
@@ -148,6 +147,9 @@ public class OcspRequest {
         ExtendedExtension extn = ExtendedExtension.getInstance(
             request, hdrExtension.tagIndex, extensionLen);
         if (extn != null) {
+          if (extensions.isEmpty()) {
+            extensions = new ArrayList<>(2);
+          }
           extensions.add(extn);
         }
 
@@ -196,9 +198,10 @@ public class OcspRequest {
       requestList.add(certId);
     }
 
-    List<ExtendedExtension> extensions = new LinkedList<>();
+    List<ExtendedExtension> extensions = Collections.emptyList();
     if (extensions0 != null) {
       ASN1ObjectIdentifier[] extOids = extensions0.getExtensionOIDs();
+      extensions = new ArrayList<>(extOids.length);
       for (ASN1ObjectIdentifier oid : extOids) {
         org.bouncycastle.asn1.x509.Extension extension0 = extensions0.getExtension(oid);
         byte[] encoded;
@@ -270,12 +273,6 @@ public class OcspRequest {
     return new Header(readerIndex, tag, len, off);
   } // method readHeader
 
-  private static byte[] readContent(byte[] encoded, Header header) {
-    byte[] content = new byte[header.len];
-    System.arraycopy(encoded, header.readerIndex, content, 0, header.len);
-    return content;
-  }
-
   public int getVersion() {
     return version;
   }
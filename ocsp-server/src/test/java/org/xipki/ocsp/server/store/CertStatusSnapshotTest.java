@@ -0,0 +1,83 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xipki.ocsp.server.store;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.xipki.ocsp.server.store.CertStatusSnapshot.IssuerTable;
+import org.xipki.ocsp.server.store.DbCertStatusStore.CertStatusRow;
+
+/**
+ * Test for the table of {@link CertStatusSnapshot}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class CertStatusSnapshotTest {
+
+  private static final long MAX_TIME = 0xFFFFFFFFL;
+
+  @Test
+  public void testTimes() {
+    long[] times = {0, 1, 1577836800L, // 2020-01-01
+        0x80000000L + 10, // after 2038-01-19
+        MAX_TIME - 1, MAX_TIME};
+    for (long time : times) {
+      CertStatusRow row = putAndGet(time, time, time, time);
+      Assert.assertEquals("notBefore", time, row.getNotBefore());
+      Assert.assertEquals("notAfter", time, row.getNotAfter());
+      Assert.assertEquals("revTime", time, row.getRevTime());
+      Assert.assertEquals("invalTime", time, row.getInvalTime());
+    }
+  } // method testTimes
+
+  @Test
+  public void testFarFutureTimes() {
+    long[] times = {MAX_TIME + 1, MAX_TIME + 1577836800L,
+        253402300799L, // 9999-12-31T23:59:59Z
+        Long.MAX_VALUE};
+    for (long time : times) {
+      CertStatusRow row = putAndGet(1577836800L, time, time, time);
+      Assert.assertEquals("notBefore", 1577836800L, row.getNotBefore());
+      Assert.assertEquals("notAfter " + time, MAX_TIME, row.getNotAfter());
+      Assert.assertEquals("revTime " + time, MAX_TIME, row.getRevTime());
+      Assert.assertEquals("invalTime " + time, MAX_TIME, row.getInvalTime());
+    }
+  } // method testFarFutureTimes
+
+  @Test
+  public void testNegativeTimes() {
+    CertStatusRow row = putAndGet(-1, 1577836800L, 0, 0);
+    Assert.assertEquals("notBefore", 0, row.getNotBefore());
+    Assert.assertEquals("notAfter", 1577836800L, row.getNotAfter());
+  } // method testNegativeTimes
+
+  private static CertStatusRow putAndGet(long notBefore, long notAfter, long revTime,
+      long invalTime) {
+    IssuerTable table = new IssuerTable(0);
+    long key0 = 1L << 32;
+    table.put(key0, 2, 3, 1, notBefore, notAfter, true, 1, revTime, invalTime, 1, null);
+    CertStatusRow row = table.get(key0, 2, 3);
+    Assert.assertNotNull("row", row);
+    Assert.assertTrue("revoked", row.isRevoked());
+    return row;
+  } // method putAndGet
+
+}
@@ -0,0 +1,190 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ocsp.server.store;
+
+import java.sql.Connection;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.util.Properties;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.logging.Logger;
+
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.xipki.datasource.DataAccessException;
+import org.xipki.datasource.DataSourceFactory;
+import org.xipki.datasource.DataSourceWrapper;
+
+/**
+ * Test for the loading of the snapshot in {@link DbCertStatusStore}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class DbCertStatusStoreTest {
+
+  private static final String JDBC_URL = "jdbc:h2:mem:snapshot-test";
+
+  private static final long MAX_WAIT_MS = 10000;
+
+  /**
+   * Driver without database, only used to create the {@link DataSourceWrapper}.
+   */
+  private static class NoDbDriver implements Driver {
+
+    @Override
+    public Connection connect(String url, Properties info) throws SQLException {
+      if (!acceptsURL(url)) {
+        return null;
+      }
+      throw new SQLException("no database");
+    }
+
+    @Override
+    public boolean acceptsURL(String url) throws SQLException {
+      return JDBC_URL.equals(url);
+    }
+
+    @Override
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+      return new DriverPropertyInfo[0];
+    }
+
+    @Override
+    public int getMajorVersion() {
+      return 1;
+    }
+
+    @Override
+    public int getMinorVersion() {
+      return 0;
+    }
+
+    @Override
+    public boolean jdbcCompliant() {
+      return false;
+    }
+
+    @Override
+    public Logger getParentLogger() throws SQLFeatureNotSupportedException {
+      throw new SQLFeatureNotSupportedException();
+    }
+
+  } // class NoDbDriver
+
+  /**
+   * Snapshot whose first loading fails.
+   */
+  private static class FailingSnapshot extends CertStatusSnapshot {
+
+    private final AtomicInteger numLoads = new AtomicInteger();
+
+    private final AtomicInteger numRefreshes = new AtomicInteger();
+
+    private volatile boolean loaded;
+
+    FailingSnapshot(DataSourceWrapper datasource) {
+      super(datasource, 0, 100);
+    }
+
+    @Override
+    boolean isReady() {
+      return loaded;
+    }
+
+    @Override
+    synchronized void load() throws DataAccessException {
+      if (numLoads.incrementAndGet() == 1) {
+        throw new DataAccessException("initial loading failed");
+      }
+      loaded = true;
+    }
+
+    @Override
+    synchronized void refresh() throws DataAccessException {
+      numRefreshes.incrementAndGet();
+    }
+
+  } // class FailingSnapshot
+
+  private static NoDbDriver driver;
+
+  private static DataSourceWrapper datasource;
+
+  @BeforeClass
+  public static void init() throws Exception {
+    driver = new NoDbDriver();
+    DriverManager.registerDriver(driver);
+
+    Properties props = new Properties();
+    props.setProperty("jdbcUrl", JDBC_URL);
+    props.setProperty("minimumIdle", "0");
+    // do not connect to the database while creating the pool
+    props.setProperty("initializationFailTimeout", "-1");
+    datasource = new DataSourceFactory().createDataSource("snapshot-test", props, null);
+  }
+
+  @AfterClass
+  public static void shutdown() throws Exception {
+    if (datasource != null) {
+      datasource.close();
+    }
+    DriverManager.deregisterDriver(driver);
+  }
+
+  @Test
+  public void testRetryFailedLoading() throws Exception {
+    FailingSnapshot snapshot = new FailingSnapshot(datasource);
+    DbCertStatusStore store = new DbCertStatusStore();
+    store.initSnapshot(snapshot, 60L * 60 * 1000);
+
+    // initial loading fails
+    store.updateSnapshot(false);
+    waitFor(snapshot.numLoads, 1);
+    Assert.assertFalse("snapshot is ready", snapshot.isReady());
+
+    // the next updates load the snapshot again
+    long deadline = System.currentTimeMillis() + MAX_WAIT_MS;
+    while (!snapshot.isReady() && System.currentTimeMillis() < deadline) {
+      store.updateSnapshot(false);
+      Thread.sleep(10);
+    }
+    Assert.assertTrue("snapshot is not ready", snapshot.isReady());
+    Assert.assertEquals("number of loads", 2, snapshot.numLoads.get());
+
+    // loaded snapshot is refreshed
+    store.updateSnapshot(false);
+    Assert.assertEquals("number of loads", 2, snapshot.numLoads.get());
+    Assert.assertEquals("number of refreshes", 1, snapshot.numRefreshes.get());
+  } // method testRetryFailedLoading
+
+  private static void waitFor(AtomicInteger counter, int value) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + MAX_WAIT_MS;
+    while (counter.get() < value && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+    Assert.assertEquals(value, counter.get());
+  } // method waitFor
+
+}
@@ -0,0 +1,149 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+
+package org.xipki.ocsp.server.type.test;
+
+import java.io.IOException;
+import java.math.BigInteger;
+import java.util.Arrays;
+import java.util.List;
+
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERNull;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.ocsp.OCSPRequest;
+import org.bouncycastle.asn1.ocsp.Request;
+import org.bouncycastle.asn1.ocsp.TBSRequest;
+import org.bouncycastle.asn1.oiw.OIWObjectIdentifiers;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Extensions;
+import org.junit.Test;
+import org.xipki.ocsp.server.type.CertID;
+import org.xipki.ocsp.server.type.EncodingException;
+import org.xipki.ocsp.server.type.OcspRequest;
+
+import junit.framework.Assert;
+
+/**
+ * Test for {@link CertID} parsed from the OCSP requests encoded by BouncyCastle.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class CertIDTest {
+
+  private static final BigInteger[] SERIALS = {
+    BigInteger.ZERO,
+    BigInteger.ONE,
+    BigInteger.valueOf(0x7F),
+    BigInteger.valueOf(0x80),
+    BigInteger.valueOf(0xFF),
+    BigInteger.valueOf(0x100),
+    BigInteger.valueOf(-1),
+    BigInteger.valueOf(-0x80),
+    BigInteger.valueOf(-0x81),
+    new BigInteger("7FFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFFF", 16),
+    new BigInteger("80000000000000000000000000000000000000FF", 16),
+    new BigInteger("-80000000000000000000000000000000000000FF", 16)};
+
+  @Test
+  public void testSerialNumbers() throws IOException, EncodingException {
+    for (BigInteger serial : SERIALS) {
+      for (boolean withNullParams : new boolean[] {true, false}) {
+        org.bouncycastle.asn1.ocsp.CertID bcCertId = createCertId(serial, withNullParams);
+        List<CertID> certIds = parseRequest(bcCertId);
+        Assert.assertEquals("number of CertIDs", 1, certIds.size());
+        assertCertId(bcCertId, certIds.get(0));
+      }
+    }
+  } // method testSerialNumbers
+
+  @Test
+  public void testSeveralCertIds() throws IOException, EncodingException {
+    org.bouncycastle.asn1.ocsp.CertID[] bcCertIds =
+        new org.bouncycastle.asn1.ocsp.CertID[SERIALS.length];
+    for (int i = 0; i < SERIALS.length; i++) {
+      bcCertIds[i] = createCertId(SERIALS[i], i % 2 == 0);
+    }
+
+    List<CertID> certIds = parseRequest(bcCertIds);
+    Assert.assertEquals("number of CertIDs", bcCertIds.length, certIds.size());
+    for (int i = 0; i < bcCertIds.length; i++) {
+      assertCertId(bcCertIds[i], certIds.get(i));
+    }
+  } // method testSeveralCertIds
+
+  private static void assertCertId(org.bouncycastle.asn1.ocsp.CertID expected, CertID certId)
+      throws IOException {
+    BigInteger serial = expected.getSerialNumber().getValue();
+    String desc = "serialNumber " + serial.toString(16);
+
+    // content octets of the serialNumber, without parsing it as BigInteger
+    byte[] expectedSerialBytes = serial.toByteArray();
+    Assert.assertEquals(desc + ": length", expectedSerialBytes.length,
+        certId.getSerialNumberLength());
+
+    byte[] serialBytes = new byte[certId.getSerialNumberLength() + 2];
+    int len = certId.writeSerialNumber(serialBytes, 1);
+    Assert.assertEquals(desc + ": written length", expectedSerialBytes.length, len);
+    Assert.assertTrue(desc + ": written bytes", Arrays.equals(expectedSerialBytes,
+        Arrays.copyOfRange(serialBytes, 1, 1 + len)));
+
+    Assert.assertEquals(desc, serial, certId.getSerialNumber());
+
+    // re-encode
+    byte[] expectedEncoded = expected.getEncoded();
+    Assert.assertEquals(desc + ": encoded length", expectedEncoded.length,
+        certId.getEncodedLength());
+    byte[] encoded = new byte[certId.getEncodedLength()];
+    certId.write(encoded, 0);
+    Assert.assertTrue(desc + ": encoded", Arrays.equals(expectedEncoded, encoded));
+  } // method assertCertId
+
+  private static org.bouncycastle.asn1.ocsp.CertID createCertId(BigInteger serial,
+      boolean withNullParams) {
+    AlgorithmIdentifier hashAlgo = withNullParams
+        ? new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1, DERNull.INSTANCE)
+        : new AlgorithmIdentifier(OIWObjectIdentifiers.idSHA1);
+    return new org.bouncycastle.asn1.ocsp.CertID(hashAlgo,
+        new DEROctetString(newBytes(20, (byte) 0x11)),
+        new DEROctetString(newBytes(20, (byte) 0x12)),
+        new ASN1Integer(serial));
+  } // method createCertId
+
+  private static List<CertID> parseRequest(org.bouncycastle.asn1.ocsp.CertID... bcCertIds)
+      throws IOException, EncodingException {
+    Request[] requests = new Request[bcCertIds.length];
+    for (int i = 0; i < bcCertIds.length; i++) {
+      requests[i] = new Request(bcCertIds[i], null);
+    }
+
+    TBSRequest tbsRequest = new TBSRequest(null, new DERSequence(requests), (Extensions) null);
+    byte[] encoded = new OCSPRequest(tbsRequest, null).getEncoded();
+    return OcspRequest.getInstance(encoded).getRequestList();
+  } // method parseRequest
+
+  private static byte[] newBytes(int len, byte fill) {
+    byte[] bytes = new byte[len];
+    Arrays.fill(bytes, fill);
+    return bytes;
+  }
+
+}
@@ -30,6 +30,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xipki.ocsp.api.OcspStoreException;
 import org.xipki.ocsp.api.mgmt.MgmtMessage.MgmtAction;
 import org.xipki.ocsp.api.mgmt.MgmtRequest;
 import org.xipki.ocsp.api.mgmt.OcspMgmtException;
@@ -134,6 +135,20 @@ public class HttpMgmtServlet extends HttpServlet {
           }
           break;
         }
+        case buildStaticResponses: {
+          MgmtRequest.BuildStaticResponses req =
+              parse(in, MgmtRequest.BuildStaticResponses.class);
+          try {
+            int num = ocspServer.buildStaticResponseFile(req.getResponder(), req.getFile(),
+                req.getCertIdHashAlgo(), req.getParallelism());
+            LOG.info("built {} static responses of responder {} in file {}",
+                num, req.getResponder(), req.getFile());
+          } catch (OcspStoreException | RuntimeException ex) {
+            throw new OcspMgmtException("could not build static responses: " + ex.getMessage(),
+                ex);
+          }
+          break;
+        }
         default: {
           throw new MyException(HttpServletResponse.SC_NOT_FOUND,
               "unsupported action " + action);
@@ -19,6 +19,7 @@ package org.xipki.p11proxy.servlet;
 
 import java.io.EOFException;
 import java.io.IOException;
+import java.io.InputStream;
 
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
@@ -27,6 +28,7 @@ import javax.servlet.http.HttpServletResponse;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.xipki.util.Args;
 import org.xipki.util.IoUtil;
 import org.xipki.util.LogUtil;
 
@@ -53,7 +55,15 @@ public class HttpProxyServlet extends HttpServlet {
   private boolean logReqResp;
 
   public HttpProxyServlet() {
-    responder = new P11ProxyResponder();
+    this(new P11ProxyResponder());
+  }
+
+  public HttpProxyServlet(P11ProxyResponder responder) {
+    this.responder = Args.notNull(responder, "responder");
+  }
+
+  public void close() {
+    responder.close();
   }
 
   public void setLogReqResp(boolean logReqResp) {
@@ -71,7 +81,7 @@ public class HttpProxyServlet extends HttpServlet {
         return;
       }
 
-      byte[] requestBytes = IoUtil.read(req.getInputStream());
+      byte[] requestBytes = read(req.getInputStream(), req.getContentLength());
       byte[] responseBytes = responder.processRequest(localP11CryptServicePool, requestBytes);
 
       if (logReqResp && LOG.isDebugEnabled()) {
@@ -100,6 +110,28 @@ public class HttpProxyServlet extends HttpServlet {
     this.localP11CryptServicePool = localP11CryptServicePool;
   }
 
+  private static byte[] read(InputStream in, int contentLength) throws IOException {
+    if (contentLength < 0) {
+      return IoUtil.read(in);
+    }
+
+    // read the body directly into an array of the announced size
+    byte[] bytes = new byte[contentLength];
+    int offset = 0;
+    try {
+      while (offset < contentLength) {
+        int read = in.read(bytes, offset, contentLength - offset);
+        if (read == -1) {
+          throw new EOFException("unexpected end of request");
+        }
+        offset += read;
+      }
+    } finally {
+      in.close();
+    }
+    return bytes;
+  } // method read
+
   private static void sendError(HttpServletResponse resp, int status) {
     resp.setStatus(status);
     resp.setContentLength(0);
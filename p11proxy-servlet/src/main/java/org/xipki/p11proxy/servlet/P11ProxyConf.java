@@ -38,6 +38,11 @@ public class P11ProxyConf extends ValidatableConf {
 
   private SecurityConf security;
 
+  /**
+   * Number of threads to sign the messages of batch sign requests in parallel.
+   */
+  private int signBatchThreads = 32;
+
   public static P11ProxyConf readConfFromFile(String fileName)
       throws IOException, InvalidConfException {
     Args.notBlank(fileName, "fileName");
@@ -58,9 +63,20 @@ public class P11ProxyConf extends ValidatableConf {
     this.security = security;
   }
 
+  public int getSignBatchThreads() {
+    return signBatchThreads;
+  }
+
+  public void setSignBatchThreads(int signBatchThreads) {
+    this.signBatchThreads = signBatchThreads;
+  }
+
   @Override
   public void validate() throws InvalidConfException {
     validate(security);
+    if (signBatchThreads < 1) {
+      throw new InvalidConfException("signBatchThreads must be positive");
+    }
   }
 
 }
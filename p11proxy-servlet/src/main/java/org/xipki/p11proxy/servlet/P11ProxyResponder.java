@@ -22,10 +22,18 @@ import java.security.InvalidKeyException;
 import java.security.PublicKey;
 import java.security.cert.CertificateException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.bouncycastle.asn1.ASN1EncodableVector;
 import org.bouncycastle.asn1.ASN1Integer;
@@ -54,6 +62,7 @@ import org.xipki.security.pkcs11.proxy.P11ProxyConstants;
 import org.xipki.security.pkcs11.proxy.ProxyMessage;
 import org.xipki.security.util.KeyUtil;
 import org.xipki.security.util.X509Util;
+import org.xipki.util.Args;
 import org.xipki.util.Hex;
 import org.xipki.util.IoUtil;
 import org.xipki.util.LogUtil;
@@ -72,8 +81,14 @@ public class P11ProxyResponder {
 
   private static final Set<Short> actionsRequireNullRequest;
 
+  private static final int DFLT_SIGN_BATCH_THREADS = 32;
+
+  private static final int MAX_SIGN_BATCH_SIZE = 1024;
+
   private final Set<Short> versions;
 
+  private final ExecutorService signBatchExecutor;
+
   static {
     Set<Short> actions = new HashSet<>();
     actions.add(P11ProxyConstants.ACTION_GET_SERVER_CAPS);
@@ -100,6 +115,7 @@ public class P11ProxyResponder {
     actions.add(P11ProxyConstants.ACTION_REMOVE_IDENTITY);
     actions.add(P11ProxyConstants.ACTION_REMOVE_OBJECTS);
     actions.add(P11ProxyConstants.ACTION_SIGN);
+    actions.add(P11ProxyConstants.ACTION_SIGN_BATCH);
     actions.add(P11ProxyConstants.ACTION_UPDATE_CERT);
     actions.add(P11ProxyConstants.ACTION_DIGEST_SECRETKEY);
     actions.add(P11ProxyConstants.ACTION_IMPORT_SECRET_KEY);
@@ -108,9 +124,37 @@ public class P11ProxyResponder {
   } // method static
 
   public P11ProxyResponder() {
+    this(DFLT_SIGN_BATCH_THREADS);
+  }
+
+  /**
+   * Constructor.
+   *
+   * @param signBatchThreads
+   *          Number of threads to sign the messages of ACTION_SIGN_BATCH requests in parallel.
+   */
+  public P11ProxyResponder(int signBatchThreads) {
     Set<Short> tmpVersions = new HashSet<>();
     tmpVersions.add(P11ProxyConstants.VERSION_V1_0);
     this.versions = Collections.unmodifiableSet(tmpVersions);
+
+    Args.positive(signBatchThreads, "signBatchThreads");
+    this.signBatchExecutor = Executors.newFixedThreadPool(signBatchThreads, new ThreadFactory() {
+
+      private final AtomicInteger index = new AtomicInteger(1);
+
+      @Override
+      public Thread newThread(Runnable runnable) {
+        Thread thread = new Thread(runnable, "p11proxy-sign-" + index.getAndIncrement());
+        thread.setDaemon(true);
+        return thread;
+      }
+
+    });
+  } // constructor
+
+  public void close() {
+    signBatchExecutor.shutdownNow();
   }
 
   public Set<Short> versions() {
@@ -395,40 +439,28 @@ public class P11ProxyResponder {
         }
         case P11ProxyConstants.ACTION_SIGN: {
           ProxyMessage.SignTemplate signTemplate = ProxyMessage.SignTemplate.getInstance(content);
-          long mechanism = signTemplate.getMechanism().getMechanism();
-          ProxyMessage.P11Params asn1Params = signTemplate.getMechanism().getParams();
-
-          P11Params params = null;
-
-          if (asn1Params != null) {
-            switch (asn1Params.getTagNo()) {
-              case ProxyMessage.P11Params.TAG_RSA_PKCS_PSS:
-                params = ProxyMessage.RSAPkcsPssParams.getInstance(asn1Params).getPkcsPssParams();
-                break;
-              case ProxyMessage.P11Params.TAG_OPAQUE:
-                params = new P11ByteArrayParams(
-                    ASN1OctetString.getInstance(asn1Params).getOctets());
-                break;
-              case ProxyMessage.P11Params.TAG_IV:
-                params = new P11IVParams(ASN1OctetString.getInstance(asn1Params).getOctets());
-                break;
-              default:
-                throw new BadAsn1ObjectException(
-                    "unknown SignTemplate.params: unknown tag " + asn1Params.getTagNo());
-            }
-          }
-
-          byte[] message = signTemplate.getMessage();
           P11Identity identity = p11CryptService.getIdentity(signTemplate.getSlotId().getValue(),
               signTemplate.getObjectId().getValue());
           if (identity == null) {
             return getResp(version, transactionId, P11ProxyConstants.RC_UNKNOWN_ENTITY, action);
           }
 
-          byte[] signature = identity.sign(mechanism, params, message);
+          byte[] signature = sign(identity, signTemplate);
           ASN1Object obj = new DEROctetString(signature);
           return getSuccessResp(version, transactionId, action, obj);
         }
+        case P11ProxyConstants.ACTION_SIGN_BATCH: {
+          ProxyMessage.SignBatchTemplate batchTemplate =
+              ProxyMessage.SignBatchTemplate.getInstance(content);
+          List<ProxyMessage.SignTemplate> templates = batchTemplate.getTemplates();
+          if (templates.size() > MAX_SIGN_BATCH_SIZE) {
+            LOG.error("too many templates in batch: {}", templates.size());
+            return getResp(version, transactionId, P11ProxyConstants.RC_BAD_REQUEST, action);
+          }
+
+          ASN1Object obj = signBatch(p11CryptService, templates);
+          return getSuccessResp(version, transactionId, action, obj);
+        }
         case P11ProxyConstants.ACTION_UPDATE_CERT: {
           ProxyMessage.ObjectIdAndCert asn1 = ProxyMessage.ObjectIdAndCert.getInstance(content);
           P11Slot slot = getSlot(p11CryptService, asn1.getSlotId().getValue());
@@ -468,6 +500,100 @@ public class P11ProxyResponder {
     }
   } // method processRequest
 
+  private static byte[] sign(P11Identity identity, ProxyMessage.SignTemplate signTemplate)
+      throws P11TokenException, XiSecurityException, BadAsn1ObjectException {
+    long mechanism = signTemplate.getMechanism().getMechanism();
+    ProxyMessage.P11Params asn1Params = signTemplate.getMechanism().getParams();
+
+    P11Params params = null;
+
+    if (asn1Params != null) {
+      switch (asn1Params.getTagNo()) {
+        case ProxyMessage.P11Params.TAG_RSA_PKCS_PSS:
+          params = ProxyMessage.RSAPkcsPssParams.getInstance(asn1Params).getPkcsPssParams();
+          break;
+        case ProxyMessage.P11Params.TAG_OPAQUE:
+          params = new P11ByteArrayParams(ASN1OctetString.getInstance(asn1Params).getOctets());
+          break;
+        case ProxyMessage.P11Params.TAG_IV:
+          params = new P11IVParams(ASN1OctetString.getInstance(asn1Params).getOctets());
+          break;
+        default:
+          throw new BadAsn1ObjectException(
+              "unknown SignTemplate.params: unknown tag " + asn1Params.getTagNo());
+      }
+    }
+
+    return identity.sign(mechanism, params, signTemplate.getMessage());
+  } // method sign
+
+  /**
+   * Signs the messages of the batch in parallel, so that the signing is distributed over the
+   * sessions of the slots. The caller thread signs the first message itself. Errors are
+   * returned per message.
+   */
+  private ProxyMessage.SignBatchResult signBatch(final P11CryptService p11CryptService,
+      List<ProxyMessage.SignTemplate> templates) {
+    final int size = templates.size();
+    List<Future<ProxyMessage.SignResult>> futures = new ArrayList<>(size - 1);
+    for (int i = 1; i < size; i++) {
+      final ProxyMessage.SignTemplate template = templates.get(i);
+      futures.add(signBatchExecutor.submit(new Callable<ProxyMessage.SignResult>() {
+        @Override
+        public ProxyMessage.SignResult call() {
+          return signBatchEntry(p11CryptService, template);
+        }
+      }));
+    }
+
+    List<ProxyMessage.SignResult> results = new ArrayList<>(size);
+    results.add(signBatchEntry(p11CryptService, templates.get(0)));
+    for (Future<ProxyMessage.SignResult> future : futures) {
+      ProxyMessage.SignResult result;
+      try {
+        result = future.get();
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+        result = new ProxyMessage.SignResult(P11ProxyConstants.RC_INTERNAL_ERROR);
+      } catch (ExecutionException ex) {
+        LogUtil.error(LOG, ex.getCause(), "could not sign message in batch");
+        result = new ProxyMessage.SignResult(P11ProxyConstants.RC_INTERNAL_ERROR);
+      }
+      results.add(result);
+    }
+
+    return new ProxyMessage.SignBatchResult(results);
+  } // method signBatch
+
+  private static ProxyMessage.SignResult signBatchEntry(P11CryptService p11CryptService,
+      ProxyMessage.SignTemplate template) {
+    short rc;
+    try {
+      P11Identity identity = p11CryptService.getIdentity(template.getSlotId().getValue(),
+          template.getObjectId().getValue());
+      if (identity == null) {
+        return new ProxyMessage.SignResult(P11ProxyConstants.RC_UNKNOWN_ENTITY);
+      }
+      return new ProxyMessage.SignResult(sign(identity, template));
+    } catch (BadAsn1ObjectException ex) {
+      LogUtil.error(LOG, ex, "could not decode sign template in batch");
+      rc = P11ProxyConstants.RC_BAD_REQUEST;
+    } catch (P11TokenException ex) {
+      LogUtil.error(LOG, ex, "could not sign message in batch");
+      if (ex instanceof P11UnknownEntityException) {
+        rc = P11ProxyConstants.RC_UNKNOWN_ENTITY;
+      } else if (ex instanceof P11UnsupportedMechanismException) {
+        rc = P11ProxyConstants.RC_UNSUPPORTED_MECHANISM;
+      } else {
+        rc = P11ProxyConstants.RC_P11_TOKENERROR;
+      }
+    } catch (Throwable th) {
+      LogUtil.error(LOG, th, "could not sign message in batch");
+      rc = P11ProxyConstants.RC_INTERNAL_ERROR;
+    }
+    return new ProxyMessage.SignResult(rc);
+  } // method signBatchEntry
+
   private static String buildErrorMsg(short action, byte[] transactionId) {
     return "could not process action " + P11ProxyConstants.getActionName(action)
         + " (tid=" + Hex.encode(transactionId) + ")";
@@ -86,13 +86,17 @@ public class ProxyServletFilter implements Filter {
           "could not initialize LocalP11CryptServicePool: " + ex.getMessage(), ex);
     }
 
-    servlet = new HttpProxyServlet();
+    servlet = new HttpProxyServlet(new P11ProxyResponder(conf.getSignBatchThreads()));
     servlet.setLogReqResp(logReqResp);
     servlet.setLocalP11CryptServicePool(pool);
   } // method init
 
   @Override
   public void destroy() {
+    if (servlet != null) {
+      servlet.close();
+    }
+
     if (securities != null) {
       securities.close();
     }
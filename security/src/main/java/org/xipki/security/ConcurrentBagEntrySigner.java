@@ -28,6 +28,9 @@ import org.xipki.util.concurrent.ConcurrentBagEntry;
 
 public class ConcurrentBagEntrySigner extends ConcurrentBagEntry<XiContentSigner> {
 
+  // time in nano-seconds when this signer was borrowed, used for the metrics
+  long borrowedAtNanos;
+
   public ConcurrentBagEntrySigner(XiContentSigner value) {
     super(value);
   }
@@ -137,4 +137,11 @@ public interface ConcurrentContentSigner extends Closeable {
 
   boolean isHealthy();
 
+  /**
+   * Returns the metrics of the signer pool.
+   * @return the metrics of the signer pool.
+   * @since 5.3.7
+   */
+  SignerPoolMetrics getMetrics();
+
 }
@@ -40,6 +40,7 @@ import org.xipki.util.Args;
 import org.xipki.util.CollectionUtil;
 import org.xipki.util.LogUtil;
 import org.xipki.util.concurrent.ConcurrentBag;
+import org.xipki.util.concurrent.ConcurrentBag.IConcurrentBagEntry;
 
 /**
  * An implementation of {@link ConcurrentContentSigner}.
@@ -50,6 +51,17 @@ import org.xipki.util.concurrent.ConcurrentBag;
 
 public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
 
+  /**
+   * Factory to create additional {@link XiContentSigner} on demand in the elastic mode.
+   *
+   * @since 5.3.7
+   */
+  public interface XiContentSignerFactory {
+
+    XiContentSigner newSigner() throws XiSecurityException;
+
+  } // class XiContentSignerFactory
+
   private static final Logger LOG = LoggerFactory.getLogger(DfltConcurrentContentSigner.class);
 
   private static final AtomicInteger NAME_INDEX = new AtomicInteger(1);
@@ -58,6 +70,10 @@ public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
 
   private final ConcurrentBag<ConcurrentBagEntrySigner> signers = new ConcurrentBag<>();
 
+  private final SignerPoolMetrics metrics = new SignerPoolMetrics();
+
+  private final Object growLock = new Object();
+
   private final String name;
 
   private final String algorithmName;
@@ -76,6 +92,10 @@ public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
 
   private X509CertificateHolder[] bcCertificateChain;
 
+  private volatile XiContentSignerFactory signerFactory;
+
+  private volatile int maxSigners;
+
   static {
     final String propKey = "org.xipki.security.signservice.timeout";
     String str = System.getProperty(propKey);
@@ -109,6 +129,7 @@ public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
     for (XiContentSigner signer : signers) {
       this.signers.add(new ConcurrentBagEntrySigner(signer));
     }
+    metrics.setPoolSize(this.signers.size());
 
     this.signingKey = signingKey;
     this.name = "defaultSigner-" + NAME_INDEX.getAndIncrement();
@@ -156,24 +177,101 @@ public class DfltConcurrentContentSigner implements ConcurrentContentSigner {
    */
   @Override
   public ConcurrentBagEntrySigner borrowSigner(int soTimeout) throws NoIdleSignerException {
+    long start = System.nanoTime();
     ConcurrentBagEntrySigner signer = null;
     try {
-      signer = signers.borrow(soTimeout, TimeUnit.MILLISECONDS);
+      if (signerFactory == null) {
+        signer = signers.borrow(soTimeout, TimeUnit.MILLISECONDS);
+      } else {
+        // elastic mode: use an idle signer, or create a new one, before waiting
+        signer = signers.borrow(0, TimeUnit.MILLISECONDS);
+        if (signer == null) {
+          signer = newSigner();
+        }
+
+        if (signer == null) {
+          long remainingNanos = TimeUnit.MILLISECONDS.toNanos(soTimeout)
+              - (System.nanoTime() - start);
+          if (remainingNanos > 0) {
+            signer = signers.borrow(remainingNanos, TimeUnit.NANOSECONDS);
+          }
+        }
+      }
     } catch (InterruptedException ex) { // CHECKSTYLE:SKIP
     }
 
+    long now = System.nanoTime();
     if (signer == null) {
+      metrics.timedOut(now - start);
       throw new NoIdleSignerException("no idle signer available");
     }
 
+    signer.borrowedAtNanos = now;
+    metrics.borrowed(now - start);
     return signer;
-  }
+  } // method borrowSigner
+
+  /**
+   * Creates a new signer in the elastic mode, if the maximal number of signers is not reached.
+   *
+   * @return the new signer in state {@code STATE_IN_USE}, or {@code null} if no signer could be
+   *     created.
+   */
+  private ConcurrentBagEntrySigner newSigner() {
+    XiContentSignerFactory factory = signerFactory;
+    synchronized (growLock) {
+      if (factory == null || signers.size() >= maxSigners) {
+        return null;
+      }
+
+      XiContentSigner newSigner;
+      try {
+        newSigner = factory.newSigner();
+      } catch (XiSecurityException | RuntimeException ex) {
+        LogUtil.error(LOG, ex, "could not create new signer for " + name);
+        return null;
+      }
+
+      ConcurrentBagEntrySigner signer = new ConcurrentBagEntrySigner(newSigner);
+      signer.setState(IConcurrentBagEntry.STATE_IN_USE);
+      signers.add(signer);
+
+      int size = signers.size();
+      metrics.setPoolSize(size);
+      metrics.signerCreated();
+      LOG.info("created new signer for {}, number of signers: {}", name, size);
+      return signer;
+    }
+  } // method newSigner
 
   @Override
   public void requiteSigner(ConcurrentBagEntrySigner signer) {
+    metrics.requited(System.nanoTime() - signer.borrowedAtNanos);
     signers.requite(signer);
   }
 
+  /**
+   * Enables the elastic mode, in which new signers are created on demand if no idle signer is
+   * available, up to {@code maxSigners} signers in total.
+   *
+   * @param maxSigners
+   *          Maximal number of signers. Must not be less than the current number of signers.
+   * @param signerFactory
+   *          Factory to create the signers. {@code null} to disable the elastic mode.
+   */
+  public void setElastic(int maxSigners, XiContentSignerFactory signerFactory) {
+    if (signerFactory != null) {
+      Args.min(maxSigners, "maxSigners", signers.size());
+    }
+    this.maxSigners = maxSigners;
+    this.signerFactory = signerFactory;
+  }
+
+  @Override
+  public SignerPoolMetrics getMetrics() {
+    return metrics;
+  }
+
   @Override
   public void initialize(String conf, PasswordResolver passwordResolver)
       throws XiSecurityException {
@@ -0,0 +1,224 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.security;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Metrics of the signer pool of a {@link ConcurrentContentSigner}.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class SignerPoolMetrics {
+
+  /**
+   * Histogram of durations with fixed buckets.
+   */
+  public static class Histogram {
+
+    /**
+     * Upper bounds of the buckets in micro-seconds. The last bucket has no upper bound.
+     */
+    private static final long[] BOUNDS = {100, 1000, 5000, 10000, 50000, 100000,
+        500000, 1000000, 5000000};
+
+    private final AtomicLongArray counts = new AtomicLongArray(BOUNDS.length + 1);
+
+    private final AtomicLong count = new AtomicLong();
+
+    private final AtomicLong sumMicros = new AtomicLong();
+
+    private final AtomicLong maxMicros = new AtomicLong();
+
+    public void record(long nanos) {
+      long micros = TimeUnit.NANOSECONDS.toMicros(nanos);
+      int index = 0;
+      while (index < BOUNDS.length && micros > BOUNDS[index]) {
+        index++;
+      }
+
+      counts.incrementAndGet(index);
+      count.incrementAndGet();
+      sumMicros.addAndGet(micros);
+
+      long max;
+      while (micros > (max = maxMicros.get())) {
+        if (maxMicros.compareAndSet(max, micros)) {
+          break;
+        }
+      }
+    } // method record
+
+    public long getCount() {
+      return count.get();
+    }
+
+    public long getMeanMicros() {
+      long cnt = count.get();
+      return cnt == 0 ? 0 : sumMicros.get() / cnt;
+    }
+
+    public long getMaxMicros() {
+      return maxMicros.get();
+    }
+
+    /**
+     * Returns the number of recorded durations for each bucket, with the upper bound of the
+     * bucket in micro-seconds (or "inf" for the last bucket) as key.
+     *
+     * @return the number of recorded durations for each bucket.
+     */
+    public Map<String, Long> getBuckets() {
+      Map<String, Long> buckets = new LinkedHashMap<>();
+      for (int i = 0; i < BOUNDS.length; i++) {
+        buckets.put("le" + BOUNDS[i] + "us", counts.get(i));
+      }
+      buckets.put("inf", counts.get(BOUNDS.length));
+      return buckets;
+    }
+
+    public Map<String, Object> toMap() {
+      Map<String, Object> map = new LinkedHashMap<>();
+      map.put("count", getCount());
+      map.put("meanMicros", getMeanMicros());
+      map.put("maxMicros", getMaxMicros());
+      map.put("buckets", getBuckets());
+      return map;
+    }
+
+  } // class Histogram
+
+  private final Histogram borrowWaitTime = new Histogram();
+
+  private final Histogram signingTime = new Histogram();
+
+  private final AtomicLong timeouts = new AtomicLong();
+
+  private final AtomicInteger inUse = new AtomicInteger();
+
+  private final AtomicInteger maxInUse = new AtomicInteger();
+
+  private final AtomicInteger poolSize = new AtomicInteger();
+
+  private final AtomicInteger createdSigners = new AtomicInteger();
+
+  void borrowed(long waitNanos) {
+    borrowWaitTime.record(waitNanos);
+    int current = inUse.incrementAndGet();
+    int max;
+    while (current > (max = maxInUse.get())) {
+      if (maxInUse.compareAndSet(max, current)) {
+        break;
+      }
+    }
+  } // method borrowed
+
+  void requited(long holdNanos) {
+    inUse.decrementAndGet();
+    signingTime.record(holdNanos);
+  }
+
+  void timedOut(long waitNanos) {
+    borrowWaitTime.record(waitNanos);
+    timeouts.incrementAndGet();
+  }
+
+  void setPoolSize(int poolSize) {
+    this.poolSize.set(poolSize);
+  }
+
+  void signerCreated() {
+    createdSigners.incrementAndGet();
+  }
+
+  /**
+   * Returns the histogram of the time waiting for an idle signer, including the borrows
+   * which timed out.
+   *
+   * @return the histogram of the wait time.
+   */
+  public Histogram getBorrowWaitTime() {
+    return borrowWaitTime;
+  }
+
+  /**
+   * Returns the histogram of the time between borrowing and requiting a signer.
+   *
+   * @return the histogram of the signing time.
+   */
+  public Histogram getSigningTime() {
+    return signingTime;
+  }
+
+  public long getTimeouts() {
+    return timeouts.get();
+  }
+
+  public int getInUse() {
+    return inUse.get();
+  }
+
+  public int getMaxInUse() {
+    return maxInUse.get();
+  }
+
+  public int getPoolSize() {
+    return poolSize.get();
+  }
+
+  /**
+   * Returns the number of signers created on demand in the elastic mode.
+   *
+   * @return the number of signers created on demand.
+   */
+  public int getCreatedSigners() {
+    return createdSigners.get();
+  }
+
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("poolSize", getPoolSize());
+    map.put("inUse", getInUse());
+    map.put("maxInUse", getMaxInUse());
+    map.put("createdSigners", getCreatedSigners());
+    map.put("timeouts", getTimeouts());
+    map.put("borrowWaitTime", borrowWaitTime.toMap());
+    map.put("signingTime", signingTime.toMap());
+    return map;
+  }
+
+  @Override
+  public String toString() {
+    return "poolSize=" + getPoolSize() + ", inUse=" + getInUse() + ", maxInUse=" + getMaxInUse()
+        + ", createdSigners=" + getCreatedSigners() + ", timeouts=" + getTimeouts()
+        + ", borrowWaitTime(count=" + borrowWaitTime.getCount()
+        + ", meanMicros=" + borrowWaitTime.getMeanMicros()
+        + ", maxMicros=" + borrowWaitTime.getMaxMicros()
+        + "), signingTime(count=" + signingTime.getCount()
+        + ", meanMicros=" + signingTime.getMeanMicros()
+        + ", maxMicros=" + signingTime.getMaxMicros() + ")";
+  }
+
+}
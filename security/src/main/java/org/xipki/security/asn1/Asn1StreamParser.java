@@ -20,6 +20,7 @@ package org.xipki.security.asn1;
 import java.io.BufferedInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.Date;
 
@@ -111,6 +112,156 @@ public class Asn1StreamParser {
     }
   }
 
+  protected static void assertMappedTag(int expectedTag, ByteBuffer buffer, int offset,
+      String name) {
+    assertTag(expectedTag, buffer.get(offset) & 0xFF, name);
+  }
+
+  /**
+   * Returns the offset of the content octets of the element at {@code offset}.
+   *
+   * @param buffer
+   *          Buffer containing the element.
+   * @param offset
+   *          Offset of the tag of the element.
+   * @return the offset of the content octets.
+   */
+  protected static int contentOffset(ByteBuffer buffer, int offset) {
+    int b = buffer.get(offset + 1) & 0xFF;
+    return ((b & 0x80) == 0) ? offset + 2 : offset + 2 + (b & 0x7F);
+  }
+
+  /**
+   * Returns the end index (exclusive) of the element at {@code offset}.
+   *
+   * @param buffer
+   *          Buffer containing the element.
+   * @param offset
+   *          Offset of the tag of the element.
+   * @return the end index (exclusive) of the element.
+   */
+  protected static int elementEnd(ByteBuffer buffer, int offset) {
+    int b = buffer.get(offset + 1) & 0xFF;
+    if ((b & 0x80) == 0) {
+      return offset + 2 + b;
+    }
+
+    int numLengthBytes = b & 0x7F;
+    if (numLengthBytes > 4) {
+      throw new IllegalArgumentException("length too long");
+    }
+
+    int length = 0;
+    for (int i = 0; i < numLengthBytes; i++) {
+      length = (length << 8) | (buffer.get(offset + 2 + i) & 0xFF);
+    }
+    return offset + 2 + numLengthBytes + length;
+  } // method elementEnd
+
+  /**
+   * Reads the UTCTime or GeneralizedTime at {@code offset} without creating any object for
+   * the DER encoded forms YYMMDDHHMMSSZ and YYYYMMDDHHMMSS[.f*]Z.
+   *
+   * @param buffer
+   *          Buffer containing the time.
+   * @param offset
+   *          Offset of the tag of the time.
+   * @param name
+   *          Name of the field.
+   * @return the time in EPOCH milliseconds.
+   */
+  protected static long readTimeMillis(ByteBuffer buffer, int offset, String name) {
+    int tag = buffer.get(offset) & 0xFF;
+    int start = contentOffset(buffer, offset);
+    int end = elementEnd(buffer, offset);
+    int len = end - start;
+
+    int year;
+    int pos;
+    if (tag == BERTags.UTC_TIME && len == 13) {
+      year = digits(buffer, start, 2);
+      year += (year < 50) ? 2000 : 1900;
+      pos = start + 2;
+    } else if (tag == BERTags.GENERALIZED_TIME && len >= 15) {
+      year = digits(buffer, start, 4);
+      pos = start + 4;
+    } else {
+      return readTimeMillisSlow(buffer, offset, end, tag, name);
+    }
+
+    int month = digits(buffer, pos, 2);
+    int day = digits(buffer, pos + 2, 2);
+    int hour = digits(buffer, pos + 4, 2);
+    int minute = digits(buffer, pos + 6, 2);
+    int second = digits(buffer, pos + 8, 2);
+    pos += 10;
+
+    int millis = 0;
+    if (buffer.get(pos) == '.') {
+      pos++;
+      int scale = 100;
+      while (pos < end - 1) {
+        int digit = buffer.get(pos++) - '0';
+        if (digit < 0 || digit > 9) {
+          return readTimeMillisSlow(buffer, offset, end, tag, name);
+        }
+        millis += digit * scale;
+        scale /= 10;
+      }
+    }
+
+    if (pos != end - 1 || buffer.get(pos) != 'Z'
+        || year < 0 || month < 1 || day < 1 || hour < 0 || minute < 0 || second < 0) {
+      return readTimeMillisSlow(buffer, offset, end, tag, name);
+    }
+
+    long days = daysFromCivil(year, month, day);
+    return ((((days * 24 + hour) * 60 + minute) * 60) + second) * 1000 + millis;
+  } // method readTimeMillis
+
+  private static long readTimeMillisSlow(ByteBuffer buffer, int offset, int end, int tag,
+      String name) {
+    byte[] bytes = new byte[end - offset];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(offset + i);
+    }
+
+    try {
+      if (tag == BERTags.UTC_TIME) {
+        return DERUTCTime.getInstance(bytes).getDate().getTime();
+      } else if (tag == BERTags.GENERALIZED_TIME) {
+        return DERGeneralizedTime.getInstance(bytes).getDate().getTime();
+      } else {
+        throw new IllegalArgumentException("invalid tag for " + name + ": " + tag);
+      }
+    } catch (ParseException ex) {
+      throw new IllegalArgumentException("error parsing time", ex);
+    }
+  } // method readTimeMillisSlow
+
+  private static int digits(ByteBuffer buffer, int offset, int count) {
+    int value = 0;
+    for (int i = 0; i < count; i++) {
+      int digit = buffer.get(offset + i) - '0';
+      if (digit < 0 || digit > 9) {
+        // let the caller fail with the slow path
+        return -1000000;
+      }
+      value = value * 10 + digit;
+    }
+    return value;
+  } // method digits
+
+  // days since 1970-01-01 of the given date in the proleptic Gregorian calendar
+  private static long daysFromCivil(int year, int month, int day) {
+    int y = (month <= 2) ? year - 1 : year;
+    long era = ((y >= 0) ? y : y - 399) / 400;
+    long yoe = y - era * 400;
+    long doy = (153 * (month + ((month > 2) ? -3 : 9)) + 2) / 5 + day - 1;
+    long doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+    return era * 146097 + doe - 719468;
+  } // method daysFromCivil
+
   protected static Date readTime(Object obj) {
     return X509Util.getTime(obj);
   }
@@ -22,14 +22,20 @@ import java.io.Closeable;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.io.OutputStream;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.StandardOpenOption;
 import java.security.InvalidKeyException;
 import java.security.PublicKey;
 import java.security.spec.InvalidKeySpecException;
+import java.util.ArrayList;
 import java.util.Date;
 import java.util.Iterator;
+import java.util.List;
 
 import org.bouncycastle.asn1.ASN1Integer;
 import org.bouncycastle.asn1.ASN1Sequence;
@@ -63,6 +69,10 @@ import org.xipki.util.LogUtil;
  * <p>This class implements a real stream based parser of CRL with constant memory
  * consumption.
  *
+ * <p>The revoked certificates can also be read from the memory-mapped CRL with
+ * {@link #mappedRevokedCertificates()}, which creates no object per entry, and be split into
+ * chunks for parallel consumers with {@link #mappedRevokedCertificates(int)}.
+ *
  * <p>Definition of CertificateList.
  *
  * <pre>
@@ -247,6 +257,240 @@ public class CrlStreamParser extends Asn1StreamParser {
 
   } // class RevokedCertsIterator
 
+  /**
+   * Revoked certificate read from the memory-mapped CRL. The same instance is reused for all
+   * entries of one {@link MappedRevokedCertsIterator}, its values are only valid until the
+   * next call of {@link MappedRevokedCertsIterator#next()}.
+   *
+   * @since 5.3.7
+   */
+  public static class MappedRevokedCert {
+
+    private ByteBuffer buffer;
+
+    private int serialNumberOffset;
+
+    private int serialNumberLength;
+
+    private long revocationDate;
+
+    private int reason;
+
+    private long invalidityDate;
+
+    private int certificateIssuerOffset;
+
+    private int certificateIssuerLength;
+
+    private MappedRevokedCert() {
+    }
+
+    /**
+     * Returns the length of the encoded serial number.
+     *
+     * @return the length of the encoded serial number.
+     */
+    public int getSerialNumberLength() {
+      return serialNumberLength;
+    }
+
+    /**
+     * Copies the content octets of the serial number (two's complement, big-endian) to
+     * {@code dest}.
+     *
+     * @param dest
+     *          The destination. Must have at least {@link #getSerialNumberLength()} bytes
+     *          after {@code destOffset}.
+     * @param destOffset
+     *          Offset in {@code dest}.
+     */
+    public void getSerialNumber(byte[] dest, int destOffset) {
+      for (int i = 0; i < serialNumberLength; i++) {
+        dest[destOffset + i] = buffer.get(serialNumberOffset + i);
+      }
+    }
+
+    public BigInteger getSerialNumber() {
+      byte[] bytes = new byte[serialNumberLength];
+      getSerialNumber(bytes, 0);
+      return new BigInteger(bytes);
+    }
+
+    /**
+     * Returns the revocationDate in EPOCH seconds.
+     *
+     * @return the revocationDate in EPOCH seconds.
+     */
+    public long getRevocationDate() {
+      return revocationDate;
+    }
+
+    /**
+     * Returns the CRLReason code.
+     *
+     * @return the CRLReason code.
+     */
+    public int getReason() {
+      return reason;
+    }
+
+    /**
+     * Returns the invalidityDate in EPOCH seconds.
+     *
+     * @return the invalidityDate in EPOCH seconds, or 0 if not set.
+     */
+    public long getInvalidityDate() {
+      return invalidityDate;
+    }
+
+    public boolean hasCertificateIssuer() {
+      return certificateIssuerOffset != 0;
+    }
+
+    public X500Name getCertificateIssuer() {
+      if (certificateIssuerOffset == 0) {
+        return null;
+      }
+
+      byte[] bytes = new byte[certificateIssuerLength];
+      for (int i = 0; i < bytes.length; i++) {
+        bytes[i] = buffer.get(certificateIssuerOffset + i);
+      }
+      return X500Name.getInstance(GeneralNames.getInstance(bytes).getNames()[0].getName());
+    }
+
+  } // class MappedRevokedCert
+
+  /**
+   * Iterator of the revoked certificates in a memory-mapped CRL. No object is allocated
+   * per entry, the returned {@link MappedRevokedCert} is reused.
+   *
+   * @since 5.3.7
+   */
+  public static class MappedRevokedCertsIterator implements Iterator<MappedRevokedCert> {
+
+    private final ByteBuffer buffer;
+
+    // end index (exclusive)
+    private final int endIndex;
+
+    private final MappedRevokedCert current = new MappedRevokedCert();
+
+    private int offset;
+
+    private MappedRevokedCertsIterator(ByteBuffer buffer, int startIndex, int endIndex) {
+      this.buffer = buffer;
+      this.offset = startIndex;
+      this.endIndex = endIndex;
+      this.current.buffer = buffer;
+    }
+
+    @Override
+    public boolean hasNext() {
+      return offset < endIndex;
+    }
+
+    @Override
+    public MappedRevokedCert next() {
+      if (offset >= endIndex) {
+        throw new IllegalStateException("no next object anymore");
+      }
+
+      /*
+       * SEQUENCE  {
+       *   userCertificate         CertificateSerialNumber,
+       *   revocationDate          Time,
+       *   crlEntryExtensions      Extensions OPTIONAL
+       *                           -- if present, shall be v2
+       * }
+       */
+      int pos = offset;
+      assertMappedTag(TAG_CONSTRUCTED_SEQUENCE, buffer, pos, "revokedCertificate");
+      int entryEnd = elementEnd(buffer, pos);
+      pos = contentOffset(buffer, pos);
+
+      assertMappedTag(BERTags.INTEGER, buffer, pos, "userCertificate");
+      int end = elementEnd(buffer, pos);
+      current.serialNumberOffset = contentOffset(buffer, pos);
+      current.serialNumberLength = end - current.serialNumberOffset;
+      pos = end;
+
+      long revocationMillis = readTimeMillis(buffer, pos, "revocationDate");
+      pos = elementEnd(buffer, pos);
+
+      current.revocationDate = revocationMillis / 1000;
+      current.reason = 0;
+      current.invalidityDate = 0;
+      current.certificateIssuerOffset = 0;
+      current.certificateIssuerLength = 0;
+
+      if (pos < entryEnd) {
+        current.reason = CrlReason.UNSPECIFIED.getCode();
+
+        assertMappedTag(TAG_CONSTRUCTED_SEQUENCE, buffer, pos, "crlEntryExtensions");
+        int extnsEnd = elementEnd(buffer, pos);
+        pos = contentOffset(buffer, pos);
+        while (pos < extnsEnd) {
+          int extnEnd = elementEnd(buffer, pos);
+          readExtension(contentOffset(buffer, pos), revocationMillis);
+          pos = extnEnd;
+        }
+      }
+
+      offset = entryEnd;
+      return current;
+    } // method next
+
+    private void readExtension(int pos, long revocationMillis) {
+      /*
+       * Extension  ::=  SEQUENCE  {
+       *   extnID      OBJECT IDENTIFIER,
+       *   critical    BOOLEAN DEFAULT FALSE,
+       *   extnValue   OCTET STRING
+       * }
+       */
+      assertMappedTag(BERTags.OBJECT_IDENTIFIER, buffer, pos, "extnID");
+      int oidOffset = contentOffset(buffer, pos);
+      int oidLength = elementEnd(buffer, pos) - oidOffset;
+      pos = elementEnd(buffer, pos);
+
+      // id-ce is 2.5.29, encoded as 0x55 0x1D
+      if (oidLength != 3 || buffer.get(oidOffset) != 0x55 || buffer.get(oidOffset + 1) != 0x1D) {
+        return;
+      }
+
+      if ((buffer.get(pos) & 0xFF) == BERTags.BOOLEAN) {
+        pos = elementEnd(buffer, pos);
+      }
+
+      assertMappedTag(BERTags.OCTET_STRING, buffer, pos, "extnValue");
+      int valueOffset = contentOffset(buffer, pos);
+      int valueEnd = elementEnd(buffer, pos);
+
+      int lastArc = buffer.get(oidOffset + 2) & 0xFF;
+      if (lastArc == 21) {
+        // reasonCode, ENUMERATED
+        assertMappedTag(BERTags.ENUMERATED, buffer, valueOffset, "reasonCode");
+        int end = elementEnd(buffer, valueOffset);
+        int value = 0;
+        for (int i = contentOffset(buffer, valueOffset); i < end; i++) {
+          value = (value << 8) | (buffer.get(i) & 0xFF);
+        }
+        current.reason = value;
+      } else if (lastArc == 24) {
+        // invalidityDate, GeneralizedTime
+        long invalidityMillis = readTimeMillis(buffer, valueOffset, "invalidityDate");
+        current.invalidityDate = (invalidityMillis == revocationMillis) ? 0
+            : invalidityMillis / 1000;
+      } else if (lastArc == 29) {
+        // certificateIssuer, GeneralNames
+        current.certificateIssuerOffset = valueOffset;
+        current.certificateIssuerLength = valueEnd - valueOffset;
+      }
+    } // method readExtension
+
+  } // class MappedRevokedCertsIterator
+
   private static final Logger LOG = LoggerFactory.getLogger(CrlStreamParser.class);
 
   private final File crlFile;
@@ -279,6 +523,8 @@ public class CrlStreamParser extends Asn1StreamParser {
   // end index (exclusive) of tbsCertList
   private final int tbsCertListEndIndex;
 
+  private MappedByteBuffer mappedCrl;
+
   public CrlStreamParser(File crlFile) throws IOException {
     this.crlFile = Args.notNull(crlFile, "crlFile");
     // Round 1
@@ -480,34 +726,16 @@ public class CrlStreamParser extends Asn1StreamParser {
       ContentVerifierProvider cvp = SignerUtil.getContentVerifierProvider(publicKey, null);
       ContentVerifier verifier = cvp.get(algorithmIdentifier);
       OutputStream sigOut = verifier.getOutputStream();
-      try (InputStream crlStream = new FileInputStream(crlFile)) {
-        skip(crlStream, tbsCertListOffset);
-
-        int remainingLength = tbsCertListEndIndex - tbsCertListOffset;
-        byte[] buffer = new byte[1024];
-
-        while (true) {
-          int count = crlStream.read(buffer);
-          if (count == -1) {
-            break;
-          } else if (count > 0) {
-            if (count <= remainingLength) {
-              sigOut.write(buffer, 0, count);
-              remainingLength -= count;
-            } else {
-              sigOut.write(buffer, 0, remainingLength);
-              remainingLength = 0;
-            }
-          }
-
-          if (remainingLength == 0) {
-            break;
-          }
-        }
 
-        if (remainingLength != 0) {
-          throw new IOException("could reading all tbsCertList");
-        }
+      // feed the tbsCertList directly from the memory-mapped CRL
+      ByteBuffer tbsCertList = getMappedCrl();
+      tbsCertList.limit(tbsCertListEndIndex);
+      tbsCertList.position(tbsCertListOffset);
+      byte[] buffer = new byte[Math.min(65536, tbsCertList.remaining())];
+      while (tbsCertList.hasRemaining()) {
+        int count = Math.min(buffer.length, tbsCertList.remaining());
+        tbsCertList.get(buffer, 0, count);
+        sigOut.write(buffer, 0, count);
       }
 
       sigOut.close();
@@ -522,4 +750,70 @@ public class CrlStreamParser extends Asn1StreamParser {
   public RevokedCertsIterator revokedCertificates() throws IOException {
     return new RevokedCertsIterator();
   }
+
+  /**
+   * Returns an iterator of the revoked certificates over the memory-mapped CRL.
+   *
+   * @return the iterator of the revoked certificates.
+   * @throws IOException
+   *           if the CRL file could not be mapped.
+   * @since 5.3.7
+   */
+  public MappedRevokedCertsIterator mappedRevokedCertificates() throws IOException {
+    return new MappedRevokedCertsIterator(getMappedCrl(), firstRevokedCertificateOffset,
+        revokedCertificatesEndIndex);
+  }
+
+  /**
+   * Splits the revoked certificates into chunks of similar size in bytes, which can be
+   * iterated by different threads.
+   *
+   * @param numChunks
+   *          Maximal number of chunks.
+   * @return the iterators of the chunks, in the order of the entries in the CRL.
+   * @throws IOException
+   *           if the CRL file could not be mapped.
+   * @since 5.3.7
+   */
+  public List<MappedRevokedCertsIterator> mappedRevokedCertificates(int numChunks)
+      throws IOException {
+    Args.positive(numChunks, "numChunks");
+    ByteBuffer buffer = getMappedCrl();
+    long totalLength = revokedCertificatesEndIndex - firstRevokedCertificateOffset;
+
+    List<MappedRevokedCertsIterator> chunks = new ArrayList<>(numChunks);
+    int chunkStart = firstRevokedCertificateOffset;
+    int offset = chunkStart;
+    for (int i = 1; i < numChunks; i++) {
+      long target = firstRevokedCertificateOffset + totalLength * i / numChunks;
+      // only the headers of the entries are read
+      while (offset < target) {
+        offset = elementEnd(buffer, offset);
+      }
+
+      if (offset >= revokedCertificatesEndIndex) {
+        break;
+      }
+
+      if (offset > chunkStart) {
+        chunks.add(new MappedRevokedCertsIterator(buffer.duplicate(), chunkStart, offset));
+        chunkStart = offset;
+      }
+    }
+
+    chunks.add(new MappedRevokedCertsIterator(buffer.duplicate(), chunkStart,
+        revokedCertificatesEndIndex));
+    return chunks;
+  } // method mappedRevokedCertificates
+
+  private synchronized ByteBuffer getMappedCrl() throws IOException {
+    if (mappedCrl == null) {
+      // the mapping remains valid after the channel is closed
+      try (FileChannel channel = FileChannel.open(crlFile.toPath(), StandardOpenOption.READ)) {
+        mappedCrl = channel.map(MapMode.READ_ONLY, 0, channel.size());
+      }
+    }
+    return mappedCrl.duplicate();
+  } // method getMappedCrl
+
 }
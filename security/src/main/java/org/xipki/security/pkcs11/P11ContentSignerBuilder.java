@@ -39,6 +39,7 @@ import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
 import org.bouncycastle.jcajce.interfaces.EdDSAKey;
 import org.xipki.security.ConcurrentContentSigner;
 import org.xipki.security.DfltConcurrentContentSigner;
+import org.xipki.security.DfltConcurrentContentSigner.XiContentSignerFactory;
 import org.xipki.security.SecurityFactory;
 import org.xipki.security.XiContentSigner;
 import org.xipki.security.XiSecurityException;
@@ -119,61 +120,35 @@ public class P11ContentSignerBuilder {
 
   public ConcurrentContentSigner createSigner(AlgorithmIdentifier signatureAlgId,
       int parallelism) throws XiSecurityException, P11TokenException {
+    return createSigner(signatureAlgId, parallelism, parallelism);
+  }
+
+  /**
+   * Creates a signer.
+   *
+   * @param signatureAlgId
+   *          Signature algorithm. Must not be {@code null}.
+   * @param parallelism
+   *          Number of signers created initially.
+   * @param maxParallelism
+   *          Maximal number of signers. If greater than {@code parallelism}, further signers
+   *          will be created on demand.
+   * @return the signer.
+   * @throws XiSecurityException
+   *           if the signer could not be created.
+   * @throws P11TokenException
+   *           if error in the PKCS#11 token occurs.
+   * @since 5.3.7
+   */
+  public ConcurrentContentSigner createSigner(final AlgorithmIdentifier signatureAlgId,
+      int parallelism, int maxParallelism) throws XiSecurityException, P11TokenException {
     Args.positive(parallelism, "parallelism");
+    Args.min(maxParallelism, "maxParallelism", parallelism);
 
     List<XiContentSigner> signers = new ArrayList<>(parallelism);
-
-    Boolean isSm2p256v1 = null;
     for (int i = 0; i < parallelism; i++) {
-      XiContentSigner signer;
-      if (publicKey instanceof RSAPublicKey) {
-        if (i == 0 && !AlgorithmUtil.isRSASigAlgId(signatureAlgId)) {
-          throw new XiSecurityException(
-              "the given algorithm is not a valid RSA signature algorithm '"
-              + signatureAlgId.getAlgorithm().getId() + "'");
-        }
-        signer = createRSAContentSigner(signatureAlgId);
-      } else if (publicKey instanceof ECPublicKey) {
-        ECPublicKey ecKey = (ECPublicKey) publicKey;
-
-        if (i == 0) {
-          isSm2p256v1 = GMUtil.isSm2primev2Curve(ecKey.getParams().getCurve());
-          if (isSm2p256v1) {
-            if (!AlgorithmUtil.isSM2SigAlg(signatureAlgId)) {
-              throw new XiSecurityException(
-                "the given algorithm is not a valid SM2 signature algorithm '"
-                + signatureAlgId.getAlgorithm().getId() + "'");
-            }
-          } else {
-            if (!AlgorithmUtil.isECSigAlg(signatureAlgId)) {
-              throw new XiSecurityException(
-                "the given algorithm is not a valid EC signature algorithm '"
-                + signatureAlgId.getAlgorithm().getId() + "'");
-            }
-          }
-        }
-
-        if (isSm2p256v1) {
-          java.security.spec.ECPoint w = ecKey.getW();
-          signer = createSM2ContentSigner(signatureAlgId, GMObjectIdentifiers.sm2p256v1,
-              w.getAffineX(), w.getAffineY());
-        } else {
-          signer = createECContentSigner(signatureAlgId);
-        }
-      } else if (publicKey instanceof DSAPublicKey) {
-        if (i == 0 && !AlgorithmUtil.isDSASigAlg(signatureAlgId)) {
-          throw new XiSecurityException(
-              "the given algorithm is not a valid DSA signature algorithm '"
-              + signatureAlgId.getAlgorithm().getId() + "'");
-        }
-        signer = createDSAContentSigner(signatureAlgId);
-      } else if (publicKey instanceof EdDSAKey) {
-        signer = createEdDSAContentSigner(signatureAlgId);
-      } else {
-        throw new XiSecurityException("unsupported key " + publicKey.getClass().getName());
-      }
-      signers.add(signer);
-    } // end for
+      signers.add(createContentSigner(signatureAlgId, i == 0));
+    }
 
     final boolean mac = false;
     PrivateKey privateKey = new P11PrivateKey(cryptService, identityId);
@@ -184,6 +159,19 @@ public class P11ContentSignerBuilder {
       throw new XiSecurityException(ex.getMessage(), ex);
     }
 
+    if (maxParallelism > parallelism) {
+      concurrentSigner.setElastic(maxParallelism, new XiContentSignerFactory() {
+        @Override
+        public XiContentSigner newSigner() throws XiSecurityException {
+          try {
+            return createContentSigner(signatureAlgId, false);
+          } catch (P11TokenException ex) {
+            throw new XiSecurityException(ex.getMessage(), ex);
+          }
+        }
+      });
+    }
+
     if (certificateChain != null) {
       concurrentSigner.setCertificateChain(certificateChain);
     } else {
@@ -193,6 +181,56 @@ public class P11ContentSignerBuilder {
     return concurrentSigner;
   } // method createSigner
 
+  private XiContentSigner createContentSigner(AlgorithmIdentifier signatureAlgId,
+      boolean checkAlgorithm) throws XiSecurityException, P11TokenException {
+    if (publicKey instanceof RSAPublicKey) {
+      if (checkAlgorithm && !AlgorithmUtil.isRSASigAlgId(signatureAlgId)) {
+        throw new XiSecurityException(
+            "the given algorithm is not a valid RSA signature algorithm '"
+            + signatureAlgId.getAlgorithm().getId() + "'");
+      }
+      return createRSAContentSigner(signatureAlgId);
+    } else if (publicKey instanceof ECPublicKey) {
+      ECPublicKey ecKey = (ECPublicKey) publicKey;
+      boolean isSm2p256v1 = GMUtil.isSm2primev2Curve(ecKey.getParams().getCurve());
+
+      if (checkAlgorithm) {
+        if (isSm2p256v1) {
+          if (!AlgorithmUtil.isSM2SigAlg(signatureAlgId)) {
+            throw new XiSecurityException(
+              "the given algorithm is not a valid SM2 signature algorithm '"
+              + signatureAlgId.getAlgorithm().getId() + "'");
+          }
+        } else {
+          if (!AlgorithmUtil.isECSigAlg(signatureAlgId)) {
+            throw new XiSecurityException(
+              "the given algorithm is not a valid EC signature algorithm '"
+              + signatureAlgId.getAlgorithm().getId() + "'");
+          }
+        }
+      }
+
+      if (isSm2p256v1) {
+        java.security.spec.ECPoint w = ecKey.getW();
+        return createSM2ContentSigner(signatureAlgId, GMObjectIdentifiers.sm2p256v1,
+            w.getAffineX(), w.getAffineY());
+      } else {
+        return createECContentSigner(signatureAlgId);
+      }
+    } else if (publicKey instanceof DSAPublicKey) {
+      if (checkAlgorithm && !AlgorithmUtil.isDSASigAlg(signatureAlgId)) {
+        throw new XiSecurityException(
+            "the given algorithm is not a valid DSA signature algorithm '"
+            + signatureAlgId.getAlgorithm().getId() + "'");
+      }
+      return createDSAContentSigner(signatureAlgId);
+    } else if (publicKey instanceof EdDSAKey) {
+      return createEdDSAContentSigner(signatureAlgId);
+    } else {
+      throw new XiSecurityException("unsupported key " + publicKey.getClass().getName());
+    }
+  } // method createContentSigner
+
   // CHECKSTYLE:SKIP
   private XiContentSigner createRSAContentSigner(AlgorithmIdentifier signatureAlgId)
       throws XiSecurityException, P11TokenException {
@@ -285,6 +285,56 @@ public class P11ModuleConf {
 
   } // class P11NewObjectConf
 
+  public static class P11SessionPoolConf {
+
+    private int minSessions = 1;
+
+    /**
+     * 0 to use the value derived from the token.
+     */
+    private int maxSessions;
+
+    private int idleTimeout = 300;
+
+    public P11SessionPoolConf(Pkcs11conf.SessionPool conf) {
+      Integer ii = conf.getMinSessions();
+      if (ii != null) {
+        this.minSessions = ii.intValue();
+      }
+
+      ii = conf.getMaxSessions();
+      if (ii != null) {
+        this.maxSessions = ii.intValue();
+      }
+
+      ii = conf.getIdleTimeout();
+      if (ii != null) {
+        this.idleTimeout = ii.intValue();
+      }
+    }
+
+    public P11SessionPoolConf() {
+    }
+
+    public int getMinSessions() {
+      return minSessions;
+    }
+
+    public int getMaxSessions() {
+      return maxSessions;
+    }
+
+    /**
+     * Returns the idle time in seconds after which a session above minSessions is closed.
+     *
+     * @return the idle timeout in seconds.
+     */
+    public int getIdleTimeout() {
+      return idleTimeout;
+    }
+
+  } // class P11SessionPoolConf
+
   private static final Logger LOG = LoggerFactory.getLogger(P11ModuleConf.class);
 
   private final String name;
@@ -309,6 +359,8 @@ public class P11ModuleConf {
 
   private final P11NewObjectConf newObjectConf;
 
+  private final P11SessionPoolConf sessionPoolConf;
+
   public P11ModuleConf(Pkcs11conf.Module moduleType, List<Pkcs11conf.MechanismSet> mechanismSets,
       PasswordResolver passwordResolver) throws InvalidConfException {
     Args.notNull(moduleType, "moduleType");
@@ -453,6 +505,8 @@ public class P11ModuleConf {
 
     this.newObjectConf = (moduleType.getNewObjectConf() == null) ? new P11NewObjectConf()
         : new P11NewObjectConf(moduleType.getNewObjectConf());
+    this.sessionPoolConf = (moduleType.getSessionPool() == null) ? new P11SessionPoolConf()
+        : new P11SessionPoolConf(moduleType.getSessionPool());
   } // constructor
 
   public String getName() {
@@ -523,6 +577,10 @@ public class P11ModuleConf {
     return newObjectConf;
   }
 
+  public P11SessionPoolConf getP11SessionPoolConf() {
+    return sessionPoolConf;
+  }
+
   private static Set<P11SlotIdFilter> getSlotIdFilters(List<Pkcs11conf.Slot> slotTypes)
       throws InvalidConfException {
     if (CollectionUtil.isEmpty(slotTypes)) {
@@ -0,0 +1,180 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.security.pkcs11;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.xipki.security.SignerPoolMetrics.Histogram;
+
+/**
+ * Metrics of the session pool of a {@link P11Slot}. The counters are updated by the session
+ * pool of the implementation.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+public class P11SessionPoolMetrics {
+
+  private final Histogram borrowWaitTime = new Histogram();
+
+  private final AtomicLong timeouts = new AtomicLong();
+
+  private final AtomicInteger activeSessions = new AtomicInteger();
+
+  private final AtomicInteger totalSessions = new AtomicInteger();
+
+  private final AtomicLong openedSessions = new AtomicLong();
+
+  private final AtomicLong evictedSessions = new AtomicLong();
+
+  private final AtomicLong brokenSessions = new AtomicLong();
+
+  private final AtomicLong logins = new AtomicLong();
+
+  private final int maxSessions;
+
+  public P11SessionPoolMetrics(int maxSessions) {
+    this.maxSessions = maxSessions;
+  }
+
+  public void borrowed(long waitNanos) {
+    borrowWaitTime.record(waitNanos);
+    activeSessions.incrementAndGet();
+  }
+
+  public void requited() {
+    activeSessions.decrementAndGet();
+  }
+
+  public void timedOut(long waitNanos) {
+    borrowWaitTime.record(waitNanos);
+    timeouts.incrementAndGet();
+  }
+
+  public void sessionOpened() {
+    openedSessions.incrementAndGet();
+    totalSessions.incrementAndGet();
+  }
+
+  /**
+   * Records that a session has been closed.
+   *
+   * @param broken
+   *          whether the session has been closed because it is broken, or because it was idle.
+   */
+  public void sessionClosed(boolean broken) {
+    totalSessions.decrementAndGet();
+    if (broken) {
+      brokenSessions.incrementAndGet();
+    } else {
+      evictedSessions.incrementAndGet();
+    }
+  } // method sessionClosed
+
+  public void loggedIn() {
+    logins.incrementAndGet();
+  }
+
+  /**
+   * Returns the histogram of the time waiting for an idle session, including the borrows
+   * which timed out.
+   *
+   * @return the histogram of the wait time.
+   */
+  public Histogram getBorrowWaitTime() {
+    return borrowWaitTime;
+  }
+
+  public long getTimeouts() {
+    return timeouts.get();
+  }
+
+  public int getActiveSessions() {
+    return activeSessions.get();
+  }
+
+  public int getIdleSessions() {
+    return Math.max(0, totalSessions.get() - activeSessions.get());
+  }
+
+  public int getTotalSessions() {
+    return totalSessions.get();
+  }
+
+  public int getMaxSessions() {
+    return maxSessions;
+  }
+
+  public long getOpenedSessions() {
+    return openedSessions.get();
+  }
+
+  /**
+   * Returns the number of sessions closed because they were idle too long.
+   *
+   * @return the number of evicted sessions.
+   */
+  public long getEvictedSessions() {
+    return evictedSessions.get();
+  }
+
+  /**
+   * Returns the number of sessions which have been replaced because they were broken.
+   *
+   * @return the number of broken sessions.
+   */
+  public long getBrokenSessions() {
+    return brokenSessions.get();
+  }
+
+  public long getLogins() {
+    return logins.get();
+  }
+
+  public Map<String, Object> toMap() {
+    Map<String, Object> map = new LinkedHashMap<>();
+    map.put("maxSessions", getMaxSessions());
+    map.put("totalSessions", getTotalSessions());
+    map.put("activeSessions", getActiveSessions());
+    map.put("idleSessions", getIdleSessions());
+    map.put("openedSessions", getOpenedSessions());
+    map.put("evictedSessions", getEvictedSessions());
+    map.put("brokenSessions", getBrokenSessions());
+    map.put("logins", getLogins());
+    map.put("timeouts", getTimeouts());
+    map.put("borrowWaitTime", borrowWaitTime.toMap());
+    return map;
+  }
+
+  @Override
+  public String toString() {
+    return "maxSessions=" + getMaxSessions() + ", totalSessions=" + getTotalSessions()
+        + ", activeSessions=" + getActiveSessions() + ", idleSessions=" + getIdleSessions()
+        + ", openedSessions=" + getOpenedSessions() + ", evictedSessions=" + getEvictedSessions()
+        + ", brokenSessions=" + getBrokenSessions() + ", logins=" + getLogins()
+        + ", timeouts=" + getTimeouts()
+        + ", borrowWaitTime(count=" + borrowWaitTime.getCount()
+        + ", meanMicros=" + borrowWaitTime.getMeanMicros()
+        + ", maxMicros=" + borrowWaitTime.getMaxMicros() + ")";
+  }
+
+}
@@ -106,6 +106,21 @@ public class P11SignerFactory implements SignerFactory {
       }
     }
 
+    // signers exceeding parallelism will be created on demand, up to max-parallelism
+    str = conf.getConfValue("max-parallelism");
+    int maxParallelism = parallelism;
+    if (str != null) {
+      try {
+        maxParallelism = Integer.parseInt(str);
+      } catch (NumberFormatException ex) {
+        throw new ObjectCreationException("invalid max-parallelism " + str);
+      }
+
+      if (maxParallelism < parallelism) {
+        throw new ObjectCreationException("invalid max-parallelism " + str);
+      }
+    }
+
     String moduleName = conf.getConfValue("module");
     str = conf.getConfValue("slot");
     Integer slotIndex = (str == null) ? null : Integer.parseInt(str);
@@ -180,7 +195,7 @@ public class P11SignerFactory implements SignerFactory {
 
         P11ContentSignerBuilder signerBuilder = new P11ContentSignerBuilder(p11Service,
             securityFactory, identityId, certificateChain);
-        return signerBuilder.createSigner(signatureAlgId, parallelism);
+        return signerBuilder.createSigner(signatureAlgId, parallelism, maxParallelism);
       }
     } catch (P11TokenException | NoSuchAlgorithmException | XiSecurityException ex) {
       throw new ObjectCreationException(ex.getMessage(), ex);
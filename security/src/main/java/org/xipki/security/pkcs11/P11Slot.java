@@ -655,6 +655,17 @@ public abstract class P11Slot implements Closeable {
     return readOnly;
   }
 
+  /**
+   * Returns the metrics of the session pool.
+   *
+   * @return the metrics of the session pool, or {@code null} if the slot does not pool
+   *         sessions.
+   * @since 5.3.7
+   */
+  public P11SessionPoolMetrics getSessionPoolMetrics() {
+    return null;
+  }
+
   public P11Identity getIdentity(P11ObjectIdentifier keyId) throws P11UnknownEntityException {
     P11Identity ident = identities.get(keyId);
     if (ident == null) {
@@ -119,6 +119,8 @@ public class Pkcs11conf extends ValidatableConf {
 
     private NewObjectConf newObjectConf;
 
+    private SessionPool sessionPool;
+
     /**
      * Which slots should be considered. Absent for all slots.
      */
@@ -186,6 +188,14 @@ public class Pkcs11conf extends ValidatableConf {
       this.newObjectConf = newObjectConf;
     }
 
+    public SessionPool getSessionPool() {
+      return sessionPool;
+    }
+
+    public void setSessionPool(SessionPool sessionPool) {
+      this.sessionPool = sessionPool;
+    }
+
     public List<Slot> getIncludeSlots() {
       if (includeSlots == null) {
         includeSlots = new LinkedList<>();
@@ -261,6 +271,7 @@ public class Pkcs11conf extends ValidatableConf {
       notEmpty(nativeLibraries, "nativeLibraries");
       validate(nativeLibraries);
       validate(newObjectConf);
+      validate(sessionPool);
       validate(includeSlots);
       validate(excludeSlots);
       validate(passwordSets);
@@ -400,6 +411,71 @@ public class Pkcs11conf extends ValidatableConf {
 
   } // class PasswordSet
 
+  public static class SessionPool extends ValidatableConf {
+
+    /**
+     * Number of sessions which are kept open. Default to 1.
+     */
+    private Integer minSessions;
+
+    /**
+     * Maximal number of sessions. Default to the maximal number supported by the token
+     * minus 2, or 32 if the token does not limit it.
+     */
+    private Integer maxSessions;
+
+    /**
+     * Idle time in seconds after which a session above minSessions is closed. Default to 300.
+     */
+    private Integer idleTimeout;
+
+    public Integer getMinSessions() {
+      return minSessions;
+    }
+
+    public void setMinSessions(Integer minSessions) {
+      this.minSessions = minSessions;
+    }
+
+    public Integer getMaxSessions() {
+      return maxSessions;
+    }
+
+    public void setMaxSessions(Integer maxSessions) {
+      this.maxSessions = maxSessions;
+    }
+
+    public Integer getIdleTimeout() {
+      return idleTimeout;
+    }
+
+    public void setIdleTimeout(Integer idleTimeout) {
+      this.idleTimeout = idleTimeout;
+    }
+
+    @Override
+    public void validate() throws InvalidConfException {
+      if (minSessions != null && minSessions < 1) {
+        throw new InvalidConfException("minSessions must not be less than 1");
+      }
+
+      if (maxSessions != null) {
+        if (maxSessions < 1) {
+          throw new InvalidConfException("maxSessions must not be less than 1");
+        }
+
+        if (minSessions != null && minSessions > maxSessions) {
+          throw new InvalidConfException("minSessions must not be greater than maxSessions");
+        }
+      }
+
+      if (idleTimeout != null && idleTimeout < 1) {
+        throw new InvalidConfException("idleTimeout must not be less than 1");
+      }
+    }
+
+  } // class SessionPool
+
   public static class Slot extends ValidatableConf {
 
     private Integer index;
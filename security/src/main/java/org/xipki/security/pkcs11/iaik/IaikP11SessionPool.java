@@ -0,0 +1,422 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.security.pkcs11.iaik;
+
+import java.io.Closeable;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.security.pkcs11.P11SessionPoolMetrics;
+import org.xipki.security.pkcs11.P11TokenException;
+import org.xipki.util.Args;
+import org.xipki.util.LogUtil;
+import org.xipki.util.concurrent.ConcurrentBag;
+import org.xipki.util.concurrent.ConcurrentBag.IBagStateListener;
+import org.xipki.util.concurrent.ConcurrentBag.IConcurrentBagEntry;
+import org.xipki.util.concurrent.ConcurrentBagEntry;
+
+import iaik.pkcs.pkcs11.Session;
+import iaik.pkcs.pkcs11.SessionInfo;
+import iaik.pkcs.pkcs11.Slot;
+import iaik.pkcs.pkcs11.Token;
+import iaik.pkcs.pkcs11.TokenException;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Constants;
+import iaik.pkcs.pkcs11.wrapper.PKCS11Exception;
+
+/**
+ * Pool of the PKCS#11 sessions of a slot. Borrowing a session is lock-free. New sessions are
+ * opened by a background thread, which keeps at least {@code minSessions} sessions open, and
+ * opens further ones up to {@code maxSessions} if threads are waiting for a session. The same
+ * thread closes sessions which have been idle too long, and replaces broken sessions.
+ *
+ * <p>The login state is shared by all sessions of an application, and is cached here, so that
+ * it needs not to be checked on every borrow.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+class IaikP11SessionPool implements IBagStateListener, Closeable {
+
+  static class PooledSession extends ConcurrentBagEntry<Session> {
+
+    private volatile long lastUsed;
+
+    private volatile boolean broken;
+
+    PooledSession(Session session) {
+      super(session);
+      this.lastUsed = System.currentTimeMillis();
+    }
+
+  } // class PooledSession
+
+  private class Housekeeper implements Runnable {
+
+    @Override
+    public void run() {
+      long lastHousekeeping = System.currentTimeMillis();
+      while (!closed) {
+        try {
+          fillRequests.tryAcquire(HOUSEKEEPING_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+          break;
+        }
+        fillRequests.drainPermits();
+
+        if (closed) {
+          break;
+        }
+
+        try {
+          long now = System.currentTimeMillis();
+          if (now - lastHousekeeping >= HOUSEKEEPING_INTERVAL_MS) {
+            lastHousekeeping = now;
+            evictIdleSessions(now);
+          }
+
+          fill();
+        } catch (Throwable th) {
+          LogUtil.error(LOG, th, "error in session pool of " + name);
+        }
+      }
+    } // method run
+
+  } // class Housekeeper
+
+  private static final Logger LOG = LoggerFactory.getLogger(IaikP11SessionPool.class);
+
+  private static final long HOUSEKEEPING_INTERVAL_MS = 30000;
+
+  private final String name;
+
+  private final Slot slot;
+
+  private final boolean readWrite;
+
+  private final int minSessions;
+
+  private final int maxSessions;
+
+  private final long idleTimeoutMs;
+
+  private final long borrowTimeoutMs;
+
+  private final ConcurrentBag<PooledSession> bag = new ConcurrentBag<>(this);
+
+  private final AtomicInteger totalSessions = new AtomicInteger();
+
+  private final Semaphore fillRequests = new Semaphore(0);
+
+  private final P11SessionPoolMetrics metrics;
+
+  private Thread housekeeperThread;
+
+  private volatile boolean loggedIn;
+
+  private volatile boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param name
+   *          Name of the pool. Must not be {@code null}.
+   * @param slot
+   *          Slot. Must not be {@code null}.
+   * @param readWrite
+   *          Whether to open read-write sessions.
+   * @param minSessions
+   *          Number of sessions which are kept open.
+   * @param maxSessions
+   *          Maximal number of sessions.
+   * @param idleTimeoutMs
+   *          Idle time in milliseconds after which a session above minSessions is closed.
+   * @param borrowTimeoutMs
+   *          Maximal time in milliseconds to wait for an idle session.
+   */
+  IaikP11SessionPool(String name, Slot slot, boolean readWrite, int minSessions, int maxSessions,
+      long idleTimeoutMs, long borrowTimeoutMs) {
+    this.name = Args.notBlank(name, "name");
+    this.slot = Args.notNull(slot, "slot");
+    this.readWrite = readWrite;
+    this.maxSessions = Args.positive(maxSessions, "maxSessions");
+    this.minSessions = Math.min(Args.positive(minSessions, "minSessions"), maxSessions);
+    this.idleTimeoutMs = Args.positive(idleTimeoutMs, "idleTimeoutMs");
+    this.borrowTimeoutMs = Args.positive(borrowTimeoutMs, "borrowTimeoutMs");
+    this.metrics = new P11SessionPoolMetrics(maxSessions);
+  } // constructor
+
+  /**
+   * Adds the first session, which has been logged in, and starts the background thread.
+   *
+   * @param session
+   *          The logged-in session. Must not be {@code null}.
+   */
+  void start(Session session) {
+    loggedIn = true;
+    add(Args.notNull(session, "session"));
+
+    housekeeperThread = new Thread(new Housekeeper(), "p11-session-pool-" + name);
+    housekeeperThread.setDaemon(true);
+    housekeeperThread.start();
+    // pre-open minSessions sessions
+    fillRequests.release();
+  } // method start
+
+  P11SessionPoolMetrics getMetrics() {
+    return metrics;
+  }
+
+  boolean isLoggedIn() {
+    return loggedIn;
+  }
+
+  void setLoggedIn() {
+    loggedIn = true;
+    metrics.loggedIn();
+  }
+
+  /**
+   * Borrows an idle session. If no session is idle, the background thread is requested to open
+   * a new one, and this method waits until a session is available.
+   *
+   * @return the borrowed session.
+   * @throws P11TokenException
+   *           if no session is available within the timeout.
+   */
+  PooledSession borrow() throws P11TokenException {
+    if (closed) {
+      throw new P11TokenException("session pool has been closed");
+    }
+
+    long start = System.nanoTime();
+    PooledSession session = null;
+    try {
+      session = bag.borrow(borrowTimeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+    }
+
+    long waitNanos = System.nanoTime() - start;
+    if (session == null) {
+      metrics.timedOut(waitNanos);
+      throw new P11TokenException("no idle session");
+    }
+
+    metrics.borrowed(waitNanos);
+    return session;
+  } // method borrow
+
+  /**
+   * Returns the borrowed session to the pool. Broken sessions are closed and replaced.
+   *
+   * @param session
+   *          The borrowed session. Must not be {@code null}.
+   */
+  void requite(PooledSession session) {
+    metrics.requited();
+    if (closed) {
+      // all sessions have been closed
+      return;
+    }
+
+    if (session.broken) {
+      if (bag.remove(session)) {
+        closeSession(session, true);
+      }
+      return;
+    }
+
+    session.lastUsed = System.currentTimeMillis();
+    bag.requite(session);
+  } // method requite
+
+  /**
+   * Evaluates the error of an operation on the borrowed session. If the error indicates that
+   * the session is broken, it will be replaced when requited. If the error indicates that the
+   * user is not logged in, the next borrow will login again.
+   *
+   * @param session
+   *          The borrowed session. Must not be {@code null}.
+   * @param error
+   *          The error. Must not be {@code null}.
+   */
+  void onError(PooledSession session, TokenException error) {
+    if (!(error instanceof PKCS11Exception)) {
+      return;
+    }
+
+    long code = ((PKCS11Exception) error).getErrorCode();
+    if (code == PKCS11Constants.CKR_USER_NOT_LOGGED_IN) {
+      loggedIn = false;
+    } else if (code == PKCS11Constants.CKR_SESSION_HANDLE_INVALID
+        || code == PKCS11Constants.CKR_SESSION_CLOSED
+        || code == PKCS11Constants.CKR_DEVICE_ERROR) {
+      session.broken = true;
+    } else if (code == PKCS11Constants.CKR_DEVICE_REMOVED
+        || code == PKCS11Constants.CKR_TOKEN_NOT_PRESENT) {
+      session.broken = true;
+      loggedIn = false;
+    }
+  } // method onError
+
+  @Override
+  public void addBagItem(int waiting) {
+    if (totalSessions.get() < maxSessions) {
+      fillRequests.release();
+    }
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+
+    closed = true;
+    if (housekeeperThread != null) {
+      housekeeperThread.interrupt();
+      try {
+        housekeeperThread.join(5000);
+      } catch (InterruptedException ex) {
+        Thread.currentThread().interrupt();
+      }
+    }
+
+    LOG.info("close all sessions of {}: {}", name, metrics);
+    for (PooledSession session : bag.values()) {
+      try {
+        session.value().closeSession();
+      } catch (Throwable th) {
+        LogUtil.warn(LOG, th, "could not close session");
+      }
+    }
+
+    bag.close();
+    totalSessions.set(0);
+    loggedIn = false;
+  } // method close
+
+  private Session openSession() throws P11TokenException {
+    try {
+      return slot.getToken().openSession(Token.SessionType.SERIAL_SESSION, readWrite, null,
+          null);
+    } catch (TokenException ex) {
+      throw new P11TokenException(ex.getMessage(), ex);
+    }
+  } // method openSession
+
+  private void add(Session session) {
+    totalSessions.incrementAndGet();
+    metrics.sessionOpened();
+    try {
+      bag.add(new PooledSession(session));
+    } catch (IllegalStateException ex) {
+      // the pool has been closed
+      totalSessions.decrementAndGet();
+      metrics.sessionClosed(false);
+      try {
+        session.closeSession();
+      } catch (TokenException ex2) {
+        LogUtil.warn(LOG, ex2, "could not close session");
+      }
+    }
+  } // method add
+
+  private void fill() {
+    while (!closed) {
+      int total = totalSessions.get();
+      if (total >= maxSessions
+          || (total >= minSessions && bag.getWaitingThreadCount() == 0)) {
+        break;
+      }
+
+      Session session;
+      try {
+        session = openSession();
+      } catch (P11TokenException ex) {
+        LogUtil.warn(LOG, ex, "could not open new session for " + name);
+        break;
+      }
+
+      add(session);
+      LOG.debug("opened new session for {}, total {}", name, total + 1);
+    }
+  } // method fill
+
+  private void evictIdleSessions(long now) {
+    for (PooledSession session : bag.values(IConcurrentBagEntry.STATE_NOT_IN_USE)) {
+      if (closed || !bag.reserve(session)) {
+        continue;
+      }
+
+      boolean broken = !isHealthy(session.value());
+      boolean idle = now - session.lastUsed > idleTimeoutMs
+          && totalSessions.get() > minSessions;
+
+      if (broken || idle) {
+        if (bag.remove(session)) {
+          closeSession(session, broken);
+        }
+      } else {
+        bag.unreserve(session);
+      }
+    }
+  } // method evictIdleSessions
+
+  private boolean isHealthy(Session session) {
+    SessionInfo info;
+    try {
+      info = session.getSessionInfo();
+    } catch (TokenException ex) {
+      LOG.warn("session of {} is broken: {}", name, ex.getMessage());
+      return false;
+    }
+
+    if (info.getDeviceError() != 0) {
+      LOG.warn("session of {} is broken: deviceError {}", name, info.getDeviceError());
+      return false;
+    }
+    return true;
+  } // method isHealthy
+
+  private void closeSession(PooledSession session, boolean broken) {
+    try {
+      session.value().closeSession();
+    } catch (Throwable th) {
+      LOG.debug("could not close session: {}", th.getMessage());
+    }
+
+    int remaining = totalSessions.decrementAndGet();
+    metrics.sessionClosed(broken);
+    if (remaining == 0) {
+      // the login state of the application ends with its last session
+      loggedIn = false;
+    }
+
+    LOG.info("closed {} session of {}, remaining {}", broken ? "broken" : "idle", name,
+        remaining);
+    if (!closed) {
+      fillRequests.release();
+    }
+  } // method closeSession
+
+}
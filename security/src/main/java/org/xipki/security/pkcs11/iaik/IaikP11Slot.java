@@ -32,8 +32,6 @@ import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.TimeUnit;
-import java.util.concurrent.atomic.AtomicLong;
 
 import org.bouncycastle.asn1.ASN1ObjectIdentifier;
 import org.bouncycastle.asn1.DEROctetString;
@@ -50,20 +48,21 @@ import org.xipki.security.pkcs11.P11Identity;
 import org.xipki.security.pkcs11.P11IdentityId;
 import org.xipki.security.pkcs11.P11ModuleConf.P11MechanismFilter;
 import org.xipki.security.pkcs11.P11ModuleConf.P11NewObjectConf;
+import org.xipki.security.pkcs11.P11ModuleConf.P11SessionPoolConf;
 import org.xipki.security.pkcs11.P11ObjectIdentifier;
 import org.xipki.security.pkcs11.P11Params;
+import org.xipki.security.pkcs11.P11SessionPoolMetrics;
 import org.xipki.security.pkcs11.P11Slot;
 import org.xipki.security.pkcs11.P11SlotIdentifier;
 import org.xipki.security.pkcs11.P11TokenException;
 import org.xipki.security.pkcs11.P11UnknownEntityException;
 import org.xipki.security.pkcs11.iaik.IaikP11Module.Vendor;
+import org.xipki.security.pkcs11.iaik.IaikP11SessionPool.PooledSession;
 import org.xipki.security.util.KeyUtil;
 import org.xipki.security.util.X509Util;
 import org.xipki.util.Args;
 import org.xipki.util.CollectionUtil;
 import org.xipki.util.LogUtil;
-import org.xipki.util.concurrent.ConcurrentBag;
-import org.xipki.util.concurrent.ConcurrentBagEntry;
 
 import iaik.pkcs.pkcs11.Mechanism;
 import iaik.pkcs.pkcs11.Session;
@@ -121,29 +120,27 @@ class IaikP11Slot extends P11Slot {
 
   private List<char[]> password;
 
-  private int maxSessionCount;
-
-  private long timeOutWaitNewSession = 10000; // maximal wait for 10 second
-
-  private final AtomicLong countSessions = new AtomicLong(0);
+  private static final long TIMEOUT_WAIT_SESSION = 10000; // maximal wait for 10 second
 
   private final SecureRandom random = new SecureRandom();
 
   private final P11NewObjectConf newObjectConf;
 
-  private final ConcurrentBag<ConcurrentBagEntry<Session>> sessions = new ConcurrentBag<>();
+  private IaikP11SessionPool sessionPool;
 
   private final Vendor vendor;
 
   IaikP11Slot(String moduleName, P11SlotIdentifier slotId, Slot slot, boolean readOnly,
       long userType, List<char[]> password, int maxMessageSize, P11MechanismFilter mechanismFilter,
-      P11NewObjectConf newObjectConf, Vendor vendor) throws P11TokenException {
+      P11NewObjectConf newObjectConf, P11SessionPoolConf sessionPoolConf, Vendor vendor)
+      throws P11TokenException {
     super(moduleName, slotId, readOnly, mechanismFilter);
 
     this.newObjectConf = Args.notNull(newObjectConf, "newObjectConf");
     this.slot = Args.notNull(slot, "slot");
     this.maxMessageSize = Args.positive(maxMessageSize, "maxMessageSize");
     this.vendor = Args.notNull(vendor,"vendo r");
+    Args.notNull(sessionPoolConf, "sessionPoolConf");
 
     this.userType = userType;
     if (userType == PKCS11Constants.CKU_SO) {
@@ -197,10 +194,16 @@ class IaikP11Slot extends P11Slot {
         // 2 sessions as buffer, they may be used elsewhere.
         maxSessionCount2 = (maxSessionCount2 < 3) ? 1 : maxSessionCount2 - 2;
       }
-      this.maxSessionCount = (int) maxSessionCount2;
-      LOG.info("maxSessionCount: {}", this.maxSessionCount);
+      int maxSessionCount = (int) maxSessionCount2;
+      if (sessionPoolConf.getMaxSessions() > 0) {
+        maxSessionCount = Math.min(maxSessionCount, sessionPoolConf.getMaxSessions());
+      }
+      LOG.info("maxSessionCount: {}", maxSessionCount);
 
-      sessions.add(new ConcurrentBagEntry<Session>(session));
+      this.sessionPool = new IaikP11SessionPool(moduleName + "-" + slotId.getId(), slot,
+          !readOnly, sessionPoolConf.getMinSessions(), maxSessionCount,
+          sessionPoolConf.getIdleTimeout() * 1000L, TIMEOUT_WAIT_SESSION);
+      sessionPool.start(session);
       refresh();
       successful = true;
     } finally {
@@ -230,7 +233,7 @@ class IaikP11Slot extends P11Slot {
       }
     }
 
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
+    PooledSession bagEntry = borrowSession();
 
     try {
       Session session = bagEntry.value();
@@ -280,29 +283,22 @@ class IaikP11Slot extends P11Slot {
 
       return ret;
     } finally {
-      sessions.requite(bagEntry);
+      sessionPool.requite(bagEntry);
     }
   } // method refresh0
 
   @Override
-  public final void close() {
-    if (slot != null) {
-      try {
-        LOG.info("close all sessions on token: {}", slot.getSlotID());
-
-        for (ConcurrentBagEntry<Session> session : sessions.values()) {
-          session.value().closeSession();
-        }
-      } catch (Throwable th) {
-        LogUtil.error(LOG, th, "could not slot.getToken().closeAllSessions()");
-      }
+  public P11SessionPoolMetrics getSessionPoolMetrics() {
+    return (sessionPool == null) ? null : sessionPool.getMetrics();
+  }
 
-      slot = null;
+  @Override
+  public final void close() {
+    if (sessionPool != null) {
+      LOG.info("close all sessions on token: {}", slotId);
+      sessionPool.close();
     }
-
-    // clear the session pool
-    sessions.close();
-    countSessions.lazySet(0);
+    slot = null;
   } // method close
 
   private void analyseSingleKey(SecretKey secretKey, P11SlotRefreshResult refreshResult) {
@@ -386,7 +382,7 @@ class IaikP11Slot extends P11Slot {
       throw new P11TokenException("unsupported mechnism " + mechanism);
     }
 
-    ConcurrentBagEntry<Session> session0 = borrowSession();
+    PooledSession session0 = borrowSession();
     Mechanism mechanismObj = Mechanism.get(mechanism);
 
     try {
@@ -395,22 +391,25 @@ class IaikP11Slot extends P11Slot {
         return digestKey0(session, digestLen, mechanismObj, (SecretKey) key);
       } catch (PKCS11Exception ex) {
         if (ex.getErrorCode() != PKCS11Constants.CKR_USER_NOT_LOGGED_IN) {
+          sessionPool.onError(session0, ex);
           throw new P11TokenException(ex.getMessage(), ex);
         }
 
         LOG.info("digestKey ended with ERROR CKR_USER_NOT_LOGGED_IN, login and then retry it");
         // force the login
         forceLogin(session);
+        sessionPool.setLoggedIn();
         try {
           return digestKey0(session, digestLen, mechanismObj, (SecretKey) key);
         } catch (TokenException ex2) {
+          sessionPool.onError(session0, ex2);
           throw new P11TokenException(ex2.getMessage(), ex2);
         }
       } catch (TokenException ex) {
         throw new P11TokenException(ex.getMessage(), ex);
       }
     } finally {
-      sessions.requite(session0);
+      sessionPool.requite(session0);
     }
   } // method digestKey
 
@@ -453,7 +452,7 @@ class IaikP11Slot extends P11Slot {
     Mechanism mechanismObj = getMechanism(mechanism, parameters);
     Key signingKey = identity.getSigningKey();
 
-    ConcurrentBagEntry<Session> session0 = borrowSession();
+    PooledSession session0 = borrowSession();
     try {
       Session session = session0.value();
       try {
@@ -464,12 +463,19 @@ class IaikP11Slot extends P11Slot {
           LOG.info("sign ended with ERROR CKR_USER_NOT_LOGGED_IN, login and then retry it");
           // force the login
           forceLogin(session);
-          return sign0(session, expectedSignatureLen, mechanismObj, content, signingKey);
+          sessionPool.setLoggedIn();
+          try {
+            return sign0(session, expectedSignatureLen, mechanismObj, content, signingKey);
+          } catch (TokenException ex2) {
+            sessionPool.onError(session0, ex2);
+            throw ex2;
+          }
         } else {
+          sessionPool.onError(session0, ex);
           throw ex;
         }
       } finally {
-        sessions.requite(session0);
+        sessionPool.requite(session0);
       }
     } catch (TokenException ex) {
       throw new P11TokenException(ex.getMessage(), ex);
@@ -539,38 +545,20 @@ class IaikP11Slot extends P11Slot {
     } catch (TokenException ex) {
       throw new P11TokenException(ex.getMessage(), ex);
     }
-    countSessions.incrementAndGet();
     return session;
   } // method openSession
 
-  private ConcurrentBagEntry<Session> borrowSession() throws P11TokenException {
-    ConcurrentBagEntry<Session> session = null;
-    synchronized (sessions) {
-      if (countSessions.get() < maxSessionCount) {
-        try {
-          session = sessions.borrow(1, TimeUnit.NANOSECONDS);
-        } catch (InterruptedException ex) { // CHECKSTYLE:SKIP
-        }
-
-        if (session == null) {
-          // create new session
-          sessions.add(new ConcurrentBagEntry<>(openSession()));
-        }
-      }
-    }
-
-    if (session == null) {
+  private PooledSession borrowSession() throws P11TokenException {
+    PooledSession session = sessionPool.borrow();
+    if (!sessionPool.isLoggedIn()) {
       try {
-        session = sessions.borrow(timeOutWaitNewSession, TimeUnit.MILLISECONDS);
-      } catch (InterruptedException ex) { // CHECKSTYLE:SKIP
+        login(session.value());
+      } catch (P11TokenException ex) {
+        sessionPool.requite(session);
+        throw ex;
       }
+      sessionPool.setLoggedIn();
     }
-
-    if (session == null) {
-      throw new P11TokenException("no idle session");
-    }
-
-    login(session.value());
     return session;
   } // method borrowSession
 
@@ -951,7 +939,7 @@ class IaikP11Slot extends P11Slot {
   } // method removeObjects
 
   private int removeObjects(Storage template, String desc) throws P11TokenException {
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
+    PooledSession bagEntry = borrowSession();
     try {
       Session session = bagEntry.value();
       List<Storage> objects = getObjects(session, template);
@@ -973,7 +961,7 @@ class IaikP11Slot extends P11Slot {
       LogUtil.error(LOG, ex, "could not remove " + desc);
       throw new P11TokenException(ex.getMessage(), ex);
     } finally {
-      sessions.requite(bagEntry);
+      sessionPool.requite(bagEntry);
     }
   } // method removeObjects
 
@@ -983,7 +971,7 @@ class IaikP11Slot extends P11Slot {
       throw new P11TokenException("Unsupported operation removeCerts() in yubikey token");
     }
 
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
+    PooledSession bagEntry = borrowSession();
     try {
       Session session = bagEntry.value();
       X509PublicKeyCertificate[] existingCerts = getCertificateObjects(session, objectId.getId(),
@@ -999,14 +987,14 @@ class IaikP11Slot extends P11Slot {
     } catch (TokenException ex) {
       throw new P11TokenException(ex.getMessage(), ex);
     } finally {
-      sessions.requite(bagEntry);
+      sessionPool.requite(bagEntry);
     }
   } // method removeCerts0
 
   @Override
   protected P11ObjectIdentifier addCert0(X509Certificate cert, P11NewObjectControl control)
       throws P11TokenException {
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
+    PooledSession bagEntry = borrowSession();
     try {
       Session session = bagEntry.value();
       X509PublicKeyCertificate newCertTemp =
@@ -1019,7 +1007,7 @@ class IaikP11Slot extends P11Slot {
     } catch (TokenException ex) {
       throw new P11TokenException(ex.getMessage(), ex);
     } finally {
-      sessions.requite(bagEntry);
+      sessionPool.requite(bagEntry);
     }
   } // method addCert0
 
@@ -1100,7 +1088,7 @@ class IaikP11Slot extends P11Slot {
 
     Mechanism mechanism = Mechanism.get(mech);
     SecretKey key;
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
+    PooledSession bagEntry = borrowSession();
     try {
       Session session = bagEntry.value();
       if (labelChars != null && labelExists(session, labelChars)) {
@@ -1128,7 +1116,7 @@ class IaikP11Slot extends P11Slot {
 
       return new IaikP11Identity(this, entityId, key);
     } finally {
-      sessions.requite(bagEntry);
+      sessionPool.requite(bagEntry);
     }
   } // method generateSecretKey0
 
@@ -1179,7 +1167,7 @@ class IaikP11Slot extends P11Slot {
     }
 
     SecretKey key;
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
+    PooledSession bagEntry = borrowSession();
     try {
       Session session = bagEntry.value();
       if (labelChars != null && labelExists(session, labelChars)) {
@@ -1209,7 +1197,7 @@ class IaikP11Slot extends P11Slot {
 
       return new IaikP11Identity(this, entityId, key);
     } finally {
-      sessions.requite(bagEntry);
+      sessionPool.requite(bagEntry);
     }
   } // method importSecretKey0
 
@@ -1342,7 +1330,7 @@ class IaikP11Slot extends P11Slot {
 
     try {
       KeyPair keypair;
-      ConcurrentBagEntry<Session> bagEntry = borrowSession();
+      PooledSession bagEntry = borrowSession();
       try {
         Session session = bagEntry.value();
         if (labelChars != null && labelExists(session, labelChars)) {
@@ -1402,7 +1390,7 @@ class IaikP11Slot extends P11Slot {
         succ = true;
         return ret;
       } finally {
-        sessions.requite(bagEntry);
+        sessionPool.requite(bagEntry);
       }
     } finally {
       if (!succ && (id != null || labelChars != null)) {
@@ -1544,7 +1532,7 @@ class IaikP11Slot extends P11Slot {
     }
 
     P11NewObjectControl control = new P11NewObjectControl(keyId.getId(), keyId.getLabel());
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
+    PooledSession bagEntry = borrowSession();
     try {
       Session session = bagEntry.value();
       X509PublicKeyCertificate newCertTemp =
@@ -1553,7 +1541,7 @@ class IaikP11Slot extends P11Slot {
     } catch (TokenException ex) {
       throw new P11TokenException("could not createObject: " + ex.getMessage(), ex);
     } finally {
-      sessions.requite(bagEntry);
+      sessionPool.requite(bagEntry);
     }
   } // method updateCertificate0
 
@@ -1584,7 +1572,7 @@ class IaikP11Slot extends P11Slot {
 
   @Override
   protected void removeIdentity0(P11IdentityId identityId) throws P11TokenException {
-    ConcurrentBagEntry<Session> bagEntry = borrowSession();
+    PooledSession bagEntry = borrowSession();
     try {
       Session session = bagEntry.value();
       P11ObjectIdentifier keyId = identityId.getKeyId();
@@ -1647,7 +1635,7 @@ class IaikP11Slot extends P11Slot {
         }
       }
     } finally {
-      sessions.requite(bagEntry);
+      sessionPool.requite(bagEntry);
     }
   } // method removeIdentity0
 
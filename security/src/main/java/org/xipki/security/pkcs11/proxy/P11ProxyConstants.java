@@ -76,6 +76,8 @@ public class P11ProxyConstants {
 
   public static final short ACTION_SIGN              = 0x0120;
 
+  public static final short ACTION_SIGN_BATCH        = 0x0121;
+
   public static final short ACTION_GEN_KEYPAIR_RSA   = 0x0130;
 
   public static final short ACTION_GEN_KEYPAIR_DSA   = 0x0131;
@@ -133,6 +135,7 @@ public class P11ProxyConstants {
     actionMap.put(ACTION_GET_CERT_IDS,      "ACTION_GET_CERT_IDS");
     actionMap.put(ACTION_GET_MECHANISMS,    "ACTION_GET_MECHANISMS");
     actionMap.put(ACTION_SIGN,              "ACTION_SIGN");
+    actionMap.put(ACTION_SIGN_BATCH,        "ACTION_SIGN_BATCH");
     actionMap.put(ACTION_GEN_KEYPAIR_RSA,   "ACTION_GEN_KEYPAIR_RSA");
     actionMap.put(ACTION_GEN_KEYPAIR_DSA,   "ACTION_GEN_KEYPAIR_DSA");
     actionMap.put(ACTION_GEN_KEYPAIR_EC,    "ACTION_GEN_KEYPAIR_EC");
@@ -161,4 +164,33 @@ public class P11ProxyConstants {
     return (name == null) ? "0x" + Integer.toString(action, 16) : name;
   }
 
+  /**
+   * Returns whether the action does not change the state of the token, so that the request
+   * can be sent again.
+   *
+   * @param action
+   *          the action.
+   * @return whether the action is idempotent.
+   * @since 5.3.7
+   */
+  public static boolean isIdempotentAction(short action) {
+    switch (action) {
+      case ACTION_NOPE:
+      case ACTION_GET_SERVER_CAPS:
+      case ACTION_GET_MECHANISMS:
+      case ACTION_GET_PUBLICKEY:
+      case ACTION_GET_CERT:
+      case ACTION_GET_SLOT_IDS:
+      case ACTION_GET_IDENTITY_IDS:
+      case ACTION_GET_CERT_IDS:
+      case ACTION_GET_PUBLICKEY_IDS:
+      case ACTION_SIGN:
+      case ACTION_SIGN_BATCH:
+      case ACTION_DIGEST_SECRETKEY:
+        return true;
+      default:
+        return false;
+    }
+  } // method isIdempotentAction
+
 }
@@ -0,0 +1,489 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.security.pkcs11.proxy;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Deque;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.Semaphore;
+
+import javax.net.ssl.HostnameVerifier;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSocket;
+import javax.net.ssl.SSLSocketFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.util.Args;
+
+/**
+ * HTTP/1.1 transport which keeps a bounded pool of persistent (keep-alive) connections to the
+ * PKCS#11 proxy server, so that the TCP and TLS handshakes are done once per connection instead
+ * of once per request. Each connection carries one request at a time, concurrent requests use
+ * different connections.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+class PersistentHttpTransport implements Closeable {
+
+  /**
+   * Thrown if the connection was closed before any byte of the response was received.
+   */
+  private static class NoResponseException extends IOException {
+
+    private static final long serialVersionUID = 1L;
+
+    // whether the request has been written completely, and may have been processed
+    private final boolean requestSent;
+
+    NoResponseException(String message, boolean requestSent) {
+      super(message);
+      this.requestSent = requestSent;
+    }
+
+  } // class NoResponseException
+
+  private static class Connection {
+
+    private final Socket socket;
+
+    private final InputStream in;
+
+    private final OutputStream out;
+
+    // buffer to read the lines of the response header
+    private final byte[] lineBuffer = new byte[1024];
+
+    private long lastUsed;
+
+    private boolean reused;
+
+    Connection(Socket socket) throws IOException {
+      this.socket = socket;
+      this.in = new BufferedInputStream(socket.getInputStream(), 8192);
+      this.out = new BufferedOutputStream(socket.getOutputStream(), 8192);
+    }
+
+    void close() {
+      try {
+        socket.close();
+      } catch (IOException ex) {
+        LOG.debug("could not close connection: {}", ex.getMessage());
+      }
+    }
+
+  } // class Connection
+
+  private static final Logger LOG = LoggerFactory.getLogger(PersistentHttpTransport.class);
+
+  private final String host;
+
+  private final int port;
+
+  private final boolean tls;
+
+  private final SSLSocketFactory sslSocketFactory;
+
+  private final HostnameVerifier hostnameVerifier;
+
+  private final byte[] requestHeaderPrefix;
+
+  private final String mimeType;
+
+  private final int connectTimeout;
+
+  private final int readTimeout;
+
+  private final long keepAliveTimeout;
+
+  private final Semaphore permits;
+
+  private final Deque<Connection> idleConnections = new ConcurrentLinkedDeque<>();
+
+  private volatile boolean closed;
+
+  /**
+   * Constructor.
+   *
+   * @param url
+   *          URL of the server. Must not be {@code null}.
+   * @param mimeType
+   *          MIME type of the request and response. Must not be {@code null}.
+   * @param sslSocketFactory
+   *          SSL socket factory for HTTPS. Could be {@code null} to use the default one.
+   * @param hostnameVerifier
+   *          Hostname verifier. Could be {@code null} to verify the hostname as defined in
+   *          RFC 2818.
+   * @param maxConnections
+   *          Maximal number of connections.
+   * @param connectTimeout
+   *          Connect timeout in milliseconds.
+   * @param readTimeout
+   *          Read timeout in milliseconds.
+   * @param keepAliveTimeout
+   *          Time in milliseconds an idle connection will be reused. Should be less than the
+   *          keep-alive timeout of the server.
+   */
+  PersistentHttpTransport(URL url, String mimeType, SSLSocketFactory sslSocketFactory,
+      HostnameVerifier hostnameVerifier, int maxConnections, int connectTimeout,
+      int readTimeout, long keepAliveTimeout) {
+    Args.notNull(url, "url");
+    String protocol = url.getProtocol();
+    if ("https".equalsIgnoreCase(protocol)) {
+      this.tls = true;
+    } else if ("http".equalsIgnoreCase(protocol)) {
+      this.tls = false;
+    } else {
+      throw new IllegalArgumentException("unsupported protocol " + protocol);
+    }
+
+    this.host = url.getHost();
+    this.port = url.getPort() == -1 ? url.getDefaultPort() : url.getPort();
+    this.mimeType = Args.notBlank(mimeType, "mimeType");
+    this.sslSocketFactory = (sslSocketFactory != null) ? sslSocketFactory
+        : (SSLSocketFactory) SSLSocketFactory.getDefault();
+    this.hostnameVerifier = hostnameVerifier;
+    this.permits = new Semaphore(Args.positive(maxConnections, "maxConnections"), true);
+    this.connectTimeout = Args.notNegative(connectTimeout, "connectTimeout");
+    this.readTimeout = Args.notNegative(readTimeout, "readTimeout");
+    this.keepAliveTimeout = Args.notNegative(keepAliveTimeout, "keepAliveTimeout");
+
+    String path = url.getFile();
+    if (path == null || path.isEmpty()) {
+      path = "/";
+    }
+
+    String hostHeader = (port == url.getDefaultPort()) ? host : host + ":" + port;
+    this.requestHeaderPrefix = ("POST " + path + " HTTP/1.1\r\n"
+        + "Host: " + hostHeader + "\r\n"
+        + "Content-Type: " + mimeType + "\r\n"
+        + "Content-Length: ").getBytes(StandardCharsets.US_ASCII);
+  } // constructor
+
+  /**
+   * Sends the request and returns the body of the response.
+   *
+   * <p>If a reused connection has been closed by the server, the request is sent again over a
+   * new connection, provided that it has not been sent completely or is idempotent.
+   *
+   * @param request
+   *          Body of the request. Must not be {@code null}.
+   * @param idempotent
+   *          Whether the request may be processed by the server more than once.
+   * @return the body of the response.
+   * @throws IOException
+   *           if error occurs while sending the request or receiving the response.
+   */
+  byte[] send(byte[] request, boolean idempotent) throws IOException {
+    Args.notNull(request, "request");
+    if (closed) {
+      throw new IOException("transport has been closed");
+    }
+
+    try {
+      // each request holding a permit is bounded by the connect and read timeouts
+      permits.acquire();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IOException("interrupted while waiting for a free connection");
+    }
+
+    try {
+      Connection conn = borrowConnection();
+      try {
+        return send(conn, request);
+      } catch (NoResponseException ex) {
+        // the server may have closed the idle connection before it received the request
+        if (!conn.reused || (ex.requestSent && !idempotent)) {
+          throw ex;
+        }
+        LOG.debug("reused connection was closed by the server, retry with a new one");
+        return send(openConnection(), request);
+      }
+    } finally {
+      permits.release();
+    }
+  } // method send
+
+  @Override
+  public void close() {
+    closed = true;
+    Connection conn;
+    while ((conn = idleConnections.pollFirst()) != null) {
+      conn.close();
+    }
+  } // method close
+
+  private byte[] send(Connection conn, byte[] request) throws IOException {
+    boolean keepAlive = false;
+    try {
+      OutputStream out = conn.out;
+      String line;
+      boolean requestSent = false;
+      try {
+        out.write(requestHeaderPrefix);
+        out.write(Integer.toString(request.length).getBytes(StandardCharsets.US_ASCII));
+        out.write('\r');
+        out.write('\n');
+        out.write('\r');
+        out.write('\n');
+        out.write(request);
+        out.flush();
+        requestSent = true;
+
+        // status line
+        line = readLine(conn);
+      } catch (IOException ex) {
+        if (conn.reused && !(ex instanceof SocketTimeoutException)) {
+          throw new NoResponseException(ex.getMessage(), requestSent);
+        }
+        throw ex;
+      }
+
+      if (line == null) {
+        throw new NoResponseException("connection closed by the server", true);
+      }
+
+      // HTTP/1.1 200 OK
+      int statusCode;
+      String[] tokens = line.split(" ", 3);
+      try {
+        statusCode = Integer.parseInt(tokens[1]);
+      } catch (ArrayIndexOutOfBoundsException | NumberFormatException ex) {
+        throw new IOException("invalid status line: " + line);
+      }
+
+      // the connection may only be reused after the response has been read completely
+      boolean reusable = tokens[0].equalsIgnoreCase("HTTP/1.1");
+      int contentLength = -1;
+      boolean chunked = false;
+      String contentType = null;
+
+      while ((line = readLine(conn)) != null && !line.isEmpty()) {
+        int idx = line.indexOf(':');
+        if (idx == -1) {
+          continue;
+        }
+
+        String name = line.substring(0, idx).trim();
+        String value = line.substring(idx + 1).trim();
+        if ("Content-Length".equalsIgnoreCase(name)) {
+          contentLength = Integer.parseInt(value);
+        } else if ("Content-Type".equalsIgnoreCase(name)) {
+          contentType = value;
+        } else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+          chunked = "chunked".equalsIgnoreCase(value);
+        } else if ("Connection".equalsIgnoreCase(name)) {
+          if ("close".equalsIgnoreCase(value)) {
+            reusable = false;
+          } else if ("keep-alive".equalsIgnoreCase(value)) {
+            reusable = true;
+          }
+        }
+      }
+
+      if (line == null) {
+        throw new EOFException("connection closed while reading the response header");
+      }
+
+      byte[] body;
+      if (chunked) {
+        body = readChunkedBody(conn);
+      } else if (contentLength >= 0) {
+        body = new byte[contentLength];
+        readFully(conn.in, body, 0, contentLength);
+      } else {
+        // body is terminated by closing the connection
+        reusable = false;
+        body = readToEnd(conn.in);
+      }
+
+      keepAlive = reusable;
+
+      if (statusCode != 200) {
+        throw new IOException("bad response: code=" + statusCode + ", message="
+            + (tokens.length > 2 ? tokens[2] : ""));
+      }
+
+      if (contentType == null || !contentType.equalsIgnoreCase(mimeType)) {
+        throw new IOException("bad response: mime type " + contentType + " is not supported!");
+      }
+
+      return body;
+    } finally {
+      requiteConnection(conn, keepAlive);
+    }
+  } // method send
+
+  private Connection borrowConnection() throws IOException {
+    long now = System.currentTimeMillis();
+    Connection conn;
+    while ((conn = idleConnections.pollFirst()) != null) {
+      if (now - conn.lastUsed < keepAliveTimeout && !conn.socket.isClosed()) {
+        conn.reused = true;
+        return conn;
+      }
+      conn.close();
+    }
+
+    return openConnection();
+  } // method borrowConnection
+
+  private void requiteConnection(Connection conn, boolean keepAlive) {
+    if (!keepAlive || closed) {
+      conn.close();
+      return;
+    }
+
+    conn.lastUsed = System.currentTimeMillis();
+    idleConnections.offerFirst(conn);
+  } // method requiteConnection
+
+  private Connection openConnection() throws IOException {
+    Socket socket = new Socket();
+    try {
+      socket.setTcpNoDelay(true);
+      socket.setKeepAlive(true);
+      socket.setSoTimeout(readTimeout);
+      socket.connect(new InetSocketAddress(host, port), connectTimeout);
+
+      if (tls) {
+        SSLSocket sslSocket = (SSLSocket) sslSocketFactory.createSocket(socket, host, port, true);
+        socket = sslSocket;
+        if (hostnameVerifier == null) {
+          SSLParameters params = sslSocket.getSSLParameters();
+          params.setEndpointIdentificationAlgorithm("HTTPS");
+          sslSocket.setSSLParameters(params);
+        }
+
+        sslSocket.startHandshake();
+        if (hostnameVerifier != null && !hostnameVerifier.verify(host, sslSocket.getSession())) {
+          throw new IOException("hostname " + host + " is not verified");
+        }
+      }
+
+      LOG.debug("opened new connection to {}:{}", host, port);
+      return new Connection(socket);
+    } catch (IOException | RuntimeException ex) {
+      try {
+        socket.close();
+      } catch (IOException ex2) {
+        LOG.debug("could not close socket: {}", ex2.getMessage());
+      }
+      throw ex;
+    }
+  } // method openConnection
+
+  private static String readLine(Connection conn) throws IOException {
+    byte[] buf = conn.lineBuffer;
+    int len = 0;
+    while (true) {
+      int b = conn.in.read();
+      if (b == -1) {
+        if (len == 0) {
+          return null;
+        }
+        throw new EOFException("unexpected end of stream");
+      }
+
+      if (b == '\n') {
+        if (len > 0 && buf[len - 1] == '\r') {
+          len--;
+        }
+        return new String(buf, 0, len, StandardCharsets.ISO_8859_1);
+      }
+
+      if (len == buf.length) {
+        throw new IOException("line in the response header too long");
+      }
+      buf[len++] = (byte) b;
+    }
+  } // method readLine
+
+  private static byte[] readChunkedBody(Connection conn) throws IOException {
+    byte[] body = new byte[0];
+    while (true) {
+      String line = readLine(conn);
+      if (line == null) {
+        throw new EOFException("unexpected end of stream");
+      }
+
+      int idx = line.indexOf(';');
+      int chunkSize = Integer.parseInt((idx == -1 ? line : line.substring(0, idx)).trim(), 16);
+      if (chunkSize == 0) {
+        // skip the trailer
+        while ((line = readLine(conn)) != null && !line.isEmpty()) {
+          // do nothing
+        }
+        return body;
+      }
+
+      int offset = body.length;
+      byte[] newBody = new byte[offset + chunkSize];
+      System.arraycopy(body, 0, newBody, 0, offset);
+      body = newBody;
+      readFully(conn.in, body, offset, chunkSize);
+      // CRLF after the chunk
+      readLine(conn);
+    }
+  } // method readChunkedBody
+
+  private static void readFully(InputStream in, byte[] buf, int off, int len)
+      throws IOException {
+    int read = 0;
+    while (read < len) {
+      int n = in.read(buf, off + read, len - read);
+      if (n == -1) {
+        throw new EOFException("unexpected end of stream");
+      }
+      read += n;
+    }
+  } // method readFully
+
+  private static byte[] readToEnd(InputStream in) throws IOException {
+    byte[] buf = new byte[4096];
+    int len = 0;
+    int n;
+    while ((n = in.read(buf, len, buf.length - len)) != -1) {
+      len += n;
+      if (len == buf.length) {
+        byte[] newBuf = new byte[buf.length * 2];
+        System.arraycopy(buf, 0, newBuf, 0, len);
+        buf = newBuf;
+      }
+    }
+
+    byte[] ret = new byte[len];
+    System.arraycopy(buf, 0, ret, 0, len);
+    return ret;
+  } // method readToEnd
+
+}
@@ -21,6 +21,7 @@ import java.io.IOException;
 import java.math.BigInteger;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -1893,6 +1894,200 @@ public abstract class ProxyMessage extends ASN1Object {
     }
   } // class SignTemplate
 
+  /**
+   * Definition of SignBatchTemplate.
+   *
+   * <pre>
+   * SignBatchTemplate ::= SEQUENCE SIZE (1..MAX) OF SignTemplate
+   * </pre>
+   */
+  public static class SignBatchTemplate extends ProxyMessage {
+
+    private final List<SignTemplate> templates;
+
+    private SignBatchTemplate(ASN1Sequence seq) throws BadAsn1ObjectException {
+      final int size = seq.size();
+      if (size == 0) {
+        throw new BadAsn1ObjectException("SignBatchTemplate must not be empty");
+      }
+
+      List<SignTemplate> list = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        list.add(SignTemplate.getInstance(seq.getObjectAt(i)));
+      }
+      this.templates = Collections.unmodifiableList(list);
+    }
+
+    public SignBatchTemplate(List<SignTemplate> templates) {
+      this.templates = Collections.unmodifiableList(Args.notEmpty(templates, "templates"));
+    }
+
+    public static SignBatchTemplate getInstance(Object obj) throws BadAsn1ObjectException {
+      if (obj == null || obj instanceof SignBatchTemplate) {
+        return (SignBatchTemplate) obj;
+      }
+
+      try {
+        if (obj instanceof ASN1Sequence) {
+          return new SignBatchTemplate((ASN1Sequence) obj);
+        } else if (obj instanceof byte[]) {
+          return getInstance(ASN1Primitive.fromByteArray((byte[]) obj));
+        } else {
+          throw new BadAsn1ObjectException("unknown object: " + obj.getClass().getName());
+        }
+      } catch (IOException | IllegalArgumentException ex) {
+        throw new BadAsn1ObjectException("unable to parse encoded object: " + ex.getMessage(),
+            ex);
+      }
+    }
+
+    @Override
+    public ASN1Primitive toASN1Primitive() {
+      ASN1EncodableVector vector = new ASN1EncodableVector();
+      for (SignTemplate template : templates) {
+        vector.add(template);
+      }
+      return new DERSequence(vector);
+    }
+
+    public List<SignTemplate> getTemplates() {
+      return templates;
+    }
+
+  } // class SignBatchTemplate
+
+  /**
+   * Definition of SignResult. The signature is present if and only if the rc is RC_SUCCESS.
+   *
+   * <pre>
+   * SignResult ::= SEQUENCE {
+   *     rc             INTEGER,
+   *     signature      OCTET STRING OPTIONAL }
+   * </pre>
+   */
+  public static class SignResult extends ProxyMessage {
+
+    private final short rc;
+
+    private final byte[] signature;
+
+    private SignResult(ASN1Sequence seq) throws BadAsn1ObjectException {
+      requireRange(seq, 1, 2);
+      this.rc = getInteger(seq.getObjectAt(0)).shortValue();
+      this.signature = (seq.size() > 1) ? getOctetStringBytes(seq.getObjectAt(1)) : null;
+    }
+
+    public SignResult(byte[] signature) {
+      this.rc = P11ProxyConstants.RC_SUCCESS;
+      this.signature = Args.notNull(signature, "signature");
+    }
+
+    public SignResult(short rc) {
+      if (rc == P11ProxyConstants.RC_SUCCESS) {
+        throw new IllegalArgumentException("rc must not be RC_SUCCESS");
+      }
+      this.rc = rc;
+      this.signature = null;
+    }
+
+    public static SignResult getInstance(Object obj) throws BadAsn1ObjectException {
+      if (obj == null || obj instanceof SignResult) {
+        return (SignResult) obj;
+      }
+
+      try {
+        if (obj instanceof ASN1Sequence) {
+          return new SignResult((ASN1Sequence) obj);
+        } else if (obj instanceof byte[]) {
+          return getInstance(ASN1Primitive.fromByteArray((byte[]) obj));
+        } else {
+          throw new BadAsn1ObjectException("unknown object: " + obj.getClass().getName());
+        }
+      } catch (IOException | IllegalArgumentException ex) {
+        throw new BadAsn1ObjectException("unable to parse encoded object: " + ex.getMessage(),
+            ex);
+      }
+    }
+
+    @Override
+    public ASN1Primitive toASN1Primitive() {
+      ASN1EncodableVector vector = new ASN1EncodableVector();
+      vector.add(new ASN1Integer(rc));
+      if (signature != null) {
+        vector.add(new DEROctetString(signature));
+      }
+      return new DERSequence(vector);
+    }
+
+    public short getRc() {
+      return rc;
+    }
+
+    public byte[] getSignature() {
+      return signature;
+    }
+
+  } // class SignResult
+
+  /**
+   * Definition of SignBatchResult. The i-th result belongs to the i-th template of the
+   * SignBatchTemplate.
+   *
+   * <pre>
+   * SignBatchResult ::= SEQUENCE OF SignResult
+   * </pre>
+   */
+  public static class SignBatchResult extends ProxyMessage {
+
+    private final List<SignResult> results;
+
+    private SignBatchResult(ASN1Sequence seq) throws BadAsn1ObjectException {
+      final int size = seq.size();
+      List<SignResult> list = new ArrayList<>(size);
+      for (int i = 0; i < size; i++) {
+        list.add(SignResult.getInstance(seq.getObjectAt(i)));
+      }
+      this.results = Collections.unmodifiableList(list);
+    }
+
+    public SignBatchResult(List<SignResult> results) {
+      this.results = Collections.unmodifiableList(Args.notNull(results, "results"));
+    }
+
+    public static SignBatchResult getInstance(Object obj) throws BadAsn1ObjectException {
+      if (obj == null || obj instanceof SignBatchResult) {
+        return (SignBatchResult) obj;
+      }
+
+      try {
+        if (obj instanceof ASN1Sequence) {
+          return new SignBatchResult((ASN1Sequence) obj);
+        } else if (obj instanceof byte[]) {
+          return getInstance(ASN1Primitive.fromByteArray((byte[]) obj));
+        } else {
+          throw new BadAsn1ObjectException("unknown object: " + obj.getClass().getName());
+        }
+      } catch (IOException | IllegalArgumentException ex) {
+        throw new BadAsn1ObjectException("unable to parse encoded object: " + ex.getMessage(),
+            ex);
+      }
+    }
+
+    @Override
+    public ASN1Primitive toASN1Primitive() {
+      ASN1EncodableVector vector = new ASN1EncodableVector();
+      for (SignResult result : results) {
+        vector.add(result);
+      }
+      return new DERSequence(vector);
+    }
+
+    public List<SignResult> getResults() {
+      return results;
+    }
+
+  } // class SignBatchResult
+
   private static void requireRange(ASN1Sequence seq, int minSize, int maxSize)
       throws BadAsn1ObjectException {
     int size = seq.size();
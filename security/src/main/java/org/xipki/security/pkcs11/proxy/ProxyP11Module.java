@@ -40,7 +40,9 @@ import javax.net.ssl.SSLSocketFactory;
 
 import org.bouncycastle.asn1.ASN1Encodable;
 import org.bouncycastle.asn1.ASN1Object;
+import org.bouncycastle.asn1.ASN1OctetString;
 import org.bouncycastle.asn1.ASN1Sequence;
+import org.bouncycastle.asn1.DEROctetString;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.xipki.security.BadAsn1ObjectException;
@@ -67,6 +69,26 @@ import org.xipki.util.http.SSLContextBuilder;
 
 public class ProxyP11Module extends P11Module {
 
+  /**
+   * Exception thrown if the server returned an error code.
+   */
+  static class ServerErrorException extends P11TokenException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final short rc;
+
+    ServerErrorException(short rc) {
+      super("server returned RC " + P11ProxyConstants.getReturnCodeName(rc));
+      this.rc = rc;
+    }
+
+    short getRc() {
+      return rc;
+    }
+
+  } // class ServerErrorException
+
   public static final String TYPE = "proxy";
 
   private static final String PROP_URL = "url";
@@ -85,6 +107,24 @@ public class ProxyP11Module extends P11Module {
 
   private static final String PROP_SSL_HOStNAMEVERIFIER = "ssl.hostnameVerifier";
 
+  private static final String PROP_TRANSPORT = "transport";
+
+  private static final String PROP_MAX_CONNECTIONS = "maxConnections";
+
+  private static final String PROP_CONNECT_TIMEOUT = "connectTimeout";
+
+  private static final String PROP_READ_TIMEOUT = "readTimeout";
+
+  private static final String PROP_KEEPALIVE_TIMEOUT = "keepAliveTimeout";
+
+  private static final String PROP_SIGN_BATCH_SIZE = "signBatchSize";
+
+  private static final String PROP_SIGN_BATCH_IN_FLIGHT = "signBatchInFlight";
+
+  private static final String TRANSPORT_HTTP = "http";
+
+  private static final String TRANSPORT_PERSISTENT = "persistent";
+
   private static final Logger LOG = LoggerFactory.getLogger(ProxyP11Module.class);
 
   private static final String REQUEST_MIMETYPE = "application/x-xipki-pkcs11";
@@ -107,6 +147,10 @@ public class ProxyP11Module extends P11Module {
 
   private HostnameVerifier hostnameVerifier;
 
+  private PersistentHttpTransport transport;
+
+  private ProxySignBatcher signBatcher;
+
   private ProxyP11Module(P11ModuleConf moduleConf) throws P11TokenException {
     super(moduleConf);
 
@@ -182,6 +226,40 @@ public class ProxyP11Module extends P11Module {
       throw new P11TokenException("could not create HostnameVerifier", ex);
     }
 
+    String transportType = confPairs.value(PROP_TRANSPORT);
+    if (transportType == null || TRANSPORT_HTTP.equalsIgnoreCase(transportType)) {
+      LOG.info("use transport {}", TRANSPORT_HTTP);
+    } else if (TRANSPORT_PERSISTENT.equalsIgnoreCase(transportType)) {
+      int maxConnections = getInt(confPairs, PROP_MAX_CONNECTIONS, 32);
+      int connectTimeout = getInt(confPairs, PROP_CONNECT_TIMEOUT, 10000);
+      int readTimeout = getInt(confPairs, PROP_READ_TIMEOUT, 60000);
+      int keepAliveTimeout = getInt(confPairs, PROP_KEEPALIVE_TIMEOUT, 15000);
+      try {
+        this.transport = new PersistentHttpTransport(serverUrl, REQUEST_MIMETYPE,
+            sslSocketFactory, hostnameVerifier, maxConnections, connectTimeout, readTimeout,
+            keepAliveTimeout);
+      } catch (IllegalArgumentException ex) {
+        throw new P11TokenException("invalid transport configuration: " + ex.getMessage(), ex);
+      }
+      LOG.info("use transport {} with at most {} connections", TRANSPORT_PERSISTENT,
+          maxConnections);
+    } else {
+      throw new P11TokenException("invalid transport: " + transportType);
+    }
+
+    // batching is switched off if signBatchSize is less than 2
+    int signBatchSize = getInt(confPairs, PROP_SIGN_BATCH_SIZE, 32);
+    if (signBatchSize > 1) {
+      int signBatchInFlight = getInt(confPairs, PROP_SIGN_BATCH_IN_FLIGHT, 8);
+      try {
+        this.signBatcher = new ProxySignBatcher(this, signBatchSize, signBatchInFlight);
+      } catch (IllegalArgumentException ex) {
+        throw new P11TokenException("invalid sign batch configuration: " + ex.getMessage(), ex);
+      }
+      LOG.info("batch at most {} signatures, at most {} batches in flight", signBatchSize,
+          signBatchInFlight);
+    }
+
     refresh();
   } // constructor
 
@@ -262,10 +340,18 @@ public class ProxyP11Module extends P11Module {
         LogUtil.error(LOG, th, "could not close PKCS#11 slot " + slotId);
       }
     }
-  }
 
-  protected byte[] send(byte[] request) throws IOException {
+    if (transport != null) {
+      transport.close();
+    }
+  } // method close
+
+  protected byte[] send(byte[] request, boolean idempotent) throws IOException {
     Args.notNull(request, "request");
+    if (transport != null) {
+      return transport.send(request, idempotent);
+    }
+
     HttpURLConnection httpUrlConnection = IoUtil.openHttpConn(serverUrl);
 
     if (httpUrlConnection instanceof HttpsURLConnection) {
@@ -336,7 +422,9 @@ public class ProxyP11Module extends P11Module {
       }
 
       byte[] buf = new byte[4096];
-      ByteArrayOutputStream bytearrayoutputstream = new ByteArrayOutputStream();
+      int contentLength = httpUrlConnection.getContentLength();
+      ByteArrayOutputStream bytearrayoutputstream =
+          new ByteArrayOutputStream(contentLength > 0 ? contentLength : 4096);
       do {
         int readedByte = inputstream.read(buf);
         if (readedByte == -1) {
@@ -407,7 +495,7 @@ public class ProxyP11Module extends P11Module {
 
     byte[] response;
     try {
-      response = send(request);
+      response = send(request, P11ProxyConstants.isIdempotentAction(action));
     } catch (IOException ex) {
       final String msg = "could not send the request";
       LOG.error(msg + " {}", request);
@@ -428,7 +516,7 @@ public class ProxyP11Module extends P11Module {
     // RC
     short rc = IoUtil.parseShort(response, 10);
     if (rc != 0) {
-      throw new P11TokenException("server returned RC " + P11ProxyConstants.getReturnCodeName(rc));
+      throw new ServerErrorException(rc);
     }
 
     // Version
@@ -461,6 +549,49 @@ public class ProxyP11Module extends P11Module {
     return respContent;
   } // method send
 
+  /**
+   * Signs the message specified in the template. Concurrent calls may be sent to the server in
+   * one batch.
+   *
+   * @param template sign template
+   * @return the signature.
+   * @throws P11TokenException If error occurred.
+   */
+  byte[] sign(ProxyMessage.SignTemplate template) throws P11TokenException {
+    if (signBatcher != null) {
+      return signBatcher.sign(template);
+    } else {
+      return signSingle(template);
+    }
+  } // method sign
+
+  byte[] signSingle(ProxyMessage.SignTemplate template) throws P11TokenException {
+    byte[] result = send(P11ProxyConstants.ACTION_SIGN, template);
+
+    ASN1OctetString octetString;
+    try {
+      octetString = DEROctetString.getInstance(result);
+    } catch (IllegalArgumentException ex) {
+      throw new P11TokenException("the returned result is not OCTET STRING");
+    }
+
+    return (octetString == null) ? null : octetString.getOctets();
+  } // method signSingle
+
+  private static int getInt(ConfPairs confPairs, String name, int defaultValue)
+      throws P11TokenException {
+    String str = confPairs.value(name);
+    if (str == null) {
+      return defaultValue;
+    }
+
+    try {
+      return Integer.parseInt(str.trim());
+    } catch (NumberFormatException ex) {
+      throw new P11TokenException("invalid " + name + ": " + str);
+    }
+  } // method getInt
+
   private byte[] randomTransactionId() {
     byte[] tid = new byte[4];
     random.nextBytes(tid);
@@ -0,0 +1,234 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.security.pkcs11.proxy;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.xipki.security.BadAsn1ObjectException;
+import org.xipki.security.pkcs11.P11TokenException;
+import org.xipki.util.Args;
+
+/**
+ * Coalesces concurrent sign requests into {@link P11ProxyConstants#ACTION_SIGN_BATCH}
+ * requests.
+ *
+ * <p>At most {@code maxInFlight} requests are sent to the server at the same time. A thread
+ * which obtains one of these permits sends all queued sign requests (up to
+ * {@code maxBatchSize}) in one request, including those of other threads. Sign requests
+ * queued while all permits are in use are sent in the next batch. A single queued sign
+ * request is sent as {@link P11ProxyConstants#ACTION_SIGN}, so that no latency is added if
+ * there is no concurrency.
+ *
+ * <p>If the server does not support the batch action, the batching is switched off.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+
+class ProxySignBatcher {
+
+  private static class SignRequest {
+
+    private final ProxyMessage.SignTemplate template;
+
+    private final CountDownLatch done = new CountDownLatch(1);
+
+    private byte[] signature;
+
+    private P11TokenException error;
+
+    SignRequest(ProxyMessage.SignTemplate template) {
+      this.template = template;
+    }
+
+    void complete(byte[] signature, P11TokenException error) {
+      this.signature = signature;
+      this.error = error;
+      done.countDown();
+    }
+
+    boolean isDone() {
+      return done.getCount() == 0;
+    }
+
+  } // class SignRequest
+
+  private static final Logger LOG = LoggerFactory.getLogger(ProxySignBatcher.class);
+
+  private static final long POLL_INTERVAL_MS = 2;
+
+  private final ProxyP11Module module;
+
+  private final int maxBatchSize;
+
+  private final Semaphore inFlight;
+
+  private final ConcurrentLinkedQueue<SignRequest> queue = new ConcurrentLinkedQueue<>();
+
+  private volatile boolean batchSupported = true;
+
+  ProxySignBatcher(ProxyP11Module module, int maxBatchSize, int maxInFlight) {
+    this.module = Args.notNull(module, "module");
+    this.maxBatchSize = Args.min(maxBatchSize, "maxBatchSize", 2);
+    this.inFlight = new Semaphore(Args.positive(maxInFlight, "maxInFlight"));
+  }
+
+  byte[] sign(ProxyMessage.SignTemplate template) throws P11TokenException {
+    if (!batchSupported) {
+      return module.signSingle(template);
+    }
+
+    SignRequest request = new SignRequest(template);
+    queue.add(request);
+
+    // every waiting thread tries to send the queued requests itself, so that no request is
+    // left in the queue if the threads holding the permits have already returned.
+    while (!request.isDone()) {
+      if (inFlight.tryAcquire()) {
+        try {
+          if (!request.isDone()) {
+            processQueue();
+          }
+        } finally {
+          inFlight.release();
+        }
+      } else {
+        try {
+          request.done.await(POLL_INTERVAL_MS, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
+          throw new P11TokenException("interrupted while waiting for the signature");
+        }
+      }
+    }
+
+    if (request.error != null) {
+      throw request.error;
+    }
+    return request.signature;
+  } // method sign
+
+  private void processQueue() {
+    List<SignRequest> batch = new ArrayList<>(Math.min(maxBatchSize, 16));
+    SignRequest request;
+    while (batch.size() < maxBatchSize && (request = queue.poll()) != null) {
+      batch.add(request);
+    }
+
+    if (batch.isEmpty()) {
+      return;
+    }
+
+    Throwable failure = null;
+    try {
+      processBatch(batch);
+    } catch (Throwable th) {
+      failure = th;
+      throw th;
+    } finally {
+      // every request taken from the queue must be completed, even if an Error is thrown,
+      // otherwise its caller waits forever.
+      for (SignRequest m : batch) {
+        if (!m.isDone()) {
+          m.complete(null, (failure == null)
+              ? new P11TokenException("request has not been processed")
+              : new P11TokenException(failure.getMessage(), failure));
+        }
+      }
+    }
+  } // method processQueue
+
+  private void processBatch(List<SignRequest> batch) {
+    if (batch.size() == 1 || !batchSupported) {
+      signEach(batch);
+      return;
+    }
+
+    List<ProxyMessage.SignTemplate> templates = new ArrayList<>(batch.size());
+    for (SignRequest m : batch) {
+      templates.add(m.template);
+    }
+
+    List<ProxyMessage.SignResult> results;
+    try {
+      byte[] resp = module.send(P11ProxyConstants.ACTION_SIGN_BATCH,
+          new ProxyMessage.SignBatchTemplate(templates));
+      results = ProxyMessage.SignBatchResult.getInstance(resp).getResults();
+      if (results.size() != batch.size()) {
+        throw new P11TokenException("expected " + batch.size() + " signatures, but received "
+            + results.size());
+      }
+    } catch (ProxyP11Module.ServerErrorException ex) {
+      if (ex.getRc() == P11ProxyConstants.RC_UNSUPPORTED_ACTION) {
+        if (batchSupported) {
+          batchSupported = false;
+          LOG.warn("server does not support {}, switch off batching",
+              P11ProxyConstants.getActionName(P11ProxyConstants.ACTION_SIGN_BATCH));
+        }
+        signEach(batch);
+      } else {
+        completeAll(batch, ex);
+      }
+      return;
+    } catch (BadAsn1ObjectException ex) {
+      completeAll(batch, new P11TokenException("invalid SignBatchResult", ex));
+      return;
+    } catch (P11TokenException ex) {
+      completeAll(batch, ex);
+      return;
+    } catch (RuntimeException ex) {
+      completeAll(batch, new P11TokenException(ex.getMessage(), ex));
+      return;
+    }
+
+    for (int i = 0; i < batch.size(); i++) {
+      ProxyMessage.SignResult result = results.get(i);
+      if (result.getRc() == P11ProxyConstants.RC_SUCCESS) {
+        batch.get(i).complete(result.getSignature(), null);
+      } else {
+        batch.get(i).complete(null, new ProxyP11Module.ServerErrorException(result.getRc()));
+      }
+    }
+  } // method processBatch
+
+  private void signEach(List<SignRequest> batch) {
+    for (SignRequest m : batch) {
+      try {
+        m.complete(module.signSingle(m.template), null);
+      } catch (P11TokenException ex) {
+        m.complete(null, ex);
+      } catch (RuntimeException ex) {
+        m.complete(null, new P11TokenException(ex.getMessage(), ex));
+      }
+    }
+  } // method signEach
+
+  private static void completeAll(List<SignRequest> batch, P11TokenException error) {
+    for (SignRequest m : batch) {
+      m.complete(null, error);
+    }
+  } // method completeAll
+
+}
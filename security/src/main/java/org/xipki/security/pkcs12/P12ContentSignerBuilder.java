@@ -17,6 +17,7 @@
 
 package org.xipki.security.pkcs12;
 
+import java.security.GeneralSecurityException;
 import java.security.InvalidKeyException;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
@@ -54,6 +55,7 @@ import org.bouncycastle.operator.bc.BcContentSignerBuilder;
 import org.xipki.security.ConcurrentContentSigner;
 import org.xipki.security.DSAPlainDigestSigner;
 import org.xipki.security.DfltConcurrentContentSigner;
+import org.xipki.security.DfltConcurrentContentSigner.XiContentSignerFactory;
 import org.xipki.security.EdECConstants;
 import org.xipki.security.SignatureSigner;
 import org.xipki.security.XiContentSigner;
@@ -201,10 +203,37 @@ public class P12ContentSignerBuilder {
 
   public ConcurrentContentSigner createSigner(AlgorithmIdentifier signatureAlgId, int parallelism,
       SecureRandom random) throws XiSecurityException, NoSuchPaddingException {
+    return createSigner(signatureAlgId, parallelism, parallelism, random);
+  }
+
+  /**
+   * Creates a signer.
+   *
+   * @param signatureAlgId
+   *          Signature algorithm. Must not be {@code null}.
+   * @param parallelism
+   *          Number of signers created initially.
+   * @param maxParallelism
+   *          Maximal number of signers. If greater than {@code parallelism}, further signers
+   *          will be created on demand.
+   * @param random
+   *          Random to be used in the signers. Could be {@code null}.
+   * @return the signer.
+   * @throws XiSecurityException
+   *           if the signer could not be created.
+   * @throws NoSuchPaddingException
+   *           if the padding is not supported.
+   * @since 5.3.7
+   */
+  public ConcurrentContentSigner createSigner(final AlgorithmIdentifier signatureAlgId,
+      int parallelism, int maxParallelism, SecureRandom random)
+      throws XiSecurityException, NoSuchPaddingException {
     Args.notNull(signatureAlgId, "signatureAlgId");
     Args.positive(parallelism, "parallelism");
+    Args.min(maxParallelism, "maxParallelism", parallelism);
 
     List<XiContentSigner> signers = new ArrayList<>(parallelism);
+    XiContentSignerFactory signerFactory = null;
 
     String provName = null;
     if (AlgorithmUtil.isRSASigAlgId(signatureAlgId)) {
@@ -241,6 +270,21 @@ public class P12ContentSignerBuilder {
           XiContentSigner signer = new SignatureSigner(signatureAlgId, signature, key);
           signers.add(signer);
         }
+
+        final String fAlgoName = algoName;
+        final String fProvName = provName;
+        signerFactory = new XiContentSignerFactory() {
+          @Override
+          public XiContentSigner newSigner() throws XiSecurityException {
+            try {
+              Signature signature = Signature.getInstance(fAlgoName, fProvName);
+              signature.initSign(key);
+              return new SignatureSigner(signatureAlgId, signature, key);
+            } catch (GeneralSecurityException ex) {
+              throw new XiSecurityException(ex.getMessage(), ex);
+            }
+          }
+        };
       } catch (Exception ex) {
         signers.clear();
       }
@@ -275,11 +319,11 @@ public class P12ContentSignerBuilder {
         throw new XiSecurityException("no such algorithm", ex);
       }
 
-      for (int i = 0; i < parallelism; i++) {
-        if (random != null) {
-          signerBuilder.setSecureRandom(random);
-        }
+      if (random != null) {
+        signerBuilder.setSecureRandom(random);
+      }
 
+      for (int i = 0; i < parallelism; i++) {
         ContentSigner signer;
         try {
           signer = signerBuilder.build(keyparam);
@@ -288,16 +332,33 @@ public class P12ContentSignerBuilder {
         }
         signers.add(new XiWrappedContentSigner(signer, true));
       }
+
+      final BcContentSignerBuilder fSignerBuilder = signerBuilder;
+      final AsymmetricKeyParameter fKeyparam = keyparam;
+      signerFactory = new XiContentSignerFactory() {
+        @Override
+        public XiContentSigner newSigner() throws XiSecurityException {
+          try {
+            return new XiWrappedContentSigner(fSignerBuilder.build(fKeyparam), true);
+          } catch (OperatorCreationException ex) {
+            throw new XiSecurityException("operator creation error", ex);
+          }
+        }
+      };
     }
 
     final boolean mac = false;
-    ConcurrentContentSigner concurrentSigner;
+    DfltConcurrentContentSigner concurrentSigner;
     try {
       concurrentSigner = new DfltConcurrentContentSigner(mac, signers, key);
     } catch (NoSuchAlgorithmException ex) {
       throw new XiSecurityException(ex.getMessage(), ex);
     }
 
+    if (maxParallelism > parallelism) {
+      concurrentSigner.setElastic(maxParallelism, signerFactory);
+    }
+
     if (certificateChain != null) {
       concurrentSigner.setCertificateChain(certificateChain);
     } else {
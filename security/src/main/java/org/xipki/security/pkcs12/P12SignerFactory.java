@@ -102,6 +102,21 @@ public class P12SignerFactory implements SignerFactory {
       }
     }
 
+    // signers exceeding parallelism will be created on demand, up to max-parallelism
+    str = conf.getConfValue("max-parallelism");
+    int maxParallelism = parallelism;
+    if (str != null) {
+      try {
+        maxParallelism = Integer.parseInt(str);
+      } catch (NumberFormatException ex) {
+        throw new ObjectCreationException("invalid max-parallelism " + str);
+      }
+
+      if (maxParallelism < parallelism) {
+        throw new ObjectCreationException("invalid max-parallelism " + str);
+      }
+    }
+
     String passwordHint = conf.getConfValue("password");
     char[] password;
     if (passwordHint == null) {
@@ -179,7 +194,7 @@ public class P12SignerFactory implements SignerFactory {
             signatureAlgId = AlgorithmUtil.getSigAlgId(pubKey, conf);
           }
 
-          return signerBuilder.createSigner(signatureAlgId, parallelism,
+          return signerBuilder.createSigner(signatureAlgId, parallelism, maxParallelism,
               securityFactory.getRandom4Sign());
         }
       }
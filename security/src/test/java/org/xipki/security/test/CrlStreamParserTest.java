@@ -21,6 +21,8 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.math.BigInteger;
 import java.security.Security;
+import java.util.ArrayList;
+import java.util.List;
 
 import org.bouncycastle.asn1.x509.Certificate;
 import org.bouncycastle.asn1.x509.Extensions;
@@ -31,6 +33,9 @@ import org.xipki.security.ObjectIdentifiers;
 import org.xipki.security.asn1.CrlCertSetStreamParser;
 import org.xipki.security.asn1.CrlCertSetStreamParser.CrlCertsIterator;
 import org.xipki.security.asn1.CrlStreamParser;
+import org.xipki.security.asn1.CrlStreamParser.MappedRevokedCert;
+import org.xipki.security.asn1.CrlStreamParser.MappedRevokedCertsIterator;
+import org.xipki.security.asn1.CrlStreamParser.RevokedCert;
 import org.xipki.security.asn1.CrlStreamParser.RevokedCertsIterator;
 import org.xipki.security.util.X509Util;
 
@@ -139,4 +144,44 @@ public class CrlStreamParserTest {
     Assert.assertEquals("#numCrlCerts", 15, numCrlCerts);
   }
 
+  @Test
+  public void parseMappedCrls() throws Exception {
+    String[] crlFiles = {"src/test/resources/crls/crl-1/subcawithcrl1.crl",
+        "src/test/resources/crls/crl-2/ca1-crl.crl",
+        "src/test/resources/crls/crl-3/subcawithcrl1.crl"};
+
+    for (String crlFile : crlFiles) {
+      CrlStreamParser parser = new CrlStreamParser(new File(crlFile));
+
+      List<RevokedCert> expected = new ArrayList<>();
+      try (RevokedCertsIterator iterator = parser.revokedCertificates()) {
+        while (iterator.hasNext()) {
+          expected.add(iterator.next());
+        }
+      }
+
+      for (int numChunks = 1; numChunks <= 4; numChunks++) {
+        int index = 0;
+        for (MappedRevokedCertsIterator iterator : parser.mappedRevokedCertificates(numChunks)) {
+          while (iterator.hasNext()) {
+            MappedRevokedCert cert = iterator.next();
+            RevokedCert expectedCert = expected.get(index++);
+            String desc = crlFile + ", entry " + index;
+            Assert.assertEquals("serialNumber " + desc,
+                expectedCert.getSerialNumber(), cert.getSerialNumber());
+            Assert.assertEquals("revocationDate " + desc,
+                expectedCert.getRevocationDate(), cert.getRevocationDate());
+            Assert.assertEquals("reason " + desc, expectedCert.getReason(), cert.getReason());
+            Assert.assertEquals("invalidityDate " + desc,
+                expectedCert.getInvalidityDate(), cert.getInvalidityDate());
+            Assert.assertEquals("certificateIssuer " + desc,
+                expectedCert.getCertificateIssuer(), cert.getCertificateIssuer());
+          }
+        }
+
+        Assert.assertEquals("#revokedCertificates " + crlFile, expected.size(), index);
+      }
+    }
+  }
+
 }
@@ -0,0 +1,84 @@
+/*
+ *
+ * Copyright (c) 2013 - 2020 Lijun Liao
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package org.xipki.ca.mgmt.shell;
+
+import java.io.File;
+
+import org.apache.karaf.shell.api.action.Command;
+import org.apache.karaf.shell.api.action.Completion;
+import org.apache.karaf.shell.api.action.Option;
+import org.apache.karaf.shell.api.action.lifecycle.Service;
+import org.xipki.audit.services.AuditJournalReader;
+import org.xipki.audit.services.AuditJournalReader.Record;
+import org.xipki.audit.services.AuditJournalReader.RecordHandler;
+import org.xipki.audit.services.AuditJournalReader.VerificationResult;
+import org.xipki.shell.CmdFailure;
+import org.xipki.shell.Completers;
+import org.xipki.shell.IllegalCmdParamException;
+import org.xipki.shell.XiAction;
+
+/**
+ * Actions to operate on the audit journal.
+ *
+ * @author Lijun Liao
+ * @since 5.3.7
+ */
+public class AuditActions {
+
+  @Command(scope = "ca", name = "verify-audit",
+      description = "verify the hash chain of the audit journal")
+  @Service
+  public static class VerifyAudit extends XiAction {
+
+    @Option(name = "--dir", required = true, description = "directory of the audit journal")
+    @Completion(Completers.DirCompleter.class)
+    private String dir;
+
+    @Option(name = "--print", description = "print the verified audit events")
+    private Boolean print = Boolean.FALSE;
+
+    @Override
+    protected Object execute0() throws Exception {
+      File journalDir = new File(expandFilepath(dir));
+      if (!journalDir.isDirectory()) {
+        throw new IllegalCmdParamException("directory " + dir + " does not exist");
+      }
+
+      RecordHandler handler = null;
+      if (print) {
+        handler = new RecordHandler() {
+          @Override
+          public void handle(Record record) {
+            println(record.toString());
+          }
+        };
+      }
+
+      VerificationResult result = new AuditJournalReader(journalDir).verify(handler);
+      if (!result.isValid()) {
+        throw new CmdFailure("audit journal is invalid: " + result.getError());
+      }
+
+      println("verified " + result.getNumRecords() + " audit events in "
+          + result.getNumSegments() + " segments");
+      return null;
+    } // method execute0
+
+  } // class VerifyAudit
+
+}
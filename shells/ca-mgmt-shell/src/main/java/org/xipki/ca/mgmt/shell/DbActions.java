@@ -154,13 +154,16 @@ public class DbActions {
     @Option(name = "-k", description = "number of certificates per SELECT")
     private Integer numCertsPerCommit = 100;
 
+    @Option(name = "--threads", description = "number of threads to export the entries")
+    private Integer numThreads = 1;
+
     @Option(name = "--resume", description = "resume from the last successful point")
     private Boolean resume = Boolean.FALSE;
 
     @Override
     protected DbPortWorker getDbPortWorker() throws Exception {
       return new DbPortWorker.ExportCaDb(datasourceFactory, passwordResolver, dbconfFile, outdir,
-          resume, numCertsInBundle, numCertsPerCommit);
+          resume, numCertsInBundle, numCertsPerCommit, numThreads);
     }
 
   } // class ExportCa
@@ -209,13 +212,16 @@ public class DbActions {
     @Option(name = "-k", description = "number of certificates per commit")
     private Integer numCertsPerCommit = 100;
 
+    @Option(name = "--threads", description = "number of threads to insert the entries")
+    private Integer numThreads = 1;
+
     @Option(name = "--resume", description = "resume from the last successful point")
     private Boolean resume = Boolean.FALSE;
 
     @Override
     protected DbPortWorker getDbPortWorker() throws Exception {
       return new DbPortWorker.ImportCaDb(datasourceFactory, passwordResolver, dbconfFile, resume,
-          indir, numCertsPerCommit.intValue());
+          indir, numCertsPerCommit.intValue(), numThreads.intValue());
     }
 
   } // class ImportCa
@@ -62,6 +62,39 @@ public class Actions {
 
   } // class OcspSystemRestartAction
 
+  @Command(scope = "ocsp", name = "build-static-responses",
+      description = "build file of pre-produced responses")
+  @Service
+  public static class BuildStaticResponsesAction extends OcspAction {
+
+    @Option(name = "--responder", required = true, description = "name of the responder")
+    private String responder;
+
+    @Option(name = "--file", required = true,
+        description = "path of the file on the OCSP server")
+    private String file;
+
+    @Option(name = "--hash", description = "hash algorithm of the CertID")
+    @Completion(Completers.HashAlgCompleter.class)
+    private String hashAlgo = "SHA1";
+
+    @Option(name = "--thread", description = "number of threads")
+    private Integer numThreads = 1;
+
+    @Override
+    protected Object execute0() throws Exception {
+      try {
+        ocspManager.buildStaticResponses(responder, file, hashAlgo, numThreads);
+      } catch (OcspMgmtException ex) {
+        throw new CmdFailure("could not build static responses, error: " + ex.getMessage(), ex);
+      }
+
+      println("built static responses of responder " + responder + " in file " + file);
+      return null;
+    } // method execute0
+
+  } // class BuildStaticResponsesAction
+
   @Command(scope = "ocsp", name = "refresh-token", description = "refresh token for signers")
   @Service
   public static class RefreshTokenAction extends OcspAction {